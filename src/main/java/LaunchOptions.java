@@ -0,0 +1,163 @@
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import utils.BatchQueries;
+import utils.Constants;
+
+/***
+ * What WarwickPlus was asked to do: the files to load, how to keep and wrap the stores,
+ * and what to run once they are loaded. A field keeps its default when its option is
+ * not given.
+ */
+final class LaunchOptions {
+    String creditsPath       = Constants.defaultCreditsPath;
+    String keywordsPath      = Constants.defaultKeywordsPath;
+    String movieMetadataPath = Constants.defaultMovieMetadataPath;
+    String ratingsPath       = Constants.defaultRatingsPath;
+    Integer numMovies        = null;
+    String snapshotPath      = null;
+    String mappedPath        = null;
+    String walPath           = null;
+    String ingestPath        = null;
+    boolean concurrent       = false;
+    boolean trending         = false;
+    String replayPath        = null;
+    boolean similar          = false;
+    String imageBase         = null;
+    String imageCachePath    = null;
+    boolean headless         = false;
+    String queryPath         = null;
+    BatchQueries.Format format = BatchQueries.Format.CSV;
+    int numThreads           = Runtime.getRuntime().availableProcessors();
+    Integer servePort        = null;
+
+    /***
+     * @return The command line options WarwickPlus understands
+     */
+    static Options options() {
+        Options options = new Options();
+
+        options.addOption(Option.builder().longOpt("credits").argName("credits csv file")
+                                .hasArg().desc("The credits csv file to be used")
+                                .build());
+        options.addOption(Option.builder().longOpt("keywords").argName("keywords csv file")
+                                .hasArg().desc("The keywords csv file to be used")
+                                .build());
+        options.addOption(Option.builder().longOpt("movies").argName("movies csv file")
+                                .hasArg().desc("The movies csv file to be used")
+                                .build());
+        options.addOption(Option.builder().longOpt("ratings").argName("ratings csv file")
+                                .hasArg().desc("The ratings csv file to be used")
+                                .build());
+        options.addOption(Option.builder().longOpt("snapshot").argName("snapshot file")
+                                .hasArg().desc("A binary snapshot of the loaded stores. Used instead of the csv files when it is newer than them, otherwise (re)written after loading")
+                                .build());
+        options.addOption(Option.builder().longOpt("mapped").argName("store image file")
+                                .hasArg().desc("A memory-mapped, read-only store image. Queried in place of the loaded stores when it is newer than the csv files, otherwise (re)written after loading")
+                                .build());
+        options.addOption(Option.builder().longOpt("wal").argName("ratings log file")
+                                .hasArg().desc("A log of rating changes, replayed on top of the loaded data and appended to as ratings change")
+                                .build());
+        options.addOption(Option.builder().longOpt("ingest").argName("ratings file or -")
+                                .hasArg().desc("Keep adding ratings, in the ratings csv format, from stdin (-) or from a file as it grows. Uses the thread-safe stores")
+                                .build());
+        options.addOption(Option.builder().longOpt("trending")
+                                .desc("Keep a trending now list, from the rate at which movies are being rated, and show it on the home screen")
+                                .build());
+        options.addOption(Option.builder().longOpt("trending-replay").argName("ratings csv file")
+                                .hasArg().desc("Replay a ratings csv file through the trending engine in time order, print how well the trending list predicts the next week's most rated movies, and exit")
+                                .build());
+        options.addOption(Option.builder().longOpt("similar")
+                                .desc("Index the films by their keywords, genres, top-billed cast and director, and show the most similar films on each film's screen")
+                                .build());
+        options.addOption(Option.builder().longOpt("images").argName("image url or directory")
+                                .hasArg().desc("Load posters and profile pictures from this url or local directory (laid out as size/path) instead of the TMDB image server")
+                                .build());
+        options.addOption(Option.builder().longOpt("image-cache").argName("directory or none")
+                                .hasArg().desc("Keep downloaded posters and profile pictures in this directory (default: warwickplus-images in the temporary directory), or 'none' to keep them in memory only")
+                                .build());
+        options.addOption(Option.builder().longOpt("concurrent")
+                                .desc("Use the thread-safe stores, so the data can change while queries are running")
+                                .build());
+        options.addOption(Option.builder().longOpt("headless")
+                                .desc("Load the stores without a window, run the queries in the --query-file, print their results and exit (or keep serving, with --serve)")
+                                .build());
+        options.addOption(Option.builder().longOpt("query-file").argName("queries file")
+                                .hasArg().desc("The queries to run with --headless, one per line, e.g. top-rated 10, find-films toy story, cast-films 31")
+                                .build());
+        options.addOption(Option.builder().longOpt("format").argName("csv or json")
+                                .hasArg().desc("How --headless prints the query results: csv (default) or json, one object per line")
+                                .build());
+        options.addOption(Option.builder().longOpt("threads").argName("number of threads")
+                                .hasArg().desc("The number of queries --headless runs at once (default: the number of processors)")
+                                .build());
+        options.addOption(Option.builder().longOpt("serve").argName("port")
+                                .hasArg().desc("Answer store queries as JSON over HTTP on this port of localhost, e.g. http://localhost:8080/ratings/top?limit=10")
+                                .build());
+        options.addOption(Option.builder("n").argName("number of movies").hasArg()
+                                .desc("The number of movies to load in (and thereby loading in less of the other files too)")
+                                .build());
+        options.addOption("h","help", false, "Show this help message");
+
+        return options;
+    }
+
+    /***
+     * Read the options from a parsed command line
+     * @throws ParseException If an option's value is not one it can take
+     */
+    static LaunchOptions from(CommandLine line) throws ParseException {
+        LaunchOptions launch = new LaunchOptions();
+
+        if (line.hasOption("credits"))  { launch.creditsPath  = line.getOptionValue("credits"); }
+        if (line.hasOption("keywords")) { launch.keywordsPath = line.getOptionValue("keywords"); }
+        if (line.hasOption("movies"))   { launch.movieMetadataPath = line.getOptionValue("movies"); }
+        if (line.hasOption("ratings"))  { launch.ratingsPath  = line.getOptionValue("ratings"); }
+        if (line.hasOption("snapshot")) { launch.snapshotPath = line.getOptionValue("snapshot"); }
+        if (line.hasOption("mapped"))   { launch.mappedPath   = line.getOptionValue("mapped"); }
+        if (line.hasOption("wal"))      { launch.walPath      = line.getOptionValue("wal"); }
+        if (line.hasOption("ingest"))   { launch.ingestPath   = line.getOptionValue("ingest"); }
+        if (line.hasOption("images"))   { launch.imageBase    = line.getOptionValue("images"); }
+        if (line.hasOption("image-cache")) { launch.imageCachePath = line.getOptionValue("image-cache"); }
+        if (line.hasOption("concurrent")) { launch.concurrent = true; }
+        if (line.hasOption("trending"))   { launch.trending = true; }
+        if (line.hasOption("trending-replay")) { launch.replayPath = line.getOptionValue("trending-replay"); }
+        if (line.hasOption("similar"))    { launch.similar = true; }
+        if (line.hasOption("headless"))   { launch.headless = true; }
+        if (line.hasOption("query-file")) { launch.queryPath = line.getOptionValue("query-file"); }
+        if (line.hasOption("format")) {
+            String formatString = line.getOptionValue("format");
+            if (!formatString.equalsIgnoreCase("csv") && !formatString.equalsIgnoreCase("json")) {
+                throw new ParseException("format must be csv or json");
+            }
+            launch.format = BatchQueries.Format.valueOf(formatString.toUpperCase());
+        }
+        if (line.hasOption("threads")) {
+            launch.numThreads = parseInt(line.getOptionValue("threads"), 1, Integer.MAX_VALUE, "threads must be a positive integer");
+        }
+        if (line.hasOption("serve")) {
+            launch.servePort = parseInt(line.getOptionValue("serve"), 0, 65535, "serve must be a port number from 0 to 65535");
+        }
+        if (line.hasOption("n")) {
+            launch.numMovies = parseInt(line.getOptionValue("n"), 1, Integer.MAX_VALUE, "n parameter must be a positive integer");
+        }
+
+        return launch;
+    }
+
+    // Parses an option's value as an integer from min to max, failing with the message otherwise
+    private static int parseInt(String optionString, int min, int max, String message) throws ParseException {
+        try {
+            int value = Integer.parseInt(optionString);
+            if (value >= min && value <= max) {
+                return value;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Falls through to the same message as an out of range value
+        }
+        throw new ParseException(message + ", not \"" + optionString + "\"");
+    }
+}
@@ -5,6 +5,11 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
 
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
@@ -15,6 +20,9 @@ import javax.swing.JProgressBar;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.MouseInputAdapter;
 import javax.swing.plaf.InsetsUIResource;
 
@@ -22,11 +30,25 @@ import org.apache.commons.cli.*;
 
 import interfaces.*;
 import screen.*;
+import stores.CachedStores;
+import stores.ConcurrentStores;
+import stores.LoggedStores;
+import stores.MappedStores;
+import stores.RatingsLog;
 import stores.Stores;
+import stores.SimilarFilmsStores;
+import stores.TrendingStores;
+import utils.BatchQueries;
 import utils.Constants;
 import utils.DisplayImage;
+import utils.ImageLoader;
+import utils.LiveSearch;
 import utils.LoadData;
 import utils.LoadData.DataLoadException;
+import utils.QueryServer;
+import utils.RatingIngestor;
+import utils.StoreSnapshot;
+import utils.TrendingEngine;
 
 public class WarwickPlus {
     // private static AbstractStores stores = new Stores();
@@ -41,32 +63,8 @@ public class WarwickPlus {
     public static void main(String[] args) {
 
         // Parse command line arguments
-        Options options = new Options();
-        
-        options.addOption(Option.builder().longOpt("credits").argName("credits csv file")
-                                .hasArg().desc("The credits csv file to be used")
-                                .build());
-        options.addOption(Option.builder().longOpt("keywords").argName("keywords csv file")
-                                .hasArg().desc("The keywords csv file to be used")
-                                .build());
-        options.addOption(Option.builder().longOpt("movies").argName("movies csv file")
-                                .hasArg().desc("The movies csv file to be used")
-                                .build());
-        options.addOption(Option.builder().longOpt("ratings").argName("ratings csv file")
-                                .hasArg().desc("The ratings csv file to be used")
-                                .build());
-        options.addOption(Option.builder("n").argName("number of movies").hasArg()
-                                .desc("The number of movies to load in (and thereby loading in less of the other files too)")
-                                .build());
-        options.addOption("h","help", false, "Show this help message");
-
-        // Handle input data files.
-
-        String creditsPath       = Constants.defaultCreditsPath;
-        String keywordsPath      = Constants.defaultKeywordsPath;
-        String movieMetadataPath = Constants.defaultMovieMetadataPath;
-        String ratingsPath       = Constants.defaultRatingsPath;
-        Integer numMovies        = null;
+        Options options = LaunchOptions.options();
+        LaunchOptions launch;
 
         CommandLineParser cliParser = new DefaultParser();
         try{
@@ -76,36 +74,46 @@ public class WarwickPlus {
                 helpFormatter.printHelp("WarwickPlus", options);
                 return;
             }
-            
-            if (line.hasOption("credits"))  { creditsPath  = line.getOptionValue("credits"); }
-            if (line.hasOption("keywords")) { keywordsPath = line.getOptionValue("keywords"); }
-            if (line.hasOption("movies"))   { movieMetadataPath = line.getOptionValue("movies"); }
-            if (line.hasOption("ratings"))  { ratingsPath  = line.getOptionValue("ratings"); }
-            if (line.hasOption("n")) 
-            { 
-                String optionString = line.getOptionValue("n");
-                try{
-                    numMovies    = Integer.parseInt(optionString); 
-                }
-                catch (NumberFormatException e){
-                    System.out.println("Unable to parse \"" + optionString + "\" as an integer number of strings");
-                    throw e;
-                }
-                if (numMovies <= 0){
-                    System.out.println("n parameter must be a positive integer");
-                    return;
-                }
-
-            }
+            launch = LaunchOptions.from(line);
         }
         catch (ParseException e){
             System.err.println("Exception in parsing command line arguments: \n" + e.getMessage());
+            System.exit(1);
             return;
         }
 
-        AbstractStores stores = new Stores();
+        if (launch.imageBase != null) {
+            ImageLoader.setBase(launch.imageBase);
+        }
+        if (launch.imageCachePath != null) {
+            ImageLoader.setCacheDirectory(launch.imageCachePath.equals("none") ? null : launch.imageCachePath);
+        }
+
+        if (launch.replayPath != null) {
+            try {
+                double precision = TrendingEngine.replay(Paths.get(launch.replayPath), new TrendingEngine(Constants.trendingMoviesCount), Duration.ofDays(7), System.out);
+                System.out.println(precision < 0 ? "No intervals to score" : String.format("Mean precision: %.3f", precision));
+            }
+            catch (IOException e) {
+                System.err.println("Unable to replay ratings: " + e.getMessage());
+            }
+            return;
+        }
+
+        if (launch.headless) {
+            // The queries run side by side, so the stores must be safe to query from many threads
+            int status = runHeadless(new ConcurrentStores(), launch);
+            if (status != 0) {
+                // Scripts running the queries can then tell that they did not all run
+                System.exit(status);
+            }
+            return;
+        }
+
+        // Ingested ratings and served queries come in on their own threads, alongside the UI's
+        AbstractStores stores = launch.concurrent || launch.ingestPath != null || launch.servePort != null ? new ConcurrentStores() : new Stores();
         
-        start(stores, creditsPath, keywordsPath, movieMetadataPath, ratingsPath, numMovies);
+        start(stores, launch);
     }
 
     static public void start(AbstractStores stores){
@@ -117,6 +125,20 @@ public class WarwickPlus {
     }
 
     static public void start(AbstractStores stores, String creditsPath, String keywordsPath, String movieMetadataPath, String ratingsPath, Integer numMovies) {
+        LaunchOptions launch = new LaunchOptions();
+        launch.creditsPath = creditsPath;
+        launch.keywordsPath = keywordsPath;
+        launch.movieMetadataPath = movieMetadataPath;
+        launch.ratingsPath = ratingsPath;
+        launch.numMovies = numMovies;
+        start(stores, launch);
+    }
+
+    /***
+     * Show the loading window, load the stores as the options ask, then show the home
+     * screen, starting any ingesting or serving asked for
+     */
+    static void start(AbstractStores stores, LaunchOptions launch) {
         //Create the UI
         JFrame frame = new JFrame("Warwick+");
         frame.setVisible(false);
@@ -160,13 +182,14 @@ public class WarwickPlus {
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
         try{
-            LoadData loading = new LoadData(loadingBar, loadingText, creditsPath, keywordsPath, movieMetadataPath, ratingsPath);
-            //Populate the student stores
-            if (numMovies == null){
-                loading.populate(stores);
+            stores = load(stores, loadingBar, loadingText, launch);
+
+            if (launch.ingestPath != null) {
+                // Ingested ratings go through the log too, when there is one
+                new RatingIngestor(stores.getRatings()).startSource(launch.ingestPath);
             }
-            else {
-                loading.populate(stores, 0, numMovies);
+            if (launch.servePort != null) {
+                serve(stores, launch.servePort);
             }
 
             System.out.println("\nFinished Loading...");
@@ -187,6 +210,188 @@ public class WarwickPlus {
         
     }
 
+    /***
+     * Load the stores without a window, run a file of queries against them and print the
+     * results to stdout. Everything else printed while loading goes to stderr, so that
+     * stdout holds only the results. When given a port, keep answering queries over HTTP
+     * once the file has run without a failure
+     * @param launch The files to load, the queries to run and how to print them
+     * @return The exit status: 0 if every query ran, 1 if there was nothing to run, the
+     *         queries or the stores could not be read, or any query failed
+     */
+    static int runHeadless(AbstractStores stores, LaunchOptions launch) {
+        System.setProperty("java.awt.headless", "true");
+        if (launch.queryPath == null && launch.servePort == null) {
+            System.err.println("--headless needs a --query-file to run or a port to --serve on");
+            return 1;
+        }
+        List<String> queries = null;
+        if (launch.queryPath != null) {
+            try {
+                queries = BatchQueries.read(Paths.get(launch.queryPath));
+            }
+            catch (IOException e) {
+                System.err.println("Unable to read queries: " + e.getMessage());
+                return 1;
+            }
+        }
+
+        PrintStream results = System.out;
+        System.setOut(System.err);
+        try {
+            stores = load(stores, null, null, launch);
+            if (queries != null) {
+                int failed = new BatchQueries(stores, launch.numThreads).run(queries, launch.format, results, System.err);
+                if (failed > 0) {
+                    System.err.println(failed + " of " + queries.size() + " queries failed");
+                    return 1;
+                }
+            }
+        }
+        catch (DataLoadException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+        finally {
+            System.setOut(results);
+        }
+        if (launch.servePort != null && !serve(stores, launch.servePort)) {
+            return 1;
+        }
+        // When serving, the server's own thread keeps the program running
+        return 0;
+    }
+
+    /***
+     * Start answering store queries over HTTP on a port of localhost, printing where
+     * @return TRUE if the server started, FALSE if the port could not be listened on
+     */
+    static boolean serve(AbstractStores stores, int port) {
+        try {
+            QueryServer server = new QueryServer(stores, port, Math.max(4, Runtime.getRuntime().availableProcessors()));
+            server.start();
+            System.out.println("Serving queries on http://localhost:" + server.getPort() + "/");
+            return true;
+        }
+        catch (IOException e) {
+            System.err.println("Unable to serve queries on port " + port + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /***
+     * Load the stores, from a store image, a snapshot or the csv files, then wrap them
+     * as the options ask. Used by the UI and by headless runs alike
+     * @param loadingBar Progress bar to update, or null when headless
+     * @param loadingText Label to show each step in, or null when headless
+     * @param launch The files to load from and the wrappers to add
+     * @return The loaded stores, which may replace the given ones
+     * @throws DataLoadException If the csv files cannot be loaded
+     */
+    static AbstractStores load(AbstractStores stores, JProgressBar loadingBar, JLabel loadingText, LaunchOptions launch) throws DataLoadException {
+        String creditsPath = launch.creditsPath;
+        String keywordsPath = launch.keywordsPath;
+        String movieMetadataPath = launch.movieMetadataPath;
+        String ratingsPath = launch.ratingsPath;
+        Integer numMovies = launch.numMovies;
+
+        Path mapped = launch.mappedPath == null ? null : Paths.get(launch.mappedPath);
+        boolean loaded = false;
+        if (mapped != null && MappedStores.isFresh(mapped, numMovies, creditsPath, keywordsPath, movieMetadataPath, ratingsPath)) {
+            status(loadingText, "Mapping store image...");
+            try {
+                // The mapped stores are read-only, and replace the given ones entirely
+                stores = new MappedStores(mapped);
+                loaded = true;
+            }
+            catch (IOException e) {
+                System.err.println("Unable to map store image, loading csv files instead: " + e.getMessage());
+            }
+        }
+
+        Path snapshot = launch.snapshotPath == null ? null : Paths.get(launch.snapshotPath);
+        if (!loaded && snapshot != null && StoreSnapshot.isFresh(snapshot, numMovies, creditsPath, keywordsPath, movieMetadataPath, ratingsPath)) {
+            status(loadingText, "Loading snapshot...");
+            try {
+                StoreSnapshot.read(snapshot, stores);
+                loaded = true;
+            }
+            catch (IOException e) {
+                // Nothing has been added to the stores, so fall back to the csv files
+                System.err.println("Unable to read snapshot, loading csv files instead: " + e.getMessage());
+            }
+        }
+
+        if (!loaded) {
+            //Populate the student stores straight from the files, without a backend copy
+            if (numMovies == null){
+                LoadData.populateStreaming(stores, loadingBar, loadingText, creditsPath, keywordsPath, movieMetadataPath, ratingsPath);
+            }
+            else {
+                LoadData.populateStreaming(stores, loadingBar, loadingText, creditsPath, keywordsPath, movieMetadataPath, ratingsPath, 0, numMovies);
+            }
+
+            if (snapshot != null) {
+                try {
+                    StoreSnapshot.write(stores, snapshot, numMovies == null ? -1 : numMovies);
+                }
+                catch (IOException e) {
+                    System.err.println("Unable to write snapshot: " + e.getMessage());
+                }
+            }
+            if (mapped != null) {
+                try {
+                    MappedStores.write(stores, mapped, numMovies == null ? -1 : numMovies);
+                }
+                catch (IOException e) {
+                    System.err.println("Unable to write store image: " + e.getMessage());
+                }
+            }
+        }
+
+        if (launch.walPath != null) {
+            // Replayed after any snapshot or image is written, so those only ever hold the csv data
+            status(loadingText, "Replaying rating changes...");
+            try {
+                stores = new LoggedStores(stores, RatingsLog.open(Paths.get(launch.walPath), stores.getRatings()));
+            }
+            catch (IOException e) {
+                System.err.println("Unable to open ratings log, rating changes will not be kept: " + e.getMessage());
+            }
+        }
+
+        if (launch.trending) {
+            // Wraps any logged stores, so a rating change is both logged and counted
+            status(loadingText, "Finding trending movies...");
+            stores = new TrendingStores(stores, new TrendingEngine(Constants.trendingMoviesCount));
+        }
+
+        if (launch.similar) {
+            status(loadingText, "Indexing similar films...");
+            stores = new SimilarFilmsStores(stores);
+        }
+
+        // Outermost, so every change made while the app runs is seen by the cache
+        stores = new CachedStores(stores);
+
+        return stores;
+    }
+
+    // Shows a loading step, when there is a window to show it in. Called from the loading
+    // thread, so the label is changed on the event dispatch thread, as LoadData does
+    private static void status(JLabel loadingText, String text) {
+        if (loadingText != null) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    loadingText.setText(text);
+                }
+            });
+        } else {
+            System.out.println(text);
+        }
+    }
+
     private static void setHomescreen(Container frame, AbstractStores stores) {
         System.out.println("Home screen");
         frame.setVisible(false);
@@ -229,13 +434,31 @@ public class WarwickPlus {
             @Override
             public void mouseClicked(MouseEvent e) {searchBox.setText("");}
         });
+        //Search as the user types, once they pause, refining the last search where possible
+        LiveSearch liveSearch = new LiveSearch(stores);
+        Timer liveSearchTimer = new Timer(Constants.liveSearchDelayMillis, e -> {
+            String searchTerm = searchBox.getText();
+            if (searchTerm.length() >= Constants.liveSearchMinLength && !searchTerm.equals("Search...")) {
+                SearchScreen.createPanel(content, searchTerm, stores, liveSearch);
+            }
+        });
+        liveSearchTimer.setRepeats(false);
+        searchBox.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { liveSearchTimer.restart(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { liveSearchTimer.restart(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { }
+        });
         searchBox.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
+                liveSearchTimer.stop();
                 SwingUtilities.invokeLater(new Runnable() {
                     @Override
                     public void run() {
-                        SearchScreen.createPanel(content, e.getActionCommand().toString(), stores);
+                        SearchScreen.createPanel(content, e.getActionCommand().toString(), stores, liveSearch);
                     }
                 });
             }
@@ -12,4 +12,12 @@ public abstract class AbstractStores {
     public IKeywords getKeywords() { return this.keywords; }
     public IMovies   getMovies()   { return this.movies; }
     public IRatings  getRatings()  { return this.ratings; }
+
+    // A consistent, read-only view of the stores. Stores that are only changed while
+    // loading, or never, are their own snapshot; stores changed while in use override this
+    public AbstractStores snapshot() { return this; }
+
+    // These stores, or the first of the stores they wrap, that are of the given type, or
+    // null if none are. Stores that wrap other stores override this to look through them
+    public <T extends AbstractStores> T find(Class<T> type) { return type.isInstance(this) ? type.cast(this) : null; }
 }
@@ -6,10 +6,16 @@ import stores.Person;
 
 public interface ICredits{
     public boolean add(CastCredit[] cast, CrewCredit[] crew, int filmID);
+    public int addAll(int[] filmIDs, CastCredit[][] cast, CrewCredit[][] crew);
     public boolean remove(int filmID);
     
+    public int[] getFilmIDs();
+
     public CastCredit[] getFilmCast(int filmID);
     public CrewCredit[] getFilmCrew(int filmID);
+    // The casts and crews of many films at once, in the order of their IDs
+    public CastCredit[][] getFilmCasts(int[] filmIDs);
+    public CrewCredit[][] getFilmCrews(int[] filmIDs);
 
     public Person getCast(int castID);
     public Person getCrew(int crewID);
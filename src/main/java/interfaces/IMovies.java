@@ -4,15 +4,19 @@ import java.time.LocalDate;
 
 import stores.Company;
 import stores.Genre;
+import stores.MovieBatch;
 
 public interface IMovies {
     public boolean add(int id, String title, String originalTitle, String overview, String tagline, String status, Genre[] genres, LocalDate release, long budget, long revenue, String[] languages, String originalLanguage, double runtime, String homepage, boolean adult, boolean video, String poster);
     public boolean remove(int id);
+    public int addAll(MovieBatch batch);
 
     public int[] getAllIDs();
     public int[] getAllIDsReleasedInRange(LocalDate start, LocalDate end);
 
     public String getTitle(int id);
+    // The titles of many films at once, in the order of their IDs
+    public String[] getTitles(int[] ids);
     public String getOriginalTitle(int id);
     public String getOverview(int id);
     public String getTagline(int id);
@@ -1,24 +1,48 @@
 package interfaces;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 
 public interface IRatings {
     public boolean add(int userID, int movieID, float rating, LocalDateTime timestamp);
 
+    public int addAll(int[] userIDs, int[] movieIDs, float[] ratings, long[] timestamps);
+
     public boolean remove(int userID, int movieID);
 
     public boolean set(int userID, int movieID, float rating, LocalDateTime timestamp);
 
+    // getMovieRatings and getMovieRaters list a movie's ratings in the same order
     public float[] getMovieRatings(int movieID);
     public float[] getUserRatings(int userID);
     public float getMovieAverageRating(int movieID);
+    // The averages of many movies at once, in the order of their IDs
+    public float[] getMovieAverageRatings(int[] movieIDs);
     public float getUserAverageRating(int userID);
 
     public int[] getMostRatedMovies(int numResults);
     public int[] getMostRatedUsers(int numResults);
     public int getNumRatings(int movieID);
 
+    public int[] getRatedMovies();
+    public int[] getMovieRaters(int movieID);
+    public float getRating(int userID, int movieID);
+    public LocalDateTime getTimestamp(int userID, int movieID);
+
     public int[] getTopAverageRatedMovies(int numResults);
+    public int[] getTopWeightedRatedMovies(int numResults);
+    public float getMovieWeightedRating(int movieID);
+
+    // Counts of ratings of 0.5, 1.0, ... 5.0 stars
+    public int[] getMovieRatingHistogram(int movieID);
+    public int[] getUserRatingHistogram(int userID);
+    public int[] getRatingHistogram();
+    public float getMedianRating(int movieID);
+    public float getRatingStdDev(int movieID);
+
+    public float[] getMovieRatingsBetween(int movieID, LocalDateTime from, LocalDateTime to);
+    public int[] getTrendingMovies(Duration window, int numResults);
+    public int[] getMovieRatingsOverTime(int movieID, LocalDateTime from, Duration bucket, int numBuckets);
 
     public int size();
 }
@@ -169,10 +169,7 @@ class CastMemberAppearsInReel extends MovieReel {
             System.out.println("\tNo movies found");
         }
 
-        String[] labels = new String[length];
-        for (int i = 0; i < length; i++){
-            labels[i] = stores.getMovies().getTitle(movieResults[i]);
-        }
+        String[] labels = stores.getMovies().getTitles(movieResults);
         displayItems(movieResults, labels);
         System.out.println("Finished running Appears In");
     }
@@ -193,10 +190,7 @@ class CastMemberStarsInReel extends MovieReel {
         if (movieResults == null || length == 0){
             System.out.println("\tNo movies found");
         }
-        String[] labels = new String[length];
-        for (int i = 0; i < length; i++){
-            labels[i] = stores.getMovies().getTitle(movieResults[i]);
-        }
+        String[] labels = stores.getMovies().getTitles(movieResults);
         displayItems(movieResults, labels);
         System.out.println("Finished running Stars In");
     }
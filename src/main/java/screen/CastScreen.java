@@ -159,6 +159,8 @@ class TopRatedCastRunnable implements Runnable {
         resultsPanel.setLayout(new BoxLayout(resultsPanel, BoxLayout.Y_AXIS));
         resultsPanel.setSize(scrollPane.getWidth(), topMovies.length * (itemHeight + ((new JSeparator()).getHeight())));
 
+        String[] titles = stores.getMovies().getTitles(topMovies);
+        CastCredit[][] casts = stores.getCredits().getFilmCasts(topMovies);
         for (int i = 0; i < topMovies.length; i ++) {
             JPanel resultItem = new JPanel();
             resultItem.setBackground(Constants.getBackground());
@@ -166,8 +168,8 @@ class TopRatedCastRunnable implements Runnable {
 
             String resultString = "";
             int movieID = topMovies[i];
-            String currentTitle = stores.getMovies().getTitle(topMovies[i]); // title of the current movie
-            CastCredit[] cast = stores.getCredits().getFilmCast(topMovies[i]); // current cast
+            String currentTitle = titles[i]; // title of the current movie
+            CastCredit[] cast = casts[i]; // current cast
 
             // create a clickable button
             JPanel titlePanel = new JPanel();
@@ -299,14 +301,16 @@ class OldMoviesCastRunnable implements Runnable {
         resultsPanel.setLayout(new BoxLayout(resultsPanel, BoxLayout.Y_AXIS));
         resultsPanel.setSize(scrollPane.getWidth(), oldMovies.length * (itemHeight + ((new JSeparator()).getHeight())));
 
+        String[] titles = stores.getMovies().getTitles(oldMovies);
+        CastCredit[][] casts = stores.getCredits().getFilmCasts(oldMovies);
         for (int i = 0; i < oldMovies.length; i ++) {
             JPanel resultItem = new JPanel();
             resultItem.setSize(scrollPane.getWidth(), itemHeight);
 
             String resultString = "";
             int movieID = oldMovies[i];
-            String currentTitle = stores.getMovies().getTitle(oldMovies[i]);
-            CastCredit[] cast = stores.getCredits().getFilmCast(oldMovies[i]); // current cast
+            String currentTitle = titles[i];
+            CastCredit[] cast = casts[i]; // current cast
 
             // create a clickable button
             JPanel titlePanel = new JPanel();
@@ -412,10 +416,7 @@ class FeaturedCastMovieReel extends MovieReel {
         if (featuredCastMovies == null || featuredCastMovies.length == 0) {
             System.out.println("    No films with " + castName + " were found");
         } else {
-            String[] labels = new String[featuredCastMovies.length];
-            for (int i = 0; i < featuredCastMovies.length; i++) {
-                labels[i] = String.format("%s", stores.getMovies().getTitle(featuredCastMovies[i]));
-            }
+            String[] labels = stores.getMovies().getTitles(featuredCastMovies);
             displayItems(featuredCastMovies, labels);
             System.out.println("Finished running Featured Cast Movie Reel");
         }
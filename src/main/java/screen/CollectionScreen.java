@@ -81,10 +81,11 @@ class CollectionReel extends MovieReel {
         if (moviesInCollection == null || moviesInCollection.length == 0){
             System.out.println("\tNo movies found in the collection");
         }
+        String[] titles = stores.getMovies().getTitles(moviesInCollection);
+        float[] averages = stores.getRatings().getMovieAverageRatings(moviesInCollection);
         String[] labels = new String[length];
         for (int i = 0; i < length; i++){
-            labels[i] = String.format("%s (%.2f ★)", stores.getMovies().getTitle(moviesInCollection[i]),
-                                                     stores.getRatings().getMovieAverageRating(moviesInCollection[i]));
+            labels[i] = String.format("%s (%.2f ★)", titles[i], averages[i]);
         }
         displayItems(moviesInCollection, labels);
         System.out.println("Finished running Collection Reel");
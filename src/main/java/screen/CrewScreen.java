@@ -132,7 +132,7 @@ class TopRatedCrewRunnable implements Runnable {
 
     @Override
     public void run() {
-        topMovies = stores.getRatings().getTopAverageRatedMovies(Constants.topMoviesCount); // ids of top 20 movies
+        topMovies = stores.getRatings().getTopWeightedRatedMovies(Constants.topMoviesCount); // ids of top movies, by weighted rating
 
         scrollPane.setVisible(false);
 
@@ -153,13 +153,15 @@ class TopRatedCrewRunnable implements Runnable {
         resultsPanel.setLayout(new BoxLayout(resultsPanel, BoxLayout.Y_AXIS));
         resultsPanel.setSize(scrollPane.getWidth() - 40, topMovies.length * (itemHeight + ((new JSeparator()).getHeight())));
     
+        String[] titles = stores.getMovies().getTitles(topMovies);
+        CrewCredit[][] crews = stores.getCredits().getFilmCrews(topMovies);
         for (int i = 0; i < topMovies.length; i ++) {
             JPanel resultItem = new JPanel();
             resultItem.setSize(scrollPane.getWidth(), itemHeight);
 
             String resultString = "";
-            String currentTitle = stores.getMovies().getTitle(topMovies[i]); // title of the current movie
-            CrewCredit[] crew = stores.getCredits().getFilmCrew(topMovies[i]); // current cast
+            String currentTitle = titles[i]; // title of the current movie
+            CrewCredit[] crew = crews[i]; // current cast
 
             int movieID = topMovies[i];
             // create a clickable button
@@ -297,13 +299,15 @@ class RecentMoviesCrewsRunnable implements Runnable {
         resultsPanel.setLayout(new BoxLayout(resultsPanel, BoxLayout.Y_AXIS));
         resultsPanel.setSize(scrollPane.getWidth() - 60, newMovies.length * (itemHeight + ((new JSeparator()).getHeight())));
    
+        String[] titles = stores.getMovies().getTitles(newMovies);
+        CrewCredit[][] crews = stores.getCredits().getFilmCrews(newMovies);
         for (int i = 0; i < newMovies.length; i ++) {
             JPanel resultItem = new JPanel();
             resultItem.setSize(scrollPane.getWidth(), itemHeight);
 
             String resultString = "";
-            String currentTitle = stores.getMovies().getTitle(newMovies[i]);
-            CrewCredit[] crew = stores.getCredits().getFilmCrew(newMovies[i]); // current cast
+            String currentTitle = titles[i];
+            CrewCredit[] crew = crews[i]; // current cast
 
             int movieID = newMovies[i];
             // create a clickable button
@@ -410,10 +414,7 @@ class FeaturedCrewMovieReel extends MovieReel{
         if (featuredCrewMovies == null || featuredCrewMovies.length == 0) {
             System.out.println("    No films with " + crewName + " were found");
         } else {
-            String[] labels = new String[featuredCrewMovies.length];
-            for (int i = 0; i < featuredCrewMovies.length; i++) {
-                labels[i] = String.format("%s", stores.getMovies().getTitle(featuredCrewMovies[i]));
-            }
+            String[] labels = stores.getMovies().getTitles(featuredCrewMovies);
             displayItems(featuredCrewMovies, labels);
             System.out.println("Finished running Featured Crew Movie Reel");
         }
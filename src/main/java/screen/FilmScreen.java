@@ -3,6 +3,7 @@ package screen;
 import java.awt.Color;
 import java.awt.Desktop;
 import java.awt.Dimension;
+import java.awt.FlowLayout;
 import java.awt.GridBagLayout;
 import java.awt.event.MouseEvent;
 import java.io.IOException;
@@ -29,14 +30,18 @@ import stores.CastCredit;
 import stores.Company;
 import stores.CrewCredit;
 import stores.Genre;
+import stores.SimilarFilmsStores;
 import utils.Constants;
 import utils.DisplayImage;
+import utils.ImageLoader;
 import utils.IsoSearch;
 
 public class FilmScreen {
     public static void createPanel(JPanel panel, int filmID, AbstractStores stores) {
-        IMovies movies = stores.getMovies();
-        ICredits credits = stores.getCredits();
+        // Read everything from one snapshot, so the screen is consistent even if the stores change meanwhile
+        AbstractStores view = stores.snapshot();
+        IMovies movies = view.getMovies();
+        ICredits credits = view.getCredits();
         System.out.println("Film screen --> ID: " + filmID);
         panel.removeAll();
         panel.setLayout(null);
@@ -73,38 +78,20 @@ public class FilmScreen {
         title.setEditable(false);
         System.out.println("\tTitle built");
 
-        //Find and display film poster
-        String filmPosterURL = movies.getPoster(filmID);
-        if (filmPosterURL == null || filmPosterURL == "") {
-            filmPosterURL = "src/main/resources/img/Movie-Unknown.png";
-        } else {
-            filmPosterURL = "https://image.tmdb.org/t/p/original" + filmPosterURL;
-        }
+        //Find and display film poster, showing the default image until it has loaded
+        String filmPosterURL = ImageLoader.imageURL("original", movies.getPoster(filmID));
         DisplayImage filmPoster = null;
         System.out.print("\tAttempted Poster URL: " + filmPosterURL);
         try {
-            if (filmPosterURL == "src/main/resources/img/Movie-Unknown.png") {
-                filmPoster = new DisplayImage(filmPosterURL, 10, false);
-            } else {
-                filmPoster = new DisplayImage(filmPosterURL, 0 , true);
-            }
+            filmPoster = new DisplayImage("src/main/resources/img/Movie-Unknown.png", 10, false);
+            filmPoster.load(filmPosterURL);
         } catch (IOException e) {
-            System.err.print("\t...No file found");
-            if (filmPosterURL != "src/main/resources/img/Movie-Unknown.png") {
-                try {
-                    System.err.print(", so putting in the default image");
-                    filmPosterURL = "src/main/resources/img/Movie-Unknown.png";
-                    filmPoster = new DisplayImage(filmPosterURL, 10, false);
-                } catch (IOException e1) {
-                    e1.printStackTrace();
-                }
-            }
+            e.printStackTrace();
         }
         if (filmPoster != null) {
             filmPoster.setBounds((int) (panel.getWidth() * 0.8), 5, (int) (panel.getWidth() * 0.2)-5, (int) (panel.getHeight() * 0.5)-4);
-            if (filmPosterURL == "src/main/resources/img/Movie-Unknown.png") {
-                filmPoster.setBorder(BorderFactory.createLineBorder(Color.WHITE));
-            } else {
+            filmPoster.setBorder(BorderFactory.createLineBorder(Color.WHITE));
+            if (filmPosterURL != null) {
                 filmPoster.addMouseListener(new MouseInputAdapter() {
                     @Override
                     public void mouseClicked(MouseEvent e) {
@@ -445,6 +432,10 @@ public class FilmScreen {
         imdb.setBounds((int) (panel.getWidth() * 0.6), (int) (panel.getHeight() * 0.5)+5, (int) (panel.getWidth() * 0.2) - 5, (int) (panel.getHeight() * 0.2) - 5);
         System.out.println("\tIMDb built");
 
+        // Cast and crew are shorter when there is a row of similar films below them
+        SimilarFilmsStores similarStores = stores.find(SimilarFilmsStores.class);
+        final double creditsHeight = similarStores == null ? 0.25 : 0.15;
+
         TitledBorder castBorder;
         castBorder = BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Constants.getFontColor()), "Cast");
         castBorder.setTitleJustification(TitledBorder.LEFT);
@@ -453,15 +444,15 @@ public class FilmScreen {
         JPanel castScrollInnerPanel = new JPanel();
         JScrollPane castScroll = new JScrollPane(castScrollInnerPanel);
         castScrollOuterPanel.setBorder(castBorder);
-        castScrollOuterPanel.setBounds(5, (int) (panel.getHeight() * 0.7), (int) (panel.getWidth()*0.5)-10, (int) (panel.getHeight()*0.25));
+        castScrollOuterPanel.setBounds(5, (int) (panel.getHeight() * 0.7), (int) (panel.getWidth()*0.5)-10, (int) (panel.getHeight()*creditsHeight));
         castScrollOuterPanel.setBackground(Constants.getHighlight());
         castScroll.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         castScroll.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
-        castScroll.setPreferredSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * 0.2)));
-        castScroll.setMinimumSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * 0.2)));
-        castScroll.getViewport().setPreferredSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * 0.2)));
-        castScroll.getViewport().setMinimumSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * 0.2)));
-        castScrollInnerPanel.setSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * 0.2)));
+        castScroll.setPreferredSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * (creditsHeight - 0.05))));
+        castScroll.setMinimumSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * (creditsHeight - 0.05))));
+        castScroll.getViewport().setPreferredSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * (creditsHeight - 0.05))));
+        castScroll.getViewport().setMinimumSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * (creditsHeight - 0.05))));
+        castScrollInnerPanel.setSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * (creditsHeight - 0.05))));
         castScroll.setBackground(Constants.getHighlight());
         castScrollInnerPanel.setBackground(Constants.getHighlight());
         castScrollOuterPanel.setBackground(Constants.getHighlight());
@@ -546,17 +537,17 @@ public class FilmScreen {
         JPanel crewScrollInnerPanel = new JPanel();
         JScrollPane crewScroll = new JScrollPane(crewScrollInnerPanel);
         crewScrollOuterPanel.setBorder(crewBorder);
-        crewScrollOuterPanel.setBounds((int) (panel.getWidth() * 0.5)+5, (int) (panel.getHeight() * 0.7), (int) (panel.getWidth() * 0.5) - 10, (int) (panel.getHeight() * 0.25));
+        crewScrollOuterPanel.setBounds((int) (panel.getWidth() * 0.5)+5, (int) (panel.getHeight() * 0.7), (int) (panel.getWidth() * 0.5) - 10, (int) (panel.getHeight() * creditsHeight));
         crewScrollOuterPanel.setBackground(Constants.getHighlight());
         crewScroll.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         crewScroll.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
-        crewScroll.setPreferredSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * 0.2)));
-        crewScroll.setMinimumSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * 0.2)));
+        crewScroll.setPreferredSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * (creditsHeight - 0.05))));
+        crewScroll.setMinimumSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * (creditsHeight - 0.05))));
         crewScroll.getViewport()
-                .setPreferredSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * 0.2)));
+                .setPreferredSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * (creditsHeight - 0.05))));
         crewScroll.getViewport()
-                .setMinimumSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * 0.2)));
-        crewScrollInnerPanel.setSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * 0.2)));
+                .setMinimumSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * (creditsHeight - 0.05))));
+        crewScrollInnerPanel.setSize(new Dimension((int) (panel.getWidth() * 0.475), (int) (panel.getHeight() * (creditsHeight - 0.05))));
         crewScroll.setBackground(Constants.getHighlight());
         crewScrollInnerPanel.setBackground(Constants.getHighlight());
         crewScrollOuterPanel.setBackground(Constants.getHighlight());
@@ -619,6 +610,53 @@ public class FilmScreen {
         }
         System.out.println("\tCrew built");
 
+        JPanel similarPanel = null;
+        if (similarStores != null) {
+            TitledBorder similarBorder;
+            similarBorder = BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Constants.getFontColor()), "Similar Films");
+            similarBorder.setTitleJustification(TitledBorder.LEFT);
+            similarBorder.setTitleColor(Constants.getFontColor());
+            similarPanel = new JPanel();
+            similarPanel.setBorder(similarBorder);
+            similarPanel.setBounds(5, (int) (panel.getHeight() * (0.7 + creditsHeight)) + 5, panel.getWidth() - 10, (int) (panel.getHeight() * 0.1) - 5);
+            similarPanel.setBackground(Constants.getHighlight());
+            similarPanel.setLayout(new FlowLayout(FlowLayout.LEFT));
+
+            int[] similarFilms = similarStores.similarFilms(filmID, Constants.similarFilmsCount);
+            if (similarFilms.length == 0) {
+                JLabel tmpLabel = new JLabel("No similar films found");
+                tmpLabel.setForeground(Constants.getFontColor());
+                similarPanel.add(tmpLabel);
+            }
+            String[] similarTitles = movies.getTitles(similarFilms);
+            for (int s = 0; s < similarFilms.length; s++) {
+                int similarID = similarFilms[s];
+                String similarTitle = similarTitles[s];
+                if (similarTitle == null) {
+                    continue;
+                }
+                JPanel tmpPanel = new JPanel();
+                tmpPanel.setBackground(Constants.getBackground());
+                JLabel tmpLabel = new JLabel(similarTitle);
+                tmpLabel.setForeground(Constants.getFontColor());
+                tmpPanel.add(tmpLabel);
+                tmpPanel.addMouseListener(new MouseInputAdapter() {
+                    @Override
+                    public void mouseClicked(MouseEvent e) {
+                        SwingUtilities.invokeLater(new Runnable() {
+                            @Override
+                            public void run() {
+                                FilmScreen.createPanel(panel, similarID, stores);
+                            }
+                        });
+
+                    }
+                });
+                similarPanel.add(tmpPanel);
+            }
+            System.out.println("\tSimilar films built");
+        }
+
         panel.add(title);
         panel.add(tagline);
         panel.add(overview);
@@ -629,6 +667,9 @@ public class FilmScreen {
         panel.add(imdb);
         panel.add(castScrollOuterPanel);
         panel.add(crewScrollOuterPanel);
+        if (similarPanel != null) {
+            panel.add(similarPanel);
+        }
 
     }
 }
\ No newline at end of file
@@ -11,13 +11,14 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSeparator;
 import javax.swing.JTextArea;
-import javax.swing.SwingUtilities;
 import javax.swing.border.TitledBorder;
 
 import interfaces.*;
 import stores.Person;
+import stores.TrendingStores;
 import ui.MovieReel;
 import utils.Constants;
+import utils.QueryExecutor;
 
 public class HomeScreen {
     public static void createPanel(JPanel panel, AbstractStores stores) {
@@ -49,14 +50,21 @@ public class HomeScreen {
         //Make layout vertically stacked
         reels.setLayout(new BoxLayout(reels, BoxLayout.Y_AXIS));
         
-        MovieReel topAverageRatedMovies = new TopAverageRatedMovies(panel, stores);
-        topAverageRatedMovies.setSize(new Dimension(reels.getWidth(), (int) (reels.getHeight() * 0.3)));
-        reels.add(topAverageRatedMovies);
-        SwingUtilities.invokeLater(topAverageRatedMovies);
+        TrendingStores trendingStores = stores.find(TrendingStores.class);
+        if (trendingStores != null) {
+            MovieReel trendingMovies = new TrendingMovies(panel, stores, trendingStores);
+            reels.add(trendingMovies);
+            trendingMovies.run();
+        }
+
+        MovieReel topWeightedRatedMovies = new TopWeightedRatedMovies(panel, stores);
+        topWeightedRatedMovies.setSize(new Dimension(reels.getWidth(), (int) (reels.getHeight() * 0.3)));
+        reels.add(topWeightedRatedMovies);
+        topWeightedRatedMovies.run();
         
         MovieReel mostKeywordMovies = new MostKeywordMovies(panel, stores);
         reels.add(mostKeywordMovies);
-        SwingUtilities.invokeLater(mostKeywordMovies);
+        mostKeywordMovies.run();
 
 
         JScrollPane reelsScrollPane = new JScrollPane(reels);
@@ -105,7 +113,8 @@ public class HomeScreen {
 
         panel.setVisible(true);
 
-        SwingUtilities.invokeLater(mostCastCreditsRunnable);
+        //The reels and list each start their query in the background
+        mostCastCreditsRunnable.run();
     }
 }
 
@@ -138,8 +147,10 @@ class MostCastCredits implements Runnable {
     @Override
     public void run() {
         System.out.println("Running Most Cast Credits Users");
-        Person[] mostCastCredits = stores.getCredits().getMostCastCredits(Constants.mostUserRatingCount);
+        QueryExecutor.getShared().submit(scrollPane, () -> stores.getCredits().getMostCastCredits(Constants.mostUserRatingCount), this::showResults);
+    }
 
+    private void showResults(Person[] mostCastCredits) {
         scrollPane.setVisible(false);
 
         if (mostCastCredits == null || mostCastCredits.length == 0) {
@@ -199,30 +210,39 @@ class MostCastCredits implements Runnable {
     }
 }
 
-class TopAverageRatedMovies extends MovieReel {
-    public TopAverageRatedMovies(JPanel screenPanel, AbstractStores stores){
-        super(screenPanel, stores, "Top Average Rated Movies", "Searching Top Average Rated Movies...");
+class TrendingMovies extends MovieReel {
+    private TrendingStores trendingStores;
+
+    public TrendingMovies(JPanel screenPanel, AbstractStores stores, TrendingStores trendingStores){
+        super(screenPanel, stores, "Trending Now", "Searching Trending Movies...");
+        this.trendingStores = trendingStores;
     }
 
     public void run(){
-        System.out.println("Running Top Average Rated Movie Reel");
-        int length = Constants.topMoviesCount;
-        int[] movieResults = stores.getRatings().getTopAverageRatedMovies(length);
-
-        if (movieResults == null || movieResults.length == 0){
-            String message = "No top average rated movie ratings found";
-            System.out.println("\t" + message);
-            this.add(new JLabel(message));
-        }
-        else{
-            String[] labels = new String[length];
-            for (int i = 0; i < length; i++){
-                labels[i] = String.format("%s (%.2f ★)", stores.getMovies().getTitle(movieResults[i]),
-                                                     stores.getRatings().getMovieAverageRating(movieResults[i]));
-            }
-            displayItems(movieResults, labels);
-            System.out.println("Finished running Top Average Rated Movie Reel");
-        }
+        System.out.println("Running Trending Movie Reel");
+        displayQuery(trendingStores::getTrending,
+                     movieIDs -> {
+                         String[] titles = stores.getMovies().getTitles(movieIDs);
+                         return labels(movieIDs.length, i -> String.format("%s (%.1f)", titles[i], trendingStores.getEngine().getScore(movieIDs[i])));
+                     },
+                     "No recently rated movies found");
+    }
+}
+
+// Ranked by weighted rating, so movies with a handful of perfect ratings do not crowd out the classics
+class TopWeightedRatedMovies extends MovieReel {
+    public TopWeightedRatedMovies(JPanel screenPanel, AbstractStores stores){
+        super(screenPanel, stores, "Top Rated Movies", "Searching Top Rated Movies...");
+    }
+
+    public void run(){
+        System.out.println("Running Top Weighted Rated Movie Reel");
+        displayQuery(() -> stores.getRatings().getTopWeightedRatedMovies(Constants.topMoviesCount),
+                     movieIDs -> {
+                         String[] titles = stores.getMovies().getTitles(movieIDs);
+                         return labels(movieIDs.length, i -> String.format("%s (%.2f ★)", titles[i], stores.getRatings().getMovieWeightedRating(movieIDs[i])));
+                     },
+                     "No top rated movie ratings found");
     }
 }
 
@@ -233,20 +253,11 @@ class MostKeywordMovies extends MovieReel {
 
     public void run(){
         System.out.println("Running Most Keywords Movie Reel");
-        int length = Constants.topMoviesCount;
-        int[] movieResults = stores.getKeywords().getMostKeywordFilms(length);
-
-        if (movieResults == null || movieResults.length == 0){
-            System.out.println("\tNo most keyword movie ratings found");
-        }
-        else{
-            String[] labels = new String[length];
-            for (int i = 0; i < length; i++){
-                labels[i] = String.format("%s (%d)", stores.getMovies().getTitle(movieResults[i]),
-                                                         stores.getKeywords().getKeywordsForFilm(movieResults[i]).length);
-            }
-            displayItems(movieResults, labels);
-            System.out.println("Finished running Top Rated Movie Reel");
-        }
+        displayQuery(() -> stores.getKeywords().getMostKeywordFilms(Constants.topMoviesCount),
+                     movieIDs -> {
+                         String[] titles = stores.getMovies().getTitles(movieIDs);
+                         return labels(movieIDs.length, i -> String.format("%s (%d)", titles[i], stores.getKeywords().getKeywordsForFilm(movieIDs[i]).length));
+                     },
+                     "No most keyword movie ratings found");
     }
 }
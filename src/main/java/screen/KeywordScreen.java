@@ -432,10 +432,7 @@ class SelectedKeywordMovieReel extends MovieReel {
         if (movieResults == null || movieResults.length == 0){
             System.out.println("No movies with this particular keyword ID found");
         } else {
-            String[] labels = new String[movieResults.length];
-            for (int i = 0; i < movieResults.length; i++) {
-                labels[i] = String.format("%s", stores.getMovies().getTitle(movieResults[i]));
-            }
+            String[] labels = stores.getMovies().getTitles(movieResults);
             displayItems(movieResults, labels);
             System.out.println("Finished running Keyword to Film");
         }
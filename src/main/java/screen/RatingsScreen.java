@@ -11,12 +11,12 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSeparator;
 import javax.swing.JTextArea;
-import javax.swing.SwingUtilities;
 import javax.swing.border.TitledBorder;
 
 import interfaces.*;
 import ui.MovieReel;
 import utils.Constants;
+import utils.QueryExecutor;
 
 public class RatingsScreen {
     public static void createPanel(JPanel panel, AbstractStores stores) {
@@ -52,11 +52,11 @@ public class RatingsScreen {
         MovieReel mostRatedMovies = new MostRatedMovieReel(panel, stores);
         mostRatedMovies.setSize(new Dimension(reels.getWidth(), (int) (reels.getHeight() * 0.3)));
         reels.add(mostRatedMovies);
-        SwingUtilities.invokeLater(mostRatedMovies);
+        mostRatedMovies.run();
         
         MovieReel topRatedMovies = new TopRatedMovieReel(panel, stores);
         reels.add(topRatedMovies);
-        SwingUtilities.invokeLater(topRatedMovies);
+        topRatedMovies.run();
 
 
         JScrollPane reelsScrollPane = new JScrollPane(reels);
@@ -105,7 +105,8 @@ public class RatingsScreen {
 
         panel.setVisible(true);
 
-        SwingUtilities.invokeLater(mostRatedUsersRunnable);
+        //The reels and list each start their query in the background
+        mostRatedUsersRunnable.run();
     }
 }
 
@@ -138,8 +139,10 @@ class MostRatedUsersRunnable implements Runnable {
     @Override
     public void run() {
         System.out.println("Running Most Rated Users");
-        int[] userResults = ratings.getMostRatedUsers(Constants.mostUserRatingCount);
+        QueryExecutor.getShared().submit(scrollPane, () -> ratings.getMostRatedUsers(Constants.mostUserRatingCount), this::showResults);
+    }
 
+    private void showResults(int[] userResults) {
         scrollPane.setVisible(false);
 
         if (userResults == null || userResults.length == 0) {
@@ -221,23 +224,12 @@ class MostRatedMovieReel extends MovieReel {
 
     public void run(){
         System.out.println("Running Most Rated Movie Reel");
-        int length = Constants.topMoviesCount;
-        int[] movieResults = stores.getRatings().getMostRatedMovies(length);
-
-        if (movieResults == null || movieResults.length == 0){
-            String message = "No most rated movie ratings found";
-            System.out.println("\t" + message);
-            this.add(new JLabel(message));
-        }
-        else{
-            String[] labels = new String[length];
-            for (int i = 0; i < length; i++){
-                labels[i] = String.format("%s (%d)", stores.getMovies().getTitle(movieResults[i]),
-                                                     stores.getRatings().getNumRatings(movieResults[i]));
-            }
-            displayItems(movieResults, labels);
-            System.out.println("Finished running Most Rated Movie Reel");
-        }
+        displayQuery(() -> stores.getRatings().getMostRatedMovies(Constants.topMoviesCount),
+                     movieIDs -> {
+                         String[] titles = stores.getMovies().getTitles(movieIDs);
+                         return labels(movieIDs.length, i -> String.format("%s (%d)", titles[i], stores.getRatings().getNumRatings(movieIDs[i])));
+                     },
+                     "No most rated movie ratings found");
     }
 }
 
@@ -248,20 +240,12 @@ class TopRatedMovieReel extends MovieReel {
 
     public void run(){
         System.out.println("Running Top Rated Movie Reel");
-        int length = Constants.topMoviesCount;
-        int[] movieResults = stores.getRatings().getTopAverageRatedMovies(length);
-
-        if (movieResults == null || movieResults.length == 0){
-            System.out.println("\tNo top rated movie ratings found");
-        }
-        else{
-            String[] labels = new String[length];
-            for (int i = 0; i < length; i++){
-                labels[i] = String.format("%s (%.2f ★)", stores.getMovies().getTitle(movieResults[i]),
-                                                         stores.getRatings().getMovieAverageRating(movieResults[i]));
-            }
-            displayItems(movieResults, labels);
-            System.out.println("Finished running Top Rated Movie Reel");
-        }
+        displayQuery(() -> stores.getRatings().getTopAverageRatedMovies(Constants.topMoviesCount),
+                     movieIDs -> {
+                         String[] titles = stores.getMovies().getTitles(movieIDs);
+                         float[] averages = stores.getRatings().getMovieAverageRatings(movieIDs);
+                         return labels(movieIDs.length, i -> String.format("%s (%.2f ★)", titles[i], averages[i]));
+                     },
+                     "No top rated movie ratings found");
     }
-}
\ No newline at end of file
+}
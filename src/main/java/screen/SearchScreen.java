@@ -10,11 +10,20 @@ import java.awt.*;
 import java.awt.event.MouseEvent;
 
 import utils.Constants;
+import utils.LiveSearch;
+import utils.QueryExecutor;
 
 public class SearchScreen {
     
     public static void createPanel(JPanel panel, String searchTerm, AbstractStores stores) {
-        IKeywords keywords = stores.getKeywords();
+        createPanel(panel, searchTerm, stores, new LiveSearch(stores));
+    }
+
+    /***
+     * Search screen for a term typed so far, reusing the results of the last term given
+     * to the same LiveSearch where the new term contains it
+     */
+    public static void createPanel(JPanel panel, String searchTerm, AbstractStores stores, LiveSearch liveSearch) {
         System.out.println("Search screen --> \"" + searchTerm + "\"");
         if (searchTerm == "" || searchTerm.isEmpty()) {
             System.err.println("\tCan't search for nothing...");
@@ -59,7 +68,7 @@ public class SearchScreen {
         movieSearch.setAutoscrolls(false);
         movieResultsOuter.add(movieSearch);
 
-        MovieSearchRunnable movieSearchRunnable = new MovieSearchRunnable(panel, movieSearch, movieResults, stores, searchTerm);
+        MovieSearchRunnable movieSearchRunnable = new MovieSearchRunnable(panel, movieSearch, movieResults, stores, liveSearch, searchTerm);
 
         TitledBorder castResultsBorder;
         castResultsBorder = BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Constants.getFontColor()),
@@ -91,7 +100,7 @@ public class SearchScreen {
         castSearch.setAutoscrolls(false);
         castResultsOuter.add(castSearch);
 
-        CreditsSearchRunnable castSearchRunnable = new CreditsSearchRunnable(panel, castSearch, castResults, stores, searchTerm, true);
+        CreditsSearchRunnable castSearchRunnable = new CreditsSearchRunnable(panel, castSearch, castResults, stores, liveSearch, searchTerm, true);
 
         TitledBorder crewResultsBorder;
         crewResultsBorder = BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Constants.getFontColor()),
@@ -129,7 +138,7 @@ public class SearchScreen {
         crewSearch.setAutoscrolls(false);
         crewResultsOuter.add(crewSearch);
 
-        CreditsSearchRunnable crewSearchRunnable = new CreditsSearchRunnable(panel, crewSearch, crewResults, stores, searchTerm, false);
+        CreditsSearchRunnable crewSearchRunnable = new CreditsSearchRunnable(panel, crewSearch, crewResults, stores, liveSearch, searchTerm, false);
 
         TitledBorder keywordsResultsBorder;
         keywordsResultsBorder = BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Constants.getFontColor()),
@@ -169,7 +178,7 @@ public class SearchScreen {
         keywordSearch.setAutoscrolls(false);
         keywordsResultsOuter.add(keywordSearch);
 
-        KeywordSearchRunnable keywordSearchRunnable = new KeywordSearchRunnable(keywordSearch, keywordResults, keywords, searchTerm);
+        KeywordSearchRunnable keywordSearchRunnable = new KeywordSearchRunnable(keywordSearch, keywordResults, liveSearch, searchTerm);
 
         panel.add(title);
         panel.add(movieResultsOuter);
@@ -179,10 +188,11 @@ public class SearchScreen {
 
         panel.setVisible(true);
 
-        SwingUtilities.invokeLater(movieSearchRunnable);
-        SwingUtilities.invokeLater(castSearchRunnable);
-        SwingUtilities.invokeLater(crewSearchRunnable);
-        SwingUtilities.invokeLater(keywordSearchRunnable);
+        //Each starts its search in the background, so the four run side by side
+        movieSearchRunnable.run();
+        castSearchRunnable.run();
+        crewSearchRunnable.run();
+        keywordSearchRunnable.run();
     }
 }
 
@@ -193,12 +203,14 @@ class MovieSearchRunnable implements Runnable {
     private JLabel loadingText;
     private String searchTerm;
     private AbstractStores stores;
+    private LiveSearch liveSearch;
 
-    public MovieSearchRunnable(JPanel masterPane, JScrollPane scrollPane, JPanel resultsPane, AbstractStores stores, String searchTerm) {
+    public MovieSearchRunnable(JPanel masterPane, JScrollPane scrollPane, JPanel resultsPane, AbstractStores stores, LiveSearch liveSearch, String searchTerm) {
         this.masterPane = masterPane;
         this.scrollPane = scrollPane;
         this.resultsPane = resultsPane;
         this.stores = stores;
+        this.liveSearch = liveSearch;
         this.searchTerm = searchTerm;
 
         scrollPane.setVisible(false);
@@ -215,8 +227,11 @@ class MovieSearchRunnable implements Runnable {
 
     @Override
     public void run() {
-        int[] idResults = stores.getMovies().findFilms(searchTerm);
+        //The first films found are shown while the search carries on
+        QueryExecutor.getShared().submit(scrollPane, firstMatches -> liveSearch.findFilms(searchTerm, firstMatches), this::showResults, this::showResults);
+    }
 
+    private void showResults(int[] idResults) {
         scrollPane.setVisible(false);
 
         if (idResults == null || idResults.length == 0) {
@@ -237,12 +252,13 @@ class MovieSearchRunnable implements Runnable {
         resultsPane.setSize(scrollPane.getWidth()-40, idResults.length*(itemHeight+((new JSeparator()).getHeight())));
 
 
+        String[] titles = stores.getMovies().getTitles(idResults);
         for (int i = 0; i < idResults.length; i++) {
             JPanel resultItem = new JPanel();
             resultItem.setSize(scrollPane.getWidth()-40, itemHeight);
             int filmID = idResults[i];
 
-            JTextArea title = new JTextArea(stores.getMovies().getTitle(idResults[i]));
+            JTextArea title = new JTextArea(titles[i]);
             title.setBounds(0, (itemHeight * i), resultsPane.getWidth(), itemHeight);
             title.setForeground(Constants.getFontColor());
             title.setBackground(Constants.getBackground());
@@ -294,15 +310,17 @@ class CreditsSearchRunnable implements Runnable {
     private JScrollPane scrollPane;
     private JPanel resultsPane;
     private AbstractStores stores;
+    private LiveSearch liveSearch;
     private JLabel loadingText;
     private String searchTerm;
     private boolean castFlag;
 
-    public CreditsSearchRunnable(JPanel masterPanel, JScrollPane scrollPane, JPanel resultsPane, AbstractStores stores, String searchTerm, boolean castFlag) {
+    public CreditsSearchRunnable(JPanel masterPanel, JScrollPane scrollPane, JPanel resultsPane, AbstractStores stores, LiveSearch liveSearch, String searchTerm, boolean castFlag) {
         this.masterPanel = masterPanel;
         this.scrollPane = scrollPane;
         this.resultsPane = resultsPane;
         this.stores = stores;
+        this.liveSearch = liveSearch;
         this.searchTerm = searchTerm;
         this.castFlag = castFlag;
 
@@ -326,138 +344,141 @@ class CreditsSearchRunnable implements Runnable {
 
     @Override
     public void run() {
-        ICredits credits = stores.getCredits();
         if (castFlag) {
-            IPerson[] castResults = credits.findCast(searchTerm);
-
-            if (castResults == null || castResults.length == 0) {
-                loadingText.setText("No Cast Members found for \"" + searchTerm + "\"!");
-                System.out.println("\t0 Cast Members found");
-                return;
-            } else {
-                loadingText.setText("Processing " + castResults.length + " Cast Members...");
-                System.out.println("\t" + castResults.length + " Cast Members found");
-            }
+            QueryExecutor.getShared().submit(scrollPane, firstMatches -> liveSearch.findCast(searchTerm, firstMatches), this::showCast, this::showCast);
+        } else {
+            QueryExecutor.getShared().submit(scrollPane, firstMatches -> liveSearch.findCrew(searchTerm, firstMatches), this::showCrew, this::showCrew);
+        }
+    }
+
+    private void showCast(IPerson[] castResults) {
+        if (castResults == null || castResults.length == 0) {
+            loadingText.setText("No Cast Members found for \"" + searchTerm + "\"!");
+            System.out.println("\t0 Cast Members found");
+            return;
+        } else {
+            loadingText.setText("Processing " + castResults.length + " Cast Members...");
+            System.out.println("\t" + castResults.length + " Cast Members found");
+        }
+
+        scrollPane.setVisible(false);
+
+        final int itemHeight = 50;
+
+        resultsPane.removeAll();
+        resultsPane.setLayout(new BoxLayout(resultsPane, BoxLayout.Y_AXIS));
+        resultsPane.setSize(scrollPane.getWidth()-40, castResults.length * (itemHeight + ((new JSeparator()).getHeight())));
+
+        for (int i = 0; i < castResults.length; i++) {
+            JPanel resultItem = new JPanel();
+            resultItem.setBounds(0, (itemHeight * i), resultsPane.getWidth(), itemHeight);
+
+            JTextArea title = new JTextArea(castResults[i].getName());
+            title.setBounds(0, (itemHeight * i), resultsPane.getWidth(), itemHeight);
+            title.setForeground(Constants.getFontColor());
+            title.setBackground(Constants.getBackground());
+            title.setEditable(false);
+            title.setLineWrap(true);
+            title.setWrapStyleWord(true);
 
-            scrollPane.setVisible(false);
-
-            final int itemHeight = 50;
-
-            resultsPane.removeAll();
-            resultsPane.setLayout(new BoxLayout(resultsPane, BoxLayout.Y_AXIS));
-            resultsPane.setSize(scrollPane.getWidth()-40, castResults.length * (itemHeight + ((new JSeparator()).getHeight())));
-
-            for (int i = 0; i < castResults.length; i++) {
-                JPanel resultItem = new JPanel();
-                resultItem.setBounds(0, (itemHeight * i), resultsPane.getWidth(), itemHeight);
-
-                JTextArea title = new JTextArea(castResults[i].getName());
-                title.setBounds(0, (itemHeight * i), resultsPane.getWidth(), itemHeight);
-                title.setForeground(Constants.getFontColor());
-                title.setBackground(Constants.getBackground());
-                title.setEditable(false);
-                title.setLineWrap(true);
-                title.setWrapStyleWord(true);
-
-                resultItem.add(title);
-                resultItem.setBackground(Constants.getBackground());
-                resultItem.setForeground(Constants.getFontColor());
-
-                int castID = castResults[i].getID();
-                title.addMouseListener(new MouseInputAdapter() {
-                    @Override
-                    public void mouseClicked(MouseEvent e){
-                        SwingUtilities.invokeLater(new Runnable() {
-                            @Override
-                            public void run() {
-                                CastMemberScreen.createPanel(masterPanel, castID, stores);
-                            }
-                        });
-                    }
-                });
-                resultItem.addMouseListener(new MouseInputAdapter() {
-                    @Override
-                    public void mouseClicked(MouseEvent e){
-                        SwingUtilities.invokeLater(new Runnable() {
-                            @Override
-                            public void run() {
-                                CastMemberScreen.createPanel(masterPanel, castID, stores);
-                            }
-                        });
-                    }
-                });
-
-                resultsPane.add(resultItem);
-
-                if (i < castResults.length - 1) {
-                    JSeparator sep = new JSeparator();
-                    sep.setBackground(Constants.getHighlight());
-                    sep.setForeground(Constants.getFontColor());
-                    resultsPane.add(sep);
+            resultItem.add(title);
+            resultItem.setBackground(Constants.getBackground());
+            resultItem.setForeground(Constants.getFontColor());
+
+            int castID = castResults[i].getID();
+            title.addMouseListener(new MouseInputAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e){
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            CastMemberScreen.createPanel(masterPanel, castID, stores);
+                        }
+                    });
+                }
+            });
+            resultItem.addMouseListener(new MouseInputAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e){
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            CastMemberScreen.createPanel(masterPanel, castID, stores);
+                        }
+                    });
                 }
+            });
+
+            resultsPane.add(resultItem);
+
+            if (i < castResults.length - 1) {
+                JSeparator sep = new JSeparator();
+                sep.setBackground(Constants.getHighlight());
+                sep.setForeground(Constants.getFontColor());
+                resultsPane.add(sep);
             }
-            scrollPane.setVisible(true);
+        }
+        scrollPane.setVisible(true);
+    }
+
+    private void showCrew(IPerson[] crewResults) {
+        if (crewResults == null || crewResults.length == 0) {
+            loadingText.setText("No Crew Members found for \"" + searchTerm + "\"!");
+            System.out.println("\t0 Crew Members found");
+            return;
         } else {
-            IPerson[] crewResults = credits.findCrew(searchTerm);
-
-            if (crewResults == null || crewResults.length == 0) {
-                loadingText.setText("No Crew Members found for \"" + searchTerm + "\"!");
-                System.out.println("\t0 Crew Members found");
-                return;
-            } else {
-                loadingText.setText("Processing " + crewResults.length + " Crew Members...");
-                System.out.println("\t" + crewResults.length + " Crew Members found");
-            }
+            loadingText.setText("Processing " + crewResults.length + " Crew Members...");
+            System.out.println("\t" + crewResults.length + " Crew Members found");
+        }
 
-            scrollPane.setVisible(false);
+        scrollPane.setVisible(false);
 
-            final int itemHeight = 50;
+        final int itemHeight = 50;
 
-            resultsPane.removeAll();
-            resultsPane.setLayout(new BoxLayout(resultsPane, BoxLayout.Y_AXIS));
-            resultsPane.setSize(scrollPane.getWidth()-40, crewResults.length * (itemHeight + ((new JSeparator()).getHeight())));
+        resultsPane.removeAll();
+        resultsPane.setLayout(new BoxLayout(resultsPane, BoxLayout.Y_AXIS));
+        resultsPane.setSize(scrollPane.getWidth()-40, crewResults.length * (itemHeight + ((new JSeparator()).getHeight())));
 
-            for (int i = 0; i < crewResults.length; i++) {
-                JPanel resultItem = new JPanel();
-                resultItem.setBounds(0, (itemHeight * i), resultsPane.getWidth(), itemHeight);
+        for (int i = 0; i < crewResults.length; i++) {
+            JPanel resultItem = new JPanel();
+            resultItem.setBounds(0, (itemHeight * i), resultsPane.getWidth(), itemHeight);
 
-                JTextArea title = new JTextArea(crewResults[i].getName());
-                title.setBounds(0, (itemHeight * i), resultsPane.getWidth(), itemHeight);
-                title.setForeground(Constants.getFontColor());
-                title.setBackground(Constants.getHighlight());
-                title.setEditable(false);
-                title.setLineWrap(true);
-                title.setWrapStyleWord(true);
+            JTextArea title = new JTextArea(crewResults[i].getName());
+            title.setBounds(0, (itemHeight * i), resultsPane.getWidth(), itemHeight);
+            title.setForeground(Constants.getFontColor());
+            title.setBackground(Constants.getHighlight());
+            title.setEditable(false);
+            title.setLineWrap(true);
+            title.setWrapStyleWord(true);
 
-                resultItem.add(title);
-                resultItem.setBackground(Constants.getHighlight());
-                resultItem.setForeground(Constants.getFontColor());
+            resultItem.add(title);
+            resultItem.setBackground(Constants.getHighlight());
+            resultItem.setForeground(Constants.getFontColor());
 
-                resultsPane.add(resultItem);
+            resultsPane.add(resultItem);
 
-                if (i < crewResults.length - 1) {
-                    JSeparator sep = new JSeparator();
-                    sep.setBackground(Constants.getHighlight());
-                    sep.setForeground(Constants.getFontColor());
-                    resultsPane.add(sep);
-                }
+            if (i < crewResults.length - 1) {
+                JSeparator sep = new JSeparator();
+                sep.setBackground(Constants.getHighlight());
+                sep.setForeground(Constants.getFontColor());
+                resultsPane.add(sep);
             }
-            scrollPane.setVisible(true);
         }
+        scrollPane.setVisible(true);
     }
 }
 
 class KeywordSearchRunnable implements Runnable {
     private JScrollPane scrollPane;
     private JPanel resultsPane;
-    private IKeywords keywords;
+    private LiveSearch liveSearch;
     private JLabel loadingText;
     private String searchTerm;
 
-    public KeywordSearchRunnable(JScrollPane scrollPane, JPanel resultsPane, IKeywords keywords, String searchTerm) {
+    public KeywordSearchRunnable(JScrollPane scrollPane, JPanel resultsPane, LiveSearch liveSearch, String searchTerm) {
         this.scrollPane = scrollPane;
         this.resultsPane = resultsPane;
-        this.keywords = keywords;
+        this.liveSearch = liveSearch;
         this.searchTerm = searchTerm;
 
         scrollPane.setVisible(false);
@@ -474,8 +495,10 @@ class KeywordSearchRunnable implements Runnable {
 
     @Override
     public void run() {
-        IKeyword[] keywordResults = keywords.findKeywords(searchTerm);
+        QueryExecutor.getShared().submit(scrollPane, firstMatches -> liveSearch.findKeywords(searchTerm, firstMatches), this::showResults, this::showResults);
+    }
 
+    private void showResults(IKeyword[] keywordResults) {
         if (keywordResults == null || keywordResults.length == 0) {
             loadingText.setText("No keywords found for \"" + searchTerm + "\"!");
             System.out.println("\t0 Keywords found");
@@ -0,0 +1,287 @@
+package stores;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import interfaces.AbstractStores;
+import interfaces.ICredits;
+import interfaces.IKeywords;
+import interfaces.IMovies;
+import interfaces.IRatings;
+
+/***
+ * Stores that remember the results of their expensive whole-store queries, such as the
+ * top rated movies or the most credited cast, so going back to a screen does not run
+ * them again. Every other query goes straight to the wrapped stores.
+ *
+ * Each of the four stores has a version, bumped by every change made through these
+ * stores that the wrapped store accepts. A remembered result is tagged with the version
+ * of its store when the query started, and is only handed back while that is still the
+ * version, so a change to the ratings forgets the ratings queries but keeps the credits
+ * ones. Each store remembers its MAX_ENTRIES most recently used results.
+ *
+ * Results are handed back as copies, so callers may sort or change them.
+ */
+public class CachedStores extends AbstractStores {
+    public static final int MAX_ENTRIES = 64;
+
+    private final AbstractStores stores;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final Memo moviesMemo = new Memo(hits, misses);
+    private final Memo creditsMemo = new Memo(hits, misses);
+    private final Memo keywordsMemo = new Memo(hits, misses);
+    private final Memo ratingsMemo = new Memo(hits, misses);
+
+    /***
+     * @param stores The loaded stores. Changes must be made through these stores, not the
+     *               wrapped ones, for the remembered results to be forgotten
+     */
+    public CachedStores(AbstractStores stores) {
+        this.stores = stores;
+        this.credits = new CachedCredits(stores.getCredits(), creditsMemo);
+        this.keywords = new CachedKeywords(stores.getKeywords(), keywordsMemo);
+        this.movies = new CachedMovies(stores.getMovies(), moviesMemo);
+        this.ratings = new CachedRatings(stores.getRatings(), ratingsMemo);
+    }
+
+    /***
+     * @return The number of queries answered from a remembered result
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /***
+     * @return The number of queries that had to be run
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /***
+     * @return The versions of the movies, credits, keywords and ratings, in that order.
+     *         Each only goes up, and goes up with every change to its store
+     */
+    public long[] getVersions() {
+        return new long[] {moviesMemo.version.get(), creditsMemo.version.get(), keywordsMemo.version.get(), ratingsMemo.version.get()};
+    }
+
+    @Override
+    public AbstractStores snapshot() {
+        AbstractStores snapshot = stores.snapshot();
+        return snapshot == stores ? this : snapshot;
+    }
+
+    @Override
+    public <T extends AbstractStores> T find(Class<T> type) {
+        return type.isInstance(this) ? type.cast(this) : stores.find(type);
+    }
+
+    /***
+     * The remembered results of one store, and its version.
+     */
+    private static final class Memo {
+        private final AtomicLong version = new AtomicLong();
+        // Results by method name and arguments, least recently used first
+        private final LinkedHashMap<List<Object>, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final AtomicLong hits;
+        private final AtomicLong misses;
+
+        /***
+         * A result, and the version of the store it was found at.
+         */
+        private static final class Entry {
+            final long version;
+            final Object result;
+
+            Entry(long version, Object result) {
+                this.version = version;
+                this.result = result;
+            }
+        }
+
+        Memo(AtomicLong hits, AtomicLong misses) {
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        // Bumps the version when the wrapped store accepted a change
+        boolean changed(boolean changed) {
+            if (changed) {
+                version.incrementAndGet();
+            }
+            return changed;
+        }
+
+        int changed(int count) {
+            changed(count > 0);
+            return count;
+        }
+
+        /**
+         * @return A copy of the result remembered for the method and arguments, running
+         *         the query to find it if there is none for the store's current version
+         */
+        @SuppressWarnings("unchecked")
+        <T> T get(Supplier<T> query, Object... key) {
+            List<Object> name = Arrays.asList(key);
+            // Read before the query runs, so a change made while it runs is not missed
+            long current = version.get();
+            synchronized (entries) {
+                Entry entry = entries.get(name);
+                if (entry != null && entry.version == current) {
+                    hits.incrementAndGet();
+                    return (T) copy(entry.result);
+                }
+            }
+            misses.incrementAndGet();
+            T result = query.get();
+            synchronized (entries) {
+                entries.put(name, new Entry(current, result));
+                Iterator<Entry> eldest = entries.values().iterator();
+                while (entries.size() > MAX_ENTRIES) {
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            return (T) copy(result);
+        }
+
+        private static Object copy(Object result) {
+            if (result instanceof int[]) {
+                return ((int[]) result).clone();
+            }
+            if (result instanceof Object[]) {
+                return ((Object[]) result).clone();
+            }
+            return result;
+        }
+    }
+
+    /***
+     * Movies that remember their ID lists and searches.
+     */
+    private static final class CachedMovies extends ForwardingMovies {
+        private final Memo memo;
+
+        CachedMovies(IMovies movies, Memo memo) {
+            super(movies);
+            this.memo = memo;
+        }
+
+        @Override
+        public boolean add(int id, String title, String originalTitle, String overview, String tagline, String status, Genre[] genres, LocalDate release, long budget, long revenue, String[] languages, String originalLanguage, double runtime, String homepage, boolean adult, boolean video, String poster) {
+            return memo.changed(movies.add(id, title, originalTitle, overview, tagline, status, genres, release, budget, revenue, languages, originalLanguage, runtime, homepage, adult, video, poster));
+        }
+
+        @Override
+        public boolean addToCollection(int filmID, int collectionID, String collectionName, String collectionPosterPath, String collectionBackdropPath) {
+            return memo.changed(movies.addToCollection(filmID, collectionID, collectionName, collectionPosterPath, collectionBackdropPath));
+        }
+
+        @Override public boolean remove(int id)                                  { return memo.changed(movies.remove(id)); }
+        @Override public int addAll(MovieBatch batch)                            { return memo.changed(movies.addAll(batch)); }
+        @Override public boolean setVote(int id, double voteAverage, int voteCount) { return memo.changed(movies.setVote(id, voteAverage, voteCount)); }
+        @Override public boolean setIMDB(int filmID, String imdbID)              { return memo.changed(movies.setIMDB(filmID, imdbID)); }
+        @Override public boolean setPopularity(int id, double popularity)        { return memo.changed(movies.setPopularity(id, popularity)); }
+        @Override public boolean addProductionCompany(int movieId, Company company) { return memo.changed(movies.addProductionCompany(movieId, company)); }
+        @Override public boolean addProductionCountry(int movieId, String country) { return memo.changed(movies.addProductionCountry(movieId, country)); }
+
+        @Override public int[] getAllIDs()                                       { return memo.get(movies::getAllIDs, "getAllIDs"); }
+        @Override public int[] findFilms(String searchTerm)                      { return memo.get(() -> movies.findFilms(searchTerm), "findFilms", searchTerm); }
+
+        @Override
+        public int[] getAllIDsReleasedInRange(LocalDate start, LocalDate end) {
+            return memo.get(() -> movies.getAllIDsReleasedInRange(start, end), "getAllIDsReleasedInRange", start, end);
+        }
+    }
+
+    /***
+     * Ratings that remember their rankings and overall histogram.
+     */
+    private static final class CachedRatings extends ForwardingRatings {
+        private final Memo memo;
+
+        CachedRatings(IRatings ratings, Memo memo) {
+            super(ratings);
+            this.memo = memo;
+        }
+
+        @Override
+        public boolean add(int userID, int movieID, float rating, LocalDateTime timestamp) {
+            return memo.changed(ratings.add(userID, movieID, rating, timestamp));
+        }
+
+        @Override
+        public boolean set(int userID, int movieID, float rating, LocalDateTime timestamp) {
+            return memo.changed(ratings.set(userID, movieID, rating, timestamp));
+        }
+
+        @Override
+        public int addAll(int[] userIDs, int[] movieIDs, float[] ratings, long[] timestamps) {
+            return memo.changed(this.ratings.addAll(userIDs, movieIDs, ratings, timestamps));
+        }
+
+        @Override public boolean remove(int userID, int movieID)              { return memo.changed(ratings.remove(userID, movieID)); }
+
+        @Override public int[] getRatedMovies()                               { return memo.get(ratings::getRatedMovies, "getRatedMovies"); }
+        @Override public int[] getRatingHistogram()                           { return memo.get(ratings::getRatingHistogram, "getRatingHistogram"); }
+        @Override public int[] getMostRatedMovies(int numResults)             { return memo.get(() -> ratings.getMostRatedMovies(numResults), "getMostRatedMovies", numResults); }
+        @Override public int[] getMostRatedUsers(int numResults)              { return memo.get(() -> ratings.getMostRatedUsers(numResults), "getMostRatedUsers", numResults); }
+        @Override public int[] getTopAverageRatedMovies(int numResults)       { return memo.get(() -> ratings.getTopAverageRatedMovies(numResults), "getTopAverageRatedMovies", numResults); }
+        @Override public int[] getTopWeightedRatedMovies(int numResults)      { return memo.get(() -> ratings.getTopWeightedRatedMovies(numResults), "getTopWeightedRatedMovies", numResults); }
+    }
+
+    /***
+     * Credits that remember their rankings, people lists and searches.
+     */
+    private static final class CachedCredits extends ForwardingCredits {
+        private final Memo memo;
+
+        CachedCredits(ICredits credits, Memo memo) {
+            super(credits);
+            this.memo = memo;
+        }
+
+        @Override public boolean add(CastCredit[] cast, CrewCredit[] crew, int filmID)    { return memo.changed(credits.add(cast, crew, filmID)); }
+        @Override public int addAll(int[] filmIDs, CastCredit[][] cast, CrewCredit[][] crew) { return memo.changed(credits.addAll(filmIDs, cast, crew)); }
+        @Override public boolean remove(int filmID)                  { return memo.changed(credits.remove(filmID)); }
+
+        @Override public int[] getFilmIDs()                          { return memo.get(credits::getFilmIDs, "getFilmIDs"); }
+        @Override public Person[] getMostCastCredits(int numResults) { return memo.get(() -> credits.getMostCastCredits(numResults), "getMostCastCredits", numResults); }
+        @Override public Person[] getUniqueCast()                    { return memo.get(credits::getUniqueCast, "getUniqueCast"); }
+        @Override public Person[] getUniqueCrew()                    { return memo.get(credits::getUniqueCrew, "getUniqueCrew"); }
+        @Override public Person[] findCast(String searchTerm)        { return memo.get(() -> credits.findCast(searchTerm), "findCast", searchTerm); }
+        @Override public Person[] findCrew(String searchTerm)        { return memo.get(() -> credits.findCrew(searchTerm), "findCrew", searchTerm); }
+    }
+
+    /***
+     * Keywords that remember their ID lists, rankings and searches.
+     */
+    private static final class CachedKeywords extends ForwardingKeywords {
+        private final Memo memo;
+
+        CachedKeywords(IKeywords keywords, Memo memo) {
+            super(keywords);
+            this.memo = memo;
+        }
+
+        @Override public boolean add(int filmID, Keyword[] keywords)             { return memo.changed(this.keywords.add(filmID, keywords)); }
+        @Override public boolean add(int filmID, Keyword keyword)                { return memo.changed(keywords.add(filmID, keyword)); }
+        @Override public boolean remove(int filmID)                              { return memo.changed(keywords.remove(filmID)); }
+        @Override public boolean removeKeywordFromFilm(int filmID, int keywordID) { return memo.changed(keywords.removeKeywordFromFilm(filmID, keywordID)); }
+
+        @Override public int[] getFilmIDs()                                      { return memo.get(keywords::getFilmIDs, "getFilmIDs"); }
+        @Override public int[] getKeywordIDs()                                   { return memo.get(keywords::getKeywordIDs, "getKeywordIDs"); }
+        @Override public Keyword[] getUnique()                                   { return memo.get(keywords::getUnique, "getUnique"); }
+        @Override public int[] getMostKeywordFilms(int numResults)               { return memo.get(() -> keywords.getMostKeywordFilms(numResults), "getMostKeywordFilms", numResults); }
+        @Override public Keyword[] findKeywords(String searchTerm)               { return memo.get(() -> keywords.findKeywords(searchTerm), "findKeywords", searchTerm); }
+    }
+}
@@ -0,0 +1,392 @@
+package stores;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import interfaces.ICredits;
+import structures.*;
+
+/***
+ * A credits store that is safe to query from many threads while films are being added
+ * or removed.
+ *
+ * Each film's credits are an immutable FilmCredits (cast in billing order, crew in ID
+ * order), and each cast and crew member's films an immutable sorted array, all held in
+ * PersistentIntMaps inside the Version of ConcurrentStores. A write makes a new State, so
+ * readers never lock and always see a film and its people's indexes in step.
+ */
+public class ConcurrentCredits implements ICredits {
+    ConcurrentStores stores;
+
+    /***
+     * The credits at one version of the stores. Never changed once made.
+     */
+    static final class State {
+        static final State EMPTY = new State(PersistentIntMap.empty(), PersistentIntMap.empty(), PersistentIntMap.empty());
+
+        final PersistentIntMap<FilmCredits> films;
+        final PersistentIntMap<int[]> castFilms;
+        final PersistentIntMap<int[]> crewFilms;
+
+        State(PersistentIntMap<FilmCredits> films, PersistentIntMap<int[]> castFilms, PersistentIntMap<int[]> crewFilms) {
+            this.films = films;
+            this.castFilms = castFilms;
+            this.crewFilms = crewFilms;
+        }
+    }
+
+    /**
+     * The constructor for the concurrent Credits data store.
+     * @param stores The stores holding the data, including this store's
+     */
+    public ConcurrentCredits(ConcurrentStores stores) {
+        this.stores = stores;
+    }
+
+    private State state() {
+        return stores.version().credits;
+    }
+
+    /***
+     * The credits of one film. Never changed once made, so it can be read without locking.
+     */
+    static final class FilmCredits {
+        final CastCredit[] cast;
+        final CrewCredit[] crew;
+
+        FilmCredits(CastCredit[] cast, CrewCredit[] crew) {
+            this.cast = cast.clone();
+            this.crew = crew.clone();
+            Arrays.sort(this.cast, Comparator.comparingInt(CastCredit::getOrder));
+            Arrays.sort(this.crew, Comparator.comparingInt(CrewCredit::getID));
+        }
+    }
+
+    // Sorted array with value inserted, or the same array if it was already there
+    private static int[] withID(int[] ids, int id) {
+        if (ids == null) {
+            return new int[] {id};
+        }
+        int at = Arrays.binarySearch(ids, id);
+        if (at >= 0) {
+            return ids;
+        }
+        at = -at - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, at);
+        result[at] = id;
+        System.arraycopy(ids, at, result, at + 1, ids.length - at);
+        return result;
+    }
+
+    // Sorted array with value removed. Like Credits, a person with no films left keeps an empty entry
+    private static int[] withoutID(int[] ids, int id) {
+        int at = ids == null ? -1 : Arrays.binarySearch(ids, id);
+        if (at < 0) {
+            return ids;
+        }
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, at);
+        System.arraycopy(ids, at + 1, result, at, ids.length - at - 1);
+        return result;
+    }
+
+    /**
+     * Adds data about the people who worked on a given film. The movie ID should be
+     * unique
+     *
+     * @param cast An array of all cast members that starred in the given film
+     * @param crew An array of all crew members that worked on a given film
+     * @param id   The (unique) movie ID
+     * @return TRUE if the data able to be added, FALSE otherwise
+     */
+    @Override
+    public boolean add(CastCredit[] cast, CrewCredit[] crew, int id) {
+        FilmCredits film = new FilmCredits(cast, crew);
+        return stores.write(version -> version.withCredits(added(version.credits, film, id)));
+    }
+
+    // The state with the film added, or the same state if the film is already there
+    private static State added(State state, FilmCredits film, int id) {
+        if (state.films.containsKey(id)) {
+            return state;
+        }
+        PersistentIntMap<int[]> castFilms = state.castFilms;
+        for (CastCredit castMember : film.cast) {
+            castFilms = castFilms.put(castMember.getID(), withID(castFilms.get(castMember.getID()), id));
+        }
+        PersistentIntMap<int[]> crewFilms = state.crewFilms;
+        for (CrewCredit crewMember : film.crew) {
+            crewFilms = crewFilms.put(crewMember.getID(), withID(crewFilms.get(crewMember.getID()), id));
+        }
+        return new State(state.films.put(id, film), castFilms, crewFilms);
+    }
+
+    /**
+     * Adds the credits for a batch of films as a single write, so readers see either
+     * none of the batch or all of it
+     *
+     * @return The number of films that were added. If the arrays are not all the
+     *         same length, nothing is added and 0 is returned
+     */
+    @Override
+    public int addAll(int[] filmIDs, CastCredit[][] cast, CrewCredit[][] crew) {
+        if (cast.length != filmIDs.length || crew.length != filmIDs.length) {
+            return 0;
+        }
+        FilmCredits[] films = new FilmCredits[filmIDs.length];
+        for (int i = 0; i < filmIDs.length; i++) {
+            films[i] = new FilmCredits(cast[i], crew[i]);
+        }
+        int[] numAdded = new int[1];
+        stores.write(version -> {
+            State state = version.credits;
+            int added = 0;
+            for (int i = 0; i < filmIDs.length; i++) {
+                State next = added(state, films[i], filmIDs[i]);
+                if (next != state) {
+                    state = next;
+                    added++;
+                }
+            }
+            numAdded[0] = added;
+            return version.withCredits(state);
+        });
+        return numAdded[0];
+    }
+
+    /**
+     * Remove a given films data from the data structure
+     *
+     * @param id The movie ID
+     * @return TRUE if the data was removed, FALSE otherwise
+     */
+    @Override
+    public boolean remove(int id) {
+        return stores.write(version -> {
+            State state = version.credits;
+            FilmCredits film = state.films.get(id);
+            if (film == null) {
+                return version;
+            }
+            PersistentIntMap<int[]> castFilms = state.castFilms;
+            for (CastCredit castMember : film.cast) {
+                castFilms = castFilms.put(castMember.getID(), withoutID(castFilms.get(castMember.getID()), id));
+            }
+            PersistentIntMap<int[]> crewFilms = state.crewFilms;
+            for (CrewCredit crewMember : film.crew) {
+                crewFilms = crewFilms.put(crewMember.getID(), withoutID(crewFilms.get(crewMember.getID()), id));
+            }
+            return version.withCredits(new State(state.films.remove(id), castFilms, crewFilms));
+        });
+    }
+
+    @Override
+    public int[] getFilmIDs() {
+        return state().films.keys();
+    }
+
+    @Override
+    public CastCredit[] getFilmCast(int filmID) {
+        FilmCredits film = state().films.get(filmID);
+        return film == null ? new CastCredit[0] : film.cast.clone();
+    }
+
+    @Override
+    public CrewCredit[] getFilmCrew(int filmID) {
+        FilmCredits film = state().films.get(filmID);
+        return film == null ? new CrewCredit[0] : film.crew.clone();
+    }
+
+    /**
+     * Gets the casts of many films, all from the same version of the stores
+     */
+    @Override
+    public CastCredit[][] getFilmCasts(int[] filmIDs) {
+        State state = state();
+        CastCredit[][] casts = new CastCredit[filmIDs.length][];
+        for (int i = 0; i < filmIDs.length; i++) {
+            FilmCredits film = state.films.get(filmIDs[i]);
+            casts[i] = film == null ? new CastCredit[0] : film.cast.clone();
+        }
+        return casts;
+    }
+
+    /**
+     * Gets the crews of many films, all from the same version of the stores
+     */
+    @Override
+    public CrewCredit[][] getFilmCrews(int[] filmIDs) {
+        State state = state();
+        CrewCredit[][] crews = new CrewCredit[filmIDs.length][];
+        for (int i = 0; i < filmIDs.length; i++) {
+            FilmCredits film = state.films.get(filmIDs[i]);
+            crews[i] = film == null ? new CrewCredit[0] : film.crew.clone();
+        }
+        return crews;
+    }
+
+    @Override
+    public Person getCast(int castID) {
+        State state = state();
+        for (int filmID : state.castFilms.getOrDefault(castID, new int[0])) {
+            FilmCredits film = state.films.get(filmID);
+            for (CastCredit castCredit : film.cast) {
+                if (castCredit.getID() == castID) {
+                    return new Person(castCredit.getID(), castCredit.getName(), castCredit.getProfilePath());
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Person getCrew(int crewID) {
+        State state = state();
+        for (int filmID : state.crewFilms.getOrDefault(crewID, new int[0])) {
+            FilmCredits film = state.films.get(filmID);
+            for (CrewCredit crewCredit : film.crew) {
+                if (crewCredit.getID() == crewID) {
+                    return new Person(crewCredit.getID(), crewCredit.getName(), crewCredit.getProfilePath());
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int[] getCastFilms(int castID) {
+        int[] ids = state().castFilms.get(castID);
+        return ids == null ? new int[0] : ids.clone();
+    }
+
+    @Override
+    public int[] getCrewFilms(int crewID) {
+        int[] ids = state().crewFilms.get(crewID);
+        return ids == null ? new int[0] : ids.clone();
+    }
+
+    /**
+     * Gets the films where the cast member is in the top 3 billing. Only the films
+     * the cast member appears in are checked.
+     *
+     * @param castID The cast member ID
+     * @return An array of film IDs, or an empty array if there are none
+     */
+    @Override
+    public int[] getCastStarsInFilms(int castID) {
+        State state = state();
+        int[] ids = state.castFilms.getOrDefault(castID, new int[0]);
+        int[] starFilms = new int[ids.length];
+        int count = 0;
+        for (int filmID : ids) {
+            FilmCredits film = state.films.get(filmID);
+            for (CastCredit castCredit : film.cast) {
+                if (castCredit.getID() == castID && castCredit.getOrder() <= 3) {
+                    starFilms[count++] = filmID;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(starFilms, count);
+    }
+
+    @Override
+    public Person[] getMostCastCredits(int numResults) {
+        MyHashMap<Integer, Integer> creditCounts = new MyHashMap<>();
+        MyHashMap<Integer, Person> idToPerson = new MyHashMap<>();
+        for (FilmCredits film : state().films.values()) {
+            for (CastCredit castCredit : film.cast) {
+                creditCounts.put(castCredit.getID(), creditCounts.getOrDefault(castCredit.getID(), 0) + 1);
+                if (!idToPerson.containsKey(castCredit.getID())) {
+                    idToPerson.put(castCredit.getID(), new Person(castCredit.getID(), castCredit.getName(), castCredit.getProfilePath()));
+                }
+            }
+        }
+
+        NewArrayList<Person> people = idToPerson.values();
+        int[] ids = new int[people.size()];
+        float[] counts = new float[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+            counts[i] = creditCounts.get(people.get(i).getID());
+        }
+        int[] top = ConcurrentRatings.topByScore(ids, counts, ids.length, numResults);
+        Person[] topCastMembers = new Person[top.length];
+        for (int i = 0; i < top.length; i++) {
+            topCastMembers[i] = people.get(top[i]);
+        }
+        return topCastMembers;
+    }
+
+    @Override
+    public int getNumCastCredits(int castID) {
+        int[] ids = state().castFilms.get(castID);
+        return ids == null ? -1 : ids.length;
+    }
+
+    @Override
+    public int sizeOfCast(int filmID) {
+        FilmCredits film = state().films.get(filmID);
+        return film == null ? -1 : film.cast.length;
+    }
+
+    @Override
+    public int sizeofCrew(int filmID) {
+        FilmCredits film = state().films.get(filmID);
+        return film == null ? -1 : film.crew.length;
+    }
+
+    @Override
+    public Person[] getUniqueCast() {
+        return findCast(null);
+    }
+
+    @Override
+    public Person[] getUniqueCrew() {
+        return findCrew(null);
+    }
+
+    /**
+     * Get all the cast members that have the given string within their name
+     *
+     * @param searchTerm The string that needs to be found, or null to match everyone
+     * @return An array of unique Person objects
+     */
+    @Override
+    public Person[] findCast(String searchTerm) {
+        MyHashMap<Integer, Person> uniquePersonsById = new MyHashMap<>();
+        for (FilmCredits film : state().films.values()) {
+            for (CastCredit castCredit : film.cast) {
+                if ((searchTerm == null || castCredit.getName().contains(searchTerm)) && !uniquePersonsById.containsKey(castCredit.getID())) {
+                    uniquePersonsById.put(castCredit.getID(), new Person(castCredit.getID(), castCredit.getName(), castCredit.getProfilePath()));
+                }
+            }
+        }
+        return uniquePersonsById.values().toArray(new Person[0]);
+    }
+
+    /**
+     * Get all the crew members that have the given string within their name
+     *
+     * @param searchTerm The string that needs to be found, or null to match everyone
+     * @return An array of unique Person objects
+     */
+    @Override
+    public Person[] findCrew(String searchTerm) {
+        MyHashMap<Integer, Person> uniqueCrewById = new MyHashMap<>();
+        for (FilmCredits film : state().films.values()) {
+            for (CrewCredit crewCredit : film.crew) {
+                if ((searchTerm == null || crewCredit.getName().contains(searchTerm)) && !uniqueCrewById.containsKey(crewCredit.getID())) {
+                    uniqueCrewById.put(crewCredit.getID(), new Person(crewCredit.getID(), crewCredit.getName(), crewCredit.getProfilePath()));
+                }
+            }
+        }
+        return uniqueCrewById.values().toArray(new Person[0]);
+    }
+
+    @Override
+    public int size() {
+        return state().films.size();
+    }
+}
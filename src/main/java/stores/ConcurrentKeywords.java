@@ -0,0 +1,196 @@
+package stores;
+
+import java.util.Arrays;
+
+import interfaces.IKeywords;
+import structures.*;
+
+/***
+ * A keywords store that is safe to query from many threads while keywords are being
+ * added or removed.
+ *
+ * Each film's keywords are an immutable array, and every keyword seen so far is kept
+ * by ID, both in PersistentIntMaps inside the Version of ConcurrentStores. As in
+ * Keywords, a keyword stays unique after the films using it are removed.
+ */
+public class ConcurrentKeywords implements IKeywords {
+    ConcurrentStores stores;
+
+    /***
+     * The keywords at one version of the stores. Never changed once made.
+     */
+    static final class State {
+        static final State EMPTY = new State(PersistentIntMap.empty(), PersistentIntMap.empty());
+
+        final PersistentIntMap<Keyword[]> films;
+        final PersistentIntMap<Keyword> unique;
+
+        State(PersistentIntMap<Keyword[]> films, PersistentIntMap<Keyword> unique) {
+            this.films = films;
+            this.unique = unique;
+        }
+    }
+
+    /**
+     * The constructor for the concurrent Keywords data store.
+     * @param stores The stores holding the data, including this store's
+     */
+    public ConcurrentKeywords(ConcurrentStores stores) {
+        this.stores = stores;
+    }
+
+    private State state() {
+        return stores.version().keywords;
+    }
+
+    @Override
+    public boolean add(int filmID, Keyword keyword) {
+        return add(filmID, new Keyword[] {keyword});
+    }
+
+    /**
+     * Adds keywords to a film, after any it already has
+     *
+     * @return TRUE if the keywords were added, FALSE otherwise
+     */
+    @Override
+    public boolean add(int filmID, Keyword[] keywords) {
+        Keyword[] added = keywords.clone();
+        return stores.write(version -> {
+            State state = version.keywords;
+            Keyword[] current = state.films.get(filmID);
+            Keyword[] filmKeywords = added;
+            if (current != null) {
+                filmKeywords = Arrays.copyOf(current, current.length + added.length);
+                System.arraycopy(added, 0, filmKeywords, current.length, added.length);
+            }
+            PersistentIntMap<Keyword> unique = state.unique;
+            for (Keyword keyword : added) {
+                if (!unique.containsKey(keyword.getID())) {
+                    unique = unique.put(keyword.getID(), keyword);
+                }
+            }
+            return version.withKeywords(new State(state.films.put(filmID, filmKeywords), unique));
+        });
+    }
+
+    @Override
+    public boolean remove(int filmID) {
+        return stores.write(version -> {
+            State state = version.keywords;
+            return version.withKeywords(state.films.containsKey(filmID) ? new State(state.films.remove(filmID), state.unique) : state);
+        });
+    }
+
+    /**
+     * Removes a keyword from a film
+     *
+     * @return TRUE if the film was found, whether or not it had the keyword, FALSE
+     *         otherwise
+     */
+    @Override
+    public boolean removeKeywordFromFilm(int filmID, int keywordID) {
+        boolean[] found = new boolean[1];
+        stores.write(version -> {
+            State state = version.keywords;
+            Keyword[] current = state.films.get(filmID);
+            if (current == null) {
+                return version;
+            }
+            found[0] = true;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].getID() == keywordID) {
+                    Keyword[] remaining = new Keyword[current.length - 1];
+                    System.arraycopy(current, 0, remaining, 0, i);
+                    System.arraycopy(current, i + 1, remaining, i, current.length - i - 1);
+                    return version.withKeywords(new State(state.films.put(filmID, remaining), state.unique));
+                }
+            }
+            return version;
+        });
+        return found[0];
+    }
+
+    @Override
+    public int[] getFilmIDs() {
+        return state().films.keys();
+    }
+
+    @Override
+    public int[] getKeywordIDs() {
+        return state().unique.keys();
+    }
+
+    @Override
+    public int[] getFilmsWithKeyword(int keywordID) {
+        PersistentIntMap<Keyword[]> films = state().films;
+        int[] ids = films.keys();
+        NewArrayList<Keyword[]> filmKeywords = films.values();
+        int count = 0;
+        for (int i = 0; i < ids.length; i++) {
+            for (Keyword keyword : filmKeywords.get(i)) {
+                if (keyword.getID() == keywordID) {
+                    ids[count++] = ids[i];
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    @Override
+    public Keyword[] getKeywordsForFilm(int filmID) {
+        Keyword[] keywords = state().films.get(filmID);
+        return keywords == null ? null : keywords.clone();
+    }
+
+    @Override
+    public Keyword[] getUnique() {
+        return state().unique.values().toArray(new Keyword[0]);
+    }
+
+    @Override
+    public int[] getMostKeywordFilms(int numResults) {
+        PersistentIntMap<Keyword[]> films = state().films;
+        int[] ids = films.keys();
+        NewArrayList<Keyword[]> filmKeywords = films.values();
+        int[] results = new int[numResults];
+        int[] keywordCount = new int[numResults];
+        // Insertion into the top numResults, as in Keywords
+        for (int i = 0; i < ids.length; i++) {
+            int currentNumKeywords = filmKeywords.get(i).length;
+            for (int j = 0; j < results.length; j++) {
+                if (keywordCount[j] == 0) {
+                    results[j] = ids[i];
+                    keywordCount[j] = currentNumKeywords;
+                    break;
+                } else if (keywordCount[j] < currentNumKeywords) {
+                    System.arraycopy(results, j, results, j + 1, results.length - j - 1);
+                    System.arraycopy(keywordCount, j, keywordCount, j + 1, results.length - j - 1);
+                    results[j] = ids[i];
+                    keywordCount[j] = currentNumKeywords;
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public Keyword[] findKeywords(String searchTerm) {
+        NewArrayList<Keyword> matches = new NewArrayList<>();
+        for (Keyword[] keywords : state().films.values()) {
+            for (Keyword keyword : keywords) {
+                if (keyword.getName().contains(searchTerm)) {
+                    matches.add(keyword);
+                }
+            }
+        }
+        return matches.toArray(new Keyword[0]);
+    }
+
+    @Override
+    public int size() {
+        return state().films.size();
+    }
+}
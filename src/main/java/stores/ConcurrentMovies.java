@@ -0,0 +1,447 @@
+package stores;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import interfaces.IMovies;
+import structures.*;
+
+/***
+ * A movies store that is safe to query from many threads while films are being added,
+ * changed or removed.
+ *
+ * Films are movieStructures and collections immutable FilmCollections, held in
+ * PersistentIntMaps inside the Version of ConcurrentStores. A movieStructure is never
+ * changed once it is in a State: setting a film's votes, popularity and so on changes a
+ * copy, which replaces it in a new State, so readers never lock and never see a film
+ * half-changed.
+ */
+public class ConcurrentMovies implements IMovies {
+    ConcurrentStores stores;
+
+    /***
+     * The movies at one version of the stores. Never changed once made.
+     */
+    static final class State {
+        static final State EMPTY = new State(PersistentIntMap.empty(), PersistentIntMap.empty());
+
+        final PersistentIntMap<movieStructure> films;
+        final PersistentIntMap<FilmCollection> collections;
+
+        State(PersistentIntMap<movieStructure> films, PersistentIntMap<FilmCollection> collections) {
+            this.films = films;
+            this.collections = collections;
+        }
+    }
+
+    /***
+     * A collection and its films, in the order they were added. Never changed once made.
+     */
+    static final class FilmCollection {
+        final int id;
+        final String name;
+        final String poster;
+        final String backdrop;
+        final int[] films;
+
+        FilmCollection(int id, String name, String poster, String backdrop, int[] films) {
+            this.id = id;
+            this.name = name;
+            this.poster = poster;
+            this.backdrop = backdrop;
+            this.films = films;
+        }
+
+        // A copy with the film added, or this collection if the film is already in it
+        FilmCollection withFilm(int filmID) {
+            for (int film : films) {
+                if (film == filmID) {
+                    return this;
+                }
+            }
+            int[] newFilms = Arrays.copyOf(films, films.length + 1);
+            newFilms[films.length] = filmID;
+            return new FilmCollection(id, name, poster, backdrop, newFilms);
+        }
+    }
+
+    /**
+     * The constructor for the concurrent Movies data store.
+     * @param stores The stores holding the data, including this store's
+     */
+    public ConcurrentMovies(ConcurrentStores stores) {
+        this.stores = stores;
+    }
+
+    private State state() {
+        return stores.version().movies;
+    }
+
+    private movieStructure film(int id) {
+        return state().films.get(id);
+    }
+
+    // Replaces the film with a changed copy. FALSE if the film is not stored
+    private boolean update(int id, Consumer<movieStructure> change) {
+        return stores.write(version -> {
+            State state = version.movies;
+            movieStructure movie = state.films.get(id);
+            if (movie == null) {
+                return version;
+            }
+            movieStructure copy = movie.copy();
+            change.accept(copy);
+            return version.withMovies(new State(state.films.put(id, copy), state.collections));
+        });
+    }
+
+    // The state with the film added to the collection, which is made if it is new
+    private static State inCollection(State state, movieStructure movie, int collectionID, String name, String poster, String backdrop) {
+        FilmCollection collection = state.collections.get(collectionID);
+        if (collection == null) {
+            collection = new FilmCollection(collectionID, name, poster, backdrop, new int[0]);
+        }
+        movie.setCollectionID(collectionID);
+        return new State(state.films.put(movie.getId(), movie), state.collections.put(collectionID, collection.withFilm(movie.getId())));
+    }
+
+    /**
+     * Adds data about a film to the data structure
+     *
+     * @return TRUE if the data able to be added, FALSE otherwise
+     */
+    @Override
+    public boolean add(int id, String title, String originalTitle, String overview, String tagline, String status, Genre[] genres, LocalDate release, long budget, long revenue, String[] languages, String originalLanguage, double runtime, String homepage, boolean adult, boolean video, String poster) {
+        movieStructure movie = new movieStructure(id, title, originalTitle, overview, tagline, status, genres, release, budget, revenue, languages, originalLanguage, runtime, homepage, adult, video, poster);
+        return stores.write(version -> {
+            State state = version.movies;
+            if (state.films.containsKey(id)) {
+                return version;
+            }
+            return version.withMovies(new State(state.films.put(id, movie), state.collections));
+        });
+    }
+
+    /**
+     * Adds a batch of films as a single write, so readers see either none of the batch
+     * or all of it. Films whose ID is already stored (or appears earlier in the batch)
+     * are skipped, as with add
+     *
+     * @param batch The films to add
+     * @return The number of films that were added
+     */
+    @Override
+    public int addAll(MovieBatch batch) {
+        int[] numAdded = new int[1];
+        stores.write(version -> {
+            State state = version.movies;
+            int added = 0;
+            for (int row = 0; row < batch.size(); row++) {
+                movieStructure movie = batch.film(row);
+                if (state.films.containsKey(movie.getId())) {
+                    continue;
+                }
+                if (batch.inCollection(row)) {
+                    state = inCollection(state, movie, batch.collectionID(row), batch.collectionName(row), batch.collectionPoster(row), batch.collectionBackdrop(row));
+                } else {
+                    state = new State(state.films.put(movie.getId(), movie), state.collections);
+                }
+                added++;
+            }
+            numAdded[0] = added;
+            return version.withMovies(state);
+        });
+        return numAdded[0];
+    }
+
+    /**
+     * Removes a film from the data structure. As in Movies, its collection keeps it
+     *
+     * @param id The film ID
+     * @return TRUE if the film has been removed successfully, FALSE otherwise
+     */
+    @Override
+    public boolean remove(int id) {
+        return stores.write(version -> {
+            State state = version.movies;
+            return version.withMovies(state.films.containsKey(id) ? new State(state.films.remove(id), state.collections) : state);
+        });
+    }
+
+    @Override
+    public int[] getAllIDs() {
+        return state().films.keys();
+    }
+
+    /**
+     * Finds the film IDs of all films released within a given range, not including
+     * the start and end dates
+     *
+     * @return An array of film IDs that were released between start and end
+     */
+    @Override
+    public int[] getAllIDsReleasedInRange(LocalDate start, LocalDate end) {
+        NewArrayList<movieStructure> films = state().films.values();
+        int[] ids = new int[films.size()];
+        int count = 0;
+        for (movieStructure movie : films) {
+            if (movie.getRelease() != null && movie.getRelease().isAfter(start) && movie.getRelease().isBefore(end)) {
+                ids[count++] = movie.getId();
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    @Override
+    public String getTitle(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? null : movie.getTitle();
+    }
+
+    /**
+     * Gets the titles of many films, all from the same version of the stores
+     */
+    @Override
+    public String[] getTitles(int[] ids) {
+        PersistentIntMap<movieStructure> films = state().films;
+        String[] titles = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            movieStructure movie = films.get(ids[i]);
+            titles[i] = movie == null ? null : movie.getTitle();
+        }
+        return titles;
+    }
+
+    @Override
+    public String getOriginalTitle(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? null : movie.getOriginalTitle();
+    }
+
+    @Override
+    public String getOverview(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? null : movie.getOverview();
+    }
+
+    @Override
+    public String getTagline(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? null : movie.getTagline();
+    }
+
+    @Override
+    public String getStatus(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? null : movie.getStatus();
+    }
+
+    @Override
+    public Genre[] getGenres(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? null : movie.getGenres();
+    }
+
+    @Override
+    public LocalDate getRelease(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? null : movie.getRelease();
+    }
+
+    @Override
+    public long getBudget(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? -1 : movie.getBudget();
+    }
+
+    @Override
+    public long getRevenue(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? -1 : movie.getRevenue();
+    }
+
+    @Override
+    public String[] getLanguages(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? null : movie.getLanguages();
+    }
+
+    @Override
+    public String getOriginalLanguage(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? null : movie.getOriginalLanguage();
+    }
+
+    @Override
+    public double getRuntime(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? -1 : movie.getRuntime();
+    }
+
+    @Override
+    public String getHomepage(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? null : movie.getHomepage();
+    }
+
+    @Override
+    public boolean getAdult(int id) {
+        movieStructure movie = film(id);
+        return movie != null && movie.isAdult();
+    }
+
+    @Override
+    public boolean getVideo(int id) {
+        movieStructure movie = film(id);
+        return movie != null && movie.isVideo();
+    }
+
+    @Override
+    public String getPoster(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? null : movie.getPoster();
+    }
+
+    @Override
+    public boolean setVote(int id, double voteAverage, int voteCount) {
+        return update(id, movie -> {
+            movie.setVoteAverage(voteAverage);
+            movie.setVoteCount(voteCount);
+        });
+    }
+
+    @Override
+    public double getVoteAverage(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? -1 : movie.getVoteAverage();
+    }
+
+    @Override
+    public int getVoteCount(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? -1 : movie.getVoteCount();
+    }
+
+    /**
+     * Adds a given film to a collection, making the collection if it is new
+     *
+     * @return TRUE if the data able to be added, FALSE otherwise
+     */
+    @Override
+    public boolean addToCollection(int filmID, int collectionID, String collectionName, String collectionPosterPath, String collectionBackdropPath) {
+        return stores.write(version -> {
+            State state = version.movies;
+            movieStructure movie = state.films.get(filmID);
+            if (movie == null) {
+                return version;
+            }
+            return version.withMovies(inCollection(state, movie.copy(), collectionID, collectionName, collectionPosterPath, collectionBackdropPath));
+        });
+    }
+
+    @Override
+    public int[] getFilmsInCollection(int collectionID) {
+        FilmCollection collection = state().collections.get(collectionID);
+        return collection == null ? new int[0] : collection.films.clone();
+    }
+
+    @Override
+    public String getCollectionName(int collectionID) {
+        FilmCollection collection = state().collections.get(collectionID);
+        return collection == null ? null : collection.name;
+    }
+
+    @Override
+    public String getCollectionPoster(int collectionID) {
+        FilmCollection collection = state().collections.get(collectionID);
+        return collection == null ? null : collection.poster;
+    }
+
+    @Override
+    public String getCollectionBackdrop(int collectionID) {
+        FilmCollection collection = state().collections.get(collectionID);
+        return collection == null ? null : collection.backdrop;
+    }
+
+    @Override
+    public int getCollectionID(int filmID) {
+        movieStructure movie = film(filmID);
+        return movie == null || movie.getCollectionID() == null ? -1 : movie.getCollectionID();
+    }
+
+    @Override
+    public boolean setIMDB(int filmID, String imdbID) {
+        return update(filmID, movie -> movie.setImdbID(imdbID));
+    }
+
+    @Override
+    public String getIMDB(int filmID) {
+        movieStructure movie = film(filmID);
+        return movie == null ? null : movie.getImdbID();
+    }
+
+    @Override
+    public boolean setPopularity(int id, double popularity) {
+        return update(id, movie -> movie.setPopularity(popularity));
+    }
+
+    @Override
+    public double getPopularity(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? -1.0 : movie.getPopularity();
+    }
+
+    @Override
+    public boolean addProductionCompany(int id, Company company) {
+        return update(id, movie -> movie.addProductionCompany(company));
+    }
+
+    @Override
+    public boolean addProductionCountry(int id, String country) {
+        return update(id, movie -> movie.addProductionCountry(country));
+    }
+
+    @Override
+    public Company[] getProductionCompanies(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? null : movie.getProductionCompanies();
+    }
+
+    @Override
+    public String[] getProductionCountries(int id) {
+        movieStructure movie = film(id);
+        return movie == null ? null : movie.getProductionCountries();
+    }
+
+    /**
+     * Produces a list of movie IDs that have the search term in their title,
+     * original title or their overview, ignoring case
+     *
+     * @return An array of movie IDs. If the search term is empty, or no movies have
+     *         it, then an empty array
+     */
+    @Override
+    public int[] findFilms(String searchTerm) {
+        if (searchTerm == null || searchTerm.isEmpty()) {
+            return new int[0];
+        }
+        String lowerCaseSearchTerm = searchTerm.toLowerCase();
+        NewArrayList<movieStructure> films = state().films.values();
+        int[] ids = new int[films.size()];
+        int count = 0;
+        for (movieStructure movie : films) {
+            if (movie.getTitle().toLowerCase().contains(lowerCaseSearchTerm) ||
+                movie.getOriginalTitle().toLowerCase().contains(lowerCaseSearchTerm) ||
+                movie.getOverview().toLowerCase().contains(lowerCaseSearchTerm)) {
+                ids[count++] = movie.getId();
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    @Override
+    public int size() {
+        return state().films.size();
+    }
+}
@@ -0,0 +1,716 @@
+package stores;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import interfaces.IRatings;
+import structures.*;
+
+/***
+ * A ratings store that is safe to query from many threads while ratings are being added,
+ * set or removed.
+ *
+ * Each movie's ratings are an immutable MovieRatings (users sorted, with their ratings and
+ * timestamps, and a time-ordered copy made on the first time range query), and each user's rated movies an immutable sorted array, both held in
+ * PersistentIntMaps inside the Version of ConcurrentStores. A write makes a new State with
+ * the affected values replaced by updated copies, so readers never lock, and a reader that
+ * takes the State once sees the movie and user indexes exactly in step.
+ */
+public class ConcurrentRatings implements IRatings {
+    ConcurrentStores stores;
+
+    // Timestamp value for a rating made without a time
+    static final long NULL_TIMESTAMP = RatingTimeline.NULL_TIMESTAMP;
+    // Above this share of the ranked movies changed (plus a few), a State is ranked from scratch
+    private static final double MAX_CHANGED_SHARE = 0.25;
+    private static final int MIN_CHANGED = 64;
+
+    /***
+     * The ratings at one version of the stores. Never changed once made.
+     */
+    static final class State {
+        static final State EMPTY = new State(PersistentIntMap.empty(), PersistentIntMap.empty(), 0, 0, null);
+
+        final PersistentIntMap<MovieRatings> byMovie;
+        final PersistentIntMap<int[]> byUser;
+        final int size;
+        final double sum;
+        // Ranked by weighted rating on the first read, as a State is never changed
+        private volatile WeightedRanking.Ranked weighted;
+        // An earlier State's ranking and the movies changed since, which the ranking is
+        // made from, or null if every movie must be ranked. Dropped once ranked
+        private volatile Unranked unranked;
+        // The histogram of every rating, counted on the first read
+        private volatile int[] histogram;
+
+        /***
+         * A ranking of an earlier State, and the movies changed since it was made.
+         */
+        private static final class Unranked {
+            final WeightedRanking.Ranked earlier;
+            final int[] changedIDs;
+
+            Unranked(WeightedRanking.Ranked earlier, int[] changedIDs) {
+                this.earlier = earlier;
+                this.changedIDs = changedIDs;
+            }
+        }
+
+        private State(PersistentIntMap<MovieRatings> byMovie, PersistentIntMap<int[]> byUser, int size, double sum, Unranked unranked) {
+            this.byMovie = byMovie;
+            this.byUser = byUser;
+            this.size = size;
+            this.sum = sum;
+            this.unranked = unranked;
+        }
+
+        /**
+         * The State after a write that changed the given movies' ratings, which is ranked
+         * from this one's ranking (or the one this would be ranked from) when it is read
+         *
+         * @param changedIDs The movies changed, sorted, without repeats
+         * @param sumChange How much the write changed the total of every rating
+         */
+        State next(PersistentIntMap<MovieRatings> byMovie, PersistentIntMap<int[]> byUser, int size, double sumChange, int[] changedIDs) {
+            WeightedRanking.Ranked ranked = weighted;
+            Unranked pending = ranked != null ? new Unranked(ranked, changedIDs) : unranked;
+            if (ranked == null && pending != null) {
+                pending = new Unranked(pending.earlier, union(pending.changedIDs, changedIDs));
+            }
+            if (pending != null && pending.changedIDs.length > MAX_CHANGED_SHARE * pending.earlier.order.length + MIN_CHANGED) {
+                // So many changed that ranking them all again is as quick
+                pending = null;
+            }
+            return new State(byMovie, byUser, size, sum + sumChange, pending);
+        }
+
+        double mean() {
+            return size == 0 ? 0 : sum / size;
+        }
+
+        WeightedRanking.Ranked weighted() {
+            WeightedRanking.Ranked ranked = weighted;
+            if (ranked == null) {
+                Unranked pending = unranked;
+                if (pending != null) {
+                    int[] changedIDs = pending.changedIDs;
+                    double[] sums = new double[changedIDs.length];
+                    int[] counts = new int[changedIDs.length];
+                    for (int i = 0; i < changedIDs.length; i++) {
+                        MovieRatings movie = byMovie.get(changedIDs[i]);
+                        sums[i] = movie == null ? 0 : movie.sum;
+                        counts[i] = movie == null ? 0 : movie.count();
+                    }
+                    ranked = WeightedRanking.rerank(pending.earlier, changedIDs, sums, counts, mean());
+                }
+                if (ranked == null) {
+                    int[] ids = byMovie.keys();
+                    NewArrayList<MovieRatings> movies = byMovie.values();
+                    double[] sums = new double[ids.length];
+                    int[] counts = new int[ids.length];
+                    for (int i = 0; i < ids.length; i++) {
+                        sums[i] = movies.get(i).sum;
+                        counts[i] = movies.get(i).count();
+                    }
+                    ranked = WeightedRanking.rank(ids, sums, counts, ids.length);
+                }
+                weighted = ranked;
+                unranked = null;
+            }
+            return ranked;
+        }
+
+        // The IDs in either of two sorted arrays, sorted, without repeats
+        private static int[] union(int[] a, int[] b) {
+            int[] result = new int[a.length + b.length];
+            int i = 0, j = 0, n = 0;
+            while (i < a.length || j < b.length) {
+                if (j == b.length || (i < a.length && a[i] < b[j])) {
+                    result[n++] = a[i++];
+                } else if (i == a.length || b[j] < a[i]) {
+                    result[n++] = b[j++];
+                } else {
+                    result[n++] = a[i++];
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, n);
+        }
+
+        int[] histogram() {
+            int[] counts = histogram;
+            if (counts == null) {
+                counts = new int[RatingHistogram.NUM_BUCKETS];
+                for (MovieRatings movie : byMovie.values()) {
+                    int[] movieCounts = movie.distribution().histogram;
+                    for (int bucket = 0; bucket < counts.length; bucket++) {
+                        counts[bucket] += movieCounts[bucket];
+                    }
+                }
+                histogram = counts;
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * The constructor for the concurrent Ratings data store.
+     * @param stores The stores holding the data, including this store's
+     */
+    public ConcurrentRatings(ConcurrentStores stores) {
+        this.stores = stores;
+    }
+
+    private State state() {
+        return stores.version().ratings;
+    }
+
+    /***
+     * The ratings of one movie, sorted by user ID. Never changed once made, so it can be
+     * read without locking; a write makes a new one.
+     */
+    static final class MovieRatings {
+        final int[] users;
+        final float[] ratings;
+        final long[] timestamps;
+        final float sum;
+        private volatile RatingTimeline byTime;
+        private volatile RatingSumAndCount distribution;
+
+        MovieRatings(int[] users, float[] ratings, long[] timestamps, float sum) {
+            this.users = users;
+            this.ratings = ratings;
+            this.timestamps = timestamps;
+            this.sum = sum;
+        }
+
+        int indexOf(int userID) {
+            return Arrays.binarySearch(users, userID);
+        }
+
+        int count() {
+            return users.length;
+        }
+
+        float average() {
+            return users.length > 0 ? sum / users.length : 0;
+        }
+
+        // The ratings in time order. Built once, and only read afterwards
+        RatingTimeline byTime() {
+            RatingTimeline timeline = byTime;
+            if (timeline == null) {
+                timeline = RatingTimeline.of(users, ratings, timestamps);
+                byTime = timeline;
+            }
+            return timeline;
+        }
+
+        // The histogram and sum of squares of the ratings. Built once, and only read afterwards
+        RatingSumAndCount distribution() {
+            RatingSumAndCount result = distribution;
+            if (result == null) {
+                result = new RatingSumAndCount();
+                for (float rating : ratings) {
+                    result.addRating(rating);
+                }
+                distribution = result;
+            }
+            return result;
+        }
+
+        // A copy with the rating at index replaced
+        MovieRatings with(int index, float rating, long timestamp) {
+            float[] newRatings = ratings.clone();
+            long[] newTimestamps = timestamps.clone();
+            newRatings[index] = rating;
+            newTimestamps[index] = timestamp;
+            return new MovieRatings(users, newRatings, newTimestamps, sum - ratings[index] + rating);
+        }
+
+        // A copy with a rating inserted at the (negative) insertion point from indexOf
+        MovieRatings inserted(int insertion, int userID, float rating, long timestamp) {
+            int at = -insertion - 1;
+            int n = users.length;
+            int[] newUsers = new int[n + 1];
+            float[] newRatings = new float[n + 1];
+            long[] newTimestamps = new long[n + 1];
+            System.arraycopy(users, 0, newUsers, 0, at);
+            System.arraycopy(ratings, 0, newRatings, 0, at);
+            System.arraycopy(timestamps, 0, newTimestamps, 0, at);
+            newUsers[at] = userID;
+            newRatings[at] = rating;
+            newTimestamps[at] = timestamp;
+            System.arraycopy(users, at, newUsers, at + 1, n - at);
+            System.arraycopy(ratings, at, newRatings, at + 1, n - at);
+            System.arraycopy(timestamps, at, newTimestamps, at + 1, n - at);
+            return new MovieRatings(newUsers, newRatings, newTimestamps, sum + rating);
+        }
+
+        // A copy without the rating at index, or null if it was the only one
+        MovieRatings removed(int index) {
+            int n = users.length;
+            if (n == 1) {
+                return null;
+            }
+            int[] newUsers = new int[n - 1];
+            float[] newRatings = new float[n - 1];
+            long[] newTimestamps = new long[n - 1];
+            System.arraycopy(users, 0, newUsers, 0, index);
+            System.arraycopy(ratings, 0, newRatings, 0, index);
+            System.arraycopy(timestamps, 0, newTimestamps, 0, index);
+            System.arraycopy(users, index + 1, newUsers, index, n - index - 1);
+            System.arraycopy(ratings, index + 1, newRatings, index, n - index - 1);
+            System.arraycopy(timestamps, index + 1, newTimestamps, index, n - index - 1);
+            return new MovieRatings(newUsers, newRatings, newTimestamps, sum - ratings[index]);
+        }
+    }
+
+    private static final MovieRatings NO_RATINGS = new MovieRatings(new int[0], new float[0], new long[0], 0);
+
+    static long toEpochSecond(LocalDateTime timestamp) {
+        return RatingTimeline.toEpochSecond(timestamp);
+    }
+
+    // Sorted array with value inserted, or the same array if it was already there
+    private static int[] withID(int[] ids, int id) {
+        if (ids == null) {
+            return new int[] {id};
+        }
+        int at = Arrays.binarySearch(ids, id);
+        if (at >= 0) {
+            return ids;
+        }
+        at = -at - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, at);
+        result[at] = id;
+        System.arraycopy(ids, at, result, at + 1, ids.length - at);
+        return result;
+    }
+
+    // Sorted array with value removed, or null if it would be empty
+    private static int[] withoutID(int[] ids, int id) {
+        int at = ids == null ? -1 : Arrays.binarySearch(ids, id);
+        if (at < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, at);
+        System.arraycopy(ids, at + 1, result, at, ids.length - at - 1);
+        return result;
+    }
+
+    /**
+     * Adds a rating to the data structure. The rating is made unique by its user ID
+     * and its movie ID
+     *
+     * @param userID    The user ID
+     * @param movieID   The movie ID
+     * @param rating    The rating gave to the film by this user (between 0 and 5
+     *                  inclusive)
+     * @param timestamp The time at which the rating was made
+     * @return TRUE if the data able to be added, FALSE otherwise
+     */
+    @Override
+    public boolean add(int userID, int movieID, float rating, LocalDateTime timestamp) {
+        return put(userID, movieID, rating, toEpochSecond(timestamp), false);
+    }
+
+    /**
+     * Sets a rating for a given user ID and movie ID, adding it if the user has not
+     * rated the movie yet
+     *
+     * @return TRUE if the data able to be added/updated, FALSE otherwise
+     */
+    @Override
+    public boolean set(int userID, int movieID, float rating, LocalDateTime timestamp) {
+        return put(userID, movieID, rating, toEpochSecond(timestamp), true);
+    }
+
+    private boolean put(int userID, int movieID, float rating, long timestamp, boolean replace) {
+        return stores.write(version -> {
+            State state = version.ratings;
+            MovieRatings old = state.byMovie.get(movieID);
+            MovieRatings current = old == null ? NO_RATINGS : old;
+            int index = current.indexOf(userID);
+            if (index >= 0) {
+                if (!replace) {
+                    return version;
+                }
+                MovieRatings changed = current.with(index, rating, timestamp);
+                return version.withRatings(state.next(state.byMovie.put(movieID, changed), state.byUser, state.size, changed.sum - current.sum, new int[] {movieID}));
+            }
+            MovieRatings changed = current.inserted(index, userID, rating, timestamp);
+            return version.withRatings(state.next(
+                state.byMovie.put(movieID, changed),
+                state.byUser.put(userID, withID(state.byUser.get(userID), movieID)),
+                state.size + 1, changed.sum - current.sum, new int[] {movieID}));
+        });
+    }
+
+    /**
+     * Adds a batch of ratings as a single write, so readers see either none of the batch
+     * or all of it, and each movie and user is copied once per batch rather than once per
+     * rating. Ratings already stored, or repeated in the batch, are skipped
+     *
+     * @param timestamps The times of the ratings, in seconds since the epoch (UTC)
+     * @return The number of ratings that were added. If the arrays are not all the
+     *         same length, nothing is added and 0 is returned
+     */
+    @Override
+    public int addAll(int[] userIDs, int[] movieIDs, float[] ratings, long[] timestamps) {
+        int n = userIDs.length;
+        if (movieIDs.length != n || ratings.length != n || timestamps.length != n) {
+            return 0;
+        }
+        long[] byMovieRows = new long[n];
+        for (int row = 0; row < n; row++) {
+            byMovieRows[row] = ((long) movieIDs[row] << 32) | row;
+        }
+        Arrays.sort(byMovieRows);
+
+        int[] numAdded = new int[1];
+        stores.write(version -> {
+            State state = version.ratings;
+            PersistentIntMap<MovieRatings> byMovie = state.byMovie;
+            PersistentIntMap<int[]> byUser = state.byUser;
+            long[] byUserRows = new long[n];
+            int added = 0;
+            int[] changedIDs = new int[n];
+            int numChanged = 0;
+            double sumChange = 0;
+            for (int start = 0, end; start < n; start = end) {
+                int movieID = (int) (byMovieRows[start] >> 32);
+                for (end = start + 1; end < n && (int) (byMovieRows[end] >> 32) == movieID; end++);
+                MovieRatings old = byMovie.get(movieID);
+                MovieRatings current = old == null ? NO_RATINGS : old;
+                for (int i = start; i < end; i++) {
+                    int row = (int) byMovieRows[i];
+                    int index = current.indexOf(userIDs[row]);
+                    if (index < 0) {
+                        current = current.inserted(index, userIDs[row], ratings[row], timestamps[row]);
+                        byUserRows[added++] = ((long) userIDs[row] << 32) | row;
+                    }
+                }
+                if (current != NO_RATINGS && current != old) {
+                    byMovie = byMovie.put(movieID, current);
+                    // Movie IDs are sorted, as the rows were
+                    changedIDs[numChanged++] = movieID;
+                    sumChange += current.sum - (old == null ? 0 : old.sum);
+                }
+            }
+
+            Arrays.sort(byUserRows, 0, added);
+            for (int start = 0, end; start < added; start = end) {
+                int userID = (int) (byUserRows[start] >> 32);
+                for (end = start + 1; end < added && (int) (byUserRows[end] >> 32) == userID; end++);
+                int[] movies = byUser.get(userID);
+                for (int i = start; i < end; i++) {
+                    movies = withID(movies, movieIDs[(int) byUserRows[i]]);
+                }
+                byUser = byUser.put(userID, movies);
+            }
+            numAdded[0] = added;
+            return added == 0 ? version : version.withRatings(state.next(byMovie, byUser, state.size + added, sumChange, Arrays.copyOf(changedIDs, numChanged)));
+        });
+        return numAdded[0];
+    }
+
+    /**
+     * Removes a given rating, using the user ID and the movie ID as the unique
+     * identifier
+     *
+     * @param userID  The user ID
+     * @param movieID The movie ID
+     * @return TRUE if the data was removed successfully, FALSE otherwise
+     */
+    @Override
+    public boolean remove(int userID, int movieID) {
+        return stores.write(version -> {
+            State state = version.ratings;
+            MovieRatings current = state.byMovie.get(movieID);
+            int index = current == null ? -1 : current.indexOf(userID);
+            if (index < 0) {
+                return version;
+            }
+            MovieRatings remaining = current.removed(index);
+            int[] movies = withoutID(state.byUser.get(userID), movieID);
+            return version.withRatings(state.next(
+                remaining == null ? state.byMovie.remove(movieID) : state.byMovie.put(movieID, remaining),
+                movies == null ? state.byUser.remove(userID) : state.byUser.put(userID, movies),
+                state.size - 1, (remaining == null ? 0 : remaining.sum) - current.sum, new int[] {movieID}));
+        });
+    }
+
+    @Override
+    public float[] getMovieRatings(int movieID) {
+        MovieRatings movie = state().byMovie.get(movieID);
+        return movie == null ? new float[0] : movie.ratings.clone();
+    }
+
+    @Override
+    public float[] getUserRatings(int userID) {
+        State state = state();
+        int[] movies = state.byUser.get(userID);
+        if (movies == null) {
+            return new float[0];
+        }
+        float[] ratings = new float[movies.length];
+        for (int i = 0; i < movies.length; i++) {
+            MovieRatings movie = state.byMovie.get(movies[i]);
+            ratings[i] = movie.ratings[movie.indexOf(userID)];
+        }
+        return ratings;
+    }
+
+    @Override
+    public float getMovieAverageRating(int movieID) {
+        MovieRatings movie = state().byMovie.get(movieID);
+        return movie == null ? -1.0f : movie.average();
+    }
+
+    /**
+     * Gets the averages of many movies, all from the same version of the stores
+     */
+    @Override
+    public float[] getMovieAverageRatings(int[] movieIDs) {
+        State state = state();
+        float[] averages = new float[movieIDs.length];
+        for (int i = 0; i < movieIDs.length; i++) {
+            MovieRatings movie = state.byMovie.get(movieIDs[i]);
+            averages[i] = movie == null ? -1.0f : movie.average();
+        }
+        return averages;
+    }
+
+    @Override
+    public float getUserAverageRating(int userID) {
+        float sum = 0;
+        float[] allratings = getUserRatings(userID);
+        for (int i = 0; i < allratings.length; i++) {
+            sum += allratings[i];
+        }
+        return allratings.length > 0 ? sum / allratings.length : -1.0f;
+    }
+
+    /**
+     * Sorts the IDs by descending score and returns the first numResults of them
+     */
+    static int[] topByScore(int[] ids, float[] scores, int count, int numResults) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        int[] result = new int[Math.max(0, Math.min(numResults, count))];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids[order[i]];
+        }
+        return result;
+    }
+
+    @Override
+    public int[] getMostRatedMovies(int numResults) {
+        PersistentIntMap<MovieRatings> byMovie = state().byMovie;
+        int[] ids = byMovie.keys();
+        NewArrayList<MovieRatings> movies = byMovie.values();
+        float[] counts = new float[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            counts[i] = movies.get(i).count();
+        }
+        return topByScore(ids, counts, ids.length, numResults);
+    }
+
+    @Override
+    public int[] getMostRatedUsers(int numResults) {
+        PersistentIntMap<int[]> byUser = state().byUser;
+        int[] ids = byUser.keys();
+        NewArrayList<int[]> users = byUser.values();
+        float[] counts = new float[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            counts[i] = users.get(i).length;
+        }
+        return topByScore(ids, counts, ids.length, numResults);
+    }
+
+    @Override
+    public int getNumRatings(int movieID) {
+        MovieRatings movie = state().byMovie.get(movieID);
+        return movie == null ? -1 : movie.count();
+    }
+
+    @Override
+    public int[] getRatedMovies() {
+        return state().byMovie.keys();
+    }
+
+    @Override
+    public int[] getMovieRaters(int movieID) {
+        MovieRatings movie = state().byMovie.get(movieID);
+        return movie == null ? new int[0] : movie.users.clone();
+    }
+
+    @Override
+    public float getRating(int userID, int movieID) {
+        MovieRatings movie = state().byMovie.get(movieID);
+        int index = movie == null ? -1 : movie.indexOf(userID);
+        return index < 0 ? -1.0f : movie.ratings[index];
+    }
+
+    @Override
+    public LocalDateTime getTimestamp(int userID, int movieID) {
+        MovieRatings movie = state().byMovie.get(movieID);
+        int index = movie == null ? -1 : movie.indexOf(userID);
+        if (index < 0 || movie.timestamps[index] == NULL_TIMESTAMP) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(movie.timestamps[index], 0, ZoneOffset.UTC);
+    }
+
+    @Override
+    public int[] getTopAverageRatedMovies(int numResults) {
+        PersistentIntMap<MovieRatings> byMovie = state().byMovie;
+        int[] ids = byMovie.keys();
+        NewArrayList<MovieRatings> movies = byMovie.values();
+        float[] averages = new float[ids.length];
+        int count = 0;
+        for (int i = 0; i < ids.length; i++) {
+            // As in Ratings, only movies with a positive average are ranked
+            if (movies.get(i).average() > 0) {
+                ids[count] = ids[i];
+                averages[count++] = movies.get(i).average();
+            }
+        }
+        return topByScore(ids, averages, count, numResults);
+    }
+
+    /***
+     * Ranked once per version of the stores that is read, from the last version ranked:
+     * only the movies changed since are moved, so the first read after a write is
+     * O(movies + changed log changed), then O(numResults) until the next write
+     */
+    @Override
+    public int[] getTopWeightedRatedMovies(int numResults) {
+        return state().weighted().top(numResults);
+    }
+
+    @Override
+    public float getMovieWeightedRating(int movieID) {
+        State state = state();
+        MovieRatings movie = state.byMovie.get(movieID);
+        return movie == null ? -1.0f : WeightedRanking.weightedRating(movie.sum, movie.count(), state.mean());
+    }
+
+    /***
+     * The histograms, medians and standard deviations of a movie are counted once per
+     * version of the movie's ratings, then O(1) until they next change
+     */
+    @Override
+    public int[] getMovieRatingHistogram(int movieID) {
+        MovieRatings movie = state().byMovie.get(movieID);
+        return movie == null ? new int[0] : movie.distribution().histogram.clone();
+    }
+
+    /***
+     * Counted from the user's ratings on every call
+     */
+    @Override
+    public int[] getUserRatingHistogram(int userID) {
+        State state = state();
+        int[] movies = state.byUser.get(userID);
+        if (movies == null) {
+            return new int[0];
+        }
+        int[] counts = new int[RatingHistogram.NUM_BUCKETS];
+        for (int movieID : movies) {
+            MovieRatings movie = state.byMovie.get(movieID);
+            counts[RatingHistogram.bucket(movie.ratings[movie.indexOf(userID)])]++;
+        }
+        return counts;
+    }
+
+    @Override
+    public int[] getRatingHistogram() {
+        return state().histogram().clone();
+    }
+
+    @Override
+    public float getMedianRating(int movieID) {
+        MovieRatings movie = state().byMovie.get(movieID);
+        return movie == null ? -1.0f : RatingHistogram.median(movie.distribution().histogram);
+    }
+
+    @Override
+    public float getRatingStdDev(int movieID) {
+        MovieRatings movie = state().byMovie.get(movieID);
+        if (movie == null) {
+            return -1.0f;
+        }
+        return RatingHistogram.stdDev(movie.sum, movie.distribution().sumSquares, movie.count());
+    }
+
+    @Override
+    public float[] getMovieRatingsBetween(int movieID, LocalDateTime from, LocalDateTime to) {
+        MovieRatings movie = state().byMovie.get(movieID);
+        if (movie == null) {
+            return new float[0];
+        }
+        return movie.byTime().between(RatingTimeline.fromSecond(from), RatingTimeline.toSecond(to));
+    }
+
+    /**
+     * Gets the movies rated most often within the window ending at the latest rating,
+     * as in Ratings. Both passes read the same State
+     */
+    @Override
+    public int[] getTrendingMovies(Duration window, int numResults) {
+        long seconds = RatingTimeline.seconds(window);
+        PersistentIntMap<MovieRatings> byMovie = state().byMovie;
+        int[] ids = byMovie.keys();
+        NewArrayList<MovieRatings> movies = byMovie.values();
+        long latest = NULL_TIMESTAMP;
+        for (int i = 0; i < ids.length; i++) {
+            latest = Math.max(latest, movies.get(i).byTime().latest());
+        }
+        if (seconds < 0 || latest == NULL_TIMESTAMP) {
+            return new int[0];
+        }
+
+        long to = latest + 1;
+        long from = Math.max(NULL_TIMESTAMP + 1, to - seconds);
+        float[] counts = new float[ids.length];
+        int count = 0;
+        for (int i = 0; i < ids.length; i++) {
+            int inWindow = movies.get(i).byTime().count(from, to);
+            if (inWindow > 0) {
+                ids[count] = ids[i];
+                counts[count++] = inWindow;
+            }
+        }
+        return topByScore(ids, counts, count, numResults);
+    }
+
+    @Override
+    public int[] getMovieRatingsOverTime(int movieID, LocalDateTime from, Duration bucket, int numBuckets) {
+        long seconds = RatingTimeline.seconds(bucket);
+        if (from == null || seconds < 0 || numBuckets <= 0) {
+            return new int[0];
+        }
+        MovieRatings movie = state().byMovie.get(movieID);
+        if (movie == null) {
+            return new int[numBuckets];
+        }
+        return movie.byTime().histogram(RatingTimeline.fromSecond(from), seconds, numBuckets);
+    }
+
+    @Override
+    public int size() {
+        return state().size;
+    }
+}
@@ -0,0 +1,135 @@
+package stores;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+import interfaces.AbstractStores;
+
+/***
+ * Stores that can be queried from many threads while they are being changed, using
+ * ConcurrentMovies, ConcurrentKeywords, ConcurrentCredits and ConcurrentRatings.
+ *
+ * The data of all four stores is one immutable Version, built from PersistentIntMaps, and
+ * the stores hold no data of their own. A write makes a new Version that shares everything
+ * it did not change with the old one and publishes it with a single volatile write, so
+ * readers never lock and never wait for a writer, and a writer never waits for a reader.
+ * Writers take turns through one lock, which is what makes each change, and every
+ * snapshot, consistent across the stores.
+ *
+ * snapshot() returns stores fixed at the current Version. They see none of the later
+ * changes, and cannot be changed themselves.
+ */
+public class ConcurrentStores extends AbstractStores {
+    private final ReentrantLock writeLock;
+    private volatile Version current;
+    private final boolean frozen;
+
+    /***
+     * The data of all four stores at one point in time. Never changed once made.
+     */
+    static final class Version {
+        final long number;
+        final ConcurrentMovies.State movies;
+        final ConcurrentKeywords.State keywords;
+        final ConcurrentCredits.State credits;
+        final ConcurrentRatings.State ratings;
+
+        Version(long number, ConcurrentMovies.State movies, ConcurrentKeywords.State keywords, ConcurrentCredits.State credits, ConcurrentRatings.State ratings) {
+            this.number = number;
+            this.movies = movies;
+            this.keywords = keywords;
+            this.credits = credits;
+            this.ratings = ratings;
+        }
+
+        Version withMovies(ConcurrentMovies.State movies) {
+            return movies == this.movies ? this : new Version(number + 1, movies, keywords, credits, ratings);
+        }
+
+        Version withKeywords(ConcurrentKeywords.State keywords) {
+            return keywords == this.keywords ? this : new Version(number + 1, movies, keywords, credits, ratings);
+        }
+
+        Version withCredits(ConcurrentCredits.State credits) {
+            return credits == this.credits ? this : new Version(number + 1, movies, keywords, credits, ratings);
+        }
+
+        Version withRatings(ConcurrentRatings.State ratings) {
+            return ratings == this.ratings ? this : new Version(number + 1, movies, keywords, credits, ratings);
+        }
+    }
+
+    public ConcurrentStores(){
+        this.writeLock = new ReentrantLock();
+        this.current = new Version(0, ConcurrentMovies.State.EMPTY, ConcurrentKeywords.State.EMPTY, ConcurrentCredits.State.EMPTY, ConcurrentRatings.State.EMPTY);
+        this.frozen = false;
+        createStores();
+    }
+
+    // Stores that always read the given version
+    private ConcurrentStores(Version version) {
+        this.writeLock = null;
+        this.current = version;
+        this.frozen = true;
+        createStores();
+    }
+
+    private void createStores() {
+        movies   = new ConcurrentMovies(this);
+        keywords = new ConcurrentKeywords(this);
+        credits  = new ConcurrentCredits(this);
+        ratings  = new ConcurrentRatings(this);
+    }
+
+    /**
+     * @return The current version of the data, to be read without locking
+     */
+    Version version() {
+        return current;
+    }
+
+    /**
+     * Applies a change to the current version and publishes the result. Changes are made
+     * one at a time, so the change always sees the latest version
+     *
+     * @param change Makes the new version from the current one, returning the same
+     *               version if nothing changes
+     * @return TRUE if a new version was published, FALSE otherwise. Snapshots can not
+     *         be changed, so always return FALSE
+     */
+    boolean write(UnaryOperator<Version> change) {
+        if (frozen) {
+            return false;
+        }
+        writeLock.lock();
+        try {
+            Version next = change.apply(current);
+            if (next == current) {
+                return false;
+            }
+            current = next;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of changes made to the stores so far. A snapshot keeps the
+     *         number of the version it was taken at
+     */
+    public long getVersion() {
+        return current.number;
+    }
+
+    /**
+     * Gets a read-only view of all four stores as they are now. Taking a snapshot copies
+     * nothing, and it stays the same however the stores change afterwards
+     *
+     * @return The snapshot, whose writes all return FALSE
+     */
+    @Override
+    public AbstractStores snapshot() {
+        return frozen ? this : new ConcurrentStores(current);
+    }
+}
@@ -1,6 +1,7 @@
 package stores;
 
 
+import java.util.Arrays;
 import java.util.Comparator;
 
 import interfaces.ICredits;
@@ -73,6 +74,83 @@ public class Credits implements ICredits{
         return true;
     }
 
+    /**
+     * Adds the credits for a batch of films. The films go in first (the table is grown
+     * once for the whole batch), then the cast and crew indexes are built in one sorted
+     * pass each, so every cast or crew member's entry is looked up once per batch rather
+     * than once per credit. Films that are already stored (or appear earlier in the
+     * batch) are skipped, as with add
+     *
+     * @param filmIDs The (unique) movie IDs
+     * @param cast    The cast of each film, in the same order as filmIDs
+     * @param crew    The crew of each film, in the same order as filmIDs
+     * @return The number of films that were added. If the arrays are not all the
+     *         same length, nothing is added and 0 is returned
+     */
+    @Override
+    public int addAll(int[] filmIDs, CastCredit[][] cast, CrewCredit[][] crew) {
+        int n = filmIDs.length;
+        if (cast.length != n || crew.length != n) {
+            return 0;
+        }
+
+        boolean[] accepted = new boolean[n];
+        int added = 0, numCast = 0, numCrew = 0;
+        movies.ensureCapacity(movies.size() + n);
+        for (int i = 0; i < n; i++) {
+            if (movies.containsKey(filmIDs[i])) continue;
+
+            MovieCredits newMovie = new MovieCredits(cast[i].length, crew[i].length);
+            for (CastCredit castMember : cast[i]) {
+                newMovie.addCastMember(castMember);
+            }
+            for (CrewCredit crewMember : crew[i]) {
+                newMovie.addCrewMember(crewMember);
+            }
+            movies.put(filmIDs[i], newMovie);
+            accepted[i] = true;
+            numCast += cast[i].length;
+            numCrew += crew[i].length;
+            added++;
+        }
+
+        // Every (person, film) credit, keyed so that sorting groups each person's films together
+        long[] castCredits = new long[numCast];
+        long[] crewCredits = new long[numCrew];
+        numCast = numCrew = 0;
+        for (int i = 0; i < n; i++) {
+            if (!accepted[i]) continue;
+            for (CastCredit castMember : cast[i]) {
+                castCredits[numCast++] = ((long) castMember.getID() << 32) | i;
+            }
+            for (CrewCredit crewMember : crew[i]) {
+                crewCredits[numCrew++] = ((long) crewMember.getID() << 32) | i;
+            }
+        }
+        indexFilms(castInMovies, castCredits, filmIDs);
+        indexFilms(crewInMovies, crewCredits, filmIDs);
+
+        return added;
+    }
+
+    // Adds each person's films to the index, one lookup per person
+    private static void indexFilms(MyHashMap<Integer, MyHashSet<Integer>> index, long[] credits, int[] filmIDs) {
+        Arrays.sort(credits);
+        for (int start = 0, end; start < credits.length; start = end) {
+            int personID = (int) (credits[start] >> 32);
+            for (end = start + 1; end < credits.length && (int) (credits[end] >> 32) == personID; end++);
+
+            MyHashSet<Integer> films = index.get(personID);
+            if (films == null) {
+                films = new MyHashSet<>(end - start);
+                index.put(personID, films);
+            }
+            for (int i = start; i < end; i++) {
+                films.add(filmIDs[(int) credits[i]]);
+            }
+        }
+    }
+
     /**
      * Remove a given films data from the data structure
      *
@@ -111,6 +189,21 @@ public class Credits implements ICredits{
     }
 
 
+    /**
+     * Gets the IDs of all films that have credits stored
+     *
+     * @return An array of all film IDs stored in the credits store
+     */
+    @Override
+    public int[] getFilmIDs() {
+        NewArrayList<Integer> filmIDs = movies.getAllKeys();
+        int[] ids = new int[filmIDs.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = filmIDs.get(i);
+        }
+        return ids;
+    }
+
     /**
      * Gets all the cast members for a given film
      *
@@ -171,6 +264,38 @@ public class Credits implements ICredits{
         return crewList.toArray(new CrewCredit[crewList.size()]);
     }
 
+    /**
+     * Gets the cast members of many films at once
+     *
+     * @param filmIDs The movie IDs
+     * @return The cast of each film, in the same order as the IDs, each as
+     *         getFilmCast gives it
+     */
+    @Override
+    public CastCredit[][] getFilmCasts(int[] filmIDs) {
+        CastCredit[][] casts = new CastCredit[filmIDs.length][];
+        for (int i = 0; i < filmIDs.length; i++) {
+            casts[i] = getFilmCast(filmIDs[i]);
+        }
+        return casts;
+    }
+
+    /**
+     * Gets the crew members of many films at once
+     *
+     * @param filmIDs The movie IDs
+     * @return The crew of each film, in the same order as the IDs, each as
+     *         getFilmCrew gives it
+     */
+    @Override
+    public CrewCredit[][] getFilmCrews(int[] filmIDs) {
+        CrewCredit[][] crews = new CrewCredit[filmIDs.length][];
+        for (int i = 0; i < filmIDs.length; i++) {
+            crews[i] = getFilmCrew(filmIDs[i]);
+        }
+        return crews;
+    }
+
 
     /**
      * Gets the number of cast that worked on a given film
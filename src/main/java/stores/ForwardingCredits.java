@@ -0,0 +1,39 @@
+package stores;
+
+import interfaces.ICredits;
+
+/***
+ * Credits that pass every call through to another credits store. Wrappers that watch
+ * the changes to a store (SimilarFilmsStores) extend this and override only the mutators.
+ */
+abstract class ForwardingCredits implements ICredits {
+    protected final ICredits credits;
+
+    ForwardingCredits(ICredits credits) {
+        this.credits = credits;
+    }
+
+    @Override public boolean add(CastCredit[] cast, CrewCredit[] crew, int filmID)    { return credits.add(cast, crew, filmID); }
+    @Override public int addAll(int[] filmIDs, CastCredit[][] cast, CrewCredit[][] crew) { return credits.addAll(filmIDs, cast, crew); }
+    @Override public boolean remove(int filmID)                  { return credits.remove(filmID); }
+
+    @Override public int[] getFilmIDs()                          { return credits.getFilmIDs(); }
+    @Override public CastCredit[] getFilmCast(int filmID)        { return credits.getFilmCast(filmID); }
+    @Override public CrewCredit[] getFilmCrew(int filmID)        { return credits.getFilmCrew(filmID); }
+    @Override public CastCredit[][] getFilmCasts(int[] filmIDs)  { return credits.getFilmCasts(filmIDs); }
+    @Override public CrewCredit[][] getFilmCrews(int[] filmIDs)  { return credits.getFilmCrews(filmIDs); }
+    @Override public Person getCast(int castID)                  { return credits.getCast(castID); }
+    @Override public Person getCrew(int crewID)                  { return credits.getCrew(crewID); }
+    @Override public int[] getCastFilms(int castID)              { return credits.getCastFilms(castID); }
+    @Override public int[] getCrewFilms(int crewID)              { return credits.getCrewFilms(crewID); }
+    @Override public int[] getCastStarsInFilms(int castID)       { return credits.getCastStarsInFilms(castID); }
+    @Override public Person[] getMostCastCredits(int numResults) { return credits.getMostCastCredits(numResults); }
+    @Override public int getNumCastCredits(int castID)           { return credits.getNumCastCredits(castID); }
+    @Override public int sizeOfCast(int filmID)                  { return credits.sizeOfCast(filmID); }
+    @Override public int sizeofCrew(int filmID)                  { return credits.sizeofCrew(filmID); }
+    @Override public Person[] getUniqueCast()                    { return credits.getUniqueCast(); }
+    @Override public Person[] getUniqueCrew()                    { return credits.getUniqueCrew(); }
+    @Override public Person[] findCast(String searchTerm)        { return credits.findCast(searchTerm); }
+    @Override public Person[] findCrew(String searchTerm)        { return credits.findCrew(searchTerm); }
+    @Override public int size()                                  { return credits.size(); }
+}
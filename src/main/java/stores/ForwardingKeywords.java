@@ -0,0 +1,30 @@
+package stores;
+
+import interfaces.IKeywords;
+
+/***
+ * Keywords that pass every call through to another keywords store. Wrappers that watch
+ * the changes to a store (SimilarFilmsStores) extend this and override only the mutators.
+ */
+abstract class ForwardingKeywords implements IKeywords {
+    protected final IKeywords keywords;
+
+    ForwardingKeywords(IKeywords keywords) {
+        this.keywords = keywords;
+    }
+
+    @Override public boolean add(int filmID, Keyword[] keywords)             { return this.keywords.add(filmID, keywords); }
+    @Override public boolean add(int filmID, Keyword keyword)                { return keywords.add(filmID, keyword); }
+    @Override public boolean remove(int filmID)                              { return keywords.remove(filmID); }
+    @Override public boolean removeKeywordFromFilm(int filmID, int keywordID) { return keywords.removeKeywordFromFilm(filmID, keywordID); }
+
+    @Override public int[] getFilmIDs()                                      { return keywords.getFilmIDs(); }
+    @Override public int[] getKeywordIDs()                                   { return keywords.getKeywordIDs(); }
+    @Override public int[] getFilmsWithKeyword(int keywordID)                { return keywords.getFilmsWithKeyword(keywordID); }
+    @Override public Keyword[] getKeywordsForFilm(int filmID)                { return keywords.getKeywordsForFilm(filmID); }
+    @Override public Keyword[] getUnique()                                   { return keywords.getUnique(); }
+    @Override public int[] getMostKeywordFilms(int numResults)               { return keywords.getMostKeywordFilms(numResults); }
+    @Override public Keyword[] findKeywords(String searchTerm)               { return keywords.findKeywords(searchTerm); }
+    @Override public String toString()                                       { return keywords.toString(); }
+    @Override public int size()                                              { return keywords.size(); }
+}
@@ -0,0 +1,68 @@
+package stores;
+
+import java.time.LocalDate;
+
+import interfaces.IMovies;
+
+/***
+ * Movies that pass every call through to another movies store. Wrappers that watch the
+ * changes to a store (CachedStores) extend this and override only the mutators.
+ */
+abstract class ForwardingMovies implements IMovies {
+    protected final IMovies movies;
+
+    ForwardingMovies(IMovies movies) {
+        this.movies = movies;
+    }
+
+    @Override
+    public boolean add(int id, String title, String originalTitle, String overview, String tagline, String status, Genre[] genres, LocalDate release, long budget, long revenue, String[] languages, String originalLanguage, double runtime, String homepage, boolean adult, boolean video, String poster) {
+        return movies.add(id, title, originalTitle, overview, tagline, status, genres, release, budget, revenue, languages, originalLanguage, runtime, homepage, adult, video, poster);
+    }
+
+    @Override
+    public boolean addToCollection(int filmID, int collectionID, String collectionName, String collectionPosterPath, String collectionBackdropPath) {
+        return movies.addToCollection(filmID, collectionID, collectionName, collectionPosterPath, collectionBackdropPath);
+    }
+
+    @Override public boolean remove(int id)                                  { return movies.remove(id); }
+    @Override public int addAll(MovieBatch batch)                            { return movies.addAll(batch); }
+    @Override public boolean setVote(int id, double voteAverage, int voteCount) { return movies.setVote(id, voteAverage, voteCount); }
+    @Override public boolean setIMDB(int filmID, String imdbID)              { return movies.setIMDB(filmID, imdbID); }
+    @Override public boolean setPopularity(int id, double popularity)        { return movies.setPopularity(id, popularity); }
+    @Override public boolean addProductionCompany(int movieId, Company company) { return movies.addProductionCompany(movieId, company); }
+    @Override public boolean addProductionCountry(int movieId, String country) { return movies.addProductionCountry(movieId, country); }
+
+    @Override public int[] getAllIDs()                                       { return movies.getAllIDs(); }
+    @Override public int[] getAllIDsReleasedInRange(LocalDate start, LocalDate end) { return movies.getAllIDsReleasedInRange(start, end); }
+    @Override public String getTitle(int id)                                 { return movies.getTitle(id); }
+    @Override public String[] getTitles(int[] ids)                           { return movies.getTitles(ids); }
+    @Override public String getOriginalTitle(int id)                         { return movies.getOriginalTitle(id); }
+    @Override public String getOverview(int id)                              { return movies.getOverview(id); }
+    @Override public String getTagline(int id)                               { return movies.getTagline(id); }
+    @Override public String getStatus(int id)                                { return movies.getStatus(id); }
+    @Override public Genre[] getGenres(int id)                               { return movies.getGenres(id); }
+    @Override public LocalDate getRelease(int id)                            { return movies.getRelease(id); }
+    @Override public long getBudget(int id)                                  { return movies.getBudget(id); }
+    @Override public long getRevenue(int id)                                 { return movies.getRevenue(id); }
+    @Override public String[] getLanguages(int id)                           { return movies.getLanguages(id); }
+    @Override public String getOriginalLanguage(int id)                      { return movies.getOriginalLanguage(id); }
+    @Override public double getRuntime(int id)                               { return movies.getRuntime(id); }
+    @Override public String getHomepage(int id)                              { return movies.getHomepage(id); }
+    @Override public boolean getAdult(int id)                                { return movies.getAdult(id); }
+    @Override public boolean getVideo(int id)                                { return movies.getVideo(id); }
+    @Override public String getPoster(int id)                                { return movies.getPoster(id); }
+    @Override public double getVoteAverage(int id)                           { return movies.getVoteAverage(id); }
+    @Override public int getVoteCount(int id)                                { return movies.getVoteCount(id); }
+    @Override public int[] getFilmsInCollection(int collectionID)            { return movies.getFilmsInCollection(collectionID); }
+    @Override public String getCollectionName(int collectionID)              { return movies.getCollectionName(collectionID); }
+    @Override public String getCollectionPoster(int collectionID)            { return movies.getCollectionPoster(collectionID); }
+    @Override public String getCollectionBackdrop(int collectionID)          { return movies.getCollectionBackdrop(collectionID); }
+    @Override public int getCollectionID(int filmID)                         { return movies.getCollectionID(filmID); }
+    @Override public String getIMDB(int filmID)                              { return movies.getIMDB(filmID); }
+    @Override public double getPopularity(int id)                            { return movies.getPopularity(id); }
+    @Override public Company[] getProductionCompanies(int movieId)           { return movies.getProductionCompanies(movieId); }
+    @Override public String[] getProductionCountries(int movieId)            { return movies.getProductionCountries(movieId); }
+    @Override public int[] findFilms(String searchTerm)                      { return movies.findFilms(searchTerm); }
+    @Override public int size()                                              { return movies.size(); }
+}
@@ -0,0 +1,77 @@
+package stores;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+
+import interfaces.IRatings;
+
+/***
+ * Ratings that pass every call through to another ratings store. Wrappers that watch
+ * the changes to a store (LoggedStores, TrendingStores) extend this and override only
+ * the mutators.
+ */
+abstract class ForwardingRatings implements IRatings {
+    protected final IRatings ratings;
+
+    ForwardingRatings(IRatings ratings) {
+        this.ratings = ratings;
+    }
+
+    /**
+     * Finds the rows of a batch that addAll would add: those not already stored, and
+     * not repeated earlier in the batch. Must be called before the batch is added
+     *
+     * @return Whether each row will be added
+     */
+    boolean[] newRows(int[] userIDs, int[] movieIDs) {
+        boolean[] adds = new boolean[userIDs.length];
+        HashSet<Long> seen = new HashSet<>();
+        for (int row = 0; row < userIDs.length; row++) {
+            adds[row] = ratings.getRating(userIDs[row], movieIDs[row]) < 0 && seen.add(((long) userIDs[row] << 32) | (movieIDs[row] & 0xffffffffL));
+        }
+        return adds;
+    }
+
+    @Override public boolean add(int userID, int movieID, float rating, LocalDateTime timestamp) { return ratings.add(userID, movieID, rating, timestamp); }
+    @Override public int addAll(int[] userIDs, int[] movieIDs, float[] ratings, long[] timestamps) { return this.ratings.addAll(userIDs, movieIDs, ratings, timestamps); }
+    @Override public boolean remove(int userID, int movieID)              { return ratings.remove(userID, movieID); }
+    @Override public boolean set(int userID, int movieID, float rating, LocalDateTime timestamp) { return ratings.set(userID, movieID, rating, timestamp); }
+
+    @Override public float[] getMovieRatings(int movieID)                 { return ratings.getMovieRatings(movieID); }
+    @Override public float[] getUserRatings(int userID)                   { return ratings.getUserRatings(userID); }
+    @Override public float getMovieAverageRating(int movieID)             { return ratings.getMovieAverageRating(movieID); }
+    @Override public float[] getMovieAverageRatings(int[] movieIDs)       { return ratings.getMovieAverageRatings(movieIDs); }
+    @Override public float getUserAverageRating(int userID)               { return ratings.getUserAverageRating(userID); }
+    @Override public int[] getMostRatedMovies(int numResults)             { return ratings.getMostRatedMovies(numResults); }
+    @Override public int[] getMostRatedUsers(int numResults)              { return ratings.getMostRatedUsers(numResults); }
+    @Override public int getNumRatings(int movieID)                       { return ratings.getNumRatings(movieID); }
+    @Override public int[] getRatedMovies()                               { return ratings.getRatedMovies(); }
+    @Override public int[] getMovieRaters(int movieID)                    { return ratings.getMovieRaters(movieID); }
+    @Override public float getRating(int userID, int movieID)             { return ratings.getRating(userID, movieID); }
+    @Override public LocalDateTime getTimestamp(int userID, int movieID)  { return ratings.getTimestamp(userID, movieID); }
+    @Override public int[] getTopAverageRatedMovies(int numResults)       { return ratings.getTopAverageRatedMovies(numResults); }
+    @Override public int[] getTopWeightedRatedMovies(int numResults)      { return ratings.getTopWeightedRatedMovies(numResults); }
+    @Override public float getMovieWeightedRating(int movieID)            { return ratings.getMovieWeightedRating(movieID); }
+    @Override public int[] getMovieRatingHistogram(int movieID)           { return ratings.getMovieRatingHistogram(movieID); }
+    @Override public int[] getUserRatingHistogram(int userID)             { return ratings.getUserRatingHistogram(userID); }
+    @Override public int[] getRatingHistogram()                           { return ratings.getRatingHistogram(); }
+    @Override public float getMedianRating(int movieID)                   { return ratings.getMedianRating(movieID); }
+    @Override public float getRatingStdDev(int movieID)                   { return ratings.getRatingStdDev(movieID); }
+    @Override public int size()                                           { return ratings.size(); }
+
+    @Override
+    public float[] getMovieRatingsBetween(int movieID, LocalDateTime from, LocalDateTime to) {
+        return ratings.getMovieRatingsBetween(movieID, from, to);
+    }
+
+    @Override
+    public int[] getTrendingMovies(Duration window, int numResults) {
+        return ratings.getTrendingMovies(window, numResults);
+    }
+
+    @Override
+    public int[] getMovieRatingsOverTime(int movieID, LocalDateTime from, Duration bucket, int numBuckets) {
+        return ratings.getMovieRatingsOverTime(movieID, from, bucket, numBuckets);
+    }
+}
@@ -0,0 +1,121 @@
+package stores;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import interfaces.AbstractStores;
+import interfaces.IRatings;
+
+/***
+ * Stores whose rating changes are written to a RatingsLog. Queries, and the movies,
+ * credits and keywords, go straight to the wrapped stores.
+ *
+ * Only changes the wrapped ratings accept are logged, and each is logged in the same
+ * critical section it is made in, so the log has them in the order they were made.
+ */
+public class LoggedStores extends AbstractStores {
+    private final AbstractStores stores;
+    private final RatingsLog log;
+
+    /***
+     * @param stores The loaded stores, with the log already replayed into them
+     * @param log The open log that rating changes are appended to
+     */
+    public LoggedStores(AbstractStores stores, RatingsLog log) {
+        this.stores = stores;
+        this.log = log;
+        this.credits = stores.getCredits();
+        this.keywords = stores.getKeywords();
+        this.movies = stores.getMovies();
+        this.ratings = new LoggedRatings(stores.getRatings(), log);
+    }
+
+    /***
+     * @return The log that rating changes are written to
+     */
+    public RatingsLog getLog() {
+        return log;
+    }
+
+    @Override
+    public AbstractStores snapshot() {
+        AbstractStores snapshot = stores.snapshot();
+        return snapshot == stores ? this : snapshot;
+    }
+
+    @Override
+    public <T extends AbstractStores> T find(Class<T> type) {
+        return type.isInstance(this) ? type.cast(this) : stores.find(type);
+    }
+
+    /***
+     * Ratings that append every accepted add, set and remove to the log.
+     */
+    private static final class LoggedRatings extends ForwardingRatings {
+        private final RatingsLog log;
+
+        LoggedRatings(IRatings ratings, RatingsLog log) {
+            super(ratings);
+            this.log = log;
+        }
+
+        private void append(byte op, int userID, int movieID, float rating, LocalDateTime timestamp) {
+            try {
+                log.append(op, userID, movieID, rating, timestamp);
+            }
+            catch (IOException e) {
+                System.err.println("Unable to log rating change, it will be lost on restart: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public synchronized boolean add(int userID, int movieID, float rating, LocalDateTime timestamp) {
+            if (!ratings.add(userID, movieID, rating, timestamp)) {
+                return false;
+            }
+            append(RatingsLog.ADD, userID, movieID, rating, timestamp);
+            return true;
+        }
+
+        @Override
+        public synchronized boolean set(int userID, int movieID, float rating, LocalDateTime timestamp) {
+            if (!ratings.set(userID, movieID, rating, timestamp)) {
+                return false;
+            }
+            append(RatingsLog.SET, userID, movieID, rating, timestamp);
+            return true;
+        }
+
+        @Override
+        public synchronized boolean remove(int userID, int movieID) {
+            if (!ratings.remove(userID, movieID)) {
+                return false;
+            }
+            append(RatingsLog.REMOVE, userID, movieID, 0, null);
+            return true;
+        }
+
+        /**
+         * Adds a batch of ratings through the wrapped bulk path, then logs the rows it
+         * added
+         */
+        @Override
+        public synchronized int addAll(int[] userIDs, int[] movieIDs, float[] ratings, long[] timestamps) {
+            int n = userIDs.length;
+            if (movieIDs.length != n || ratings.length != n || timestamps.length != n) {
+                return 0;
+            }
+            boolean[] adds = newRows(userIDs, movieIDs);
+            int added = this.ratings.addAll(userIDs, movieIDs, ratings, timestamps);
+            if (added > 0) {
+                for (int row = 0; row < n; row++) {
+                    if (adds[row]) {
+                        // Rows without a time hold NULL_TIMESTAMP, logged as no time like single adds
+                        append(RatingsLog.ADD, userIDs[row], movieIDs[row], ratings[row], RatingTimeline.toDateTime(timestamps[row]));
+                    }
+                }
+            }
+            return added;
+        }
+    }
+}
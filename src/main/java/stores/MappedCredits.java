@@ -0,0 +1,249 @@
+package stores;
+
+import static stores.MappedLayout.*;
+
+import java.nio.IntBuffer;
+
+import interfaces.ICredits;
+import structures.NewArrayList;
+
+/***
+ * Read-only credits store backed by a mapped store image. Each film's cast (in billing
+ * order) and crew are fixed-width records, and sorted cast and crew member tables hold
+ * each person's details and the films they worked on.
+ */
+public class MappedCredits implements ICredits {
+    MappedStores stores;
+
+    private final IntBuffer filmIds;
+    private final IntBuffer castOffsets, cast;
+    private final IntBuffer crewOffsets, crew;
+    private final IntBuffer castIds, castPeople, castFilmOffsets, castFilms, castByCredits;
+    private final IntBuffer crewIds, crewPeople, crewFilmOffsets, crewFilms;
+
+    MappedCredits(MappedStores stores) {
+        this.stores = stores;
+        this.filmIds = stores.ints(CREDIT_FILM_IDS);
+        this.castOffsets = stores.ints(CAST_OFFSETS);
+        this.cast = stores.ints(CAST);
+        this.crewOffsets = stores.ints(CREW_OFFSETS);
+        this.crew = stores.ints(CREW);
+        this.castIds = stores.ints(CAST_IDS);
+        this.castPeople = stores.ints(CAST_PEOPLE);
+        this.castFilmOffsets = stores.ints(CAST_FILM_OFFSETS);
+        this.castFilms = stores.ints(CAST_FILMS);
+        this.castByCredits = stores.ints(CAST_BY_CREDITS);
+        this.crewIds = stores.ints(CREW_IDS);
+        this.crewPeople = stores.ints(CREW_PEOPLE);
+        this.crewFilmOffsets = stores.ints(CREW_FILM_OFFSETS);
+        this.crewFilms = stores.ints(CREW_FILMS);
+    }
+
+    @Override
+    public boolean add(CastCredit[] cast, CrewCredit[] crew, int filmID) {
+        return false;
+    }
+
+    @Override
+    public int addAll(int[] filmIDs, CastCredit[][] cast, CrewCredit[][] crew) {
+        return 0;
+    }
+
+    @Override
+    public boolean remove(int filmID) {
+        return false;
+    }
+
+    @Override
+    public int[] getFilmIDs() {
+        return MappedStores.copy(filmIds, 0, filmIds.limit());
+    }
+
+    @Override
+    public CastCredit[] getFilmCast(int filmID) {
+        int index = MappedStores.indexOf(filmIds, filmID);
+        if (index < 0) {
+            return new CastCredit[0];
+        }
+        int from = castOffsets.get(index);
+        CastCredit[] result = new CastCredit[castOffsets.get(index + 1) - from];
+        for (int i = 0; i < result.length; i++) {
+            int k = (from + i) * CAST_FIELDS;
+            result[i] = new CastCredit(cast.get(k + CAST_ELEMENT_ID), stores.string(cast.get(k + CAST_CHARACTER)),
+                                       stores.string(cast.get(k + CAST_CREDIT_ID)), cast.get(k + CAST_ID),
+                                       stores.string(cast.get(k + CAST_NAME)), cast.get(k + CAST_ORDER),
+                                       stores.string(cast.get(k + CAST_PROFILE)));
+        }
+        return result;
+    }
+
+    @Override
+    public CrewCredit[] getFilmCrew(int filmID) {
+        int index = MappedStores.indexOf(filmIds, filmID);
+        if (index < 0) {
+            return new CrewCredit[0];
+        }
+        int from = crewOffsets.get(index);
+        CrewCredit[] result = new CrewCredit[crewOffsets.get(index + 1) - from];
+        for (int i = 0; i < result.length; i++) {
+            int k = (from + i) * CREW_FIELDS;
+            result[i] = new CrewCredit(stores.string(crew.get(k + CREW_ELEMENT_ID)), stores.string(crew.get(k + CREW_DEPARTMENT)),
+                                       crew.get(k + CREW_ID), stores.string(crew.get(k + CREW_JOB)),
+                                       stores.string(crew.get(k + CREW_NAME)), stores.string(crew.get(k + CREW_PROFILE)));
+        }
+        return result;
+    }
+
+    @Override
+    public CastCredit[][] getFilmCasts(int[] filmIDs) {
+        CastCredit[][] casts = new CastCredit[filmIDs.length][];
+        for (int i = 0; i < filmIDs.length; i++) {
+            casts[i] = getFilmCast(filmIDs[i]);
+        }
+        return casts;
+    }
+
+    @Override
+    public CrewCredit[][] getFilmCrews(int[] filmIDs) {
+        CrewCredit[][] crews = new CrewCredit[filmIDs.length][];
+        for (int i = 0; i < filmIDs.length; i++) {
+            crews[i] = getFilmCrew(filmIDs[i]);
+        }
+        return crews;
+    }
+
+    private Person person(IntBuffer ids, IntBuffer people, int index) {
+        int k = index * PERSON_FIELDS;
+        return new Person(ids.get(index), stores.string(people.get(k + P_NAME)), stores.string(people.get(k + P_PROFILE)));
+    }
+
+    @Override
+    public Person getCast(int castID) {
+        int index = MappedStores.indexOf(castIds, castID);
+        return index < 0 ? null : person(castIds, castPeople, index);
+    }
+
+    @Override
+    public Person getCrew(int crewID) {
+        int index = MappedStores.indexOf(crewIds, crewID);
+        return index < 0 ? null : person(crewIds, crewPeople, index);
+    }
+
+    @Override
+    public int[] getCastFilms(int castID) {
+        int index = MappedStores.indexOf(castIds, castID);
+        if (index < 0) {
+            return new int[0];
+        }
+        return MappedStores.copy(castFilms, castFilmOffsets.get(index), castFilmOffsets.get(index + 1));
+    }
+
+    @Override
+    public int[] getCrewFilms(int crewID) {
+        int index = MappedStores.indexOf(crewIds, crewID);
+        if (index < 0) {
+            return new int[0];
+        }
+        return MappedStores.copy(crewFilms, crewFilmOffsets.get(index), crewFilmOffsets.get(index + 1));
+    }
+
+    /**
+     * Gets the films where the cast member is in the top 3 billing. Only the films
+     * the cast member appears in are checked.
+     *
+     * @param castID The cast member ID
+     * @return An array of film IDs, or an empty array if there are none
+     */
+    @Override
+    public int[] getCastStarsInFilms(int castID) {
+        int[] films = getCastFilms(castID);
+        NewArrayList<Integer> starFilmsList = new NewArrayList<>();
+        for (int filmID : films) {
+            int index = MappedStores.indexOf(filmIds, filmID);
+            for (int k = castOffsets.get(index); k < castOffsets.get(index + 1); k++) {
+                int record = k * CAST_FIELDS;
+                if (cast.get(record + CAST_ID) == castID && cast.get(record + CAST_ORDER) <= 3) {
+                    starFilmsList.add(filmID);
+                    break;
+                }
+            }
+        }
+        int[] starFilms = new int[starFilmsList.size()];
+        for (int i = 0; i < starFilms.length; i++) {
+            starFilms[i] = starFilmsList.get(i);
+        }
+        return starFilms;
+    }
+
+    @Override
+    public Person[] getMostCastCredits(int numResults) {
+        int count = Math.max(0, Math.min(numResults, castByCredits.limit()));
+        Person[] topCastMembers = new Person[count];
+        for (int i = 0; i < count; i++) {
+            topCastMembers[i] = person(castIds, castPeople, castByCredits.get(i));
+        }
+        return topCastMembers;
+    }
+
+    @Override
+    public int getNumCastCredits(int castID) {
+        int index = MappedStores.indexOf(castIds, castID);
+        return index < 0 ? -1 : castFilmOffsets.get(index + 1) - castFilmOffsets.get(index);
+    }
+
+    @Override
+    public int sizeOfCast(int filmID) {
+        int index = MappedStores.indexOf(filmIds, filmID);
+        return index < 0 ? -1 : castOffsets.get(index + 1) - castOffsets.get(index);
+    }
+
+    @Override
+    public int sizeofCrew(int filmID) {
+        int index = MappedStores.indexOf(filmIds, filmID);
+        return index < 0 ? -1 : crewOffsets.get(index + 1) - crewOffsets.get(index);
+    }
+
+    @Override
+    public Person[] getUniqueCast() {
+        return everyone(castIds, castPeople);
+    }
+
+    @Override
+    public Person[] getUniqueCrew() {
+        return everyone(crewIds, crewPeople);
+    }
+
+    private Person[] everyone(IntBuffer ids, IntBuffer people) {
+        Person[] result = new Person[ids.limit()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = person(ids, people, i);
+        }
+        return result;
+    }
+
+    @Override
+    public Person[] findCast(String searchTerm) {
+        return find(castIds, castPeople, searchTerm);
+    }
+
+    @Override
+    public Person[] findCrew(String searchTerm) {
+        return find(crewIds, crewPeople, searchTerm);
+    }
+
+    private Person[] find(IntBuffer ids, IntBuffer people, String searchTerm) {
+        NewArrayList<Person> matches = new NewArrayList<>();
+        for (int i = 0; i < ids.limit(); i++) {
+            String name = stores.string(people.get(i * PERSON_FIELDS + P_NAME));
+            if (name != null && name.contains(searchTerm)) {
+                matches.add(new Person(ids.get(i), name, stores.string(people.get(i * PERSON_FIELDS + P_PROFILE))));
+            }
+        }
+        return matches.toArray(new Person[matches.size()]);
+    }
+
+    @Override
+    public int size() {
+        return filmIds.limit();
+    }
+}
@@ -0,0 +1,135 @@
+package stores;
+
+import static stores.MappedLayout.*;
+
+import java.nio.IntBuffer;
+
+import interfaces.IKeywords;
+import structures.NewArrayList;
+
+/***
+ * Read-only keywords store backed by a mapped store image. Each film's keywords are
+ * (id, name) pairs, and a sorted table of the unique keywords lists the films that
+ * have each one.
+ */
+public class MappedKeywords implements IKeywords {
+    MappedStores stores;
+
+    private final IntBuffer filmIds, filmKeywordOffsets, filmKeywords;
+    private final IntBuffer keywordIds, keywordNames, keywordFilmOffsets, keywordFilms;
+    private final IntBuffer filmsByNumKeywords;
+
+    MappedKeywords(MappedStores stores) {
+        this.stores = stores;
+        this.filmIds = stores.ints(KEYWORD_FILM_IDS);
+        this.filmKeywordOffsets = stores.ints(FILM_KEYWORD_OFFSETS);
+        this.filmKeywords = stores.ints(FILM_KEYWORDS);
+        this.keywordIds = stores.ints(KEYWORD_IDS);
+        this.keywordNames = stores.ints(KEYWORD_NAMES);
+        this.keywordFilmOffsets = stores.ints(KEYWORD_FILM_OFFSETS);
+        this.keywordFilms = stores.ints(KEYWORD_FILMS);
+        this.filmsByNumKeywords = stores.ints(FILMS_BY_NUM_KEYWORDS);
+    }
+
+    @Override
+    public boolean add(int filmID, Keyword[] keywords) {
+        return false;
+    }
+
+    @Override
+    public boolean add(int filmID, Keyword keyword) {
+        return false;
+    }
+
+    @Override
+    public boolean remove(int filmID) {
+        return false;
+    }
+
+    @Override
+    public boolean removeKeywordFromFilm(int filmID, int keywordID) {
+        return false;
+    }
+
+    @Override
+    public int[] getFilmIDs() {
+        return MappedStores.copy(filmIds, 0, filmIds.limit());
+    }
+
+    @Override
+    public int[] getKeywordIDs() {
+        return MappedStores.copy(keywordIds, 0, keywordIds.limit());
+    }
+
+    @Override
+    public int[] getFilmsWithKeyword(int keywordID) {
+        int index = MappedStores.indexOf(keywordIds, keywordID);
+        if (index < 0) {
+            return new int[0];
+        }
+        return MappedStores.copy(keywordFilms, keywordFilmOffsets.get(index), keywordFilmOffsets.get(index + 1));
+    }
+
+    @Override
+    public Keyword[] getKeywordsForFilm(int filmID) {
+        int index = MappedStores.indexOf(filmIds, filmID);
+        if (index < 0) {
+            return null;
+        }
+        int from = filmKeywordOffsets.get(index);
+        Keyword[] result = new Keyword[filmKeywordOffsets.get(index + 1) - from];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = keyword(from + i);
+        }
+        return result;
+    }
+
+    private Keyword keyword(int entry) {
+        int k = entry * PAIR_FIELDS;
+        return new Keyword(filmKeywords.get(k), stores.string(filmKeywords.get(k + 1)));
+    }
+
+    @Override
+    public Keyword[] getUnique() {
+        Keyword[] result = new Keyword[keywordIds.limit()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new Keyword(keywordIds.get(i), stores.string(keywordNames.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the films with the most keywords
+     *
+     * @param numResults The number of films to return
+     * @return An array of numResults film IDs, most keywords first. If there are fewer
+     *         films than numResults, the remaining entries are 0
+     */
+    @Override
+    public int[] getMostKeywordFilms(int numResults) {
+        int[] results = new int[numResults];
+        int count = Math.min(numResults, filmsByNumKeywords.limit());
+        for (int i = 0; i < count; i++) {
+            results[i] = filmIds.get(filmsByNumKeywords.get(i));
+        }
+        return results;
+    }
+
+    @Override
+    public Keyword[] findKeywords(String searchTerm) {
+        NewArrayList<Keyword> tmpResult = new NewArrayList<>();
+        int entries = filmKeywordOffsets.get(filmIds.limit());
+        for (int i = 0; i < entries; i++) {
+            String name = stores.string(filmKeywords.get(i * PAIR_FIELDS + 1));
+            if (name != null && name.contains(searchTerm)) {
+                tmpResult.add(new Keyword(filmKeywords.get(i * PAIR_FIELDS), name));
+            }
+        }
+        return tmpResult.toArray(new Keyword[tmpResult.size()]);
+    }
+
+    @Override
+    public int size() {
+        return filmIds.limit();
+    }
+}
@@ -0,0 +1,155 @@
+package stores;
+
+/***
+ * Section and field layout of a memory-mapped store image, shared by the writer and the
+ * mapped stores. Every section is a flat little-endian array of ints, longs, floats or
+ * bytes. Records are looked up through sorted ID sections and "offsets" sections, where
+ * the entries of record i live between offsets[i] and offsets[i + 1].
+ * Strings are stored as indexes into the string table (-1 for null).
+ */
+final class MappedLayout {
+
+    static final int MAGIC = 0x57504D4D; // "WPMM"
+    static final int VERSION = 2;
+
+    // Header: magic, version, movie restriction, section count, then (offset, length) per section
+    static final int HEADER_BYTES = 4 * Integer.BYTES;
+    static final int SECTION_ALIGNMENT = 8;
+
+    static final int NULL_DATE = Integer.MIN_VALUE;
+    static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+
+    static final int FLAG_ADULT          = 1;
+    static final int FLAG_VIDEO          = 2;
+    static final int FLAG_NULL_GENRES    = 4;
+    static final int FLAG_NULL_LANGUAGES = 8;
+
+    // Strings
+    static final int STRING_OFFSETS = 0;
+    static final int STRING_BYTES   = 1;
+
+    // Movies, sorted by ID
+    static final int MOVIE_IDS              = 2;
+    static final int MOVIE_INTS             = 3;
+    static final int MOVIE_LONGS            = 4;
+    static final int MOVIE_GENRE_OFFSETS    = 5;
+    static final int MOVIE_GENRES           = 6;
+    static final int MOVIE_LANGUAGE_OFFSETS = 7;
+    static final int MOVIE_LANGUAGES        = 8;
+    static final int MOVIE_COMPANY_OFFSETS  = 9;
+    static final int MOVIE_COMPANIES        = 10;
+    static final int MOVIE_COUNTRY_OFFSETS  = 11;
+    static final int MOVIE_COUNTRIES        = 12;
+    static final int MOVIES_BY_RELEASE      = 13;
+
+    // Collections, sorted by ID
+    static final int COLLECTION_IDS          = 14;
+    static final int COLLECTION_INTS         = 15;
+    static final int COLLECTION_FILM_OFFSETS = 16;
+    static final int COLLECTION_FILMS        = 17;
+
+    // Ratings, grouped by movie (users sorted within each movie), with a per-user index of rows
+    static final int RATED_MOVIE_IDS       = 18;
+    static final int RATED_MOVIE_OFFSETS   = 19;
+    static final int RATED_MOVIE_AVERAGES  = 20;
+    static final int RATING_USERS          = 21;
+    static final int RATING_VALUES         = 22;
+    static final int RATING_TIMESTAMPS     = 23;
+    static final int RATER_IDS             = 24;
+    static final int RATER_OFFSETS         = 25;
+    static final int RATER_ROWS            = 26;
+    static final int MOVIES_BY_NUM_RATINGS = 27;
+    static final int RATERS_BY_NUM_RATINGS = 28;
+    static final int MOVIES_BY_AVERAGE     = 29;
+
+    // Credits, sorted by film ID, plus sorted cast and crew member indexes
+    static final int CREDIT_FILM_IDS   = 30;
+    static final int CAST_OFFSETS      = 31;
+    static final int CAST              = 32;
+    static final int CREW_OFFSETS      = 33;
+    static final int CREW              = 34;
+    static final int CAST_IDS          = 35;
+    static final int CAST_PEOPLE       = 36;
+    static final int CAST_FILM_OFFSETS = 37;
+    static final int CAST_FILMS        = 38;
+    static final int CAST_BY_CREDITS   = 39;
+    static final int CREW_IDS          = 40;
+    static final int CREW_PEOPLE       = 41;
+    static final int CREW_FILM_OFFSETS = 42;
+    static final int CREW_FILMS        = 43;
+
+    // Keywords, sorted by film ID, plus a sorted index of unique keywords
+    static final int KEYWORD_FILM_IDS        = 44;
+    static final int FILM_KEYWORD_OFFSETS    = 45;
+    static final int FILM_KEYWORDS           = 46;
+    static final int KEYWORD_IDS             = 47;
+    static final int KEYWORD_NAMES           = 48;
+    static final int KEYWORD_FILM_OFFSETS    = 49;
+    static final int KEYWORD_FILMS           = 50;
+    static final int FILMS_BY_NUM_KEYWORDS   = 51;
+
+    // Each movie's rating times and values again, sorted by time within the same movie offsets
+    static final int RATING_TIMELINE_TIMES  = 52;
+    static final int RATING_TIMELINE_VALUES = 53;
+
+    static final int SECTION_COUNT = 54;
+
+    // Fields of a MOVIE_INTS record
+    static final int M_TITLE             = 0;
+    static final int M_ORIGINAL_TITLE    = 1;
+    static final int M_OVERVIEW          = 2;
+    static final int M_TAGLINE           = 3;
+    static final int M_STATUS            = 4;
+    static final int M_ORIGINAL_LANGUAGE = 5;
+    static final int M_HOMEPAGE          = 6;
+    static final int M_POSTER            = 7;
+    static final int M_IMDB              = 8;
+    static final int M_RELEASE           = 9;
+    static final int M_VOTE_COUNT        = 10;
+    static final int M_COLLECTION        = 11;
+    static final int M_FLAGS             = 12;
+    static final int MOVIE_INT_FIELDS    = 13;
+
+    // Fields of a MOVIE_LONGS record (doubles are stored as their raw bits)
+    static final int M_BUDGET            = 0;
+    static final int M_REVENUE           = 1;
+    static final int M_RUNTIME           = 2;
+    static final int M_VOTE_AVERAGE      = 3;
+    static final int M_POPULARITY        = 4;
+    static final int MOVIE_LONG_FIELDS   = 5;
+
+    // Genres and companies are (id, name) pairs
+    static final int PAIR_FIELDS = 2;
+
+    // Fields of a COLLECTION_INTS record
+    static final int C_NAME              = 0;
+    static final int C_POSTER            = 1;
+    static final int C_BACKDROP          = 2;
+    static final int COLLECTION_FIELDS   = 3;
+
+    // Fields of a CAST record
+    static final int CAST_ELEMENT_ID     = 0;
+    static final int CAST_CHARACTER      = 1;
+    static final int CAST_CREDIT_ID      = 2;
+    static final int CAST_ID             = 3;
+    static final int CAST_NAME           = 4;
+    static final int CAST_ORDER          = 5;
+    static final int CAST_PROFILE        = 6;
+    static final int CAST_FIELDS         = 7;
+
+    // Fields of a CREW record
+    static final int CREW_ELEMENT_ID     = 0;
+    static final int CREW_DEPARTMENT     = 1;
+    static final int CREW_ID             = 2;
+    static final int CREW_JOB            = 3;
+    static final int CREW_NAME           = 4;
+    static final int CREW_PROFILE        = 5;
+    static final int CREW_FIELDS         = 6;
+
+    // Fields of a CAST_PEOPLE / CREW_PEOPLE record
+    static final int P_NAME              = 0;
+    static final int P_PROFILE           = 1;
+    static final int PERSON_FIELDS       = 2;
+
+    private MappedLayout() { }
+}
@@ -0,0 +1,400 @@
+package stores;
+
+import static stores.MappedLayout.*;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.LocalDate;
+
+import interfaces.IMovies;
+import structures.NewArrayList;
+
+/***
+ * Read-only movies store backed by a mapped store image. Films are found by binary
+ * searching the sorted film IDs, and their fields are read from fixed-width records.
+ */
+public class MappedMovies implements IMovies {
+    MappedStores stores;
+
+    private final IntBuffer ids;
+    private final IntBuffer ints;
+    private final LongBuffer longs;
+    private final IntBuffer genreOffsets, genres;
+    private final IntBuffer languageOffsets, languages;
+    private final IntBuffer companyOffsets, companies;
+    private final IntBuffer countryOffsets, countries;
+    private final IntBuffer byRelease;
+
+    private final IntBuffer collectionIds;
+    private final IntBuffer collectionInts;
+    private final IntBuffer collectionFilmOffsets, collectionFilms;
+
+    MappedMovies(MappedStores stores) {
+        this.stores = stores;
+        this.ids = stores.ints(MOVIE_IDS);
+        this.ints = stores.ints(MOVIE_INTS);
+        this.longs = stores.longs(MOVIE_LONGS);
+        this.genreOffsets = stores.ints(MOVIE_GENRE_OFFSETS);
+        this.genres = stores.ints(MOVIE_GENRES);
+        this.languageOffsets = stores.ints(MOVIE_LANGUAGE_OFFSETS);
+        this.languages = stores.ints(MOVIE_LANGUAGES);
+        this.companyOffsets = stores.ints(MOVIE_COMPANY_OFFSETS);
+        this.companies = stores.ints(MOVIE_COMPANIES);
+        this.countryOffsets = stores.ints(MOVIE_COUNTRY_OFFSETS);
+        this.countries = stores.ints(MOVIE_COUNTRIES);
+        this.byRelease = stores.ints(MOVIES_BY_RELEASE);
+        this.collectionIds = stores.ints(COLLECTION_IDS);
+        this.collectionInts = stores.ints(COLLECTION_INTS);
+        this.collectionFilmOffsets = stores.ints(COLLECTION_FILM_OFFSETS);
+        this.collectionFilms = stores.ints(COLLECTION_FILMS);
+    }
+
+    private int field(int index, int field) {
+        return ints.get(index * MOVIE_INT_FIELDS + field);
+    }
+
+    private long longField(int index, int field) {
+        return longs.get(index * MOVIE_LONG_FIELDS + field);
+    }
+
+    private String stringField(int id, int field) {
+        int index = MappedStores.indexOf(ids, id);
+        return index < 0 ? null : stores.string(field(index, field));
+    }
+
+    @Override
+    public boolean add(int id, String title, String originalTitle, String overview, String tagline, String status, Genre[] genres, LocalDate release, long budget, long revenue, String[] languages, String originalLanguage, double runtime, String homepage, boolean adult, boolean video, String poster) {
+        return false;
+    }
+
+    @Override
+    public int addAll(MovieBatch batch) {
+        return 0;
+    }
+
+    @Override
+    public boolean remove(int id) {
+        return false;
+    }
+
+    /**
+     * Gets all the IDs for all films
+     *
+     * @return An array of all film IDs stored, in ascending order
+     */
+    @Override
+    public int[] getAllIDs() {
+        return MappedStores.copy(ids, 0, ids.limit());
+    }
+
+    /**
+     * Finds the film IDs of all films released within a given range. If a film is
+     * released either on the start or end dates, then that film should not be
+     * included
+     *
+     * @param start The start point of the range of dates
+     * @param end   The end point of the range of dates
+     * @return An array of film IDs that were released between start and end, in
+     *         order of release
+     */
+    @Override
+    public int[] getAllIDsReleasedInRange(LocalDate start, LocalDate end) {
+        long startDay = start.toEpochDay();
+        long endDay = end.toEpochDay();
+        // First film released after the start date
+        int low = 0;
+        int high = byRelease.limit();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (field(byRelease.get(mid), M_RELEASE) <= startDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        NewArrayList<Integer> idsInRange = new NewArrayList<>();
+        for (int i = low; i < byRelease.limit(); i++) {
+            int index = byRelease.get(i);
+            if (field(index, M_RELEASE) >= endDay) {
+                break;
+            }
+            idsInRange.add(ids.get(index));
+        }
+        int[] result = new int[idsInRange.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = idsInRange.get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public String getTitle(int id) {
+        return stringField(id, M_TITLE);
+    }
+
+    @Override
+    public String[] getTitles(int[] ids) {
+        String[] titles = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            titles[i] = stringField(ids[i], M_TITLE);
+        }
+        return titles;
+    }
+
+    @Override
+    public String getOriginalTitle(int id) {
+        return stringField(id, M_ORIGINAL_TITLE);
+    }
+
+    @Override
+    public String getOverview(int id) {
+        return stringField(id, M_OVERVIEW);
+    }
+
+    @Override
+    public String getTagline(int id) {
+        return stringField(id, M_TAGLINE);
+    }
+
+    @Override
+    public String getStatus(int id) {
+        return stringField(id, M_STATUS);
+    }
+
+    @Override
+    public Genre[] getGenres(int id) {
+        int index = MappedStores.indexOf(ids, id);
+        if (index < 0 || (field(index, M_FLAGS) & FLAG_NULL_GENRES) != 0) {
+            return null;
+        }
+        int from = genreOffsets.get(index);
+        Genre[] result = new Genre[genreOffsets.get(index + 1) - from];
+        for (int i = 0; i < result.length; i++) {
+            int k = (from + i) * PAIR_FIELDS;
+            result[i] = new Genre(genres.get(k), stores.string(genres.get(k + 1)));
+        }
+        return result;
+    }
+
+    @Override
+    public LocalDate getRelease(int id) {
+        int index = MappedStores.indexOf(ids, id);
+        if (index < 0 || field(index, M_RELEASE) == NULL_DATE) {
+            return null;
+        }
+        return LocalDate.ofEpochDay(field(index, M_RELEASE));
+    }
+
+    @Override
+    public long getBudget(int id) {
+        int index = MappedStores.indexOf(ids, id);
+        return index < 0 ? -1 : longField(index, M_BUDGET);
+    }
+
+    @Override
+    public long getRevenue(int id) {
+        int index = MappedStores.indexOf(ids, id);
+        return index < 0 ? -1 : longField(index, M_REVENUE);
+    }
+
+    @Override
+    public String[] getLanguages(int id) {
+        int index = MappedStores.indexOf(ids, id);
+        if (index < 0 || (field(index, M_FLAGS) & FLAG_NULL_LANGUAGES) != 0) {
+            return null;
+        }
+        return strings(languageOffsets, languages, index);
+    }
+
+    @Override
+    public String getOriginalLanguage(int id) {
+        return stringField(id, M_ORIGINAL_LANGUAGE);
+    }
+
+    @Override
+    public double getRuntime(int id) {
+        int index = MappedStores.indexOf(ids, id);
+        return index < 0 ? -1 : Double.longBitsToDouble(longField(index, M_RUNTIME));
+    }
+
+    @Override
+    public String getHomepage(int id) {
+        return stringField(id, M_HOMEPAGE);
+    }
+
+    @Override
+    public boolean getAdult(int id) {
+        int index = MappedStores.indexOf(ids, id);
+        return index >= 0 && (field(index, M_FLAGS) & FLAG_ADULT) != 0;
+    }
+
+    @Override
+    public boolean getVideo(int id) {
+        int index = MappedStores.indexOf(ids, id);
+        return index >= 0 && (field(index, M_FLAGS) & FLAG_VIDEO) != 0;
+    }
+
+    @Override
+    public String getPoster(int id) {
+        return stringField(id, M_POSTER);
+    }
+
+    @Override
+    public boolean setVote(int id, double voteAverage, int voteCount) {
+        return false;
+    }
+
+    @Override
+    public double getVoteAverage(int id) {
+        int index = MappedStores.indexOf(ids, id);
+        return index < 0 ? -1 : Double.longBitsToDouble(longField(index, M_VOTE_AVERAGE));
+    }
+
+    @Override
+    public int getVoteCount(int id) {
+        int index = MappedStores.indexOf(ids, id);
+        return index < 0 ? -1 : field(index, M_VOTE_COUNT);
+    }
+
+    @Override
+    public boolean addToCollection(int filmID, int collectionID, String collectionName, String collectionPosterPath, String collectionBackdropPath) {
+        return false;
+    }
+
+    @Override
+    public int[] getFilmsInCollection(int collectionID) {
+        int index = MappedStores.indexOf(collectionIds, collectionID);
+        if (index < 0) {
+            return new int[0];
+        }
+        return MappedStores.copy(collectionFilms, collectionFilmOffsets.get(index), collectionFilmOffsets.get(index + 1));
+    }
+
+    @Override
+    public String getCollectionName(int collectionID) {
+        return collectionField(collectionID, C_NAME);
+    }
+
+    @Override
+    public String getCollectionPoster(int collectionID) {
+        return collectionField(collectionID, C_POSTER);
+    }
+
+    @Override
+    public String getCollectionBackdrop(int collectionID) {
+        return collectionField(collectionID, C_BACKDROP);
+    }
+
+    private String collectionField(int collectionID, int field) {
+        int index = MappedStores.indexOf(collectionIds, collectionID);
+        return index < 0 ? null : stores.string(collectionInts.get(index * COLLECTION_FIELDS + field));
+    }
+
+    @Override
+    public int getCollectionID(int filmID) {
+        int index = MappedStores.indexOf(ids, filmID);
+        return index < 0 ? -1 : field(index, M_COLLECTION);
+    }
+
+    @Override
+    public boolean setIMDB(int filmID, String imdbID) {
+        return false;
+    }
+
+    @Override
+    public String getIMDB(int filmID) {
+        return stringField(filmID, M_IMDB);
+    }
+
+    @Override
+    public boolean setPopularity(int id, double popularity) {
+        return false;
+    }
+
+    @Override
+    public double getPopularity(int id) {
+        int index = MappedStores.indexOf(ids, id);
+        return index < 0 ? -1.0 : Double.longBitsToDouble(longField(index, M_POPULARITY));
+    }
+
+    @Override
+    public boolean addProductionCompany(int movieId, Company company) {
+        return false;
+    }
+
+    @Override
+    public boolean addProductionCountry(int movieId, String country) {
+        return false;
+    }
+
+    @Override
+    public Company[] getProductionCompanies(int movieId) {
+        int index = MappedStores.indexOf(ids, movieId);
+        if (index < 0) {
+            return null;
+        }
+        int from = companyOffsets.get(index);
+        Company[] result = new Company[companyOffsets.get(index + 1) - from];
+        for (int i = 0; i < result.length; i++) {
+            int k = (from + i) * PAIR_FIELDS;
+            result[i] = new Company(companies.get(k), stores.string(companies.get(k + 1)));
+        }
+        return result;
+    }
+
+    @Override
+    public String[] getProductionCountries(int movieId) {
+        int index = MappedStores.indexOf(ids, movieId);
+        return index < 0 ? null : strings(countryOffsets, countries, index);
+    }
+
+    private String[] strings(IntBuffer offsets, IntBuffer refs, int index) {
+        int from = offsets.get(index);
+        String[] result = new String[offsets.get(index + 1) - from];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = stores.string(refs.get(from + i));
+        }
+        return result;
+    }
+
+    /**
+     * Produces a list of movie IDs that have the search term in their title,
+     * original title or their overview. Only the strings of each film are decoded,
+     * one film at a time.
+     *
+     * @param searchTerm The term that needs to be checked
+     * @return An array of movie IDs that have the search term in their title,
+     *         original title or their overview. If no movies have this search term,
+     *         then an empty array should be returned
+     */
+    @Override
+    public int[] findFilms(String searchTerm) {
+        if (searchTerm == null || searchTerm.isEmpty()) {
+            return new int[0];
+        }
+        String lowerCaseSearchTerm = searchTerm.toLowerCase();
+        NewArrayList<Integer> matchingIDs = new NewArrayList<>();
+        for (int i = 0; i < ids.limit(); i++) {
+            if (contains(field(i, M_TITLE), lowerCaseSearchTerm)
+                || contains(field(i, M_ORIGINAL_TITLE), lowerCaseSearchTerm)
+                || contains(field(i, M_OVERVIEW), lowerCaseSearchTerm)) {
+                matchingIDs.add(ids.get(i));
+            }
+        }
+        int[] array = new int[matchingIDs.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = matchingIDs.get(i);
+        }
+        return array;
+    }
+
+    private boolean contains(int ref, String lowerCaseSearchTerm) {
+        String s = stores.string(ref);
+        return s != null && s.toLowerCase().contains(lowerCaseSearchTerm);
+    }
+
+    @Override
+    public int size() {
+        return ids.limit();
+    }
+}
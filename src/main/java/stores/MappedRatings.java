@@ -0,0 +1,364 @@
+package stores;
+
+import static stores.MappedLayout.*;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import interfaces.IRatings;
+
+/***
+ * Read-only ratings store backed by a mapped store image. Ratings are stored grouped by
+ * movie with the users of each movie sorted, so a single rating is two binary searches.
+ * A per-user table of rows into those groups answers the user queries, and the rankings
+ * are precomputed when the image is written. A second copy of each movie's times and
+ * ratings, sorted by time, makes a time window two binary searches.
+ */
+public class MappedRatings implements IRatings {
+    MappedStores stores;
+
+    private final IntBuffer movieIds, movieOffsets;
+    private final FloatBuffer movieAverages;
+    private final IntBuffer users;
+    private final FloatBuffer values;
+    private final LongBuffer timestamps;
+    private final IntBuffer raterIds, raterOffsets, raterRows;
+    private final IntBuffer moviesByNumRatings, ratersByNumRatings, moviesByAverage;
+    private final LongBuffer timelineTimes;
+    private final FloatBuffer timelineValues;
+    // Ranked by weighted rating on the first read, as the image is never changed
+    private volatile WeightedRanking.Ranked weighted;
+    // The histogram of every rating, counted on the first read
+    private volatile int[] histogram;
+
+    MappedRatings(MappedStores stores) {
+        this.stores = stores;
+        this.movieIds = stores.ints(RATED_MOVIE_IDS);
+        this.movieOffsets = stores.ints(RATED_MOVIE_OFFSETS);
+        this.movieAverages = stores.floats(RATED_MOVIE_AVERAGES);
+        this.users = stores.ints(RATING_USERS);
+        this.values = stores.floats(RATING_VALUES);
+        this.timestamps = stores.longs(RATING_TIMESTAMPS);
+        this.raterIds = stores.ints(RATER_IDS);
+        this.raterOffsets = stores.ints(RATER_OFFSETS);
+        this.raterRows = stores.ints(RATER_ROWS);
+        this.moviesByNumRatings = stores.ints(MOVIES_BY_NUM_RATINGS);
+        this.ratersByNumRatings = stores.ints(RATERS_BY_NUM_RATINGS);
+        this.moviesByAverage = stores.ints(MOVIES_BY_AVERAGE);
+        this.timelineTimes = stores.longs(RATING_TIMELINE_TIMES);
+        this.timelineValues = stores.floats(RATING_TIMELINE_VALUES);
+    }
+
+    // Row of a user's rating of a movie, or -1
+    private int row(int userID, int movieID) {
+        int index = MappedStores.indexOf(movieIds, movieID);
+        if (index < 0) {
+            return -1;
+        }
+        return MappedStores.indexOf(users, movieOffsets.get(index), movieOffsets.get(index + 1), userID);
+    }
+
+    @Override
+    public boolean add(int userID, int movieID, float rating, LocalDateTime timestamp) {
+        return false;
+    }
+
+    @Override
+    public int addAll(int[] userIDs, int[] movieIDs, float[] ratings, long[] timestamps) {
+        return 0;
+    }
+
+    @Override
+    public boolean remove(int userID, int movieID) {
+        return false;
+    }
+
+    @Override
+    public boolean set(int userID, int movieID, float rating, LocalDateTime timestamp) {
+        return false;
+    }
+
+    @Override
+    public float[] getMovieRatings(int movieID) {
+        int index = MappedStores.indexOf(movieIds, movieID);
+        if (index < 0) {
+            return new float[0];
+        }
+        int from = movieOffsets.get(index);
+        float[] ratings = new float[movieOffsets.get(index + 1) - from];
+        values.get(from, ratings);
+        return ratings;
+    }
+
+    @Override
+    public float[] getUserRatings(int userID) {
+        int index = MappedStores.indexOf(raterIds, userID);
+        if (index < 0) {
+            return new float[0];
+        }
+        int from = raterOffsets.get(index);
+        float[] ratings = new float[raterOffsets.get(index + 1) - from];
+        for (int i = 0; i < ratings.length; i++) {
+            ratings[i] = values.get(raterRows.get(from + i));
+        }
+        return ratings;
+    }
+
+    @Override
+    public float getMovieAverageRating(int movieID) {
+        int index = MappedStores.indexOf(movieIds, movieID);
+        return index < 0 ? -1.0f : movieAverages.get(index);
+    }
+
+    @Override
+    public float[] getMovieAverageRatings(int[] movieIDs) {
+        float[] averages = new float[movieIDs.length];
+        for (int i = 0; i < movieIDs.length; i++) {
+            averages[i] = getMovieAverageRating(movieIDs[i]);
+        }
+        return averages;
+    }
+
+    @Override
+    public float getUserAverageRating(int userID) {
+        float sum = 0;
+        float[] allratings = getUserRatings(userID);
+        for (int i = 0; i < allratings.length; i++) {
+            sum += allratings[i];
+        }
+        return allratings.length > 0 ? sum / allratings.length : -1.0f;
+    }
+
+    @Override
+    public int[] getMostRatedMovies(int numResults) {
+        int count = Math.max(0, Math.min(numResults, moviesByNumRatings.limit()));
+        return MappedStores.idsOf(movieIds, moviesByNumRatings, count);
+    }
+
+    @Override
+    public int[] getMostRatedUsers(int numResults) {
+        int count = Math.max(0, Math.min(numResults, ratersByNumRatings.limit()));
+        return MappedStores.idsOf(raterIds, ratersByNumRatings, count);
+    }
+
+    @Override
+    public int getNumRatings(int movieID) {
+        int index = MappedStores.indexOf(movieIds, movieID);
+        return index < 0 ? -1 : movieOffsets.get(index + 1) - movieOffsets.get(index);
+    }
+
+    @Override
+    public int[] getRatedMovies() {
+        return MappedStores.copy(movieIds, 0, movieIds.limit());
+    }
+
+    @Override
+    public int[] getMovieRaters(int movieID) {
+        int index = MappedStores.indexOf(movieIds, movieID);
+        if (index < 0) {
+            return new int[0];
+        }
+        return MappedStores.copy(users, movieOffsets.get(index), movieOffsets.get(index + 1));
+    }
+
+    @Override
+    public float getRating(int userID, int movieID) {
+        int row = row(userID, movieID);
+        return row < 0 ? -1.0f : values.get(row);
+    }
+
+    @Override
+    public LocalDateTime getTimestamp(int userID, int movieID) {
+        int row = row(userID, movieID);
+        if (row < 0 || timestamps.get(row) == NULL_TIMESTAMP) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(timestamps.get(row), 0, ZoneOffset.UTC);
+    }
+
+    @Override
+    public int[] getTopAverageRatedMovies(int numResults) {
+        int count = Math.max(0, Math.min(numResults, moviesByAverage.limit()));
+        return MappedStores.idsOf(movieIds, moviesByAverage, count);
+    }
+
+    private WeightedRanking.Ranked weighted() {
+        WeightedRanking.Ranked ranked = weighted;
+        if (ranked == null) {
+            int numMovies = movieIds.limit();
+            int[] ids = new int[numMovies];
+            double[] sums = new double[numMovies];
+            int[] counts = new int[numMovies];
+            for (int i = 0; i < numMovies; i++) {
+                ids[i] = movieIds.get(i);
+                int end = movieOffsets.get(i + 1);
+                for (int row = movieOffsets.get(i); row < end; row++) {
+                    sums[i] += values.get(row);
+                }
+                counts[i] = end - movieOffsets.get(i);
+            }
+            ranked = WeightedRanking.rank(ids, sums, counts, numMovies);
+            weighted = ranked;
+        }
+        return ranked;
+    }
+
+    @Override
+    public int[] getTopWeightedRatedMovies(int numResults) {
+        return weighted().top(numResults);
+    }
+
+    @Override
+    public float getMovieWeightedRating(int movieID) {
+        int index = MappedStores.indexOf(movieIds, movieID);
+        if (index < 0) {
+            return -1.0f;
+        }
+        int from = movieOffsets.get(index), to = movieOffsets.get(index + 1);
+        double sum = 0;
+        for (int row = from; row < to; row++) {
+            sum += values.get(row);
+        }
+        return WeightedRanking.weightedRating(sum, to - from, weighted().mean);
+    }
+
+    // The totals and histogram of a movie's ratings, or null if it has none
+    private RatingSumAndCount distribution(int movieID) {
+        int index = MappedStores.indexOf(movieIds, movieID);
+        if (index < 0) {
+            return null;
+        }
+        RatingSumAndCount result = new RatingSumAndCount();
+        int end = movieOffsets.get(index + 1);
+        for (int row = movieOffsets.get(index); row < end; row++) {
+            result.addRating(values.get(row));
+        }
+        return result;
+    }
+
+    /***
+     * Counted from the movie's ratings, which are stored together, on every call
+     */
+    @Override
+    public int[] getMovieRatingHistogram(int movieID) {
+        RatingSumAndCount distribution = distribution(movieID);
+        return distribution == null ? new int[0] : distribution.histogram;
+    }
+
+    @Override
+    public int[] getUserRatingHistogram(int userID) {
+        int index = MappedStores.indexOf(raterIds, userID);
+        if (index < 0) {
+            return new int[0];
+        }
+        int[] counts = new int[RatingHistogram.NUM_BUCKETS];
+        int end = raterOffsets.get(index + 1);
+        for (int i = raterOffsets.get(index); i < end; i++) {
+            counts[RatingHistogram.bucket(values.get(raterRows.get(i)))]++;
+        }
+        return counts;
+    }
+
+    @Override
+    public int[] getRatingHistogram() {
+        int[] counts = histogram;
+        if (counts == null) {
+            counts = new int[RatingHistogram.NUM_BUCKETS];
+            for (int row = 0; row < values.limit(); row++) {
+                counts[RatingHistogram.bucket(values.get(row))]++;
+            }
+            histogram = counts;
+        }
+        return counts.clone();
+    }
+
+    @Override
+    public float getMedianRating(int movieID) {
+        RatingSumAndCount distribution = distribution(movieID);
+        return distribution == null ? -1.0f : RatingHistogram.median(distribution.histogram);
+    }
+
+    @Override
+    public float getRatingStdDev(int movieID) {
+        RatingSumAndCount distribution = distribution(movieID);
+        if (distribution == null) {
+            return -1.0f;
+        }
+        return RatingHistogram.stdDev(distribution.sumRatings, distribution.sumSquares, distribution.countRatings);
+    }
+
+    @Override
+    public float[] getMovieRatingsBetween(int movieID, LocalDateTime from, LocalDateTime to) {
+        int index = MappedStores.indexOf(movieIds, movieID);
+        long fromSecond = RatingTimeline.fromSecond(from);
+        long toSecond = RatingTimeline.toSecond(to);
+        if (index < 0 || fromSecond >= toSecond) {
+            return new float[0];
+        }
+        int start = MappedStores.lowerBound(timelineTimes, movieOffsets.get(index), movieOffsets.get(index + 1), fromSecond);
+        int end = MappedStores.lowerBound(timelineTimes, start, movieOffsets.get(index + 1), toSecond);
+        float[] ratings = new float[end - start];
+        timelineValues.get(start, ratings);
+        return ratings;
+    }
+
+    @Override
+    public int[] getTrendingMovies(Duration window, int numResults) {
+        long seconds = RatingTimeline.seconds(window);
+        int numMovies = movieIds.limit();
+        long latest = NULL_TIMESTAMP;
+        for (int i = 0; i < numMovies; i++) {
+            // Each movie's latest rating is the last of its time-sorted rows
+            latest = Math.max(latest, timelineTimes.get(movieOffsets.get(i + 1) - 1));
+        }
+        if (seconds < 0 || latest == NULL_TIMESTAMP) {
+            return new int[0];
+        }
+
+        long to = latest + 1;
+        long from = Math.max(NULL_TIMESTAMP + 1, to - seconds);
+        int[] ids = new int[numMovies];
+        float[] counts = new float[numMovies];
+        int count = 0;
+        for (int i = 0; i < numMovies; i++) {
+            int end = movieOffsets.get(i + 1);
+            int inWindow = end - MappedStores.lowerBound(timelineTimes, movieOffsets.get(i), end, from);
+            if (inWindow > 0) {
+                ids[count] = movieIds.get(i);
+                counts[count++] = inWindow;
+            }
+        }
+        return ConcurrentRatings.topByScore(ids, counts, count, numResults);
+    }
+
+    @Override
+    public int[] getMovieRatingsOverTime(int movieID, LocalDateTime from, Duration bucket, int numBuckets) {
+        long seconds = RatingTimeline.seconds(bucket);
+        if (from == null || seconds < 0 || numBuckets <= 0) {
+            return new int[0];
+        }
+        int[] counts = new int[numBuckets];
+        int index = MappedStores.indexOf(movieIds, movieID);
+        if (index < 0) {
+            return counts;
+        }
+        long fromSecond = RatingTimeline.fromSecond(from);
+        int end = movieOffsets.get(index + 1);
+        int start = MappedStores.lowerBound(timelineTimes, movieOffsets.get(index), end, fromSecond);
+        for (int i = 0; i < numBuckets; i++) {
+            int next = MappedStores.lowerBound(timelineTimes, start, end, RatingTimeline.bucketEnd(fromSecond, seconds, i));
+            counts[i] = next - start;
+            start = next;
+        }
+        return counts;
+    }
+
+    @Override
+    public int size() {
+        return users.limit();
+    }
+}
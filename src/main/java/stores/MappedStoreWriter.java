@@ -0,0 +1,625 @@
+package stores;
+
+import static stores.MappedLayout.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import interfaces.*;
+import structures.MyHashMap;
+import structures.NewArrayList;
+
+/***
+ * Builds a store image from populated stores, see {@link MappedLayout}. Every section is
+ * assembled on the heap and then written out in one pass.
+ */
+final class MappedStoreWriter {
+
+    private static final int CHUNK_BYTES = 1 << 16;
+
+    private final Object[] sections = new Object[SECTION_COUNT];
+    private final NewArrayList<String> strings = new NewArrayList<>();
+    private final MyHashMap<String, Integer> stringIndex = new MyHashMap<>();
+
+    private MappedStoreWriter() { }
+
+    static void write(AbstractStores stores, Path path, int numMovies) throws IOException {
+        System.out.println("Writing store image to \"" + path + "\"...");
+        Instant start = Instant.now();
+
+        // The stores may be changed while they are written; a snapshot keeps the image consistent
+        stores = stores.snapshot();
+        MappedStoreWriter writer = new MappedStoreWriter();
+        writer.collectMovies(stores.getMovies());
+        writer.collectRatings(stores.getRatings());
+        writer.collectCredits(stores.getCredits());
+        writer.collectKeywords(stores.getKeywords());
+        writer.collectStrings();
+
+        Path absolute = path.toAbsolutePath();
+        if (absolute.getParent() != null) {
+            Files.createDirectories(absolute.getParent());
+        }
+        Path tmp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            writer.writeTo(channel, numMovies);
+            channel.force(true);
+        }
+        Files.move(tmp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Duration d = Duration.between(start, Instant.now());
+        System.out.println("Store image written (" + Files.size(absolute) + " bytes) in " + d.toMillis() + "ms");
+    }
+
+    private void writeTo(FileChannel channel, int numMovies) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + SECTION_COUNT * 2 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(numMovies).putInt(SECTION_COUNT);
+
+        long offset = align(header.capacity());
+        for (Object section : sections) {
+            long length = byteLength(section);
+            header.putLong(offset).putLong(length);
+            offset = align(offset + length);
+        }
+        header.flip();
+        writeFully(channel, header, 0);
+
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long position = align(header.capacity());
+        for (Object section : sections) {
+            writeSection(channel, chunk, section, position);
+            position = align(position + byteLength(section));
+        }
+        // Empty sections at the end still start at an aligned offset, which must be in the file
+        if (channel.size() < position) {
+            writeFully(channel, ByteBuffer.allocate(1), position - 1);
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + SECTION_ALIGNMENT - 1) / SECTION_ALIGNMENT * SECTION_ALIGNMENT;
+    }
+
+    private static long byteLength(Object section) {
+        if (section instanceof int[])   { return (long) ((int[]) section).length * Integer.BYTES; }
+        if (section instanceof long[])  { return (long) ((long[]) section).length * Long.BYTES; }
+        if (section instanceof float[]) { return (long) ((float[]) section).length * Float.BYTES; }
+        return ((byte[]) section).length;
+    }
+
+    private static void writeSection(FileChannel channel, ByteBuffer chunk, Object section, long position) throws IOException {
+        if (section instanceof byte[]) {
+            writeFully(channel, ByteBuffer.wrap((byte[]) section), position);
+            return;
+        }
+        int length = section instanceof int[] ? ((int[]) section).length
+                   : section instanceof long[] ? ((long[]) section).length
+                   : ((float[]) section).length;
+        int width = section instanceof long[] ? Long.BYTES : Integer.BYTES;
+        int i = 0;
+        while (i < length) {
+            int n = Math.min(length - i, CHUNK_BYTES / width);
+            chunk.clear();
+            if (section instanceof int[]) {
+                chunk.asIntBuffer().put((int[]) section, i, n);
+            } else if (section instanceof long[]) {
+                chunk.asLongBuffer().put((long[]) section, i, n);
+            } else {
+                chunk.asFloatBuffer().put((float[]) section, i, n);
+            }
+            chunk.limit(n * width);
+            position += writeFully(channel, chunk, position);
+            i += n;
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+
+    /****************************************************/
+    /*                                                  */
+    /*                     Sections                     */
+    /*                                                  */
+    /****************************************************/
+
+    private int ref(String s) {
+        if (s == null) {
+            return -1;
+        }
+        Integer ref = stringIndex.get(s);
+        if (ref == null) {
+            ref = strings.size();
+            stringIndex.put(s, ref);
+            strings.add(s);
+        }
+        return ref;
+    }
+
+    private void collectStrings() {
+        byte[][] encoded = new byte[strings.size()][];
+        int[] offsets = new int[encoded.length + 1];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+        byte[] blob = new byte[offsets[encoded.length]];
+        for (int i = 0; i < encoded.length; i++) {
+            System.arraycopy(encoded[i], 0, blob, offsets[i], encoded[i].length);
+        }
+        sections[STRING_OFFSETS] = offsets;
+        sections[STRING_BYTES] = blob;
+    }
+
+    private void collectMovies(IMovies movies) {
+        int[] ids = movies.getAllIDs();
+        Arrays.sort(ids);
+        int n = ids.length;
+
+        int[] ints = new int[n * MOVIE_INT_FIELDS];
+        long[] longs = new long[n * MOVIE_LONG_FIELDS];
+        IntList genreOffsets = new IntList(n + 1), genres = new IntList(n);
+        IntList languageOffsets = new IntList(n + 1), languages = new IntList(n);
+        IntList companyOffsets = new IntList(n + 1), companies = new IntList(n);
+        IntList countryOffsets = new IntList(n + 1), countries = new IntList(n);
+        IntList collectionIds = new IntList(16);
+        long[] releaseKeys = new long[n];
+        int released = 0;
+
+        genreOffsets.add(0);
+        languageOffsets.add(0);
+        companyOffsets.add(0);
+        countryOffsets.add(0);
+        for (int i = 0; i < n; i++) {
+            int id = ids[i];
+            int r = i * MOVIE_INT_FIELDS;
+            ints[r + M_TITLE] = ref(movies.getTitle(id));
+            ints[r + M_ORIGINAL_TITLE] = ref(movies.getOriginalTitle(id));
+            ints[r + M_OVERVIEW] = ref(movies.getOverview(id));
+            ints[r + M_TAGLINE] = ref(movies.getTagline(id));
+            ints[r + M_STATUS] = ref(movies.getStatus(id));
+            ints[r + M_ORIGINAL_LANGUAGE] = ref(movies.getOriginalLanguage(id));
+            ints[r + M_HOMEPAGE] = ref(movies.getHomepage(id));
+            ints[r + M_POSTER] = ref(movies.getPoster(id));
+            ints[r + M_IMDB] = ref(movies.getIMDB(id));
+            ints[r + M_VOTE_COUNT] = movies.getVoteCount(id);
+            ints[r + M_COLLECTION] = movies.getCollectionID(id);
+
+            LocalDate release = movies.getRelease(id);
+            if (release == null) {
+                ints[r + M_RELEASE] = NULL_DATE;
+            } else {
+                ints[r + M_RELEASE] = (int) release.toEpochDay();
+                releaseKeys[released++] = ((long) ints[r + M_RELEASE] << 32) | i;
+            }
+
+            int l = i * MOVIE_LONG_FIELDS;
+            longs[l + M_BUDGET] = movies.getBudget(id);
+            longs[l + M_REVENUE] = movies.getRevenue(id);
+            longs[l + M_RUNTIME] = Double.doubleToRawLongBits(movies.getRuntime(id));
+            longs[l + M_VOTE_AVERAGE] = Double.doubleToRawLongBits(movies.getVoteAverage(id));
+            longs[l + M_POPULARITY] = Double.doubleToRawLongBits(movies.getPopularity(id));
+
+            Genre[] filmGenres = movies.getGenres(id);
+            String[] filmLanguages = movies.getLanguages(id);
+            int flags = 0;
+            if (movies.getAdult(id))   { flags |= FLAG_ADULT; }
+            if (movies.getVideo(id))   { flags |= FLAG_VIDEO; }
+            if (filmGenres == null)    { flags |= FLAG_NULL_GENRES; }
+            if (filmLanguages == null) { flags |= FLAG_NULL_LANGUAGES; }
+            ints[r + M_FLAGS] = flags;
+
+            if (filmGenres != null) {
+                for (Genre g : filmGenres) {
+                    genres.add(g.getID());
+                    genres.add(ref(g.getName()));
+                }
+            }
+            genreOffsets.add(genres.size / PAIR_FIELDS);
+            if (filmLanguages != null) {
+                for (String language : filmLanguages) {
+                    languages.add(ref(language));
+                }
+            }
+            languageOffsets.add(languages.size);
+            for (Company c : movies.getProductionCompanies(id)) {
+                companies.add(c.getID());
+                companies.add(ref(c.getName()));
+            }
+            companyOffsets.add(companies.size / PAIR_FIELDS);
+            for (String country : movies.getProductionCountries(id)) {
+                countries.add(ref(country));
+            }
+            countryOffsets.add(countries.size);
+
+            if (ints[r + M_COLLECTION] != -1) {
+                collectionIds.add(ints[r + M_COLLECTION]);
+            }
+        }
+        // Films without a collection can still have been added to collection -1 explicitly
+        if (movies.getFilmsInCollection(-1).length > 0) {
+            collectionIds.add(-1);
+        }
+
+        // Films with a release date, ordered by it (ties keep film ID order)
+        Arrays.sort(releaseKeys, 0, released);
+        int[] byRelease = new int[released];
+        for (int i = 0; i < released; i++) {
+            byRelease[i] = (int) releaseKeys[i];
+        }
+
+        int[] collections = distinct(collectionIds.toArray());
+        int[] collectionInts = new int[collections.length * COLLECTION_FIELDS];
+        int[] collectionFilmOffsets = new int[collections.length + 1];
+        IntList collectionFilms = new IntList(n);
+        for (int i = 0; i < collections.length; i++) {
+            int c = collections[i];
+            collectionInts[i * COLLECTION_FIELDS + C_NAME] = ref(movies.getCollectionName(c));
+            collectionInts[i * COLLECTION_FIELDS + C_POSTER] = ref(movies.getCollectionPoster(c));
+            collectionInts[i * COLLECTION_FIELDS + C_BACKDROP] = ref(movies.getCollectionBackdrop(c));
+            // Keep the collection's own film order
+            for (int filmID : movies.getFilmsInCollection(c)) {
+                collectionFilms.add(filmID);
+            }
+            collectionFilmOffsets[i + 1] = collectionFilms.size;
+        }
+
+        sections[MOVIE_IDS] = ids;
+        sections[MOVIE_INTS] = ints;
+        sections[MOVIE_LONGS] = longs;
+        sections[MOVIE_GENRE_OFFSETS] = genreOffsets.toArray();
+        sections[MOVIE_GENRES] = genres.toArray();
+        sections[MOVIE_LANGUAGE_OFFSETS] = languageOffsets.toArray();
+        sections[MOVIE_LANGUAGES] = languages.toArray();
+        sections[MOVIE_COMPANY_OFFSETS] = companyOffsets.toArray();
+        sections[MOVIE_COMPANIES] = companies.toArray();
+        sections[MOVIE_COUNTRY_OFFSETS] = countryOffsets.toArray();
+        sections[MOVIE_COUNTRIES] = countries.toArray();
+        sections[MOVIES_BY_RELEASE] = byRelease;
+        sections[COLLECTION_IDS] = collections;
+        sections[COLLECTION_INTS] = collectionInts;
+        sections[COLLECTION_FILM_OFFSETS] = collectionFilmOffsets;
+        sections[COLLECTION_FILMS] = collectionFilms.toArray();
+    }
+
+    private void collectRatings(IRatings ratings) {
+        int[] movies = ratings.getRatedMovies();
+        Arrays.sort(movies);
+        // Sized from the store, and trimmed below should it disagree with the rows found
+        int rows = ratings.size();
+
+        int[] movieOffsets = new int[movies.length + 1];
+        float[] averages = new float[movies.length];
+        int[] users = new int[rows];
+        float[] values = new float[rows];
+        long[] timestamps = new long[rows];
+        int row = 0;
+        for (int i = 0; i < movies.length; i++) {
+            int movieID = movies[i];
+            int[] raters = ratings.getMovieRaters(movieID);
+            Arrays.sort(raters);
+            for (int userID : raters) {
+                users[row] = userID;
+                values[row] = ratings.getRating(userID, movieID);
+                LocalDateTime timestamp = ratings.getTimestamp(userID, movieID);
+                timestamps[row] = timestamp == null ? NULL_TIMESTAMP : timestamp.toEpochSecond(ZoneOffset.UTC);
+                row++;
+            }
+            movieOffsets[i + 1] = row;
+            averages[i] = ratings.getMovieAverageRating(movieID);
+        }
+        if (row != rows) {
+            users = Arrays.copyOf(users, row);
+            values = Arrays.copyOf(values, row);
+            timestamps = Arrays.copyOf(timestamps, row);
+        }
+
+        // Group the rows by user. Rows are already in movie order, so each user's rows stay in movie order
+        Grouping byUser = Grouping.of(users, row);
+
+        long[] movieKeys = new long[movies.length];
+        long[] averageKeys = new long[movies.length];
+        int positive = 0;
+        for (int i = 0; i < movies.length; i++) {
+            movieKeys[i] = descending(movieOffsets[i + 1] - movieOffsets[i], i);
+            // Only movies with a positive average are ranked, as in Ratings
+            if (averages[i] > 0) {
+                averageKeys[positive++] = descending(Float.floatToIntBits(averages[i]), i);
+            }
+        }
+
+        sections[RATED_MOVIE_IDS] = movies;
+        sections[RATED_MOVIE_OFFSETS] = movieOffsets;
+        sections[RATED_MOVIE_AVERAGES] = averages;
+        sections[RATING_USERS] = users;
+        sections[RATING_VALUES] = values;
+        sections[RATING_TIMESTAMPS] = timestamps;
+        sections[RATER_IDS] = byUser.keys;
+        sections[RATER_OFFSETS] = byUser.offsets;
+        sections[RATER_ROWS] = byUser.rows;
+        sections[MOVIES_BY_NUM_RATINGS] = ranking(movieKeys, movies.length);
+        sections[RATERS_BY_NUM_RATINGS] = byUser.bySize();
+        sections[MOVIES_BY_AVERAGE] = ranking(averageKeys, positive);
+
+        // The same rows sorted by time within each movie, for the time range queries
+        long[] timelineTimes = new long[row];
+        float[] timelineValues = new float[row];
+        for (int i = 0; i < movies.length; i++) {
+            int from = movieOffsets[i];
+            int count = movieOffsets[i + 1] - from;
+            RatingTimeline timeline = RatingTimeline.of(Arrays.copyOfRange(users, from, from + count),
+                    Arrays.copyOfRange(values, from, from + count), Arrays.copyOfRange(timestamps, from, from + count));
+            timeline.copyTo(timelineTimes, timelineValues, from);
+        }
+        sections[RATING_TIMELINE_TIMES] = timelineTimes;
+        sections[RATING_TIMELINE_VALUES] = timelineValues;
+    }
+
+    private void collectCredits(ICredits credits) {
+        int[] films = credits.getFilmIDs();
+        Arrays.sort(films);
+
+        int[] castOffsets = new int[films.length + 1];
+        int[] crewOffsets = new int[films.length + 1];
+        IntList cast = new IntList(films.length * CAST_FIELDS);
+        IntList crew = new IntList(films.length * CREW_FIELDS);
+        IntList castMembers = new IntList(films.length), castFilmRows = new IntList(films.length);
+        IntList crewMembers = new IntList(films.length), crewFilmRows = new IntList(films.length);
+        for (int i = 0; i < films.length; i++) {
+            // Cast is stored in billing order, as returned by getFilmCast
+            for (CastCredit c : credits.getFilmCast(films[i])) {
+                cast.add(c.getElementID());
+                cast.add(ref(c.getCharacter()));
+                cast.add(ref(c.getCreditID()));
+                cast.add(c.getID());
+                cast.add(ref(c.getName()));
+                cast.add(c.getOrder());
+                cast.add(ref(c.getProfilePath()));
+                castMembers.add(c.getID());
+                castFilmRows.add(i);
+            }
+            castOffsets[i + 1] = cast.size / CAST_FIELDS;
+            for (CrewCredit c : credits.getFilmCrew(films[i])) {
+                crew.add(ref(c.getElementID()));
+                crew.add(ref(c.getDepartment()));
+                crew.add(c.getID());
+                crew.add(ref(c.getJob()));
+                crew.add(ref(c.getName()));
+                crew.add(ref(c.getProfilePath()));
+                crewMembers.add(c.getID());
+                crewFilmRows.add(i);
+            }
+            crewOffsets[i + 1] = crew.size / CREW_FIELDS;
+        }
+        int[] castRecords = cast.toArray();
+        int[] crewRecords = crew.toArray();
+
+        Grouping castGroups = Grouping.of(castMembers.toArray(), castMembers.size);
+        Grouping crewGroups = Grouping.of(crewMembers.toArray(), crewMembers.size);
+
+        sections[CREDIT_FILM_IDS] = films;
+        sections[CAST_OFFSETS] = castOffsets;
+        sections[CAST] = castRecords;
+        sections[CREW_OFFSETS] = crewOffsets;
+        sections[CREW] = crewRecords;
+        sections[CAST_IDS] = castGroups.keys;
+        sections[CAST_PEOPLE] = people(castGroups, castRecords, CAST_FIELDS, CAST_NAME, CAST_PROFILE);
+        // Credits are counted per credit, but a person's films only once each
+        sections[CAST_BY_CREDITS] = castGroups.bySize();
+        castGroups.distinctValues(films, castFilmRows.toArray());
+        sections[CAST_FILM_OFFSETS] = castGroups.offsets;
+        sections[CAST_FILMS] = castGroups.rows;
+        sections[CREW_IDS] = crewGroups.keys;
+        sections[CREW_PEOPLE] = people(crewGroups, crewRecords, CREW_FIELDS, CREW_NAME, CREW_PROFILE);
+        crewGroups.distinctValues(films, crewFilmRows.toArray());
+        sections[CREW_FILM_OFFSETS] = crewGroups.offsets;
+        sections[CREW_FILMS] = crewGroups.rows;
+    }
+
+    // Name and profile of each person, taken from their first credit
+    private static int[] people(Grouping groups, int[] records, int fields, int nameField, int profileField) {
+        int[] people = new int[groups.keys.length * PERSON_FIELDS];
+        for (int i = 0; i < groups.keys.length; i++) {
+            int record = groups.rows[groups.offsets[i]] * fields;
+            people[i * PERSON_FIELDS + P_NAME] = records[record + nameField];
+            people[i * PERSON_FIELDS + P_PROFILE] = records[record + profileField];
+        }
+        return people;
+    }
+
+    private void collectKeywords(IKeywords keywords) {
+        int[] films = keywords.getFilmIDs();
+        Arrays.sort(films);
+
+        int[] offsets = new int[films.length + 1];
+        IntList filmKeywords = new IntList(films.length * PAIR_FIELDS);
+        IntList keywordRows = new IntList(films.length), keywordFilmRows = new IntList(films.length);
+        long[] countKeys = new long[films.length];
+        for (int i = 0; i < films.length; i++) {
+            Keyword[] forFilm = keywords.getKeywordsForFilm(films[i]);
+            if (forFilm != null) {
+                for (Keyword k : forFilm) {
+                    filmKeywords.add(k.getID());
+                    filmKeywords.add(ref(k.getName()));
+                    keywordRows.add(k.getID());
+                    keywordFilmRows.add(i);
+                }
+            }
+            offsets[i + 1] = filmKeywords.size / PAIR_FIELDS;
+            countKeys[i] = descending(offsets[i + 1] - offsets[i], i);
+        }
+
+        // The unique keywords are whatever the store reports, even if no film has them any more
+        Keyword[] unique = keywords.getUnique();
+        long[] uniqueKeys = new long[unique.length];
+        for (int i = 0; i < unique.length; i++) {
+            uniqueKeys[i] = ((long) unique[i].getID() << 32) | i;
+        }
+        Arrays.sort(uniqueKeys);
+        IntList keywordIds = new IntList(unique.length), keywordNames = new IntList(unique.length);
+        for (long key : uniqueKeys) {
+            int id = (int) (key >> 32);
+            if (keywordIds.size == 0 || keywordIds.data[keywordIds.size - 1] != id) {
+                keywordIds.add(id);
+                keywordNames.add(ref(unique[(int) key].getName()));
+            }
+        }
+
+        Grouping byKeyword = Grouping.of(keywordRows.toArray(), keywordRows.size);
+        byKeyword.distinctValues(films, keywordFilmRows.toArray());
+        int[] ids = keywordIds.toArray();
+        int[] keywordFilmOffsets = new int[ids.length + 1];
+        IntList keywordFilms = new IntList(byKeyword.rows.length);
+        for (int i = 0; i < ids.length; i++) {
+            int group = Arrays.binarySearch(byKeyword.keys, ids[i]);
+            if (group >= 0) {
+                for (int k = byKeyword.offsets[group]; k < byKeyword.offsets[group + 1]; k++) {
+                    keywordFilms.add(byKeyword.rows[k]);
+                }
+            }
+            keywordFilmOffsets[i + 1] = keywordFilms.size;
+        }
+
+        sections[KEYWORD_FILM_IDS] = films;
+        sections[FILM_KEYWORD_OFFSETS] = offsets;
+        sections[FILM_KEYWORDS] = filmKeywords.toArray();
+        sections[KEYWORD_IDS] = ids;
+        sections[KEYWORD_NAMES] = keywordNames.toArray();
+        sections[KEYWORD_FILM_OFFSETS] = keywordFilmOffsets;
+        sections[KEYWORD_FILMS] = keywordFilms.toArray();
+        sections[FILMS_BY_NUM_KEYWORDS] = ranking(countKeys, films.length);
+    }
+
+
+    /****************************************************/
+    /*                                                  */
+    /*                      Helpers                     */
+    /*                                                  */
+    /****************************************************/
+
+    // Sort key that orders by value descending, then by index ascending. Values must not be negative
+    private static long descending(int value, int index) {
+        return ((long) (Integer.MAX_VALUE - value) << 32) | index;
+    }
+
+    // Indexes of the first count keys made by descending(), in ranked order
+    private static int[] ranking(long[] keys, int count) {
+        Arrays.sort(keys, 0, count);
+        int[] ranked = new int[count];
+        for (int i = 0; i < count; i++) {
+            ranked[i] = (int) keys[i];
+        }
+        return ranked;
+    }
+
+    private static int[] distinct(int[] values) {
+        Arrays.sort(values);
+        int n = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (n == 0 || values[n - 1] != values[i]) {
+                values[n++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, n);
+    }
+
+    // Rows of a column grouped by their value: the sorted distinct values, and for each
+    // one the rows holding it, in row order
+    private static class Grouping {
+        int[] keys;
+        int[] offsets;
+        int[] rows;
+
+        static Grouping of(int[] column, int size) {
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = ((long) column[i] << 32) | i;
+            }
+            Arrays.sort(sorted);
+
+            Grouping grouping = new Grouping();
+            IntList keys = new IntList(16), offsets = new IntList(16);
+            grouping.rows = new int[size];
+            for (int i = 0; i < size; i++) {
+                int key = (int) (sorted[i] >> 32);
+                if (keys.size == 0 || keys.data[keys.size - 1] != key) {
+                    keys.add(key);
+                    offsets.add(i);
+                }
+                grouping.rows[i] = (int) sorted[i];
+            }
+            offsets.add(size);
+            grouping.keys = keys.toArray();
+            grouping.offsets = offsets.toArray();
+            return grouping;
+        }
+
+        // Groups ordered by size descending, then by key
+        int[] bySize() {
+            long[] sizeKeys = new long[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                sizeKeys[i] = descending(offsets[i + 1] - offsets[i], i);
+            }
+            return ranking(sizeKeys, keys.length);
+        }
+
+        // Replace each group's rows with the distinct IDs those rows point at. Rows are in
+        // ascending order, so equal values are always next to each other
+        void distinctValues(int[] ids, int[] rowValues) {
+            IntList values = new IntList(rows.length);
+            int[] newOffsets = new int[offsets.length];
+            for (int g = 0; g < keys.length; g++) {
+                int groupStart = values.size;
+                for (int k = offsets[g]; k < offsets[g + 1]; k++) {
+                    int id = ids[rowValues[rows[k]]];
+                    if (values.size == groupStart || values.data[values.size - 1] != id) {
+                        values.add(id);
+                    }
+                }
+                newOffsets[g + 1] = values.size;
+            }
+            offsets = newOffsets;
+            rows = values.toArray();
+        }
+    }
+
+    // Growable int array
+    private static class IntList {
+        int[] data;
+        int size = 0;
+
+        IntList(int capacity) {
+            data = new int[Math.max(capacity, 4)];
+        }
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
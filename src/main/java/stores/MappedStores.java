@@ -0,0 +1,335 @@
+package stores;
+
+import static stores.MappedLayout.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import interfaces.AbstractStores;
+
+/***
+ * Read-only stores that answer every query straight from a memory-mapped store image,
+ * rather than from objects on the heap. Several processes opening the same image share
+ * one copy of it in the OS page cache, and opening it only touches the header.
+ *
+ * Images are written from populated stores with {@link #write(AbstractStores, Path, int)}.
+ * All add/set/remove methods of the mapped stores return FALSE.
+ */
+public class MappedStores extends AbstractStores {
+
+    private final ByteBuffer[] sections = new ByteBuffer[SECTION_COUNT];
+    private final IntBuffer stringOffsets;
+    private final ByteBuffer stringBytes;
+    private final int numMovies;
+
+    /***
+     * Map a store image. The file channel is closed again straight away, the mappings stay
+     * valid until the stores are garbage collected.
+     * @param path The store image
+     * @throws IOException If the file cannot be mapped or is not a valid store image
+     */
+    public MappedStores(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = readFully(channel, 0, HEADER_BYTES + SECTION_COUNT * 2 * Long.BYTES, path);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("\"" + path + "\" is not a store image");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Store image \"" + path + "\" is version " + version + ", expected " + VERSION);
+            }
+            numMovies = header.getInt();
+            if (header.getInt() != SECTION_COUNT) {
+                throw new IOException("Store image \"" + path + "\" has an unexpected number of sections");
+            }
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                long offset = header.getLong();
+                long length = header.getLong();
+                if (offset < 0 || length < 0 || length > Integer.MAX_VALUE || offset + length > fileSize) {
+                    throw new IOException("Store image \"" + path + "\" is truncated or corrupt (section " + i + ")");
+                }
+                sections[i] = length == 0
+                    ? ByteBuffer.allocate(0)
+                    : channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                sections[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        validate(path);
+
+        stringOffsets = ints(STRING_OFFSETS);
+        stringBytes = sections[STRING_BYTES];
+
+        credits  = new MappedCredits(this);
+        keywords = new MappedKeywords(this);
+        movies   = new MappedMovies(this);
+        ratings  = new MappedRatings(this);
+    }
+
+    /***
+     * Write a store image of populated stores. The file is written next to the target and
+     * then moved into place, so processes that already have the old image mapped keep it.
+     * @param stores The stores to write
+     * @param path Where to write the image
+     * @param numMovies The number of movies the stores were restricted to when populated, or -1
+     * @throws IOException If the image cannot be written
+     */
+    public static void write(AbstractStores stores, Path path, int numMovies) throws IOException {
+        MappedStoreWriter.write(stores, path, numMovies);
+    }
+
+    /***
+     * Check whether a store image can be used instead of loading the csv files: it must
+     * exist, be newer than every source file, and have been written with the same movie
+     * restriction.
+     * @param path The store image
+     * @param numMovies The requested restriction on the number of movies, or null for all
+     * @param sourcePaths The csv files the image would replace
+     * @return TRUE if the image is usable, FALSE otherwise
+     */
+    public static boolean isFresh(Path path, Integer numMovies, String... sourcePaths) {
+        File imageFile = path.toFile();
+        if (!imageFile.isFile()) {
+            return false;
+        }
+        for (String sourcePath : sourcePaths) {
+            File source = new File(sourcePath);
+            if (source.isFile() && source.lastModified() >= imageFile.lastModified()) {
+                return false;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, 0, HEADER_BYTES, path);
+            return header.getInt() == MAGIC
+                && header.getInt() == VERSION
+                && header.getInt() == (numMovies == null ? -1 : numMovies);
+        }
+        catch (IOException e) {
+            System.err.println("Ignoring unreadable store image: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /***
+     * @return The number of movies the image was restricted to when written, or -1 for all
+     */
+    public int getNumMovies() {
+        return numMovies;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length, Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Store image \"" + path + "\" is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // Check that the sections agree with each other on their sizes, so that lookups
+    // cannot run off the end of a section later on
+    private void validate(Path path) throws IOException {
+        int strings = count(STRING_OFFSETS, Integer.BYTES, path) - 1;
+        expectBytes(STRING_BYTES, strings < 0 ? 0 : ints(STRING_OFFSETS).get(strings), path);
+
+        int films = count(MOVIE_IDS, Integer.BYTES, path);
+        expect(MOVIE_INTS, films * MOVIE_INT_FIELDS, Integer.BYTES, path);
+        expect(MOVIE_LONGS, films * MOVIE_LONG_FIELDS, Long.BYTES, path);
+        expectList(MOVIE_GENRE_OFFSETS, films, MOVIE_GENRES, PAIR_FIELDS, path);
+        expectList(MOVIE_LANGUAGE_OFFSETS, films, MOVIE_LANGUAGES, 1, path);
+        expectList(MOVIE_COMPANY_OFFSETS, films, MOVIE_COMPANIES, PAIR_FIELDS, path);
+        expectList(MOVIE_COUNTRY_OFFSETS, films, MOVIE_COUNTRIES, 1, path);
+        count(MOVIES_BY_RELEASE, Integer.BYTES, path);
+
+        int collections = count(COLLECTION_IDS, Integer.BYTES, path);
+        expect(COLLECTION_INTS, collections * COLLECTION_FIELDS, Integer.BYTES, path);
+        expectList(COLLECTION_FILM_OFFSETS, collections, COLLECTION_FILMS, 1, path);
+
+        int ratedMovies = count(RATED_MOVIE_IDS, Integer.BYTES, path);
+        int rows = expectList(RATED_MOVIE_OFFSETS, ratedMovies, RATING_USERS, 1, path);
+        expect(RATED_MOVIE_AVERAGES, ratedMovies, Float.BYTES, path);
+        expect(RATING_VALUES, rows, Float.BYTES, path);
+        expect(RATING_TIMESTAMPS, rows, Long.BYTES, path);
+        expect(RATING_TIMELINE_TIMES, rows, Long.BYTES, path);
+        expect(RATING_TIMELINE_VALUES, rows, Float.BYTES, path);
+        int raters = count(RATER_IDS, Integer.BYTES, path);
+        expectList(RATER_OFFSETS, raters, RATER_ROWS, 1, path);
+        expect(MOVIES_BY_NUM_RATINGS, ratedMovies, Integer.BYTES, path);
+        expect(RATERS_BY_NUM_RATINGS, raters, Integer.BYTES, path);
+        count(MOVIES_BY_AVERAGE, Integer.BYTES, path);
+
+        int creditFilms = count(CREDIT_FILM_IDS, Integer.BYTES, path);
+        expectList(CAST_OFFSETS, creditFilms, CAST, CAST_FIELDS, path);
+        expectList(CREW_OFFSETS, creditFilms, CREW, CREW_FIELDS, path);
+        int cast = count(CAST_IDS, Integer.BYTES, path);
+        expect(CAST_PEOPLE, cast * PERSON_FIELDS, Integer.BYTES, path);
+        expectList(CAST_FILM_OFFSETS, cast, CAST_FILMS, 1, path);
+        expect(CAST_BY_CREDITS, cast, Integer.BYTES, path);
+        int crew = count(CREW_IDS, Integer.BYTES, path);
+        expect(CREW_PEOPLE, crew * PERSON_FIELDS, Integer.BYTES, path);
+        expectList(CREW_FILM_OFFSETS, crew, CREW_FILMS, 1, path);
+
+        int keywordFilms = count(KEYWORD_FILM_IDS, Integer.BYTES, path);
+        expectList(FILM_KEYWORD_OFFSETS, keywordFilms, FILM_KEYWORDS, PAIR_FIELDS, path);
+        int keywords = count(KEYWORD_IDS, Integer.BYTES, path);
+        expect(KEYWORD_NAMES, keywords, Integer.BYTES, path);
+        expectList(KEYWORD_FILM_OFFSETS, keywords, KEYWORD_FILMS, 1, path);
+        expect(FILMS_BY_NUM_KEYWORDS, keywordFilms, Integer.BYTES, path);
+    }
+
+    private int count(int section, int width, Path path) throws IOException {
+        int bytes = sections[section].capacity();
+        if (bytes % width != 0) {
+            throw new IOException("Store image \"" + path + "\" is corrupt (section " + section + ")");
+        }
+        return bytes / width;
+    }
+
+    private void expect(int section, int count, int width, Path path) throws IOException {
+        expectBytes(section, (long) count * width, path);
+    }
+
+    private void expectBytes(int section, long bytes, Path path) throws IOException {
+        if (sections[section].capacity() != bytes) {
+            throw new IOException("Store image \"" + path + "\" is corrupt (section " + section + ")");
+        }
+    }
+
+    // Checks an offsets section for the given number of records against its values section,
+    // and returns the number of entries in the values section
+    private int expectList(int offsetsSection, int records, int valuesSection, int fields, Path path) throws IOException {
+        expect(offsetsSection, records + 1, Integer.BYTES, path);
+        int entries = ints(offsetsSection).get(records);
+        expect(valuesSection, entries * fields, Integer.BYTES, path);
+        return entries;
+    }
+
+
+    /****************************************************/
+    /*                                                  */
+    /*            Access for the mapped stores          */
+    /*                                                  */
+    /****************************************************/
+
+    IntBuffer ints(int section) {
+        return sections[section].asIntBuffer();
+    }
+
+    LongBuffer longs(int section) {
+        return sections[section].asLongBuffer();
+    }
+
+    FloatBuffer floats(int section) {
+        return sections[section].asFloatBuffer();
+    }
+
+    /***
+     * Decode a string from the string table
+     * @param ref The string's index, or -1
+     * @return The string, or null if ref is -1
+     */
+    String string(int ref) {
+        if (ref < 0) {
+            return null;
+        }
+        int start = stringOffsets.get(ref);
+        byte[] bytes = new byte[stringOffsets.get(ref + 1) - start];
+        stringBytes.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /***
+     * Binary search a sorted ID section
+     * @param ids The sorted IDs
+     * @param id The ID to find
+     * @return The index of the ID, or -1 if it is not present
+     */
+    static int indexOf(IntBuffer ids, int id) {
+        int low = 0;
+        int high = ids.limit() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = ids.get(mid);
+            if (value < id) {
+                low = mid + 1;
+            } else if (value > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /***
+     * Binary search part of a sorted section
+     * @return The index of the value within [from, to), or -1 if it is not present
+     */
+    static int indexOf(IntBuffer values, int from, int to, int value) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int current = values.get(mid);
+            if (current < value) {
+                low = mid + 1;
+            } else if (current > value) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /***
+     * Binary search part of a sorted section of longs
+     * @return The index of the first value within [from, to) that is at least value,
+     *         or to if there is none
+     */
+    static int lowerBound(LongBuffer values, int from, int to, long value) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values.get(mid) < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /***
+     * Copy part of a section out of the mapping
+     * @return The values in [from, to)
+     */
+    static int[] copy(IntBuffer values, int from, int to) {
+        int[] result = new int[to - from];
+        values.get(from, result);
+        return result;
+    }
+
+    /***
+     * Map a list of record indexes to the IDs of those records
+     */
+    static int[] idsOf(IntBuffer ids, IntBuffer indexes, int count) {
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = ids.get(indexes.get(i));
+        }
+        return result;
+    }
+}
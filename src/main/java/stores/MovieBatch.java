@@ -0,0 +1,116 @@
+package stores;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/***
+ * A batch of films for IMovies.addAll. Each row is a film built up in full (details,
+ * votes, IMDb ID, popularity, collection and production companies/countries) before
+ * it reaches the store, so the store can insert it with a single put instead of one
+ * lookup per setter call.
+ */
+public class MovieBatch {
+    private movieStructure[] films;
+    private int[] collectionIDs;
+    private String[] collectionNames;
+    private String[] collectionPosters;
+    private String[] collectionBackdrops;
+    private boolean[] inCollection;
+    private int size = 0;
+
+    public MovieBatch() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize The number of films the batch is expected to hold
+     */
+    public MovieBatch(int expectedSize) {
+        int capacity = Math.max(1, expectedSize);
+        this.films = new movieStructure[capacity];
+        this.collectionIDs = new int[capacity];
+        this.collectionNames = new String[capacity];
+        this.collectionPosters = new String[capacity];
+        this.collectionBackdrops = new String[capacity];
+        this.inCollection = new boolean[capacity];
+    }
+
+    /**
+     * Adds a film to the batch. The arguments are the same as IMovies.add
+     *
+     * @return The row of the film in this batch, for use with the setters
+     */
+    public int add(int id, String title, String originalTitle, String overview, String tagline, String status, Genre[] genres, LocalDate release, long budget, long revenue, String[] languages, String originalLanguage, double runtime, String homepage, boolean adult, boolean video, String poster) {
+        if (size == films.length) {
+            grow();
+        }
+        films[size] = new movieStructure(id, title, originalTitle, overview, tagline, status, genres, release, budget, revenue, languages, originalLanguage, runtime, homepage, adult, video, poster);
+        return size++;
+    }
+
+    private void grow() {
+        int capacity = films.length * 2;
+        films = Arrays.copyOf(films, capacity);
+        collectionIDs = Arrays.copyOf(collectionIDs, capacity);
+        collectionNames = Arrays.copyOf(collectionNames, capacity);
+        collectionPosters = Arrays.copyOf(collectionPosters, capacity);
+        collectionBackdrops = Arrays.copyOf(collectionBackdrops, capacity);
+        inCollection = Arrays.copyOf(inCollection, capacity);
+    }
+
+    public void setVote(int row, double voteAverage, int voteCount) {
+        films[row].setVoteAverage(voteAverage);
+        films[row].setVoteCount(voteCount);
+    }
+
+    public void setIMDB(int row, String imdbID) {
+        films[row].setImdbID(imdbID);
+    }
+
+    public void setPopularity(int row, double popularity) {
+        films[row].setPopularity(popularity);
+    }
+
+    public void setCollection(int row, int collectionID, String collectionName, String collectionPosterPath, String collectionBackdropPath) {
+        collectionIDs[row] = collectionID;
+        collectionNames[row] = collectionName;
+        collectionPosters[row] = collectionPosterPath;
+        collectionBackdrops[row] = collectionBackdropPath;
+        inCollection[row] = true;
+    }
+
+    public void addProductionCompany(int row, Company company) {
+        films[row].addProductionCompany(company);
+    }
+
+    public void addProductionCountry(int row, String country) {
+        films[row].addProductionCountry(country);
+    }
+
+    /**
+     * @return The number of films in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties the batch so it can be filled again. The films already handed to a store
+     * are not affected.
+     */
+    public void clear() {
+        Arrays.fill(films, 0, size, null);
+        Arrays.fill(collectionNames, 0, size, null);
+        Arrays.fill(collectionPosters, 0, size, null);
+        Arrays.fill(collectionBackdrops, 0, size, null);
+        Arrays.fill(inCollection, 0, size, false);
+        size = 0;
+    }
+
+    movieStructure film(int row) { return films[row]; }
+    boolean inCollection(int row) { return inCollection[row]; }
+    int collectionID(int row) { return collectionIDs[row]; }
+    String collectionName(int row) { return collectionNames[row]; }
+    String collectionPoster(int row) { return collectionPosters[row]; }
+    String collectionBackdrop(int row) { return collectionBackdrops[row]; }
+}
@@ -11,6 +11,12 @@ public class MovieCredits {
         this.crew = new MyHashSet<>();
     }
 
+    // Sized up front for when the whole cast and crew are known, as in a bulk load
+    public MovieCredits(int castSize, int crewSize) {
+        this.cast = new MyHashSet<>(castSize);
+        this.crew = new MyHashSet<>(crewSize);
+    }
+
     public void addCastMember(CastCredit castCredit) {
         cast.add(castCredit);
     }
@@ -61,7 +61,42 @@ public class Movies implements IMovies{
         } 
         return false;
     }
-    
+
+    /**
+     * Adds a batch of films to the data structure. The table is grown once for the
+     * whole batch, and each film goes in with a single put, already holding its votes,
+     * IMDb ID, popularity and production details. Films whose ID is already stored
+     * (or appears earlier in the batch) are skipped, as with add
+     *
+     * @param batch The films to add
+     * @return The number of films that were added
+     */
+    @Override
+    public int addAll(MovieBatch batch) {
+        movies.ensureCapacity(movies.size() + batch.size());
+        int added = 0;
+        for (int row = 0; row < batch.size(); row++) {
+            movieStructure movie = batch.film(row);
+            if (movies.containsKey(movie.getId())) {
+                continue;
+            }
+            if (batch.inCollection(row)) {
+                int collectionID = batch.collectionID(row);
+                movieCollection collection = collections.get(collectionID);
+                if (collection == null) {
+                    collection = new movieCollection(collectionID, batch.collectionName(row), batch.collectionPoster(row), batch.collectionBackdrop(row));
+                    collections.put(collectionID, collection);
+                }
+                // The film is new to the store, so it cannot be in the collection yet
+                collection.films.add(movie.getId());
+                movie.setCollectionID(collectionID);
+            }
+            movies.put(movie.getId(), movie);
+            added++;
+        }
+        return added;
+    }
+
 
     /**
      * Removes a film from the data structure, and any data
@@ -141,6 +176,25 @@ public class Movies implements IMovies{
         }
         return null;
     }
+
+    /**
+     * Gets the titles of many films at once, given their ID numbers
+     *
+     * @param ids The movie IDs
+     * @return The title of each film, in the same order as the IDs. The title of
+     *         a film that cannot be found is null
+     */
+    @Override
+    public String[] getTitles(int[] ids) {
+        String[] titles = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            movieStructure movie = movies.get(ids[i]);
+            if (movie != null) {
+                titles[i] = movie.getTitle();
+            }
+        }
+        return titles;
+    }
     
 
     /**
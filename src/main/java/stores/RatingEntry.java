@@ -1,16 +1,16 @@
 package stores;
-import java.time.LocalDateTime;
-import java.util.Objects;
 
 class RatingEntry {
     private final float rating;
-    private final LocalDateTime timestamp;
+    // Seconds since the epoch (UTC), or RatingTimeline.NULL_TIMESTAMP
+    private final long timestamp;
 
-    public RatingEntry( float rating, LocalDateTime timestamp) {
+    public RatingEntry( float rating, long timestamp) {
         this.rating = rating;
         this.timestamp = timestamp;
     }
 
     // Getters  
     public float getRating() { return rating; }
-}   
\ No newline at end of file
+    public long getTimestamp() { return timestamp; }
+}
@@ -0,0 +1,64 @@
+package stores;
+
+/***
+ * Counts of ratings by value. Ratings are given in half stars, so there are ten buckets,
+ * for 0.5 up to 5.0; a rating between steps is counted in the nearest one, and a rating
+ * of 0 in the first.
+ *
+ * A median read off the counts is exact for half-star ratings, so it needs no sort of
+ * the ratings themselves.
+ */
+final class RatingHistogram {
+    static final int NUM_BUCKETS = 10;
+    static final float STEP = 0.5f;
+
+    private RatingHistogram() {
+    }
+
+    static int bucket(float rating) {
+        return Math.max(0, Math.min(NUM_BUCKETS - 1, Math.round(rating / STEP) - 1));
+    }
+
+    // The rating a bucket counts
+    static float value(int bucket) {
+        return (bucket + 1) * STEP;
+    }
+
+    /**
+     * @return The median of the counted ratings: the middle one, or the mean of the two
+     *         middle ones. -1 if there are none
+     */
+    static float median(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return -1.0f;
+        }
+        return (valueAt(counts, (total - 1) / 2) + valueAt(counts, total / 2)) / 2;
+    }
+
+    // The rating at the given rank, counting from the lowest rating at 0
+    private static float valueAt(int[] counts, int rank) {
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            rank -= counts[bucket];
+            if (rank < 0) {
+                return value(bucket);
+            }
+        }
+        return value(counts.length - 1);
+    }
+
+    /**
+     * @return The population standard deviation of count ratings with the given sum and
+     *         sum of squares, or -1 if there are none
+     */
+    static float stdDev(double sum, double sumSquares, int count) {
+        if (count <= 0) {
+            return -1.0f;
+        }
+        double mean = sum / count;
+        return (float) Math.sqrt(Math.max(0, sumSquares / count - mean * mean));
+    }
+}
@@ -0,0 +1,28 @@
+package stores;
+
+//FOR CALCULATING MOVIE AVERAGE RATING EFFICIENTLY
+//Also keeps the spread of the ratings, for the histogram, median and standard deviation
+class RatingSumAndCount {
+    float sumRatings = 0;
+    int countRatings = 0;
+    double sumSquares = 0;
+    final int[] histogram = new int[RatingHistogram.NUM_BUCKETS];
+
+    void addRating(float rating) {
+        this.sumRatings += rating;
+        this.countRatings++;
+        this.sumSquares += (double) rating * rating;
+        this.histogram[RatingHistogram.bucket(rating)]++;
+    }
+
+    void removeRating(float rating) {
+        this.sumRatings -= rating;
+        this.countRatings--;
+        this.sumSquares -= (double) rating * rating;
+        this.histogram[RatingHistogram.bucket(rating)]--;
+    }
+
+    float getAverageRating() {
+        return countRatings > 0 ? sumRatings / countRatings : 0;
+    }
+}
@@ -0,0 +1,259 @@
+package stores;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/***
+ * The ratings of one movie in time order, as parallel primitive arrays of epoch seconds,
+ * ratings and user IDs, so that a time window is two binary searches.
+ *
+ * Ratings without a time are kept as NULL_TIMESTAMP, which sorts before every real time
+ * and is never inside a window. Ratings added one at a time are inserted in place; a bulk
+ * append only marks the timeline unsorted, and it is sorted again on the next query.
+ *
+ * As queries may sort the timeline, the sort is done under a lock, into new arrays that
+ * are only published, by the volatile write marking the timeline sorted, once complete.
+ * Queries may then run from many threads at once, though not alongside a change.
+ */
+final class RatingTimeline {
+
+    // Timestamp value for a rating made without a time
+    static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+
+    private long[] times;
+    private float[] ratings;
+    private int[] users;
+    private int size;
+    private volatile boolean sorted = true;
+
+    RatingTimeline() {
+        this(4);
+    }
+
+    RatingTimeline(int capacity) {
+        this.times = new long[Math.max(1, capacity)];
+        this.ratings = new float[times.length];
+        this.users = new int[times.length];
+    }
+
+    /**
+     * A timeline of the given ratings, which are not changed
+     */
+    static RatingTimeline of(int[] users, float[] ratings, long[] times) {
+        RatingTimeline timeline = new RatingTimeline(users.length);
+        for (int i = 0; i < users.length; i++) {
+            timeline.append(users[i], ratings[i], times[i]);
+        }
+        timeline.sort();
+        return timeline;
+    }
+
+    static long toEpochSecond(LocalDateTime timestamp) {
+        return timestamp == null ? NULL_TIMESTAMP : timestamp.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static LocalDateTime toDateTime(long epochSecond) {
+        return epochSecond == NULL_TIMESTAMP ? null : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    // Inclusive lower bound of a window; null means from the earliest rating with a time
+    static long fromSecond(LocalDateTime from) {
+        return from == null ? NULL_TIMESTAMP + 1 : Math.max(NULL_TIMESTAMP + 1, toEpochSecond(from));
+    }
+
+    // Exclusive upper bound of a window; null means up to the latest rating
+    static long toSecond(LocalDateTime to) {
+        return to == null ? Long.MAX_VALUE : toEpochSecond(to);
+    }
+
+    /**
+     * Index of the first of the first n times that is at least time
+     */
+    static int lowerBound(long[] times, int n, long time) {
+        int low = 0, high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void grow(int needed) {
+        if (needed > times.length) {
+            int capacity = Math.max(needed, times.length * 2);
+            times = Arrays.copyOf(times, capacity);
+            ratings = Arrays.copyOf(ratings, capacity);
+            users = Arrays.copyOf(users, capacity);
+        }
+    }
+
+    /**
+     * Adds a rating at the end, leaving the timeline to be sorted on the next query if
+     * it is out of order. Used by bulk loads
+     */
+    void append(int userID, float rating, long time) {
+        grow(size + 1);
+        if (size > 0 && time < times[size - 1]) {
+            sorted = false;
+        }
+        times[size] = time;
+        ratings[size] = rating;
+        users[size] = userID;
+        size++;
+    }
+
+    /**
+     * Adds a rating in time order, after any made at the same time
+     */
+    void add(int userID, float rating, long time) {
+        if (!sorted || size == 0 || time >= times[size - 1]) {
+            append(userID, rating, time);
+            return;
+        }
+        grow(size + 1);
+        int at = lowerBound(times, size, time + 1);
+        System.arraycopy(times, at, times, at + 1, size - at);
+        System.arraycopy(ratings, at, ratings, at + 1, size - at);
+        System.arraycopy(users, at, users, at + 1, size - at);
+        times[at] = time;
+        ratings[at] = rating;
+        users[at] = userID;
+        size++;
+    }
+
+    /**
+     * Removes a user's rating made at the given time
+     *
+     * @return TRUE if the rating was found and removed, FALSE otherwise
+     */
+    boolean remove(int userID, long time) {
+        int at = sorted ? lowerBound(times, size, time) : 0;
+        for (; at < size && (!sorted || times[at] == time); at++) {
+            if (users[at] == userID && times[at] == time) {
+                System.arraycopy(times, at + 1, times, at, size - at - 1);
+                System.arraycopy(ratings, at + 1, ratings, at, size - at - 1);
+                System.arraycopy(users, at + 1, users, at, size - at - 1);
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sort() {
+        if (!sorted) {
+            synchronized (this) {
+                if (!sorted) {
+                    sortNow();
+                }
+            }
+        }
+    }
+
+    private void sortNow() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        // Stable, so ratings made at the same time stay in the order they were added
+        Arrays.sort(order, (a, b) -> Long.compare(times[a], times[b]));
+        long[] newTimes = new long[times.length];
+        float[] newRatings = new float[times.length];
+        int[] newUsers = new int[times.length];
+        for (int i = 0; i < size; i++) {
+            newTimes[i] = times[order[i]];
+            newRatings[i] = ratings[order[i]];
+            newUsers[i] = users[order[i]];
+        }
+        times = newTimes;
+        ratings = newRatings;
+        users = newUsers;
+        // Publishes the arrays above to readers that find the timeline sorted
+        sorted = true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copies the times and ratings, in time order, into the given arrays from offset
+     */
+    void copyTo(long[] times, float[] ratings, int offset) {
+        sort();
+        System.arraycopy(this.times, 0, times, offset, size);
+        System.arraycopy(this.ratings, 0, ratings, offset, size);
+    }
+
+    /**
+     * @return The time of the latest rating, or NULL_TIMESTAMP if none has a time
+     */
+    long latest() {
+        sort();
+        return size == 0 ? NULL_TIMESTAMP : times[size - 1];
+    }
+
+    /**
+     * @return The number of ratings made in [from, to)
+     */
+    int count(long from, long to) {
+        sort();
+        if (from >= to) {
+            return 0;
+        }
+        return lowerBound(times, size, to) - lowerBound(times, size, from);
+    }
+
+    /**
+     * @return The ratings made in [from, to), in time order
+     */
+    float[] between(long from, long to) {
+        sort();
+        if (from >= to) {
+            return new float[0];
+        }
+        int start = lowerBound(times, size, from);
+        return Arrays.copyOfRange(ratings, start, Math.max(start, lowerBound(times, size, to)));
+    }
+
+    /**
+     * @return The number of ratings in each of numBuckets consecutive buckets of the
+     *         given length, the first starting at from
+     */
+    int[] histogram(long from, long bucket, int numBuckets) {
+        sort();
+        int[] counts = new int[numBuckets];
+        int start = lowerBound(times, size, from);
+        for (int i = 0; i < numBuckets; i++) {
+            long end = bucketEnd(from, bucket, i);
+            int next = lowerBound(times, size, end);
+            counts[i] = next - start;
+            start = next;
+        }
+        return counts;
+    }
+
+    // Exclusive end of bucket i, saturating rather than overflowing
+    static long bucketEnd(long from, long bucket, int i) {
+        try {
+            return Math.addExact(from, Math.multiplyExact(bucket, i + 1L));
+        }
+        catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return The length in seconds of a window or bucket, or -1 if it is null or not
+     *         positive
+     */
+    static long seconds(Duration duration) {
+        return duration == null || duration.isNegative() || duration.isZero() ? -1 : Math.max(1, duration.getSeconds());
+    }
+}
@@ -1,6 +1,8 @@
 package stores;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 
 import interfaces.IRatings;
 import structures.*;
@@ -17,6 +19,14 @@ public class Ratings implements IRatings {
     private MyHashMap<Integer, MyHashSet<Integer>> usersWhoRatedMovie;
     // Map for rating average for quick access
     private MyHashMap<Integer, RatingSumAndCount> ratingsAverage;
+    // Maps a movie ID to its ratings in time order, for the time range queries
+    private MyHashMap<Integer, RatingTimeline> ratingTimes;
+    // Movies ranked by weighted rating, kept in order as the averages change
+    private WeightedRanking weightedRanking;
+    // Maps a user ID to the totals and histogram of their ratings
+    private MyHashMap<Integer, RatingSumAndCount> userDistributions;
+    // The totals and histogram of every rating
+    private RatingSumAndCount allRatings;
 
 
     
@@ -32,6 +42,10 @@ public class Ratings implements IRatings {
         this.moviesRatedByUser = new MyHashMap<>(); // Initialize mapping of users to the movies they've rated
         this.usersWhoRatedMovie = new MyHashMap<>(); // Initialize mapping of movies to the users who have rated them
         this.ratingsAverage = new MyHashMap<>(); // FOR KEEPING TRACK OF MOVIE RATING AVERAGES
+        this.ratingTimes = new MyHashMap<>(); // Per-movie ratings sorted by time
+        this.weightedRanking = new WeightedRanking(); // Ranked by weighted rating
+        this.userDistributions = new MyHashMap<>(); // Per-user rating histograms
+        this.allRatings = new RatingSumAndCount(); // Dataset-wide rating histogram
     }
 
 
@@ -52,16 +66,107 @@ public class Ratings implements IRatings {
         UserMovieKey key = new UserMovieKey(userID, movieID);
         if (directRatings.containsKey(key)) return false;
         
-        directRatings.put(key, new RatingEntry(rating, timestamp));
+        long epochSecond = RatingTimeline.toEpochSecond(timestamp);
+        directRatings.put(key, new RatingEntry(rating, epochSecond));
         moviesRatedByUser.computeIfAbsent(userID, k -> new MyHashSet<>()).add(movieID);
         usersWhoRatedMovie.computeIfAbsent(movieID, k -> new MyHashSet<>()).add(userID);
 
         // Update the ratingsAverage map
-        ratingsAverage.computeIfAbsent(movieID, k -> new RatingSumAndCount()).addRating(rating);
+        RatingSumAndCount sumAndCount = ratingsAverage.computeIfAbsent(movieID, k -> new RatingSumAndCount());
+        sumAndCount.addRating(rating);
+        weightedRanking.update(movieID, sumAndCount.sumRatings, sumAndCount.countRatings);
+        ratingTimes.computeIfAbsent(movieID, k -> new RatingTimeline()).add(userID, rating, epochSecond);
+        userDistributions.computeIfAbsent(userID, k -> new RatingSumAndCount()).addRating(rating);
+        allRatings.addRating(rating);
 
         return true;
     }
 
+    /**
+     * Adds a batch of ratings, given as parallel arrays. The ratings go into the table
+     * first (grown once for the whole batch); the per-movie and per-user indexes and
+     * the averages are then built in one sorted pass each, so every movie and user
+     * entry is looked up once per batch rather than once per rating. Ratings that are
+     * already stored (or appear earlier in the batch) are skipped, as with add
+     *
+     * @param userIDs    The user IDs
+     * @param movieIDs   The movie IDs
+     * @param ratings    The ratings (between 0 and 5 inclusive)
+     * @param timestamps The times at which the ratings were made, in seconds since
+     *                   the epoch (UTC)
+     * @return The number of ratings that were added. If the arrays are not all the
+     *         same length, nothing is added and 0 is returned
+     */
+    @Override
+    public int addAll(int[] userIDs, int[] movieIDs, float[] ratings, long[] timestamps) {
+        int n = userIDs.length;
+        if (movieIDs.length != n || ratings.length != n || timestamps.length != n) {
+            return 0;
+        }
+
+        // Each accepted row, keyed by (movie, row) and by (user, row) so that sorting groups them
+        long[] byMovie = new long[n];
+        long[] byUser = new long[n];
+        int added = 0;
+        directRatings.ensureCapacity(directRatings.size() + n);
+        for (int row = 0; row < n; row++) {
+            UserMovieKey key = new UserMovieKey(userIDs[row], movieIDs[row]);
+            if (directRatings.containsKey(key)) continue;
+
+            directRatings.put(key, new RatingEntry(ratings[row], timestamps[row]));
+            byMovie[added] = ((long) movieIDs[row] << 32) | row;
+            byUser[added] = ((long) userIDs[row] << 32) | row;
+            added++;
+        }
+        Arrays.sort(byMovie, 0, added);
+        Arrays.sort(byUser, 0, added);
+
+        // Movies: the users who rated each one, its running average and its timeline
+        for (int start = 0, end; start < added; start = end) {
+            int movieID = (int) (byMovie[start] >> 32);
+            for (end = start + 1; end < added && (int) (byMovie[end] >> 32) == movieID; end++);
+
+            MyHashSet<Integer> users = usersWhoRatedMovie.get(movieID);
+            if (users == null) {
+                users = new MyHashSet<>(end - start);
+                usersWhoRatedMovie.put(movieID, users);
+            }
+            RatingSumAndCount sumAndCount = ratingsAverage.computeIfAbsent(movieID, k -> new RatingSumAndCount());
+            RatingTimeline timeline = ratingTimes.get(movieID);
+            if (timeline == null) {
+                timeline = new RatingTimeline(end - start);
+                ratingTimes.put(movieID, timeline);
+            }
+            for (int i = start; i < end; i++) {
+                int row = (int) byMovie[i];
+                users.add(userIDs[row]);
+                sumAndCount.addRating(ratings[row]);
+                allRatings.addRating(ratings[row]);
+                timeline.append(userIDs[row], ratings[row], timestamps[row]);
+            }
+            weightedRanking.update(movieID, sumAndCount.sumRatings, sumAndCount.countRatings);
+        }
+
+        // Users: the movies each one has rated, and the histogram of their ratings
+        for (int start = 0, end; start < added; start = end) {
+            int userID = (int) (byUser[start] >> 32);
+            for (end = start + 1; end < added && (int) (byUser[end] >> 32) == userID; end++);
+
+            MyHashSet<Integer> movies = moviesRatedByUser.get(userID);
+            if (movies == null) {
+                movies = new MyHashSet<>(end - start);
+                moviesRatedByUser.put(userID, movies);
+            }
+            RatingSumAndCount distribution = userDistributions.computeIfAbsent(userID, k -> new RatingSumAndCount());
+            for (int i = start; i < end; i++) {
+                movies.add(movieIDs[(int) byUser[i]]);
+                distribution.addRating(ratings[(int) byUser[i]]);
+            }
+        }
+
+        return added;
+    }
+
     
 
     /**
@@ -88,10 +193,16 @@ public class Ratings implements IRatings {
         if (ratingsAverage.containsKey(movieID) && ratingEntry != null) {
             RatingSumAndCount sumAndCount = ratingsAverage.get(movieID);
             sumAndCount.removeRating(ratingEntry.getRating());
+            weightedRanking.update(movieID, sumAndCount.sumRatings, sumAndCount.countRatings);
             if (sumAndCount.countRatings == 0) {
                 ratingsAverage.remove(movieID); 
             }
         }
+        if (ratingEntry != null) {
+            removeFromTimeline(userID, movieID, ratingEntry.getTimestamp());
+            removeFromUser(userID, ratingEntry.getRating());
+            allRatings.removeRating(ratingEntry.getRating());
+        }
 
         return true;
     }
@@ -116,7 +227,8 @@ public class Ratings implements IRatings {
     public boolean set(int userID, int movieID, float rating, LocalDateTime timestamp) {
         UserMovieKey key = new UserMovieKey(userID, movieID);
         RatingEntry oldEntry = directRatings.get(key);
-        directRatings.put(key, new RatingEntry(rating, timestamp));
+        long epochSecond = RatingTimeline.toEpochSecond(timestamp);
+        directRatings.put(key, new RatingEntry(rating, epochSecond));
     
         moviesRatedByUser.computeIfAbsent(userID, k -> new MyHashSet<>()).add(movieID);
         usersWhoRatedMovie.computeIfAbsent(movieID, k -> new MyHashSet<>()).add(userID);
@@ -125,8 +237,15 @@ public class Ratings implements IRatings {
         RatingSumAndCount sumAndCount = ratingsAverage.computeIfAbsent(movieID, k -> new RatingSumAndCount());
         if (oldEntry != null) {
             sumAndCount.removeRating(oldEntry.getRating());
+            removeFromTimeline(userID, movieID, oldEntry.getTimestamp());
+            removeFromUser(userID, oldEntry.getRating());
+            allRatings.removeRating(oldEntry.getRating());
         }
         sumAndCount.addRating(rating);
+        weightedRanking.update(movieID, sumAndCount.sumRatings, sumAndCount.countRatings);
+        ratingTimes.computeIfAbsent(movieID, k -> new RatingTimeline()).add(userID, rating, epochSecond);
+        userDistributions.computeIfAbsent(userID, k -> new RatingSumAndCount()).addRating(rating);
+        allRatings.addRating(rating);
     
         return true;
     }
@@ -219,6 +338,23 @@ public class Ratings implements IRatings {
         RatingSumAndCount sumAndCount = ratingsAverage.get(movieID);
         return sumAndCount != null ? sumAndCount.getAverageRating() : -1.0f;
     }
+
+    /**
+     * Get the average ratings for many films at once
+     *
+     * @param movieIDs The movie IDs
+     * @return The average rating of each film, in the same order as the IDs. The
+     *         average of a film that cannot be found is -1.0f
+     */
+    @Override
+    public float[] getMovieAverageRatings(int[] movieIDs) {
+        float[] averages = new float[movieIDs.length];
+        for (int i = 0; i < movieIDs.length; i++) {
+            RatingSumAndCount sumAndCount = ratingsAverage.get(movieIDs[i]);
+            averages[i] = sumAndCount != null ? sumAndCount.getAverageRating() : -1.0f;
+        }
+        return averages;
+    }
     
     
     
@@ -350,6 +486,178 @@ public class Ratings implements IRatings {
     
     
 
+    /**
+     * Gets the IDs of all movies that have at least one rating
+     *
+     * @return An array of movie IDs. If there are no ratings, return an empty array
+     */
+    @Override
+    public int[] getRatedMovies() {
+        NewArrayList<Integer> allMovieIDs = usersWhoRatedMovie.getAllKeys();
+        NewArrayList<Integer> ratedMovieIDs = new NewArrayList<>();
+        for (Integer movieID : allMovieIDs) {
+            // Removing ratings can leave an empty set behind, so skip those movies
+            if (!usersWhoRatedMovie.get(movieID).isEmpty()) {
+                ratedMovieIDs.add(movieID);
+            }
+        }
+
+        int[] movieIDs = new int[ratedMovieIDs.size()];
+        for (int i = 0; i < movieIDs.length; i++) {
+            movieIDs[i] = ratedMovieIDs.get(i);
+        }
+        return movieIDs;
+    }
+
+    /**
+     * Gets the IDs of all users who have rated a given movie
+     *
+     * @param movieID The movie ID
+     * @return An array of user IDs. If there are no ratings or the film cannot be
+     *         found, then return an empty array
+     */
+    @Override
+    public int[] getMovieRaters(int movieID) {
+        MyHashSet<Integer> users = usersWhoRatedMovie.get(movieID);
+        if (users == null) {
+            return new int[0];
+        }
+
+        int[] userIDs = new int[users.size()];
+        int i = 0;
+        for (Integer userID : users) {
+            userIDs[i++] = userID;
+        }
+        return userIDs;
+    }
+
+    /**
+     * Gets the rating a given user gave to a given movie
+     *
+     * @param userID  The user ID
+     * @param movieID The movie ID
+     * @return The rating. If the user has not rated the movie, return -1.0f
+     */
+    @Override
+    public float getRating(int userID, int movieID) {
+        RatingEntry entry = directRatings.get(new UserMovieKey(userID, movieID));
+        return entry != null ? entry.getRating() : -1.0f;
+    }
+
+    /**
+     * Gets the time at which a given user rated a given movie
+     *
+     * @param userID  The user ID
+     * @param movieID The movie ID
+     * @return The timestamp of the rating. If the user has not rated the movie,
+     *         return null
+     */
+    @Override
+    public LocalDateTime getTimestamp(int userID, int movieID) {
+        RatingEntry entry = directRatings.get(new UserMovieKey(userID, movieID));
+        return entry != null ? RatingTimeline.toDateTime(entry.getTimestamp()) : null;
+    }
+
+    // Drops a rating from its movie's timeline, and the timeline once it is empty
+    private void removeFromTimeline(int userID, int movieID, long epochSecond) {
+        RatingTimeline timeline = ratingTimes.get(movieID);
+        if (timeline != null && timeline.remove(userID, epochSecond) && timeline.size() == 0) {
+            ratingTimes.remove(movieID);
+        }
+    }
+
+    // Drops a rating from its user's histogram, and the histogram once it is empty
+    private void removeFromUser(int userID, float rating) {
+        RatingSumAndCount distribution = userDistributions.get(userID);
+        if (distribution != null) {
+            distribution.removeRating(rating);
+            if (distribution.countRatings == 0) {
+                userDistributions.remove(userID);
+            }
+        }
+    }
+
+    /**
+     * Get the ratings a film was given within a period of time
+     *
+     * @param movieID The movie ID
+     * @param from    The start of the period (inclusive), or null for no start
+     * @param to      The end of the period (exclusive), or null for no end
+     * @return The ratings made in the period, earliest first. Ratings made without a
+     *         time are never included. If there are none, or the film cannot be found,
+     *         then return an empty array
+     */
+    @Override
+    public float[] getMovieRatingsBetween(int movieID, LocalDateTime from, LocalDateTime to) {
+        RatingTimeline timeline = ratingTimes.get(movieID);
+        if (timeline == null) {
+            return new float[0];
+        }
+        return timeline.between(RatingTimeline.fromSecond(from), RatingTimeline.toSecond(to));
+    }
+
+    /**
+     * Gets the movies rated most often within a recent window, ending at the time of
+     * the latest rating in the store (so that historic data still has a trend)
+     *
+     * @param window     The length of the window
+     * @param numResults The maximum number of movies to return
+     * @return The IDs of the movies with the most ratings in the window, most first.
+     *         Movies with no ratings in the window are left out. If the window is
+     *         not positive, or no rating has a time, return an empty array
+     */
+    @Override
+    public int[] getTrendingMovies(Duration window, int numResults) {
+        long seconds = RatingTimeline.seconds(window);
+        NewArrayList<Integer> movieIDs = ratingTimes.getAllKeys();
+        long latest = RatingTimeline.NULL_TIMESTAMP;
+        for (Integer movieID : movieIDs) {
+            latest = Math.max(latest, ratingTimes.get(movieID).latest());
+        }
+        if (seconds < 0 || latest == RatingTimeline.NULL_TIMESTAMP) {
+            return new int[0];
+        }
+
+        long to = latest + 1;
+        long from = Math.max(RatingTimeline.NULL_TIMESTAMP + 1, to - seconds);
+        int[] ids = new int[movieIDs.size()];
+        float[] counts = new float[ids.length];
+        int count = 0;
+        for (Integer movieID : movieIDs) {
+            int inWindow = ratingTimes.get(movieID).count(from, to);
+            if (inWindow > 0) {
+                ids[count] = movieID;
+                counts[count++] = inWindow;
+            }
+        }
+        return ConcurrentRatings.topByScore(ids, counts, count, numResults);
+    }
+
+    /**
+     * Counts a film's ratings over time, in consecutive buckets of equal length
+     *
+     * @param movieID    The movie ID
+     * @param from       The start of the first bucket
+     * @param bucket     The length of each bucket
+     * @param numBuckets The number of buckets
+     * @return The number of ratings made in each bucket. If the film cannot be found
+     *         the counts are all 0. If from is null, or the bucket length or number of
+     *         buckets is not positive, return an empty array
+     */
+    @Override
+    public int[] getMovieRatingsOverTime(int movieID, LocalDateTime from, Duration bucket, int numBuckets) {
+        long seconds = RatingTimeline.seconds(bucket);
+        if (from == null || seconds < 0 || numBuckets <= 0) {
+            return new int[0];
+        }
+        RatingTimeline timeline = ratingTimes.get(movieID);
+        if (timeline == null) {
+            return new int[numBuckets];
+        }
+        return timeline.histogram(RatingTimeline.fromSecond(from), seconds, numBuckets);
+    }
+
+
     /**
      * Get the highest average rated film IDs, in order of there average rating
      * (hightst first).
@@ -386,25 +694,101 @@ public class Ratings implements IRatings {
         return topMovies; // Return the sorted array of top-rated movie IDs.
     }
 
+    /**
+     * Get the movies with the highest weighted rating: each movie's average pulled
+     * towards the average of every rating, so that movies with only a few ratings do
+     * not outrank well-rated movies with many. Movies with fewer than
+     * WeightedRanking.MIN_VOTES ratings are not ranked. The ranking is kept in order
+     * as ratings change, so this is O(numResults)
+     *
+     * @param numResults The maximum number of results to be returned
+     * @return An array of the movie IDs with the highest weighted ratings, highest
+     *         first. If there are fewer than numResults ranked movies, then the array
+     *         is as long as the number of ranked movies
+     */
+    @Override
+    public int[] getTopWeightedRatedMovies(int numResults) {
+        return weightedRanking.top(numResults);
+    }
 
-}
+    /**
+     * Get the weighted rating of a movie
+     *
+     * @param movieID The movie ID
+     * @return The movie's average rating pulled towards the average of every rating,
+     *         by WeightedRanking.MIN_VOTES ratings' worth. -1.0f if it has no ratings
+     */
+    @Override
+    public float getMovieWeightedRating(int movieID) {
+        return weightedRanking.score(movieID);
+    }
 
-//FOR CALCULATING MOVIE AVERAGE RATING EFFICIENTLY
-class RatingSumAndCount {
-    float sumRatings = 0;
-    int countRatings = 0;
+    /**
+     * Get how many of a film's ratings have each value. Kept as ratings change, so
+     * this is O(1)
+     *
+     * @param movieID The movie ID
+     * @return The number of ratings of 0.5, 1.0, ... 5.0 stars, in that order (a
+     *         rating between steps counts as the nearest). If there are no ratings or
+     *         the film cannot be found, then return an empty array
+     */
+    @Override
+    public int[] getMovieRatingHistogram(int movieID) {
+        RatingSumAndCount sumAndCount = ratingsAverage.get(movieID);
+        return sumAndCount != null ? sumAndCount.histogram.clone() : new int[0];
+    }
+
+    /**
+     * Get how many of a user's ratings have each value
+     *
+     * @param userID The user ID
+     * @return The number of ratings of 0.5, 1.0, ... 5.0 stars, in that order. If the
+     *         user cannot be found, then return an empty array
+     */
+    @Override
+    public int[] getUserRatingHistogram(int userID) {
+        RatingSumAndCount distribution = userDistributions.get(userID);
+        return distribution != null ? distribution.histogram.clone() : new int[0];
+    }
 
-    void addRating(float rating) {
-        this.sumRatings += rating;
-        this.countRatings++;
+    /**
+     * Get how many of all the ratings have each value
+     *
+     * @return The number of ratings of 0.5, 1.0, ... 5.0 stars, in that order
+     */
+    @Override
+    public int[] getRatingHistogram() {
+        return allRatings.histogram.clone();
     }
 
-    void removeRating(float rating) {
-        this.sumRatings -= rating;
-        this.countRatings--;
+    /**
+     * Get the median rating for a given film, read off its histogram
+     *
+     * @param movieID The movie ID
+     * @return The middle rating, or the mean of the two middle ratings. If there are
+     *         no ratings or the film cannot be found, return -1
+     */
+    @Override
+    public float getMedianRating(int movieID) {
+        RatingSumAndCount sumAndCount = ratingsAverage.get(movieID);
+        return sumAndCount != null ? RatingHistogram.median(sumAndCount.histogram) : -1.0f;
     }
 
-    float getAverageRating() {
-        return countRatings > 0 ? sumRatings / countRatings : 0;
+    /**
+     * Get the standard deviation of a film's ratings
+     *
+     * @param movieID The movie ID
+     * @return The population standard deviation of the ratings. If there are no
+     *         ratings or the film cannot be found, return -1
+     */
+    @Override
+    public float getRatingStdDev(int movieID) {
+        RatingSumAndCount sumAndCount = ratingsAverage.get(movieID);
+        if (sumAndCount == null) {
+            return -1.0f;
+        }
+        return RatingHistogram.stdDev(sumAndCount.sumRatings, sumAndCount.sumSquares, sumAndCount.countRatings);
     }
+
+
 }
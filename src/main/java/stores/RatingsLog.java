@@ -0,0 +1,447 @@
+package stores;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import interfaces.IRatings;
+
+/***
+ * An append-only write-ahead log of rating changes, so that changes made while the
+ * program runs survive a restart. The log sits on top of whatever the ratings were
+ * loaded from (csv files, a snapshot or a store image): opening it replays every logged
+ * add, set and remove into the loaded ratings, in order.
+ *
+ * The file is a header followed by fixed-size records, each with its own CRC32, and is
+ * grown in preallocated, zero-filled chunks, so an append is one positional write and
+ * never changes the file's size. Replay stops at the first zero or damaged record, which
+ * is where a crash mid-append leaves the end of the log.
+ *
+ * Appends only reach the OS page cache, so they cost microseconds and survive the
+ * program crashing. A background thread forces them to disk every FLUSH_INTERVAL_MS,
+ * so one force covers every record appended since the last (group commit), and at
+ * most that much is lost if the machine itself goes down. Callers that need a change
+ * on disk before going on can call sync().
+ *
+ * Only the last record for each (user, movie) pair decides the replayed rating, so
+ * once the log has grown to twice its size after the last compaction it is rewritten
+ * with just those records. A kept ADD is rewritten as a SET, as the records before it
+ * may have removed a loaded rating it then replaced. The rewrite is left to the flusher
+ * thread and runs while appends go on, which only wait while the few records appended
+ * during it are copied over and the new log is moved into place.
+ */
+public class RatingsLog implements Closeable {
+    static final int MAGIC = 0x57504C47; // "WPLG"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+    // op, user, movie, rating, timestamp, crc
+    static final int RECORD_BYTES = 1 + Integer.BYTES * 2 + Float.BYTES + Long.BYTES + Integer.BYTES;
+    static final int CHUNK_BYTES = 1 << 20;
+    static final int FLUSH_INTERVAL_MS = 10;
+    static final int MIN_COMPACT_RECORDS = 1 << 16;
+
+    static final byte ADD = 1;
+    static final byte SET = 2;
+    static final byte REMOVE = 3;
+
+    // Timestamp value for a rating made without a time
+    private static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+
+    private final Path path;
+    private FileChannel channel;
+    // End of the last record, size of the file, and records in the file. Only changed while synchronized
+    private long position;
+    private long allocated;
+    private long records;
+    private long compactAt;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+    private final CRC32 crc = new CRC32();
+
+    // Records appended and records known to be on disk, counted since the log was opened
+    private volatile long appended = 0;
+    private volatile long synced = 0;
+    private final ReentrantLock syncLock = new ReentrantLock();
+    // Held for the whole of a compaction, so only one runs at a time
+    private final ReentrantLock compactLock = new ReentrantLock();
+    private volatile boolean compactDue = false;
+    private Thread flusher;
+    private volatile boolean closed = false;
+
+    private int replayed = 0;
+    private int notApplied = 0;
+
+    private RatingsLog(Path path) {
+        this.path = path;
+    }
+
+    /***
+     * Open a log, creating it if it does not exist, and replay it into the ratings
+     * @param path The log file
+     * @param ratings The loaded ratings, which every logged change is applied to
+     * @return The open log, ready for appending after the replayed records
+     * @throws IOException If the file cannot be opened or is not a ratings log
+     */
+    public static RatingsLog open(Path path, IRatings ratings) throws IOException {
+        RatingsLog log = new RatingsLog(path);
+        if (!Files.exists(path) || Files.size(path) < HEADER_BYTES) {
+            log.create(path);
+        } else {
+            log.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            log.replay(ratings);
+        }
+        if (log.records >= MIN_COMPACT_RECORDS) {
+            log.compact();
+        }
+        log.compactAt = Math.max(MIN_COMPACT_RECORDS, 2 * log.records);
+        log.flusher = new Thread(log::flushLoop, "ratings-log-flusher");
+        log.flusher.setDaemon(true);
+        log.flusher.start();
+        return log;
+    }
+
+    // An empty log, already on disk
+    private void create(Path target) throws IOException {
+        channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(header, 0);
+        position = HEADER_BYTES;
+        allocated = HEADER_BYTES;
+        records = 0;
+        preallocate();
+        channel.force(true);
+    }
+
+    private void replay(IRatings ratings) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, 0);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("\"" + path + "\" is not a ratings log");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Ratings log \"" + path + "\" is version " + version + ", expected " + VERSION);
+        }
+        allocated = channel.size();
+        position = scan(ratings, null, allocated);
+        records = (position - HEADER_BYTES) / RECORD_BYTES;
+        // Anything after the last valid record is dropped, so later appends can never be
+        // followed by records that survived a crash out of order
+        channel.truncate(position);
+        allocated = position;
+        preallocate();
+        channel.force(true);
+        if (replayed > 0) {
+            System.out.println("Replayed " + replayed + " rating changes from \"" + path + "\"" + (notApplied > 0 ? " (" + notApplied + " could not be applied)" : ""));
+        }
+    }
+
+    /**
+     * Reads the valid records from the start of the log up to end, applying them to the
+     * ratings and/or keeping the last record for each (user, movie) pair. Only reads the
+     * file, so may run while records are appended after end
+     *
+     * @return The position after the last valid record
+     */
+    private long scan(IRatings ratings, HashMap<Long, byte[]> latest, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 4096);
+        CRC32 crc = new CRC32();
+        long at = HEADER_BYTES;
+        while (at + RECORD_BYTES <= end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - at));
+            int read = channel.read(buffer, at);
+            if (read < RECORD_BYTES) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.remaining() >= RECORD_BYTES) {
+                byte op = buffer.get(buffer.position());
+                crc.reset();
+                crc.update(buffer.array(), buffer.position(), RECORD_BYTES - Integer.BYTES);
+                if (op == 0 || buffer.getInt(buffer.position() + RECORD_BYTES - Integer.BYTES) != (int) crc.getValue()) {
+                    return at;
+                }
+                if (latest != null) {
+                    byte[] bytes = new byte[RECORD_BYTES];
+                    buffer.get(buffer.position(), bytes);
+                    latest.put(((long) buffer.getInt(buffer.position() + 1) << 32) | (buffer.getInt(buffer.position() + 5) & 0xffffffffL), bytes);
+                }
+                if (ratings != null) {
+                    apply(ratings, buffer.get(), buffer.getInt(), buffer.getInt(), buffer.getFloat(), buffer.getLong());
+                    buffer.getInt();
+                } else {
+                    buffer.position(buffer.position() + RECORD_BYTES);
+                }
+                at += RECORD_BYTES;
+            }
+        }
+        return at;
+    }
+
+    private void apply(IRatings ratings, byte op, int userID, int movieID, float rating, long timestamp) {
+        LocalDateTime time = timestamp == NULL_TIMESTAMP ? null : LocalDateTime.ofEpochSecond(timestamp, 0, ZoneOffset.UTC);
+        boolean applied;
+        switch (op) {
+            case ADD:    applied = ratings.add(userID, movieID, rating, time); break;
+            case SET:    applied = ratings.set(userID, movieID, rating, time); break;
+            case REMOVE: applied = ratings.remove(userID, movieID); break;
+            default:     applied = false;
+        }
+        replayed++;
+        if (!applied) {
+            notApplied++;
+        }
+    }
+
+    /***
+     * Append a change that has been made to the ratings. Changes must be appended in the
+     * order they were made
+     * @param op ADD, SET or REMOVE
+     * @param timestamp The time of the rating, or null
+     * @return The change's sequence number, for sync(long)
+     * @throws IOException If the record cannot be written
+     */
+    synchronized long append(byte op, int userID, int movieID, float rating, LocalDateTime timestamp) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        if (position + RECORD_BYTES > allocated) {
+            preallocate();
+        }
+        record.clear();
+        record.put(op).putInt(userID).putInt(movieID).putFloat(rating)
+              .putLong(timestamp == null ? NULL_TIMESTAMP : timestamp.toEpochSecond(ZoneOffset.UTC));
+        crc.reset();
+        crc.update(record.array(), 0, RECORD_BYTES - Integer.BYTES);
+        record.putInt((int) crc.getValue()).flip();
+        writeFully(record, position);
+        position += RECORD_BYTES;
+        records++;
+        appended++;
+        if (records >= compactAt) {
+            // Compacted by the flusher, so this change does not wait for the rewrite
+            compactAt = Long.MAX_VALUE;
+            compactDue = true;
+        }
+        return appended;
+    }
+
+    // Grows the file by a zero-filled chunk, which also marks the end of the records
+    private void preallocate() throws IOException {
+        ByteBuffer zeros = ByteBuffer.allocate(CHUNK_BYTES);
+        writeFully(zeros, allocated);
+        allocated += CHUNK_BYTES;
+    }
+
+    /***
+     * Rewrite the log with only the last record for each (user, movie) pair, with adds
+     * kept as sets. The new log is written next to the old one and moved into place, so
+     * a crash during compaction leaves one or the other. Appends may go on while the
+     * records before them are rewritten
+     * @throws IOException If the log cannot be rewritten, in which case the old one is kept
+     */
+    public void compact() throws IOException {
+        compactLock.lock();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        RatingsLog compacted = new RatingsLog(temp);
+        try {
+            long end;
+            synchronized (this) {
+                if (closed) {
+                    throw new ClosedChannelException();
+                }
+                end = position;
+            }
+            HashMap<Long, byte[]> latest = new HashMap<>();
+            scan(null, latest, end);
+
+            compacted.create(temp);
+            CRC32 crc = new CRC32();
+            for (byte[] bytes : latest.values()) {
+                if (bytes[0] == ADD) {
+                    // A remove then an add of a loaded rating would otherwise become a lone
+                    // add, which fails on replay and brings back the loaded rating
+                    bytes[0] = SET;
+                    crc.reset();
+                    crc.update(bytes, 0, RECORD_BYTES - Integer.BYTES);
+                    ByteBuffer.wrap(bytes).putInt(RECORD_BYTES - Integer.BYTES, (int) crc.getValue());
+                }
+                compacted.write(ByteBuffer.wrap(bytes));
+            }
+            compacted.channel.force(false);
+
+            synchronized (this) {
+                if (closed) {
+                    throw new ClosedChannelException();
+                }
+                syncLock.lock();
+                try {
+                    // The records appended while the others were rewritten, as they are
+                    long appendedSince = (position - end) / RECORD_BYTES;
+                    for (long at = end; at < position; at += RECORD_BYTES) {
+                        ByteBuffer copy = ByteBuffer.allocate(RECORD_BYTES);
+                        readFully(copy, at);
+                        compacted.write(copy);
+                    }
+                    compacted.channel.force(false);
+                    compacted.channel.close();
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                    FileChannel old = channel;
+                    channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    old.close();
+                    position = compacted.position;
+                    allocated = compacted.allocated;
+                    records = latest.size() + appendedSince;
+                    // Everything appended so far is in the new file, which is on disk
+                    synced = appended;
+                } finally {
+                    syncLock.unlock();
+                }
+            }
+        } finally {
+            synchronized (this) {
+                compactAt = Math.max(MIN_COMPACT_RECORDS, 2 * records);
+            }
+            if (compacted.channel != null) {
+                compacted.channel.close();
+            }
+            Files.deleteIfExists(temp);
+            compactLock.unlock();
+        }
+    }
+
+    // Writes a record at the end of the log, growing it if need be
+    private void write(ByteBuffer bytes) throws IOException {
+        if (position + RECORD_BYTES > allocated) {
+            preallocate();
+        }
+        writeFully(bytes, position);
+        position += RECORD_BYTES;
+    }
+
+    /***
+     * Wait until every change appended so far is on disk
+     * @throws IOException If the log cannot be forced
+     */
+    public void sync() throws IOException {
+        sync(appended);
+    }
+
+    /***
+     * Wait until the given change is on disk. A caller that finds another forcing the
+     * log waits for it, and is usually covered by it
+     * @param sequence The sequence number returned by append
+     * @throws IOException If the log cannot be forced
+     */
+    void sync(long sequence) throws IOException {
+        if (synced >= sequence) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (synced >= sequence) {
+                return;
+            }
+            long target = appended;
+            channel.force(false);
+            synced = target;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(FLUSH_INTERVAL_MS);
+                if (compactDue) {
+                    compactDue = false;
+                    compactQuietly();
+                }
+                sync();
+            }
+            catch (InterruptedException | ClosedChannelException e) {
+                // Closed, and close() has forced the rest
+                return;
+            }
+            catch (IOException e) {
+                System.err.println("Unable to force ratings log to disk: " + e.getMessage());
+            }
+        }
+    }
+
+    // Compacts the log for the flusher, which keeps flushing if it cannot
+    private void compactQuietly() throws ClosedChannelException {
+        try {
+            compact();
+        }
+        catch (ClosedChannelException e) {
+            throw e;
+        }
+        catch (IOException e) {
+            System.err.println("Unable to compact ratings log: " + e.getMessage());
+        }
+    }
+
+    /***
+     * @return The number of changes replayed when the log was opened
+     */
+    public int getReplayed() {
+        return replayed;
+    }
+
+    /***
+     * @return The number of records in the log
+     */
+    public synchronized long size() {
+        return records;
+    }
+
+    /***
+     * Force any remaining changes to disk and close the log. Later appends fail
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        // Not interrupted, as interrupting a thread in force() would close the channel under us
+        closed = true;
+        syncLock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long at) throws IOException {
+        while (buffer.hasRemaining()) {
+            at += channel.write(buffer, at);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long at) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, at + buffer.position());
+            if (read < 0) {
+                throw new IOException("Ratings log \"" + path + "\" is truncated");
+            }
+        }
+        buffer.flip();
+    }
+}
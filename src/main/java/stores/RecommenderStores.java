@@ -0,0 +1,150 @@
+package stores;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import interfaces.AbstractStores;
+import interfaces.IRatings;
+import utils.ItemRecommender;
+
+/***
+ * Stores whose rating changes keep an ItemRecommender up to date. Queries, and the
+ * movies, credits and keywords, go straight to the wrapped stores.
+ *
+ * Every accepted add, set or remove made through these stores marks the model dirty.
+ * If the wrapped stores give snapshots, a dirty model is refreshed in the background,
+ * one refresh at a time, so however many changes come in while a refresh runs only one
+ * more follows it. Stores without snapshots cannot be read while they are written to,
+ * so their model is refreshed on the next recommendation instead.
+ */
+public class RecommenderStores extends AbstractStores {
+    private final AbstractStores stores;
+    private final ItemRecommender recommender;
+    private final boolean background;
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final ExecutorService refresher;
+
+    /***
+     * @param stores The loaded stores, which the model is built from
+     */
+    public RecommenderStores(AbstractStores stores) {
+        this(stores, new ItemRecommender(stores));
+    }
+
+    /***
+     * @param stores The loaded stores
+     * @param recommender A recommender already built from the stores
+     */
+    public RecommenderStores(AbstractStores stores, ItemRecommender recommender) {
+        this.stores = stores;
+        this.recommender = recommender;
+        this.background = stores.snapshot() != stores;
+        this.refresher = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "Recommender refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.credits = stores.getCredits();
+        this.keywords = stores.getKeywords();
+        this.movies = stores.getMovies();
+        this.ratings = new RecommendedRatings(stores.getRatings(), this);
+    }
+
+    /***
+     * @return The recommender the rating changes are fed to
+     */
+    public ItemRecommender getRecommender() {
+        return recommender;
+    }
+
+    /***
+     * @return The IDs of up to k movies to recommend to a user, best first
+     */
+    public int[] recommendForUser(int userID, int k) {
+        if (!background) {
+            refreshIfDirty();
+        }
+        return recommender.recommendForUser(userID, k);
+    }
+
+    /***
+     * Wait for any refresh already asked for to finish
+     */
+    public void awaitRefresh() throws InterruptedException {
+        try {
+            refresher.submit(() -> {}).get();
+        }
+        catch (ExecutionException e) {
+            System.err.println("Failed to refresh recommendations: " + e.getCause());
+        }
+    }
+
+    // Called after every accepted change to the ratings
+    private void changed() {
+        if (dirty.compareAndSet(false, true) && background) {
+            refresher.execute(this::refreshIfDirty);
+        }
+    }
+
+    private void refreshIfDirty() {
+        // Cleared first, so a change made during the refresh asks for another
+        if (dirty.compareAndSet(true, false)) {
+            recommender.refresh();
+        }
+    }
+
+    @Override
+    public AbstractStores snapshot() {
+        AbstractStores snapshot = stores.snapshot();
+        return snapshot == stores ? this : snapshot;
+    }
+
+    @Override
+    public <T extends AbstractStores> T find(Class<T> type) {
+        return type.isInstance(this) ? type.cast(this) : stores.find(type);
+    }
+
+    /***
+     * Ratings that mark the model dirty after every accepted change.
+     */
+    private static final class RecommendedRatings extends ForwardingRatings {
+        private final RecommenderStores owner;
+
+        RecommendedRatings(IRatings ratings, RecommenderStores owner) {
+            super(ratings);
+            this.owner = owner;
+        }
+
+        private boolean update(boolean changed) {
+            if (changed) {
+                owner.changed();
+            }
+            return changed;
+        }
+
+        @Override
+        public boolean add(int userID, int movieID, float rating, LocalDateTime timestamp) {
+            return update(ratings.add(userID, movieID, rating, timestamp));
+        }
+
+        @Override
+        public boolean set(int userID, int movieID, float rating, LocalDateTime timestamp) {
+            return update(ratings.set(userID, movieID, rating, timestamp));
+        }
+
+        @Override
+        public boolean remove(int userID, int movieID) {
+            return update(ratings.remove(userID, movieID));
+        }
+
+        @Override
+        public int addAll(int[] userIDs, int[] movieIDs, float[] ratings, long[] timestamps) {
+            int added = this.ratings.addAll(userIDs, movieIDs, ratings, timestamps);
+            update(added > 0);
+            return added;
+        }
+    }
+}
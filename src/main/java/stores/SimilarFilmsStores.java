@@ -0,0 +1,121 @@
+package stores;
+
+import interfaces.AbstractStores;
+import interfaces.ICredits;
+import interfaces.IKeywords;
+import utils.SimilarFilmsIndex;
+
+/***
+ * Stores whose keyword and credit changes also update a SimilarFilmsIndex. Queries, and
+ * the movies and ratings, go straight to the wrapped stores.
+ *
+ * The index is built from the stores when they are wrapped, then every accepted change
+ * to a film's keywords or credits made through these stores re-indexes that film.
+ */
+public class SimilarFilmsStores extends AbstractStores {
+    private final AbstractStores stores;
+    private final SimilarFilmsIndex index;
+
+    /***
+     * @param stores The loaded stores, which the index is built from
+     */
+    public SimilarFilmsStores(AbstractStores stores) {
+        this.stores = stores;
+        this.index = new SimilarFilmsIndex(stores);
+        this.credits = new IndexedCredits(stores.getCredits(), index);
+        this.keywords = new IndexedKeywords(stores.getKeywords(), index);
+        this.movies = stores.getMovies();
+        this.ratings = stores.getRatings();
+    }
+
+    /***
+     * @return The index the keyword and credit changes are fed to
+     */
+    public SimilarFilmsIndex getIndex() {
+        return index;
+    }
+
+    /***
+     * @return The IDs of at most k films most like the given one, most similar first
+     */
+    public int[] similarFilms(int filmID, int k) {
+        return index.similarFilms(filmID, k);
+    }
+
+    @Override
+    public AbstractStores snapshot() {
+        AbstractStores snapshot = stores.snapshot();
+        return snapshot == stores ? this : snapshot;
+    }
+
+    @Override
+    public <T extends AbstractStores> T find(Class<T> type) {
+        return type.isInstance(this) ? type.cast(this) : stores.find(type);
+    }
+
+    /***
+     * Keywords that re-index a film after every accepted change to its keywords.
+     */
+    private static final class IndexedKeywords extends ForwardingKeywords {
+        private final SimilarFilmsIndex index;
+
+        IndexedKeywords(IKeywords keywords, SimilarFilmsIndex index) {
+            super(keywords);
+            this.index = index;
+        }
+
+        private boolean update(boolean changed, int filmID) {
+            if (changed) {
+                index.update(filmID);
+            }
+            return changed;
+        }
+
+        @Override public boolean add(int filmID, Keyword[] keywords)             { return update(this.keywords.add(filmID, keywords), filmID); }
+        @Override public boolean add(int filmID, Keyword keyword)                { return update(keywords.add(filmID, keyword), filmID); }
+        @Override public boolean remove(int filmID)                              { return update(keywords.remove(filmID), filmID); }
+        @Override public boolean removeKeywordFromFilm(int filmID, int keywordID) { return update(keywords.removeKeywordFromFilm(filmID, keywordID), filmID); }
+    }
+
+    /***
+     * Credits that re-index a film after every accepted change to its credits.
+     */
+    private static final class IndexedCredits extends ForwardingCredits {
+        private final SimilarFilmsIndex index;
+
+        IndexedCredits(ICredits credits, SimilarFilmsIndex index) {
+            super(credits);
+            this.index = index;
+        }
+
+        @Override
+        public boolean add(CastCredit[] cast, CrewCredit[] crew, int filmID) {
+            if (!credits.add(cast, crew, filmID)) {
+                return false;
+            }
+            index.update(filmID);
+            return true;
+        }
+
+        @Override
+        public int addAll(int[] filmIDs, CastCredit[][] cast, CrewCredit[][] crew) {
+            int added = credits.addAll(filmIDs, cast, crew);
+            if (added > 0) {
+                // Films already credited are left as they were, so re-reading them is harmless
+                for (int filmID : filmIDs) {
+                    index.update(filmID);
+                }
+            }
+            return added;
+        }
+
+        @Override
+        public boolean remove(int filmID) {
+            if (!credits.remove(filmID)) {
+                return false;
+            }
+            index.update(filmID);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package stores;
+
+import java.time.LocalDateTime;
+
+import interfaces.AbstractStores;
+import interfaces.IRatings;
+import utils.TrendingEngine;
+
+/***
+ * Stores whose rating changes also feed a TrendingEngine. Queries, and the movies,
+ * credits and keywords, go straight to the wrapped stores.
+ *
+ * The engine is first filled from the ratings already stored, then kept up to date by
+ * every add, set and remove made through these stores: a set or remove takes the old
+ * rating off at its old time before the new one is counted.
+ */
+public class TrendingStores extends AbstractStores {
+    private final AbstractStores stores;
+    private final TrendingEngine engine;
+
+    /***
+     * @param stores The loaded stores
+     * @param engine A fresh engine, filled here from the loaded ratings
+     */
+    public TrendingStores(AbstractStores stores, TrendingEngine engine) {
+        this.stores = stores;
+        this.engine = engine;
+        this.credits = stores.getCredits();
+        this.keywords = stores.getKeywords();
+        this.movies = stores.getMovies();
+        this.ratings = new TrendingRatings(stores.getRatings(), engine);
+
+        IRatings loaded = stores.getRatings();
+        for (int movieID : loaded.getRatedMovies()) {
+            for (int userID : loaded.getMovieRaters(movieID)) {
+                engine.add(movieID, RatingTimeline.toEpochSecond(loaded.getTimestamp(userID, movieID)));
+            }
+        }
+    }
+
+    /***
+     * @return The engine the rating changes are fed to
+     */
+    public TrendingEngine getEngine() {
+        return engine;
+    }
+
+    /***
+     * @return The IDs of the movies trending now, most first
+     */
+    public int[] getTrending() {
+        return engine.getTrending();
+    }
+
+    @Override
+    public AbstractStores snapshot() {
+        AbstractStores snapshot = stores.snapshot();
+        return snapshot == stores ? this : snapshot;
+    }
+
+    @Override
+    public <T extends AbstractStores> T find(Class<T> type) {
+        return type.isInstance(this) ? type.cast(this) : stores.find(type);
+    }
+
+    /***
+     * Ratings that count every accepted change in the engine.
+     */
+    private static final class TrendingRatings extends ForwardingRatings {
+        private final TrendingEngine engine;
+
+        TrendingRatings(IRatings ratings, TrendingEngine engine) {
+            super(ratings);
+            this.engine = engine;
+        }
+
+        @Override
+        public synchronized boolean add(int userID, int movieID, float rating, LocalDateTime timestamp) {
+            if (!ratings.add(userID, movieID, rating, timestamp)) {
+                return false;
+            }
+            engine.add(movieID, RatingTimeline.toEpochSecond(timestamp));
+            return true;
+        }
+
+        @Override
+        public synchronized boolean set(int userID, int movieID, float rating, LocalDateTime timestamp) {
+            boolean existed = ratings.getRating(userID, movieID) >= 0;
+            long old = RatingTimeline.toEpochSecond(ratings.getTimestamp(userID, movieID));
+            if (!ratings.set(userID, movieID, rating, timestamp)) {
+                return false;
+            }
+            if (existed) {
+                engine.remove(movieID, old);
+            }
+            engine.add(movieID, RatingTimeline.toEpochSecond(timestamp));
+            return true;
+        }
+
+        @Override
+        public synchronized boolean remove(int userID, int movieID) {
+            long old = RatingTimeline.toEpochSecond(ratings.getTimestamp(userID, movieID));
+            if (!ratings.remove(userID, movieID)) {
+                return false;
+            }
+            engine.remove(movieID, old);
+            return true;
+        }
+
+        @Override
+        public synchronized int addAll(int[] userIDs, int[] movieIDs, float[] ratings, long[] timestamps) {
+            int n = userIDs.length;
+            if (movieIDs.length != n || ratings.length != n || timestamps.length != n) {
+                return 0;
+            }
+            boolean[] adds = newRows(userIDs, movieIDs);
+            int added = this.ratings.addAll(userIDs, movieIDs, ratings, timestamps);
+            if (added > 0) {
+                for (int row = 0; row < n; row++) {
+                    if (adds[row]) {
+                        engine.add(movieIDs[row], timestamps[row]);
+                    }
+                }
+            }
+            return added;
+        }
+    }
+}
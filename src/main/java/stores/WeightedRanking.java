@@ -0,0 +1,254 @@
+package stores;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/***
+ * An IMDb-style weighted rating of movies, kept in ranked order as ratings change.
+ *
+ * A movie's weighted rating is (v R + m C) / (v + m): its mean rating R over its v
+ * ratings, pulled towards the mean C of every rating by m ratings' worth. A movie with a
+ * single 5.0 then scores close to C, and no longer outranks one with thousands of ratings
+ * nearly as high. Movies with fewer than m ratings are not ranked at all.
+ *
+ * Ranked movies are kept in an ordered set, so a rating change only moves its own movie,
+ * and reading the top K walks the first K of the set. Every change also moves C a little,
+ * which would move every score; rather than re-rank every movie on every change, the set
+ * is ordered by scores against a pinned C, and is only sorted again (on the next read)
+ * once the real C has drifted more than MAX_DRIFT from it. score() always uses the real C.
+ *
+ * As a read may sort the ranking again, every method is synchronized, so stores that are
+ * only changed while loading can still be read from many threads.
+ */
+final class WeightedRanking {
+    // Ratings a movie needs to be ranked, and the weight of C in every score
+    static final int MIN_VOTES = 10;
+    // How far C may move, in stars, before the ranking is sorted again
+    static final double MAX_DRIFT = 0.01;
+
+    /***
+     * One movie's rating totals, and its score against the pinned C.
+     */
+    private static final class Entry {
+        final int movieID;
+        double sum;
+        int count;
+        double score;
+
+        Entry(int movieID) {
+            this.movieID = movieID;
+        }
+    }
+
+    /***
+     * A ranking of one version of stores that are never changed in place: the ranked
+     * movies in order, with their scores against the mean they were ranked with. The
+     * next version's ranking is made from it by rerank.
+     */
+    static final class Ranked {
+        final double mean;
+        final int[] order;
+        final double[] scores;
+
+        Ranked(double mean, int[] order, double[] scores) {
+            this.mean = mean;
+            this.order = order;
+            this.scores = scores;
+        }
+
+        int[] top(int numResults) {
+            return Arrays.copyOf(order, Math.max(0, Math.min(numResults, order.length)));
+        }
+    }
+
+    private final HashMap<Integer, Entry> entries = new HashMap<>();
+    private TreeSet<Entry> ranking = null;
+    private double totalSum = 0;
+    private long totalCount = 0;
+    private double pinnedMean = 0;
+
+    // Highest score first, then lowest movie ID
+    private static int compare(Entry a, Entry b) {
+        int byScore = Double.compare(b.score, a.score);
+        return byScore != 0 ? byScore : Integer.compare(a.movieID, b.movieID);
+    }
+
+    /**
+     * The weighted rating of a movie with the given rating total and count
+     */
+    static float weightedRating(double sum, int count, double mean) {
+        return (float) ((sum + MIN_VOTES * mean) / (count + MIN_VOTES));
+    }
+
+    /**
+     * Ranks the movies with the given totals, given as parallel arrays of the first n
+     */
+    static Ranked rank(int[] ids, double[] sums, int[] counts, int n) {
+        double totalSum = 0;
+        long totalCount = 0;
+        for (int i = 0; i < n; i++) {
+            totalSum += sums[i];
+            totalCount += counts[i];
+        }
+        double mean = totalCount == 0 ? 0 : totalSum / totalCount;
+
+        int ranked = 0;
+        Integer[] order = new Integer[n];
+        double[] scores = new double[n];
+        for (int i = 0; i < n; i++) {
+            if (counts[i] >= MIN_VOTES) {
+                scores[i] = weightedRating(sums[i], counts[i], mean);
+                order[ranked++] = i;
+            }
+        }
+        Arrays.sort(order, 0, ranked, (a, b) -> {
+            int byScore = Double.compare(scores[b], scores[a]);
+            return byScore != 0 ? byScore : Integer.compare(ids[a], ids[b]);
+        });
+        int[] result = new int[ranked];
+        double[] resultScores = new double[ranked];
+        for (int i = 0; i < ranked; i++) {
+            result[i] = ids[order[i]];
+            resultScores[i] = scores[order[i]];
+        }
+        return new Ranked(mean, result, resultScores);
+    }
+
+    /**
+     * Ranks a later version of the movies from an earlier version's ranking, moving only
+     * the movies whose totals changed: O(n + c log c) for c changed movies, rather than
+     * sorting all n again. Scores stay against the earlier ranking's mean
+     *
+     * @param changedIDs The movies changed since the earlier ranking, sorted, without repeats
+     * @param sums The changed movies' rating totals now, in the same order
+     * @param counts The changed movies' numbers of ratings now (0 if they have none left)
+     * @param mean The mean of every rating now
+     * @return The new ranking, or null if the mean has drifted more than MAX_DRIFT, so
+     *         every movie must be ranked again
+     */
+    static Ranked rerank(Ranked earlier, int[] changedIDs, double[] sums, int[] counts, double mean) {
+        if (Math.abs(mean - earlier.mean) > MAX_DRIFT) {
+            return null;
+        }
+        int numChanged = 0;
+        Integer[] changed = new Integer[changedIDs.length];
+        double[] changedScores = new double[changedIDs.length];
+        for (int i = 0; i < changedIDs.length; i++) {
+            if (counts[i] >= MIN_VOTES) {
+                changedScores[i] = weightedRating(sums[i], counts[i], earlier.mean);
+                changed[numChanged++] = i;
+            }
+        }
+        Arrays.sort(changed, 0, numChanged, (a, b) -> {
+            int byScore = Double.compare(changedScores[b], changedScores[a]);
+            return byScore != 0 ? byScore : Integer.compare(changedIDs[a], changedIDs[b]);
+        });
+
+        // Merge the unchanged movies, already in order, with the changed ones
+        int capacity = earlier.order.length + numChanged;
+        int[] order = new int[capacity];
+        double[] scores = new double[capacity];
+        int n = 0;
+        int c = 0;
+        for (int i = 0; i <= earlier.order.length; i++) {
+            boolean end = i == earlier.order.length;
+            if (!end && Arrays.binarySearch(changedIDs, earlier.order[i]) >= 0) {
+                continue;
+            }
+            while (c < numChanged && (end || before(changedScores[changed[c]], changedIDs[changed[c]], earlier.scores[i], earlier.order[i]))) {
+                order[n] = changedIDs[changed[c]];
+                scores[n++] = changedScores[changed[c++]];
+            }
+            if (!end) {
+                order[n] = earlier.order[i];
+                scores[n++] = earlier.scores[i];
+            }
+        }
+        return new Ranked(earlier.mean, Arrays.copyOf(order, n), Arrays.copyOf(scores, n));
+    }
+
+    // Whether a movie ranks before another: a higher score, or the same and a lower ID
+    private static boolean before(double score, int movieID, double otherScore, int otherID) {
+        int byScore = Double.compare(otherScore, score);
+        return byScore != 0 ? byScore < 0 : movieID < otherID;
+    }
+
+    /**
+     * @return The mean of every rating, or 0 if there are none
+     */
+    synchronized double mean() {
+        return totalCount == 0 ? 0 : totalSum / totalCount;
+    }
+
+    /**
+     * Records a movie's new rating total and count, after a rating of it was added,
+     * changed or removed
+     */
+    synchronized void update(int movieID, double sum, int count) {
+        Entry entry = entries.get(movieID);
+        if (entry == null) {
+            if (count == 0) {
+                return;
+            }
+            entry = new Entry(movieID);
+            entries.put(movieID, entry);
+        }
+        if (ranking != null && entry.count >= MIN_VOTES) {
+            ranking.remove(entry);
+        }
+        totalSum += sum - entry.sum;
+        totalCount += count - entry.count;
+        entry.sum = sum;
+        entry.count = count;
+        if (count == 0) {
+            entries.remove(movieID);
+        }
+
+        if (ranking != null) {
+            if (Math.abs(mean() - pinnedMean) > MAX_DRIFT) {
+                // Sorted again on the next read, which also saves re-ranking during bulk loads
+                ranking = null;
+            } else if (count >= MIN_VOTES) {
+                entry.score = weightedRating(sum, count, pinnedMean);
+                ranking.add(entry);
+            }
+        }
+    }
+
+    /**
+     * @return The IDs of the numResults movies with the highest weighted rating, highest
+     *         first, ties lowest ID first
+     */
+    synchronized int[] top(int numResults) {
+        if (ranking == null) {
+            double mean = mean();
+            TreeSet<Entry> sorted = new TreeSet<>(WeightedRanking::compare);
+            for (Entry entry : entries.values()) {
+                if (entry.count >= MIN_VOTES) {
+                    entry.score = weightedRating(entry.sum, entry.count, mean);
+                    sorted.add(entry);
+                }
+            }
+            pinnedMean = mean;
+            ranking = sorted;
+        }
+        int[] result = new int[Math.max(0, Math.min(numResults, ranking.size()))];
+        int i = 0;
+        for (Entry entry : ranking) {
+            if (i == result.length) {
+                break;
+            }
+            result[i++] = entry.movieID;
+        }
+        return result;
+    }
+
+    /**
+     * @return A movie's weighted rating against the current mean, or -1 if it has no ratings
+     */
+    synchronized float score(int movieID) {
+        Entry entry = entries.get(movieID);
+        return entry == null ? -1.0f : weightedRating(entry.sum, entry.count, mean());
+    }
+}
@@ -58,6 +58,20 @@ public class movieStructure {
         this(id, title, originalTitle, overview, tagline, status, genres, release, budget, revenue, languages, originalLanguage, runtime, homepage, adult, video, poster, 0.0, 0, "");
     }
 
+    // Copy with its own production lists, so the copy can be changed without affecting this one
+    public movieStructure copy() {
+        movieStructure copy = new movieStructure(id, title, originalTitle, overview, tagline, status, genres, release, budget, revenue, languages, originalLanguage, runtime, homepage, adult, video, poster, voteAverage, voteCount, imdbID);
+        copy.collectionID = collectionID;
+        copy.popularity = popularity;
+        for (Company company : productionCompanies) {
+            copy.productionCompanies.add(company);
+        }
+        for (String country : productionCountries) {
+            copy.productionCountries.add(country);
+        }
+        return copy;
+    }
+
     // Method to set collection ID when adding a film to a collection
     public void setCollectionID(Integer collectionID) {
         this.collectionID = collectionID;
@@ -45,7 +45,24 @@ public class MyHashMap<K extends Comparable<K>,V> implements IMap<K,V> {
      * it creates a new array of buckets before discarding the old one.
      */
     private void resize() {
-        int newSize = findNextPrime(table.length * 2); // Finds the next prime number greater than twice the current size
+        resize(findNextPrime(table.length * 2)); // Finds the next prime number greater than twice the current size
+    }
+
+    /**
+     * Grows the hash table once so that it can hold the given number of entries without
+     * resizing again. Used before bulk inserts, where growing one doubling at a time would
+     * rehash every entry several times over. The table at least doubles, so a stream of
+     * small batches still rehashes each entry only a constant number of times.
+     *
+     * @param numEntries the number of entries the map is expected to hold.
+     */
+    public void ensureCapacity(int numEntries) {
+        if (numEntries > (int) (table.length * loadFactorThreshold)) {
+            resize(findNextPrime(Math.max((int) (numEntries / loadFactorThreshold) + 1, table.length * 2)));
+        }
+    }
+
+    private void resize(int newSize) {
         KeyValuePairLinkedList[] newTable = new KeyValuePairLinkedList[newSize];
         
         // Initialize new buckets
@@ -29,6 +29,21 @@ public class MyHashSet<E> implements Iterable<E> {
         }
     }
 
+    /**
+     * Constructs a new hash set big enough to hold the given number of elements without
+     * resizing.
+     *
+     * @param expectedSize The number of elements the set is expected to hold.
+     */
+    @SuppressWarnings("unchecked")
+    public MyHashSet(int expectedSize) {
+        this.capacity = Math.max(DEFAULT_CAPACITY, findNextPrimeEfficiently((int) (expectedSize / loadFactor) + 1));
+        this.buckets = new LinkedList[capacity];
+        for (int i = 0; i < capacity; i++) {
+            buckets[i] = new LinkedList<>();
+        }
+    }
+
     /**
      * Determines if the hash set needs resizing.
      * 
@@ -0,0 +1,276 @@
+package structures;
+
+import java.util.Arrays;
+
+/**
+ * An immutable map from primitive int keys to values, implemented as a hash array mapped
+ * trie.
+ * <p>
+ * {@code put} and {@code remove} never change a map: they return a new one that shares every
+ * node off the changed path with the old one, so a change costs O(log32 n) new nodes and any
+ * number of versions can be kept at once. A reference to a map is therefore a snapshot that
+ * can be read from any thread without locking.
+ * <p>
+ * Each node holds up to 32 entries, picked by 5 bits of the key's hash, and a bitmap of which
+ * are present. The hash is a bijection of the key, so two different keys always differ within
+ * the 32 bits and no collision lists are needed.
+ *
+ * @param <V> the type of the values
+ */
+public final class PersistentIntMap<V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentIntMap EMPTY = new PersistentIntMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return The empty map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    /** A key and its value, as an entry of a node. */
+    private static final class Leaf {
+        final int key;
+        final Object value;
+
+        Leaf(int key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /** Entries (leaves or child nodes) for the hash slots set in the bitmap, in slot order. */
+    private static final class Node {
+        final int bitmap;
+        final Object[] entries;
+
+        Node(int bitmap, Object[] entries) {
+            this.bitmap = bitmap;
+            this.entries = entries;
+        }
+
+        Node with(int index, Object entry) {
+            Object[] copy = entries.clone();
+            copy[index] = entry;
+            return new Node(bitmap, copy);
+        }
+
+        Node inserted(int bit, int index, Object entry) {
+            Object[] copy = new Object[entries.length + 1];
+            System.arraycopy(entries, 0, copy, 0, index);
+            copy[index] = entry;
+            System.arraycopy(entries, index, copy, index + 1, entries.length - index);
+            return new Node(bitmap | bit, copy);
+        }
+
+        Node removed(int bit, int index) {
+            Object[] copy = new Object[entries.length - 1];
+            System.arraycopy(entries, 0, copy, 0, index);
+            System.arraycopy(entries, index + 1, copy, index, entries.length - index - 1);
+            return new Node(bitmap & ~bit, copy);
+        }
+    }
+
+    // A bijective mix of the key, so consecutive IDs spread over the slots
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @param key The key to look up.
+     * @return The value for the key, or {@code null} if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int hash = hash(key);
+        Node node = root;
+        for (int shift = 0; node != null; shift += BITS) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object entry = node.entries[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (entry instanceof Leaf) {
+                Leaf leaf = (Leaf) entry;
+                return leaf.key == key ? (V) leaf.value : null;
+            }
+            node = (Node) entry;
+        }
+        return null;
+    }
+
+    /**
+     * @return {@code true} if the map contains a value for the key.
+     */
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns the value for the given key, or the default if there is none.
+     */
+    public V getOrDefault(int key, V defaultValue) {
+        V value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Returns a map with the value associated with the key, replacing any previous value.
+     *
+     * @param key   The key.
+     * @param value The value, which must not be {@code null}.
+     * @return The new map, or this map if the key already had this exact value.
+     */
+    public PersistentIntMap<V> put(int key, V value) {
+        Leaf leaf = new Leaf(key, value);
+        boolean[] added = new boolean[1];
+        Node newRoot = root == null ? new Node(0, new Object[0]) : root;
+        newRoot = put(newRoot, leaf, hash(key), 0, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentIntMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    private static Node put(Node node, Leaf leaf, int hash, int shift, boolean[] added) {
+        int bit = 1 << ((hash >>> shift) & MASK);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            added[0] = true;
+            return node.inserted(bit, index, leaf);
+        }
+        Object entry = node.entries[index];
+        if (entry instanceof Leaf) {
+            Leaf existing = (Leaf) entry;
+            if (existing.key == leaf.key) {
+                return existing.value == leaf.value ? node : node.with(index, leaf);
+            }
+            added[0] = true;
+            return node.with(index, split(existing, hash(existing.key), leaf, hash, shift + BITS));
+        }
+        Node child = (Node) entry;
+        Node newChild = put(child, leaf, hash, shift + BITS, added);
+        return newChild == child ? node : node.with(index, newChild);
+    }
+
+    // A node holding two leaves whose hashes agree below the shift
+    private static Node split(Leaf a, int hashA, Leaf b, int hashB, int shift) {
+        int slotA = (hashA >>> shift) & MASK;
+        int slotB = (hashB >>> shift) & MASK;
+        if (slotA == slotB) {
+            return new Node(1 << slotA, new Object[] {split(a, hashA, b, hashB, shift + BITS)});
+        }
+        Object[] entries = slotA < slotB ? new Object[] {a, b} : new Object[] {b, a};
+        return new Node((1 << slotA) | (1 << slotB), entries);
+    }
+
+    /**
+     * Returns a map without the given key.
+     *
+     * @return The new map, or this map if it had no value for the key.
+     */
+    public PersistentIntMap<V> remove(int key) {
+        if (root == null) {
+            return this;
+        }
+        Node newRoot = remove(root, key, hash(key), 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot.entries.length == 0 ? empty() : new PersistentIntMap<>(newRoot, size - 1);
+    }
+
+    private static Node remove(Node node, int key, int hash, int shift) {
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        Object entry = node.entries[index];
+        if (entry instanceof Leaf) {
+            return ((Leaf) entry).key == key ? node.removed(bit, index) : node;
+        }
+        Node child = (Node) entry;
+        Node newChild = remove(child, key, hash, shift + BITS);
+        if (newChild == child) {
+            return node;
+        }
+        // Keep the trie canonical: a child left with a single leaf is replaced by that leaf
+        if (newChild.entries.length == 1 && newChild.entries[0] instanceof Leaf) {
+            return node.with(index, newChild.entries[0]);
+        }
+        return node.with(index, newChild);
+    }
+
+    /**
+     * @return The number of entries in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return {@code true} if the map has no entries.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return An array of the keys, in no particular order.
+     */
+    public int[] keys() {
+        int[] keys = new int[size];
+        if (root != null) {
+            collect(root, keys, null, 0);
+        }
+        return keys;
+    }
+
+    /**
+     * @return A list of the values, in the same order as {@link #keys()}.
+     */
+    @SuppressWarnings("unchecked")
+    public NewArrayList<V> values() {
+        Object[] values = new Object[size];
+        if (root != null) {
+            collect(root, null, values, 0);
+        }
+        NewArrayList<V> list = new NewArrayList<>();
+        for (Object value : values) {
+            list.add((V) value);
+        }
+        return list;
+    }
+
+    private static int collect(Node node, int[] keys, Object[] values, int count) {
+        for (Object entry : node.entries) {
+            if (entry instanceof Leaf) {
+                if (keys != null) keys[count] = ((Leaf) entry).key;
+                if (values != null) values[count] = ((Leaf) entry).value;
+                count++;
+            } else {
+                count = collect((Node) entry, keys, values, count);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "PersistentIntMap" + Arrays.toString(keys());
+    }
+}
@@ -1,20 +1,29 @@
 package ui;
 
-import java.awt.Image;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.awt.event.MouseEvent;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 
 import javax.swing.BorderFactory;
-import javax.swing.BoxLayout;
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
-import javax.swing.JSeparator;
 import javax.swing.SwingUtilities;
 import javax.swing.border.TitledBorder;
 import javax.swing.event.MouseInputAdapter;
 
 import utils.Constants;
+import utils.ImageLoader;
+import utils.QueryExecutor;
+import utils.ScaledImages;
 
 /***
  * Generic Class for a Reel (horizontal sequential view) of images with captions
@@ -29,6 +38,22 @@ abstract class AbstractReel extends JScrollPane implements Runnable {
     // private JScrollPane scrollPane;
     private JPanel resultsPanel;
 
+    // Items either side of the view that also get a label, so a short scroll shows them at once
+    private static final int OVERSCAN = 3;
+    private static final int CELL_GAP = 4;
+
+    private int[] items;
+    private String[] labels;
+    private int itemWidth;
+    private int itemHeight;
+    private int cellHeight;
+    private ImageIcon placeholderIcon;
+    // Counts the calls to displayItems, so a picture loaded for items no longer shown is dropped
+    private int generation = 0;
+    // The labels showing items, by item index, and those free to show another
+    private final HashMap<Integer, ReelCell> cells = new HashMap<>();
+    private final ArrayDeque<ReelCell> spareCells = new ArrayDeque<>();
+
     public AbstractReel(JPanel screenPanel){
         this(screenPanel, "Unknown Title", "Loading Reel");
     }
@@ -56,6 +81,7 @@ abstract class AbstractReel extends JScrollPane implements Runnable {
         setBackground(Constants.getHighlight());
         setForeground(Constants.getFontColor());
         getHorizontalScrollBar().setUnitIncrement(80);
+        getViewport().addChangeListener(e -> showCells());
 
         setVisible(false);
         loadingText = new JLabel(loadingMessage);
@@ -69,7 +95,12 @@ abstract class AbstractReel extends JScrollPane implements Runnable {
 
     /***
      * Display the items in the reel: A series of pictures with captions.
-     * @param items The items to display. Pictures retreived from getImage function
+     * Only the items in or near the view get a label, and labels scrolled out of view are
+     * reused for the items scrolled into it, so a reel of thousands of items costs no
+     * more than one of ten.
+     * @param items The items to display. Pictures are loaded in the background from the
+     *              getImageURL function as they come into view, with the getPlaceholder
+     *              picture shown until then
      * @param labels The labels for the items.
      */
     protected void displayItems(int[] items, String[] labels) {
@@ -86,29 +117,165 @@ abstract class AbstractReel extends JScrollPane implements Runnable {
         }
 
         setVisible(false); 
-        int itemHeight = getHeight() - 60;
-        int itemWidth = (int) (itemHeight * 0.66);
+        generation++;
+        this.items = items;
+        this.labels = labels;
+        itemHeight = getHeight() - 60;
+        itemWidth = (int) (itemHeight * 0.66);
 
-        resultsPanel.removeAll();
-        resultsPanel.setLayout(new BoxLayout(resultsPanel, BoxLayout.X_AXIS));
-        resultsPanel.setSize(itemWidth*items.length, itemHeight);
+        //The placeholder is shared, so it is only ever scaled once per size
+        BufferedImage placeholder = getPlaceholder();
+        placeholderIcon = null;
+        if (placeholder == null){
+            System.err.println("placeholder is null");
+        } else {
+            placeholderIcon = new ImageIcon(ScaledImages.getShared().getNow(placeholder, itemWidth, itemHeight));
+        }
 
-        for (int i = 0; i < items.length; i++){
-            JLabel textLabel = new JLabel(labels[i]);
-            int itemId = items[i];
+        //Labels from any items shown before are kept to show the new ones
+        for (ReelCell cell : cells.values()) {
+            releaseCell(cell);
+        }
+        cells.clear();
+        resultsPanel.remove(loadingText);
+        resultsPanel.setLayout(null);
+        JLabel sizing = new JLabel("Sizing", placeholderIcon, JLabel.CENTER);
+        sizing.setVerticalTextPosition(JLabel.BOTTOM);
+        cellHeight = Math.max(itemHeight, sizing.getPreferredSize().height);
+        resultsPanel.setPreferredSize(new Dimension((itemWidth + CELL_GAP) * items.length - CELL_GAP, cellHeight));
+        resultsPanel.revalidate();
+        getHorizontalScrollBar().setValue(0);
+        showCells();
 
-            Image poster = getImage(itemId);
-            if (poster == null){
-                System.err.println("poster is null");
+        setVisible(true);
+    }
+
+    /***
+     * Run a query for the items in the background, with their labels, then display them.
+     * @param query The store query for the items to display
+     * @param labels Gives the labels for all the items at once, so they can be found with
+     *               the stores' bulk getters. Also run in the background, as labels are
+     *               usually store queries too
+     * @param emptyMessage Shown if the query finds no items
+     */
+    protected void displayQuery(Supplier<int[]> query, Function<int[], String[]> labels, String emptyMessage) {
+        QueryExecutor.getShared().submit(this, () -> {
+            int[] items = query.get();
+            if (items == null || items.length == 0) {
+                return new QueryResult(items, new String[0]);
             }
-            textLabel.setIcon(new ImageIcon(poster.getScaledInstance(itemWidth, itemHeight, Image.SCALE_DEFAULT)));
-            textLabel.setHorizontalTextPosition(JLabel.CENTER);
-            textLabel.setVerticalTextPosition(JLabel.BOTTOM);
-            textLabel.setSize(itemWidth, itemHeight);
-            textLabel.setForeground(Constants.getFontColor());
-            textLabel.addMouseListener(new MouseInputAdapter() {
+            return new QueryResult(items, labels.apply(items));
+        }, result -> {
+            if (result.items == null || result.items.length == 0) {
+                System.out.println("\t" + emptyMessage);
+                loadingText.setText(emptyMessage);
+                return;
+            }
+            displayItems(result.items, result.labels);
+        });
+    }
+
+    /**
+     * @return The label made for each index up to count, e.g. from arrays found in bulk
+     */
+    protected static String[] labels(int count, IntFunction<String> label) {
+        String[] labels = new String[count];
+        for (int i = 0; i < count; i++) {
+            labels[i] = label.apply(i);
+        }
+        return labels;
+    }
+
+    /***
+     * The items a query found, with their labels.
+     */
+    private static class QueryResult {
+        private final int[] items;
+        private final String[] labels;
+
+        QueryResult(int[] items, String[] labels) {
+            this.items = items;
+            this.labels = labels;
+        }
+    }
+
+    // Gives a label to each item in or near the view, taking them from items out of it
+    private void showCells() {
+        if (items == null) {
+            return;
+        }
+        Rectangle view = getViewport().getViewRect();
+        int viewWidth = view.width > 0 ? view.width : getWidth();
+        int stride = itemWidth + CELL_GAP;
+        int first = Math.max(0, view.x / stride - OVERSCAN);
+        int last = Math.min(items.length - 1, (view.x + viewWidth) / stride + OVERSCAN);
+
+        Iterator<ReelCell> shown = cells.values().iterator();
+        while (shown.hasNext()) {
+            ReelCell cell = shown.next();
+            if (cell.index < first || cell.index > last) {
+                shown.remove();
+                releaseCell(cell);
+            }
+        }
+        for (int i = first; i <= last; i++) {
+            if (!cells.containsKey(i)) {
+                cells.put(i, showCell(i));
+            }
+        }
+    }
+
+    private ReelCell showCell(int index) {
+        ReelCell cell = spareCells.poll();
+        if (cell == null) {
+            cell = new ReelCell();
+            resultsPanel.add(cell);
+        }
+        cell.index = index;
+        cell.setText(labels[index]);
+        cell.setIcon(placeholderIcon);
+        cell.setBounds(index * (itemWidth + CELL_GAP), 0, itemWidth, cellHeight);
+        cell.setVisible(true);
+
+        ReelCell shownCell = cell;
+        int width = itemWidth;
+        int height = itemHeight;
+        int shownGeneration = generation;
+        ImageLoader.getShared().load(getImageURL(items[index]), poster ->
+            ScaledImages.getShared().load(poster, width, height, scaled -> {
+                //The label may have been given to another item while this loaded, at
+                //another index or at the same index of newly displayed items
+                if (shownCell.index == index && generation == shownGeneration) {
+                    shownCell.setIcon(new ImageIcon(scaled));
+                }
+            }));
+        return cell;
+    }
+
+    private void releaseCell(ReelCell cell) {
+        cell.index = -1;
+        cell.setIcon(null);
+        cell.setVisible(false);
+        spareCells.push(cell);
+    }
+
+    /***
+     * A label for whichever item it is currently showing.
+     */
+    private class ReelCell extends JLabel {
+        private int index = -1;
+
+        ReelCell() {
+            setHorizontalTextPosition(JLabel.CENTER);
+            setVerticalTextPosition(JLabel.BOTTOM);
+            setForeground(Constants.getFontColor());
+            addMouseListener(new MouseInputAdapter() {
                 @Override
                 public void mouseClicked(MouseEvent e) {
+                    if (index < 0) {
+                        return;
+                    }
+                    int itemId = items[index];
                     SwingUtilities.invokeLater(new Runnable() {
                         @Override
                         public void run() {
@@ -117,19 +284,18 @@ abstract class AbstractReel extends JScrollPane implements Runnable {
                     });
                 }
             });
-
-            resultsPanel.add(textLabel);
-            if (i < items.length-1) {
-                resultsPanel.add(new JSeparator(JSeparator.VERTICAL));
-            }
         }
-
-        setVisible(true);
     }
 
     protected void itemClickAction(int itemId){ }
 
-    protected Image getImage(int itemId){
+    // The URL of an item's picture, or null if it has none
+    protected String getImageURL(int itemId){
+        return null;
+    }
+
+    // The picture shown for items while theirs loads, or if they have none
+    protected BufferedImage getPlaceholder(){
         return null;
     }
 
@@ -4,13 +4,12 @@ import javax.swing.JPanel;
 
 import screen.FilmScreen;
 
-import java.awt.Image;
-import javax.imageio.ImageIO;
-import java.io.File;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.net.URL;
 
 import interfaces.AbstractStores;
+import utils.ImageCache;
+import utils.ImageLoader;
 
 public class MovieReel extends AbstractReel{
     protected AbstractStores stores;
@@ -29,39 +28,23 @@ public class MovieReel extends AbstractReel{
         this.stores = stores;
     }
     
+    @Override
+    protected String getImageURL(int movieId){
+        return ImageLoader.imageURL("w342", stores.getMovies().getPoster(movieId));
+    }
+
     // REFERENCE: https://stackoverflow.com/questions/21587309/positioning-jlabel-in-jpanel-below-the-image
     // StackOverFlow, user 'MadProgrammer'
     // date: 5/2/2014
     // Date accessed ~ January 25th 2023
     @Override
-    protected Image getImage(int movieId){
+    protected BufferedImage getPlaceholder(){
         try{
-            String posterEndURL = stores.getMovies().getPoster(movieId);
-            Image unknown = ImageIO.read(new File("src/main/resources/img/Movie-Unknown-poster.png"));
-            if (posterEndURL == null || posterEndURL.equals("")){
-                return unknown;
-            }
-
-            String completeURL = "https://image.tmdb.org/t/p/w342" + posterEndURL;
-            Image im;
-            try{
-                im = ImageIO.read(new URL(completeURL));
-                if (im == null){ // File not found at URL
-                    im = unknown;
-                }
-            }
-            catch (IOException e){
-                im = unknown;
-            }
-
-            return im;
-
+            return ImageCache.getFile("src/main/resources/img/Movie-Unknown-poster.png");
         }
         catch (IOException e){
             return null;
-
         }
-        
     }
 
     @Override
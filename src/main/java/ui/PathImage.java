@@ -1,12 +1,13 @@
 package ui;
 import java.awt.image.BufferedImage;
 import java.awt.*;
-import javax.imageio.ImageIO;
 
 import java.io.*;
-import java.net.URL;
 import javax.swing.*;
 
+import utils.ImageCache;
+import utils.ImageLoader;
+
 public class PathImage extends JLabel {
     private BufferedImage rawImage;
     private Image image;
@@ -19,10 +20,10 @@ public class PathImage extends JLabel {
         try{
             switch (type){
                 case Movie:
-                    unknown = ImageIO.read(new File("src/main/resources/img/Movie-Unknown-poster.png"));
+                    unknown = ImageCache.getFile("src/main/resources/img/Movie-Unknown-poster.png");
                     break;
                 case Person:
-                    unknown = ImageIO.read(new File("src/main/resources/img/Person-Unknown.png"));
+                    unknown = ImageCache.getFile("src/main/resources/img/Person-Unknown.png");
                     break;
                 default:
                     unknown = null;
@@ -30,34 +31,16 @@ public class PathImage extends JLabel {
 
             if (urlEnding == null || urlEnding.equals("")){
                 System.err.println("Unable to load image, ending for image url was null or empty");
-                rawImage = unknown;
-            }
-
-            //Try and get the image from the url
-            String completeURL = "https://image.tmdb.org/t/p/w500" + urlEnding;
-            BufferedImage im;
-            try {
-                im = ImageIO.read(new URL(completeURL));
-                if (im == null){
-                    im = unknown;
-                }
-            }
-            catch (IOException e){
-                im = unknown;
-            }
-
-            rawImage = im;
-
-            if (rawImage == unknown){
-                boundary = 10;
-                isUnknown = true;
-                this.setBorder(BorderFactory.createLineBorder(Color.WHITE));
-            }
-            else {
-                boundary = 0;
             }
 
+            //Show the unknown image until the one at the url has loaded
+            rawImage = unknown;
+            boundary = 10;
+            isUnknown = true;
+            this.setBorder(BorderFactory.createLineBorder(Color.WHITE));
             setIcon(new ImageIcon(rawImage));
+
+            load(ImageLoader.imageURL("w500", urlEnding));
         }
         catch (IOException e){
             //Unable to find the unknown file
@@ -67,4 +50,21 @@ public class PathImage extends JLabel {
         }
     }
 
+    /***
+     * Loads the image at a url in the background, and shows it in place of the current
+     * image once it has loaded. The current image stays if it cannot be loaded
+     * @param url The complete url of the image
+     */
+    public void load(String url){
+        ImageLoader.getShared().load(url, im -> {
+            rawImage = im;
+            boundary = 0;
+            isUnknown = false;
+            setBorder(null);
+            setIcon(new ImageIcon(rawImage));
+        });
+    }
+
+    public boolean isUnknown(){ return isUnknown; }
+
 }
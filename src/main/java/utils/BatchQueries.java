@@ -0,0 +1,258 @@
+package utils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+
+import interfaces.AbstractStores;
+import interfaces.IMovies;
+import interfaces.IRatings;
+import stores.Person;
+
+/***
+ * Runs a file of store queries without the UI, for reports and scripts.
+ *
+ * Each line of the file is one query: a name, then its argument. Blank lines and lines
+ * starting with # are skipped. The queries are
+ *   top-rated [n], top-weighted [n], most-rated [n]   the top n films (default 100)
+ *   most-credited [n]                                 the n most credited cast
+ *   find-films term, find-cast name, find-crew name   films or people matching a search
+ *   cast-films id, crew-films id, keyword-films id    the films of a person or keyword
+ *
+ * Queries run side by side on a fixed pool of threads, so the stores must be safe to
+ * query from many threads (ConcurrentStores or MappedStores). Each result row is written
+ * as soon as its query finishes, as CSV or as JSON lines, with the rows of one query kept
+ * together: the query's number in the file, its text, the row's rank, then the film or
+ * person ID, title or name, and the value the query ranks by (a rating or a count). The
+ * time each query took is written to a separate report once all have finished.
+ */
+public class BatchQueries {
+    public enum Format { CSV, JSON }
+
+    private static final int DEFAULT_COUNT = 100;
+
+    private final AbstractStores stores;
+    private final int numThreads;
+
+    /***
+     * A query's result rows, and how long it took.
+     */
+    private static final class Result {
+        final List<Object[]> rows = new ArrayList<>();
+        long nanos;
+        String error;
+    }
+
+    public BatchQueries(AbstractStores stores, int numThreads) {
+        this.stores = stores;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * @return The queries in a file, skipping blank lines and comments
+     */
+    public static List<String> read(Path file) throws IOException {
+        List<String> queries = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                queries.add(line);
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Runs the queries side by side, writing their rows to out as each finishes, then
+     * the time each took to report
+     * @return The number of queries that failed
+     */
+    public int run(List<String> queries, Format format, PrintStream out, PrintStream report) {
+        if (format == Format.CSV) {
+            out.println("query,text,rank,id,name,value");
+        }
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads, task -> {
+            Thread thread = new Thread(task, "batch-query-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            int number = i + 1;
+            String query = queries.get(i);
+            futures.add(pool.submit(() -> {
+                Result result = execute(query);
+                synchronized (out) {
+                    for (int rank = 0; rank < result.rows.size(); rank++) {
+                        Object[] row = result.rows.get(rank);
+                        out.println(format == Format.CSV ? csv(number, query, rank + 1, row) : json(number, query, rank + 1, row));
+                    }
+                    out.flush();
+                }
+                return result;
+            }));
+        }
+
+        int failed = 0;
+        long[] nanos = new long[queries.size()];
+        report.println("Query latencies:");
+        for (int i = 0; i < futures.size(); i++) {
+            Result result;
+            try {
+                result = futures.get(i).get();
+            } catch (InterruptedException | ExecutionException e) {
+                result = new Result();
+                result.error = e.toString();
+            }
+            nanos[i] = result.nanos;
+            if (result.error != null) {
+                failed++;
+                report.println(String.format("%5d %10.3fms  %s  FAILED: %s", i + 1, result.nanos / 1e6, queries.get(i), result.error));
+            } else {
+                report.println(String.format("%5d %10.3fms  %s  (%d rows)", i + 1, result.nanos / 1e6, queries.get(i), result.rows.size()));
+            }
+        }
+        pool.shutdown();
+        long total = System.nanoTime() - start;
+
+        Arrays.sort(nanos);
+        if (nanos.length > 0) {
+            report.println(String.format("Ran %d queries (%d failed) on %d threads in %.3fms: median %.3fms, max %.3fms",
+                nanos.length, failed, numThreads, total / 1e6, nanos[nanos.length / 2] / 1e6, nanos[nanos.length - 1] / 1e6));
+        }
+        return failed;
+    }
+
+    // Runs one query, timing it, and keeps any failure rather than throwing it
+    private Result execute(String query) {
+        Result result = new Result();
+        long start = System.nanoTime();
+        try {
+            int split = query.indexOf(' ');
+            String name = split < 0 ? query : query.substring(0, split);
+            String argument = split < 0 ? "" : query.substring(split + 1).trim();
+            rows(name, argument, result.rows);
+        } catch (RuntimeException e) {
+            result.rows.clear();
+            result.error = e.getMessage() == null ? e.toString() : e.getMessage();
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private void rows(String name, String argument, List<Object[]> rows) {
+        IMovies movies = stores.getMovies();
+        IRatings ratings = stores.getRatings();
+        switch (name) {
+            case "top-rated":
+                int[] top = ratings.getTopAverageRatedMovies(count(argument));
+                films(top, ratings.getMovieAverageRatings(top), rows);
+                break;
+            case "top-weighted":
+                int[] weighted = ratings.getTopWeightedRatedMovies(count(argument));
+                float[] weightedRatings = new float[weighted.length];
+                for (int i = 0; i < weighted.length; i++) {
+                    weightedRatings[i] = ratings.getMovieWeightedRating(weighted[i]);
+                }
+                films(weighted, weightedRatings, rows);
+                break;
+            case "most-rated":
+                int[] mostRated = ratings.getMostRatedMovies(count(argument));
+                String[] titles = movies.getTitles(mostRated);
+                for (int i = 0; i < mostRated.length; i++) {
+                    rows.add(new Object[] {mostRated[i], titles[i], ratings.getNumRatings(mostRated[i])});
+                }
+                break;
+            case "most-credited":
+                for (Person person : stores.getCredits().getMostCastCredits(count(argument))) {
+                    rows.add(new Object[] {person.getID(), person.getName(), stores.getCredits().getNumCastCredits(person.getID())});
+                }
+                break;
+            case "find-films":
+                int[] found = movies.findFilms(term(argument));
+                films(found, ratings.getMovieAverageRatings(found), rows);
+                break;
+            case "find-cast":
+                for (Person person : stores.getCredits().findCast(term(argument))) {
+                    rows.add(new Object[] {person.getID(), person.getName(), stores.getCredits().getNumCastCredits(person.getID())});
+                }
+                break;
+            case "find-crew":
+                for (Person person : stores.getCredits().findCrew(term(argument))) {
+                    rows.add(new Object[] {person.getID(), person.getName(), stores.getCredits().getCrewFilms(person.getID()).length});
+                }
+                break;
+            case "cast-films":
+                int[] castFilms = stores.getCredits().getCastFilms(id(argument));
+                films(castFilms, ratings.getMovieAverageRatings(castFilms), rows);
+                break;
+            case "crew-films":
+                int[] crewFilms = stores.getCredits().getCrewFilms(id(argument));
+                films(crewFilms, ratings.getMovieAverageRatings(crewFilms), rows);
+                break;
+            case "keyword-films":
+                int[] keywordFilms = stores.getKeywords().getFilmsWithKeyword(id(argument));
+                films(keywordFilms, ratings.getMovieAverageRatings(keywordFilms), rows);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown query: " + name);
+        }
+    }
+
+    private void films(int[] ids, float[] values, List<Object[]> rows) {
+        String[] titles = stores.getMovies().getTitles(ids);
+        for (int i = 0; i < ids.length; i++) {
+            rows.add(new Object[] {ids[i], titles[i], values[i]});
+        }
+    }
+
+    private static int count(String argument) {
+        return argument.isEmpty() ? DEFAULT_COUNT : id(argument);
+    }
+
+    private static int id(String argument) {
+        try {
+            return Integer.parseInt(argument);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: \"" + argument + "\"");
+        }
+    }
+
+    private static String term(String argument) {
+        if (argument.isEmpty()) {
+            throw new IllegalArgumentException("Missing search term");
+        }
+        return argument;
+    }
+
+    private static String csv(int number, String query, int rank, Object[] row) {
+        return number + "," + csvField(query) + "," + rank + "," + row[0] + "," + csvField(row[1] == null ? "" : row[1].toString()) + "," + row[2];
+    }
+
+    // Quotes a field holding a comma, quote or line break, doubling its quotes
+    private static String csvField(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            return field;
+        }
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String json(int number, String query, int rank, Object[] row) {
+        return "{\"query\":" + number + ",\"text\":" + JSONObject.quote(query) + ",\"rank\":" + rank + ",\"id\":" + row[0]
+            + ",\"name\":" + (row[1] == null ? "null" : JSONObject.quote(row[1].toString())) + ",\"value\":" + row[2] + "}";
+    }
+}
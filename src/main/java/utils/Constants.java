@@ -49,6 +49,12 @@ public final class Constants {
 
     public static final int mostUserRatingCount = 100;
     public static final int topMoviesCount = 100;
+    public static final int trendingMoviesCount = 20;
+    public static final int similarFilmsCount = 10;
+
+    // Searching as you type waits for a pause this long, and for a term this long
+    public static final int liveSearchDelayMillis = 250;
+    public static final int liveSearchMinLength = 2;
 
     public static final String defaultCreditsPath       = "data/credits.csv";
     public static final String defaultKeywordsPath      = "data/keywords.csv";
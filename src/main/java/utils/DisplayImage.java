@@ -20,10 +20,10 @@ public class DisplayImage extends JPanel{
         try{
             switch (type){
                 case Movie:
-                    unknown = ImageIO.read(new File("src/main/resources/img/Movie-Unknown-poster.png"));
+                    unknown = ImageCache.getFile("src/main/resources/img/Movie-Unknown-poster.png");
                     break;
                 case Person:
-                    unknown = ImageIO.read(new File("src/main/resources/img/Person-Unknown.png"));
+                    unknown = ImageCache.getFile("src/main/resources/img/Person-Unknown.png");
                     break;
                 default:
                     unknown = null;
@@ -31,32 +31,15 @@ public class DisplayImage extends JPanel{
 
             if (urlEnding == null || urlEnding.equals("")){
                 System.err.println("Unable to load image, ending for image url was null or empty");
-                rawImage = unknown;
             }
 
-            //Try and get the image from the url
-            String completeURL = "https://image.tmdb.org/t/p/w500" + urlEnding;
-            BufferedImage im;
-            try {
-                im = ImageIO.read(new URL(completeURL));
-                if (im == null){
-                    im = unknown;
-                }
-            }
-            catch (IOException e){
-                im = unknown;
-            }
-
-            rawImage = im;
+            //Show the unknown image until the one at the url has loaded
+            rawImage = unknown;
+            boundary = 10;
+            isUnknown = true;
+            this.setBorder(BorderFactory.createLineBorder(Color.WHITE));
 
-            if (rawImage == unknown){
-                boundary = 10;
-                isUnknown = true;
-                this.setBorder(BorderFactory.createLineBorder(Color.WHITE)); 
-            }
-            else {
-                boundary = 0;
-            }
+            load(ImageLoader.imageURL("w500", urlEnding));
         }
         catch (IOException e){
             //Unable to find the unknown file
@@ -67,40 +50,54 @@ public class DisplayImage extends JPanel{
     }
 
     public DisplayImage(String fileName) throws IOException {
-        rawImage = ImageIO.read(new File(fileName));
+        rawImage = ImageCache.getFile(fileName);
     }
 
     public DisplayImage(String fileName, int boundary, boolean URL) throws IOException {
         if (URL) {
             rawImage = ImageIO.read(new URL(fileName));
         } else {
-            rawImage = ImageIO.read(new File(fileName));
+            rawImage = ImageCache.getFile(fileName);
         }
         this.boundary = boundary;
     }
 
+    /***
+     * Loads the image at a url in the background, and shows it in place of the current
+     * image once it has loaded. The current image stays if it cannot be loaded
+     * @param url The complete url of the image
+     */
+    public void load(String url){
+        ImageLoader.getShared().load(url, im -> {
+            rawImage = im;
+            boundary = 0;
+            isUnknown = false;
+            setBorder(null);
+            repaint();
+        });
+    }
+
     public boolean isUnknown(){ return isUnknown; }
 
     @Override
     protected void paintComponent(Graphics g) {
-        if (this.getWidth() > this.getHeight()) {
-            image = rawImage.getScaledInstance(-1, this.getHeight(), Image.SCALE_SMOOTH);
-        } else {
-            image = rawImage.getScaledInstance(this.getWidth(), -1, Image.SCALE_SMOOTH);
+        //Fit the image to the panel, keeping its shape, less the boundary
+        double fit = Math.min((double) this.getWidth() / rawImage.getWidth(), (double) this.getHeight() / rawImage.getHeight());
+        int width = (int) (rawImage.getWidth() * fit) - boundary;
+        int height = (int) (rawImage.getHeight() * fit) - boundary;
+        if (width <= 0 || height <= 0) {
+            return;
         }
 
-        if (image.getWidth(this.getParent()) > this.getWidth()) {
-            image = rawImage.getScaledInstance(this.getWidth(), -1, Image.SCALE_SMOOTH);
+        int xPos = (this.getWidth() / 2) - (width / 2);
+        int yPos = (this.getHeight() / 2) - (height / 2);
+        image = ScaledImages.getShared().get(rawImage, width, height);
+        if (image == null) {
+            //Draw it roughly scaled until the proper rendition is ready
+            ScaledImages.getShared().load(rawImage, width, height, scaled -> repaint());
+            g.drawImage(rawImage, xPos, yPos, width, height, this);
+            return;
         }
-
-        if (image.getHeight(this.getParent()) > this.getHeight()) {
-            image = rawImage.getScaledInstance(-1, this.getHeight(), Image.SCALE_SMOOTH);
-        }
-
-        image = rawImage.getScaledInstance(image.getWidth(this.getParent())-boundary, image.getHeight(this.getParent())-boundary, Image.SCALE_SMOOTH);
-
-        int xPos = (this.getWidth() / 2) - (image.getWidth(this.getParent()) / 2);
-        int yPos = (this.getHeight() / 2) - (image.getHeight(this.getParent()) / 2);
         g.drawImage(image, xPos, yPos, this);
     }
 }
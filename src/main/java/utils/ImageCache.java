@@ -0,0 +1,259 @@
+package utils;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+/***
+ * Keeps downloaded images, so a poster is only fetched and decoded once.
+ *
+ * Decoded images are kept in memory, least recently used first out once their pixels
+ * (four bytes each) add up to more than maxMemoryBytes. Behind that, the downloaded
+ * bytes can be kept on disk, so they outlive the app: each file is stored once under
+ * blobs/, named by the SHA-256 of its bytes, and urls/ maps the hash of each URL to the
+ * blob it downloaded. Blobs are removed least recently used first once they add up to
+ * more than maxDiskBytes, and a URL whose blob has gone, or no longer matches its hash,
+ * is simply downloaded again.
+ *
+ * Image files from the app itself, such as the placeholders, are read once and shared
+ * through getFile.
+ */
+public class ImageCache {
+    public static final long DEFAULT_MEMORY_BYTES = 64L << 20;
+    public static final long DEFAULT_DISK_BYTES = 256L << 20;
+    public static final String DEFAULT_DIRECTORY = System.getProperty("java.io.tmpdir") + File.separator + "warwickplus-images";
+
+    private static final ConcurrentHashMap<String, BufferedImage> files = new ConcurrentHashMap<>();
+
+    private final long maxMemoryBytes;
+    private final LinkedHashMap<String, BufferedImage> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+
+    private final Path blobs;
+    private final Path urls;
+    private final long maxDiskBytes;
+    // Sizes of the blobs on disk, least recently used first
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes = 0;
+
+    /**
+     * @param maxMemoryBytes The most pixel bytes of decoded images to keep in memory
+     * @param directory The directory to keep downloaded images in, or null to keep none
+     * @param maxDiskBytes The most bytes of downloaded images to keep on disk
+     */
+    public ImageCache(long maxMemoryBytes, Path directory, long maxDiskBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        if (directory == null) {
+            this.blobs = null;
+            this.urls = null;
+            return;
+        }
+        this.blobs = directory.resolve("blobs");
+        this.urls = directory.resolve("urls");
+        try {
+            Files.createDirectories(blobs);
+            Files.createDirectories(urls);
+            scan();
+        } catch (IOException e) {
+            System.err.println("Unable to use image cache directory " + directory + ": " + e.getMessage());
+        }
+    }
+
+    // Picks up the blobs already on disk, oldest first, then trims them to size
+    private void scan() throws IOException {
+        List<File> found = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(blobs)) {
+            // Skipping any temporary file left by a write that did not finish
+            paths.filter(path -> !path.toString().endsWith(".tmp")).forEach(path -> found.add(path.toFile()));
+        }
+        found.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        synchronized (disk) {
+            for (File blob : found) {
+                disk.put(blob.getName(), blob.length());
+                diskBytes += blob.length();
+            }
+            evict();
+        }
+    }
+
+    /**
+     * @return An image file from the app, read on the first call and shared after
+     * @throws IOException If the file cannot be read as an image
+     */
+    public static BufferedImage getFile(String path) throws IOException {
+        BufferedImage image = files.get(path);
+        if (image == null) {
+            image = ImageIO.read(new File(path));
+            if (image == null) {
+                throw new IOException("Not an image file: " + path);
+            }
+            files.putIfAbsent(path, image);
+        }
+        return image;
+    }
+
+    /**
+     * @return The decoded image kept in memory for a URL, or null if there is none
+     */
+    public BufferedImage get(String url) {
+        synchronized (memory) {
+            return memory.get(url);
+        }
+    }
+
+    /**
+     * Keeps a decoded image in memory, making room by dropping the least recently used
+     */
+    public void put(String url, BufferedImage image) {
+        long bytes = weight(image);
+        if (bytes > maxMemoryBytes) {
+            return;
+        }
+        synchronized (memory) {
+            BufferedImage old = memory.put(url, image);
+            memoryBytes += bytes - (old == null ? 0 : weight(old));
+            Iterator<BufferedImage> eldest = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes) {
+                memoryBytes -= weight(eldest.next());
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * @return The downloaded bytes kept on disk for a URL, or null if there are none
+     */
+    public byte[] getBytes(String url) {
+        if (blobs == null) {
+            return null;
+        }
+        Path ref = urls.resolve(hash(url.getBytes(StandardCharsets.UTF_8)));
+        try {
+            if (!Files.exists(ref)) {
+                return null;
+            }
+            String blob = new String(Files.readAllBytes(ref), StandardCharsets.US_ASCII);
+            synchronized (disk) {
+                if (disk.get(blob) == null) {
+                    // The blob was evicted
+                    Files.deleteIfExists(ref);
+                    return null;
+                }
+                Path file = blobs.resolve(blob);
+                byte[] bytes = Files.exists(file) ? Files.readAllBytes(file) : null;
+                if (bytes == null || !hash(bytes).equals(blob)) {
+                    // Deleted or damaged outside the cache, so the URL is downloaded again
+                    forget(blob);
+                    Files.deleteIfExists(ref);
+                    return null;
+                }
+                file.toFile().setLastModified(System.currentTimeMillis());
+                return bytes;
+            }
+        } catch (IOException e) {
+            System.err.println("Unable to read cached image for " + url + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the downloaded bytes of a URL on disk, making room by removing the least
+     * recently used
+     */
+    public void putBytes(String url, byte[] bytes) {
+        if (blobs == null || bytes.length > maxDiskBytes) {
+            return;
+        }
+        String blob = hash(bytes);
+        try {
+            synchronized (disk) {
+                if (disk.get(blob) == null) {
+                    write(blobs.resolve(blob), bytes);
+                    disk.put(blob, (long) bytes.length);
+                    diskBytes += bytes.length;
+                    evict();
+                }
+            }
+            write(urls.resolve(hash(url.getBytes(StandardCharsets.UTF_8))), blob.getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            System.err.println("Unable to cache image for " + url + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The pixel bytes of the images kept in memory
+     */
+    public long getMemoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    /**
+     * @return The bytes of the images kept on disk
+     */
+    public long getDiskBytes() {
+        synchronized (disk) {
+            return diskBytes;
+        }
+    }
+
+    // Called holding the disk lock
+    private void evict() throws IOException {
+        Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes) {
+            Map.Entry<String, Long> blob = eldest.next();
+            Files.deleteIfExists(blobs.resolve(blob.getKey()));
+            diskBytes -= blob.getValue();
+            eldest.remove();
+        }
+    }
+
+    // Called holding the disk lock
+    private void forget(String blob) throws IOException {
+        Long bytes = disk.remove(blob);
+        if (bytes != null) {
+            diskBytes -= bytes;
+        }
+        Files.deleteIfExists(blobs.resolve(blob));
+    }
+
+    // Writes to a temporary file first, so a half-written file is never read
+    private static void write(Path path, byte[] bytes) throws IOException {
+        Path temp = Files.createTempFile(path.getParent(), "write", ".tmp");
+        Files.write(temp, bytes);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long weight(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package utils;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+/***
+ * Loads posters and profile pictures in the background, so that building a screen never
+ * waits on the network.
+ *
+ * Images are read by a fixed pool of daemon threads. Each host is sent at most
+ * maxPerHost requests at a time; requests beyond that wait in a queue for the host
+ * rather than holding a thread, so a slow host cannot starve the others. Requests for
+ * an image that is already being read share the one read.
+ *
+ * Images are found under a base location, by default the TMDB image server. A local
+ * directory laid out the same way (size/path, e.g. w342/abc.jpg) can stand in for it.
+ *
+ * Given an ImageCache, images already in memory are handed back without a read at all,
+ * and downloads are kept on disk for the next time the app runs.
+ */
+public class ImageLoader {
+    public static final String TMDB_BASE = "https://image.tmdb.org/t/p/";
+    public static final int DEFAULT_THREADS = 8;
+    public static final int DEFAULT_PER_HOST = 4;
+
+    private static volatile ImageLoader shared;
+    private static volatile String base = TMDB_BASE;
+    private static volatile String cacheDirectory = ImageCache.DEFAULT_DIRECTORY;
+
+    private final int maxPerHost;
+    private final ImageCache cache;
+    private final ExecutorService pool;
+    // Reads in flight, by URL, so that repeated requests share one read
+    private final ConcurrentHashMap<String, CompletableFuture<BufferedImage>> loading = new ConcurrentHashMap<>();
+    // Reads waiting for a free slot at their host, and how many each host has running
+    private final Map<String, ArrayDeque<Runnable>> waiting = new HashMap<>();
+    private final Map<String, Integer> running = new HashMap<>();
+    private final AtomicInteger reads = new AtomicInteger();
+
+    public ImageLoader(int numThreads, int maxPerHost) {
+        this(numThreads, maxPerHost, null);
+    }
+
+    /**
+     * @param cache Where to keep loaded images, or null to keep none
+     */
+    public ImageLoader(int numThreads, int maxPerHost, ImageCache cache) {
+        this.maxPerHost = maxPerHost;
+        this.cache = cache;
+        AtomicInteger threads = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(numThreads, task -> {
+            Thread thread = new Thread(task, "image-loader-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return The loader shared by every screen
+     */
+    public static ImageLoader getShared() {
+        if (shared == null) {
+            synchronized (ImageLoader.class) {
+                if (shared == null) {
+                    ImageCache cache = new ImageCache(ImageCache.DEFAULT_MEMORY_BYTES,
+                        cacheDirectory == null ? null : Paths.get(cacheDirectory), ImageCache.DEFAULT_DISK_BYTES);
+                    shared = new ImageLoader(DEFAULT_THREADS, DEFAULT_PER_HOST, cache);
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Sets where images are found: a URL ending in /, or a local directory
+     */
+    public static void setBase(String location) {
+        if (location.startsWith("http://") || location.startsWith("https://") || location.startsWith("file:")) {
+            base = location.endsWith("/") ? location : location + "/";
+        } else {
+            base = new File(location).toURI().toString();
+        }
+    }
+
+    /**
+     * Sets the directory the shared loader keeps downloaded images in, or null to keep
+     * them in memory only. Only takes effect before the shared loader is first used
+     */
+    public static void setCacheDirectory(String directory) {
+        cacheDirectory = directory;
+    }
+
+    /**
+     * @param size The TMDB size of the image, e.g. w342 or original
+     * @param path The path of the image, as stored for a film or person
+     * @return The URL of the image, or null if there is no path
+     */
+    public static String imageURL(String size, String path) {
+        if (path == null || path.equals("")) {
+            return null;
+        }
+        return base + size + (path.startsWith("/") ? path : "/" + path);
+    }
+
+    /**
+     * Reads the image at a URL in the background
+     * @return The image once read, or null if it could not be read or there is no URL
+     */
+    public CompletableFuture<BufferedImage> load(String url) {
+        if (url == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        BufferedImage cached = cache == null ? null : cache.get(url);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<BufferedImage> result = loading.get(url);
+        if (result != null) {
+            return result;
+        }
+        CompletableFuture<BufferedImage> created = new CompletableFuture<>();
+        result = loading.putIfAbsent(url, created);
+        if (result != null) {
+            return result;
+        }
+        created.whenComplete((image, e) -> loading.remove(url, created));
+        schedule(host(url), () -> created.complete(read(url)));
+        return created;
+    }
+
+    /**
+     * Reads the image at a URL in the background, then hands it to onLoaded on the event
+     * dispatch thread. onLoaded is not called if the image could not be read, so whatever
+     * placeholder is showing stays
+     */
+    public void load(String url, Consumer<BufferedImage> onLoaded) {
+        if (url == null) {
+            return;
+        }
+        CompletableFuture<BufferedImage> loaded = load(url);
+        if (loaded.isDone() && SwingUtilities.isEventDispatchThread()) {
+            // Cached, so shown straight away rather than after a flash of the placeholder
+            BufferedImage image = loaded.join();
+            if (image != null) {
+                onLoaded.accept(image);
+            }
+            return;
+        }
+        loaded.thenAccept(image -> {
+            if (image != null) {
+                SwingUtilities.invokeLater(() -> onLoaded.accept(image));
+            }
+        });
+    }
+
+    /**
+     * @return The number of images read so far, from disk or the network, not counting
+     *         shared requests or images found in memory
+     */
+    public int getReads() {
+        return reads.get();
+    }
+
+    // Runs a read now if its host has a free slot, otherwise once one frees up
+    private void schedule(String host, Runnable read) {
+        synchronized (waiting) {
+            int active = running.getOrDefault(host, 0);
+            if (active >= maxPerHost) {
+                waiting.computeIfAbsent(host, h -> new ArrayDeque<>()).add(read);
+                return;
+            }
+            running.put(host, active + 1);
+        }
+        pool.execute(() -> run(host, read));
+    }
+
+    private void run(String host, Runnable read) {
+        while (read != null) {
+            try {
+                read.run();
+            } finally {
+                // Carry straight on with the host's next read, keeping its slot
+                synchronized (waiting) {
+                    ArrayDeque<Runnable> queue = waiting.get(host);
+                    read = queue == null ? null : queue.poll();
+                    if (queue != null && queue.isEmpty()) {
+                        waiting.remove(host);
+                    }
+                    if (read == null) {
+                        running.merge(host, -1, (a, b) -> a + b == 0 ? null : a + b);
+                    }
+                }
+            }
+        }
+    }
+
+    private BufferedImage read(String url) {
+        reads.incrementAndGet();
+        try {
+            if (cache == null) {
+                return ImageIO.read(new URL(url));
+            }
+            byte[] bytes = cache.getBytes(url);
+            boolean downloaded = bytes == null;
+            if (downloaded) {
+                try (InputStream in = new URL(url).openStream()) {
+                    bytes = in.readAllBytes();
+                }
+            }
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+            if (image != null) {
+                if (downloaded) {
+                    cache.putBytes(url, bytes);
+                }
+                cache.put(url, image);
+            }
+            return image;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Unable to load image " + url + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String host(String url) {
+        try {
+            return new URL(url).getHost();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
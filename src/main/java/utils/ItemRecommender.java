@@ -0,0 +1,527 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import interfaces.AbstractStores;
+import interfaces.IRatings;
+
+/***
+ * Item-item recommendations ("because you rated ...") over a ratings store.
+ *
+ * The ratings are copied into a sparse user x movie matrix, held both by movie (each
+ * movie's raters and ratings) and by user (CSR: each user's movies and ratings), with
+ * every rating centred on its user's mean. The similarity of two movies is the cosine
+ * of their centred columns (adjusted cosine), or of their raw ratings if centring is
+ * turned off. Each movie's similarity row is built by walking its raters' rows, so only
+ * pairs of movies that share a rater are ever touched; rows are computed in parallel
+ * on a fork-join pool, and only the numNeighbours most similar movies of each are kept.
+ *
+ * recommendForUser then only walks the neighbour lists of the movies the user rated at
+ * or above their own mean, so it is independent of the size of the data.
+ *
+ * refresh() brings the model up to date after ratings change. The matrix is rebuilt
+ * (linear in the number of ratings), but only the movies whose ratings changed have
+ * their similarities recomputed; the others keep their neighbours, with the changed
+ * movies taken out and put back at their new similarity. Movies whose ratings did not
+ * change can be left with a slightly stale neighbour list (a user mean moved, or a
+ * neighbour dropped out and the next best is not known), so once many movies have
+ * changed the whole model is rebuilt instead. RecommenderStores calls it as the ratings
+ * change.
+ */
+public class ItemRecommender {
+    public static final int DEFAULT_NEIGHBOURS = 50;
+
+    // Two movies need this many raters in common to be similar at all
+    private static final int MIN_COMMON_RATERS = 2;
+    // Movies per fork-join leaf
+    private static final int MOVIES_PER_TASK = 32;
+    // Above this share of changed movies, refresh() rebuilds everything
+    private static final double REBUILD_FRACTION = 0.1;
+
+    private final AbstractStores stores;
+    private final int numNeighbours;
+    private final boolean adjusted;
+    private final ForkJoinPool pool;
+
+    private volatile Model model;
+    // Scratch rows, left all zero after each use so a thread can reuse its own
+    private final ThreadLocal<Row> scratch = new ThreadLocal<>();
+
+    /***
+     * The matrix and neighbour lists built from one state of the ratings. Never changed
+     * once published.
+     */
+    private static final class Model {
+        // Rated movies, sorted, with a fingerprint of each one's ratings for change detection
+        int[] movieIDs;
+        long[] fingerprints;
+        // By movie: raters (as user indexes) and their centred ratings, in [movieOffsets[i], movieOffsets[i + 1])
+        int[] movieOffsets;
+        int[] movieUsers;
+        float[] movieValues;
+        float[] norms;
+        // By user (CSR): rated movies (as movie indexes) and centred ratings
+        int[] userIDs;
+        float[] userMeans;
+        int[] userOffsets;
+        int[] userMovies;
+        float[] userValues;
+        // Each movie's most similar movies (by ID), most similar first
+        int[][] neighbours;
+        float[][] similarities;
+
+        int indexOfMovie(int movieID) {
+            return Arrays.binarySearch(movieIDs, movieID);
+        }
+
+        int indexOfUser(int userID) {
+            return Arrays.binarySearch(userIDs, userID);
+        }
+    }
+
+    /***
+     * A recommender using adjusted cosine, DEFAULT_NEIGHBOURS neighbours and the common pool
+     * @param stores The stores whose ratings are used. The model is built here
+     */
+    public ItemRecommender(AbstractStores stores) {
+        this(stores, DEFAULT_NEIGHBOURS, true, ForkJoinPool.commonPool());
+    }
+
+    /***
+     * @param stores The stores whose ratings are used. The model is built here
+     * @param numNeighbours The number of neighbours kept for each movie
+     * @param adjusted TRUE to centre ratings on each user's mean (adjusted cosine),
+     *                 FALSE for plain cosine
+     * @param pool The pool the similarities are computed on
+     */
+    public ItemRecommender(AbstractStores stores, int numNeighbours, boolean adjusted, ForkJoinPool pool) {
+        this.stores = stores;
+        this.numNeighbours = numNeighbours;
+        this.adjusted = adjusted;
+        this.pool = pool;
+        rebuild();
+    }
+
+    /***
+     * Rebuild the whole model from the current ratings
+     */
+    public synchronized void rebuild() {
+        Model next = matrix(stores.snapshot().getRatings());
+        model = withAllSimilarities(next);
+    }
+
+    // Compute every movie's neighbours
+    private Model withAllSimilarities(Model next) {
+        next.neighbours = new int[next.movieIDs.length][];
+        next.similarities = new float[next.movieIDs.length][];
+        int[] all = new int[next.movieIDs.length];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        pool.invoke(new SimilarityTask(next, all, 0, all.length));
+        return next;
+    }
+
+    /***
+     * Bring the model up to date with the ratings, recomputing only the movies whose
+     * ratings have changed
+     * @return The number of movies that had changed
+     */
+    public synchronized int refresh() {
+        Model old = model;
+        Model next = matrix(stores.snapshot().getRatings());
+
+        // Changed movies: new ones, and those whose ratings differ. Removed ones only need dropping
+        HashSet<Integer> changed = new HashSet<>();
+        int[] dirty = new int[next.movieIDs.length];
+        int numDirty = 0;
+        for (int i = 0; i < next.movieIDs.length; i++) {
+            int oldIndex = old.indexOfMovie(next.movieIDs[i]);
+            if (oldIndex < 0 || old.fingerprints[oldIndex] != next.fingerprints[i]) {
+                changed.add(next.movieIDs[i]);
+                dirty[numDirty++] = i;
+            }
+        }
+        for (int movieID : old.movieIDs) {
+            if (next.indexOfMovie(movieID) < 0) {
+                changed.add(movieID);
+            }
+        }
+        if (changed.isEmpty()) {
+            return 0;
+        }
+        if (changed.size() > REBUILD_FRACTION * next.movieIDs.length) {
+            model = withAllSimilarities(next);
+            return changed.size();
+        }
+
+        // Unchanged movies keep their neighbours, less any that changed
+        next.neighbours = new int[next.movieIDs.length][];
+        next.similarities = new float[next.movieIDs.length][];
+        for (int i = 0; i < next.movieIDs.length; i++) {
+            if (changed.contains(next.movieIDs[i])) {
+                continue;
+            }
+            int oldIndex = old.indexOfMovie(next.movieIDs[i]);
+            int[] neighbours = old.neighbours[oldIndex];
+            float[] similarities = old.similarities[oldIndex];
+            int kept = 0;
+            int[] keptNeighbours = new int[neighbours.length];
+            float[] keptSimilarities = new float[neighbours.length];
+            for (int n = 0; n < neighbours.length; n++) {
+                if (!changed.contains(neighbours[n])) {
+                    keptNeighbours[kept] = neighbours[n];
+                    keptSimilarities[kept++] = similarities[n];
+                }
+            }
+            next.neighbours[i] = Arrays.copyOf(keptNeighbours, kept);
+            next.similarities[i] = Arrays.copyOf(keptSimilarities, kept);
+        }
+
+        // Recompute the changed movies, then offer each of them to the movies it is similar to
+        int[] rows = Arrays.copyOf(dirty, numDirty);
+        float[][] rowSimilarities = new float[next.movieIDs.length][];
+        int[][] rowMovies = new int[next.movieIDs.length][];
+        pool.invoke(new SimilarityTask(next, rows, 0, rows.length, rowMovies, rowSimilarities));
+        for (int i : rows) {
+            for (int n = 0; n < rowMovies[i].length; n++) {
+                int j = rowMovies[i][n];
+                if (!changed.contains(next.movieIDs[j])) {
+                    offer(next, j, next.movieIDs[i], rowSimilarities[i][n]);
+                }
+            }
+        }
+        model = next;
+        return changed.size();
+    }
+
+    // Insert a neighbour into movie j's list if it is among the numNeighbours most similar
+    private void offer(Model next, int j, int movieID, float similarity) {
+        int[] neighbours = next.neighbours[j];
+        float[] similarities = next.similarities[j];
+        int at = 0;
+        while (at < neighbours.length && similarities[at] >= similarity) {
+            at++;
+        }
+        if (at >= numNeighbours) {
+            return;
+        }
+        int length = Math.min(numNeighbours, neighbours.length + 1);
+        int[] newNeighbours = new int[length];
+        float[] newSimilarities = new float[length];
+        System.arraycopy(neighbours, 0, newNeighbours, 0, at);
+        System.arraycopy(similarities, 0, newSimilarities, 0, at);
+        newNeighbours[at] = movieID;
+        newSimilarities[at] = similarity;
+        System.arraycopy(neighbours, at, newNeighbours, at + 1, length - at - 1);
+        System.arraycopy(similarities, at, newSimilarities, at + 1, length - at - 1);
+        next.neighbours[j] = newNeighbours;
+        next.similarities[j] = newSimilarities;
+    }
+
+    // Fingerprint of a movie's ratings: its number of ratings and the bits of their sum,
+    // which is exact (so independent of order) for ratings in steps of 0.5
+    private static long fingerprint(int count, double sum) {
+        return ((long) count << 32) ^ Double.doubleToLongBits(sum);
+    }
+
+    // Copy the ratings into the by-movie and by-user arrays, without similarities
+    private Model matrix(IRatings ratings) {
+        Model next = new Model();
+        int[] movieIDs = ratings.getRatedMovies();
+        Arrays.sort(movieIDs);
+
+        int[] movieOffsets = new int[movieIDs.length + 1];
+        int[] raterIDs = new int[Math.max(16, ratings.size())];
+        float[] values = new float[raterIDs.length];
+        long[] fingerprints = new long[movieIDs.length];
+        int count = 0;
+        for (int i = 0; i < movieIDs.length; i++) {
+            // Each rating is looked up by its rater, as no store promises to list a movie's
+            // raters and ratings in the same order
+            int[] raters = ratings.getMovieRaters(movieIDs[i]);
+            float[] movieRatings = new float[raters.length];
+            for (int r = 0; r < raters.length; r++) {
+                movieRatings[r] = ratings.getRating(raters[r], movieIDs[i]);
+            }
+            if (count + raters.length > raterIDs.length) {
+                int capacity = Math.max(count + raters.length, raterIDs.length * 2);
+                raterIDs = Arrays.copyOf(raterIDs, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            double sum = 0;
+            for (int r = 0; r < raters.length; r++) {
+                raterIDs[count + r] = raters[r];
+                values[count + r] = movieRatings[r];
+                sum += movieRatings[r];
+            }
+            count += raters.length;
+            movieOffsets[i + 1] = count;
+            fingerprints[i] = fingerprint(raters.length, sum);
+        }
+
+        // Users, and each user's mean
+        int[] userIDs = Arrays.copyOf(raterIDs, count);
+        Arrays.sort(userIDs);
+        int numUsers = 0;
+        for (int i = 0; i < count; i++) {
+            if (numUsers == 0 || userIDs[numUsers - 1] != userIDs[i]) {
+                userIDs[numUsers++] = userIDs[i];
+            }
+        }
+        userIDs = Arrays.copyOf(userIDs, numUsers);
+        int[] movieUsers = new int[count];
+        double[] userSums = new double[numUsers];
+        int[] userOffsets = new int[numUsers + 1];
+        for (int k = 0; k < count; k++) {
+            int u = Arrays.binarySearch(userIDs, raterIDs[k]);
+            movieUsers[k] = u;
+            userSums[u] += values[k];
+            userOffsets[u + 1]++;
+        }
+        float[] userMeans = new float[numUsers];
+        for (int u = 0; u < numUsers; u++) {
+            userMeans[u] = (float) (userSums[u] / userOffsets[u + 1]);
+            userOffsets[u + 1] += userOffsets[u];
+        }
+
+        // Centre, take each movie's norm, and lay the same entries out by user
+        float[] movieValues = new float[count];
+        float[] norms = new float[movieIDs.length];
+        int[] userMovies = new int[count];
+        float[] userValues = new float[count];
+        int[] fill = Arrays.copyOf(userOffsets, numUsers);
+        for (int i = 0; i < movieIDs.length; i++) {
+            double squares = 0;
+            for (int k = movieOffsets[i]; k < movieOffsets[i + 1]; k++) {
+                int u = movieUsers[k];
+                float value = adjusted ? values[k] - userMeans[u] : values[k];
+                movieValues[k] = value;
+                squares += (double) value * value;
+                userMovies[fill[u]] = i;
+                userValues[fill[u]++] = value;
+            }
+            norms[i] = (float) Math.sqrt(squares);
+        }
+
+        next.movieIDs = movieIDs;
+        next.fingerprints = fingerprints;
+        next.movieOffsets = movieOffsets;
+        next.movieUsers = movieUsers;
+        next.movieValues = movieValues;
+        next.norms = norms;
+        next.userIDs = userIDs;
+        next.userMeans = userMeans;
+        next.userOffsets = userOffsets;
+        next.userMovies = userMovies;
+        next.userValues = userValues;
+        return next;
+    }
+
+    /***
+     * Per-thread scratch space for one similarity row: a dense accumulator over all
+     * movies, and the list of entries touched so it can be cleared cheaply.
+     */
+    private static final class Row {
+        final double[] dots;
+        final int[] common;
+        final int[] touched;
+
+        Row(int numMovies) {
+            dots = new double[numMovies];
+            common = new int[numMovies];
+            touched = new int[numMovies];
+        }
+    }
+
+    /***
+     * Computes the similarity rows of a set of movies, splitting it in half until each
+     * part is small enough to do directly. Each row's top neighbours are stored in the
+     * model; when rowMovies is given, every positive similarity (by movie index) is kept
+     * there too, for refresh() to offer back to the other movies.
+     */
+    private final class SimilarityTask extends RecursiveAction {
+        private final Model next;
+        private final int[] rows;
+        private final int from, to;
+        private final int[][] rowMovies;
+        private final float[][] rowSimilarities;
+
+        SimilarityTask(Model next, int[] rows, int from, int to) {
+            this(next, rows, from, to, null, null);
+        }
+
+        SimilarityTask(Model next, int[] rows, int from, int to, int[][] rowMovies, float[][] rowSimilarities) {
+            this.next = next;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.rowMovies = rowMovies;
+            this.rowSimilarities = rowSimilarities;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > MOVIES_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SimilarityTask(next, rows, from, mid, rowMovies, rowSimilarities),
+                          new SimilarityTask(next, rows, mid, to, rowMovies, rowSimilarities));
+                return;
+            }
+            Row row = scratch.get();
+            if (row == null || row.dots.length < next.movieIDs.length) {
+                row = new Row(next.movieIDs.length);
+                scratch.set(row);
+            }
+            for (int r = from; r < to; r++) {
+                similarityRow(rows[r], row);
+            }
+        }
+
+        private void similarityRow(int i, Row row) {
+            int numTouched = 0;
+            for (int k = next.movieOffsets[i]; k < next.movieOffsets[i + 1]; k++) {
+                int u = next.movieUsers[k];
+                float value = next.movieValues[k];
+                for (int m = next.userOffsets[u]; m < next.userOffsets[u + 1]; m++) {
+                    int j = next.userMovies[m];
+                    if (j == i) {
+                        continue;
+                    }
+                    if (row.common[j]++ == 0) {
+                        row.touched[numTouched++] = j;
+                    }
+                    row.dots[j] += (double) value * next.userValues[m];
+                }
+            }
+
+            int[] candidates = new int[numTouched];
+            float[] scores = new float[numTouched];
+            int numCandidates = 0;
+            for (int t = 0; t < numTouched; t++) {
+                int j = row.touched[t];
+                double norms = (double) next.norms[i] * next.norms[j];
+                if (row.common[j] >= MIN_COMMON_RATERS && norms > 0) {
+                    float similarity = (float) (row.dots[j] / norms);
+                    if (similarity > 0) {
+                        candidates[numCandidates] = j;
+                        scores[numCandidates++] = similarity;
+                    }
+                }
+                row.dots[j] = 0;
+                row.common[j] = 0;
+            }
+            if (rowMovies != null) {
+                rowMovies[i] = Arrays.copyOf(candidates, numCandidates);
+                rowSimilarities[i] = Arrays.copyOf(scores, numCandidates);
+            }
+
+            int[] order = top(scores, numCandidates, numNeighbours);
+            int[] neighbours = new int[order.length];
+            float[] similarities = new float[order.length];
+            for (int n = 0; n < order.length; n++) {
+                neighbours[n] = next.movieIDs[candidates[order[n]]];
+                similarities[n] = scores[order[n]];
+            }
+            next.neighbours[i] = neighbours;
+            next.similarities[i] = similarities;
+        }
+    }
+
+    // Indexes of the k highest of the first n scores, highest first
+    private static int[] top(float[] scores, int n, int k) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        int[] result = new int[Math.max(0, Math.min(k, n))];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    /***
+     * Recommend movies to a user: those most similar to the movies they rated at or
+     * above their own average, scored by the sum of those similarities. Movies the
+     * user has already rated are never recommended
+     * @param userID The user ID
+     * @param k The number of movies to recommend
+     * @return The IDs of up to k movies, best first. If the user has no ratings,
+     *         return an empty array
+     */
+    public int[] recommendForUser(int userID, int k) {
+        Model current = model;
+        int u = current.indexOfUser(userID);
+        if (u < 0 || k <= 0) {
+            return new int[0];
+        }
+        HashSet<Integer> rated = new HashSet<>();
+        for (int m = current.userOffsets[u]; m < current.userOffsets[u + 1]; m++) {
+            rated.add(current.movieIDs[current.userMovies[m]]);
+        }
+        HashMap<Integer, Float> scores = new HashMap<>();
+        for (int m = current.userOffsets[u]; m < current.userOffsets[u + 1]; m++) {
+            // A centred value of 0 or more is a rating at or above the user's mean
+            float liked = adjusted ? current.userValues[m] : current.userValues[m] - current.userMeans[u];
+            if (liked < 0) {
+                continue;
+            }
+            int j = current.userMovies[m];
+            int[] neighbours = current.neighbours[j];
+            for (int n = 0; n < neighbours.length; n++) {
+                if (!rated.contains(neighbours[n])) {
+                    scores.merge(neighbours[n], current.similarities[j][n], Float::sum);
+                }
+            }
+        }
+        int[] ids = new int[scores.size()];
+        float[] values = new float[ids.length];
+        int i = 0;
+        for (HashMap.Entry<Integer, Float> entry : scores.entrySet()) {
+            ids[i] = entry.getKey();
+            values[i++] = entry.getValue();
+        }
+        int[] order = top(values, ids.length, k);
+        int[] result = new int[order.length];
+        for (int r = 0; r < order.length; r++) {
+            result[r] = ids[order[r]];
+        }
+        return result;
+    }
+
+    /***
+     * @param movieID The movie ID
+     * @return The IDs of the movies most similar to the given one, most similar
+     *         first. If it has no ratings, return an empty array
+     */
+    public int[] getSimilarMovies(int movieID) {
+        Model current = model;
+        int i = current.indexOfMovie(movieID);
+        return i < 0 ? new int[0] : current.neighbours[i].clone();
+    }
+
+    /***
+     * @return The similarity of two movies, if the second is among the first's
+     *         neighbours. Otherwise return 0
+     */
+    public float getSimilarity(int movieID, int otherID) {
+        Model current = model;
+        int i = current.indexOfMovie(movieID);
+        if (i < 0) {
+            return 0;
+        }
+        int[] neighbours = current.neighbours[i];
+        for (int n = 0; n < neighbours.length; n++) {
+            if (neighbours[n] == otherID) {
+                return current.similarities[i][n];
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,204 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import interfaces.AbstractStores;
+import interfaces.ICredits;
+import interfaces.IKeyword;
+import interfaces.IKeywords;
+import interfaces.IMovies;
+import interfaces.IPerson;
+import stores.CachedStores;
+import stores.ConcurrentStores;
+
+/***
+ * Searches the stores as the user types, reusing the previous search where it can.
+ *
+ * Every result of a search term is also a result of any term it contains, so once a
+ * term has been searched, a longer term containing it (typing one more letter, say) is
+ * searched by checking only the previous results rather than scanning the stores again.
+ * A fresh search is the stores' own query, and refining matches the same way: films by
+ * title, original title and overview ignoring case, and cast, crew and keywords by name.
+ *
+ * The previous results are only reused while the store they came from is at the same
+ * version: the per-store versions of CachedStores, or the single version of
+ * ConcurrentStores. Stores that are neither give no way to tell they have changed, so
+ * every search of them is fresh.
+ *
+ * When refining, each search hands over its first FIRST_MATCHES matches as soon as they
+ * are found, so the screen can show them before the search has finished. A fresh search
+ * is a single store query, so nothing is handed over early.
+ *
+ * Each kind of search keeps its own previous result, and is safe to call from the
+ * query threads.
+ */
+public class LiveSearch {
+    public static final int FIRST_MATCHES = 20;
+
+    // The index of each store in CachedStores.getVersions()
+    private static final int MOVIES = 0;
+    private static final int CREDITS = 1;
+    private static final int KEYWORDS = 2;
+
+    private final AbstractStores stores;
+    private final CachedStores cached;
+    private final ConcurrentStores concurrent;
+    private final Previous<int[]> films = new Previous<>();
+    private final Previous<IPerson[]> cast = new Previous<>();
+    private final Previous<IPerson[]> crew = new Previous<>();
+    private final Previous<IKeyword[]> keywords = new Previous<>();
+
+    /***
+     * The last term of a kind of search, its results, and the version of the store then.
+     */
+    private static final class Previous<T> {
+        private String term;
+        private T result;
+        private long version;
+
+        // The previous result if it can be refined for the term, else null
+        synchronized T refinable(String term, long version) {
+            if (this.term == null || version < 0 || version != this.version || !term.contains(this.term)) {
+                return null;
+            }
+            return result;
+        }
+
+        synchronized void set(String term, T result, long version) {
+            this.term = term;
+            this.result = result;
+            this.version = version;
+        }
+    }
+
+    public LiveSearch(AbstractStores stores) {
+        this.stores = stores;
+        this.cached = stores.find(CachedStores.class);
+        this.concurrent = cached == null ? stores.find(ConcurrentStores.class) : null;
+    }
+
+    // The version of one of the stores, or -1 if it is not known
+    private long version(int store) {
+        if (cached != null) {
+            return cached.getVersions()[store];
+        }
+        return concurrent == null ? -1 : concurrent.getVersion();
+    }
+
+    /**
+     * Find the films with the term in their title, original title or overview, ignoring
+     * case
+     * @param firstMatches Given the first FIRST_MATCHES films as soon as they are found
+     */
+    public int[] findFilms(String searchTerm, Consumer<int[]> firstMatches) {
+        if (searchTerm == null || searchTerm.isEmpty()) {
+            return new int[0];
+        }
+        IMovies movies = stores.getMovies();
+        String term = searchTerm.toLowerCase();
+        long version = version(MOVIES);
+        int[] candidates = films.refinable(term, version);
+        int[] result;
+        if (candidates == null) {
+            result = movies.findFilms(searchTerm);
+        } else {
+            result = new int[candidates.length];
+            int count = 0;
+            for (int filmID : candidates) {
+                if (containsIgnoringCase(movies.getTitle(filmID), term) || containsIgnoringCase(movies.getOriginalTitle(filmID), term)
+                    || containsIgnoringCase(movies.getOverview(filmID), term)) {
+                    result[count++] = filmID;
+                    if (count == FIRST_MATCHES && firstMatches != null) {
+                        firstMatches.accept(Arrays.copyOf(result, count));
+                    }
+                }
+            }
+            result = Arrays.copyOf(result, count);
+        }
+        films.set(term, result, version);
+        return result;
+    }
+
+    /**
+     * Find the cast members with the term in their name
+     * @param firstMatches Given the first FIRST_MATCHES as soon as they are found
+     */
+    public IPerson[] findCast(String searchTerm, Consumer<IPerson[]> firstMatches) {
+        return findPeople(cast, stores.getCredits(), version(CREDITS), searchTerm, firstMatches, true);
+    }
+
+    /**
+     * Find the crew members with the term in their name
+     * @param firstMatches Given the first FIRST_MATCHES as soon as they are found
+     */
+    public IPerson[] findCrew(String searchTerm, Consumer<IPerson[]> firstMatches) {
+        return findPeople(crew, stores.getCredits(), version(CREDITS), searchTerm, firstMatches, false);
+    }
+
+    private static IPerson[] findPeople(Previous<IPerson[]> previous, ICredits credits, long version, String searchTerm,
+                                        Consumer<IPerson[]> firstMatches, boolean cast) {
+        if (searchTerm == null || searchTerm.isEmpty()) {
+            return new IPerson[0];
+        }
+        IPerson[] candidates = previous.refinable(searchTerm, version);
+        IPerson[] result;
+        if (candidates == null) {
+            result = cast ? credits.findCast(searchTerm) : credits.findCrew(searchTerm);
+        } else {
+            result = new IPerson[candidates.length];
+            int count = 0;
+            for (IPerson person : candidates) {
+                if (contains(person.getName(), searchTerm)) {
+                    result[count++] = person;
+                    if (count == FIRST_MATCHES && firstMatches != null) {
+                        firstMatches.accept(Arrays.copyOf(result, count));
+                    }
+                }
+            }
+            result = Arrays.copyOf(result, count);
+        }
+        previous.set(searchTerm, result, version);
+        return result;
+    }
+
+    /**
+     * Find the keywords with the term in their name
+     * @param firstMatches Given the first FIRST_MATCHES as soon as they are found
+     */
+    public IKeyword[] findKeywords(String searchTerm, Consumer<IKeyword[]> firstMatches) {
+        if (searchTerm == null || searchTerm.isEmpty()) {
+            return new IKeyword[0];
+        }
+        IKeywords store = stores.getKeywords();
+        long version = version(KEYWORDS);
+        IKeyword[] candidates = keywords.refinable(searchTerm, version);
+        IKeyword[] result;
+        if (candidates == null) {
+            result = store.findKeywords(searchTerm);
+        } else {
+            result = new IKeyword[candidates.length];
+            int count = 0;
+            for (IKeyword keyword : candidates) {
+                if (contains(keyword.getName(), searchTerm)) {
+                    result[count++] = keyword;
+                    if (count == FIRST_MATCHES && firstMatches != null) {
+                        firstMatches.accept(Arrays.copyOf(result, count));
+                    }
+                }
+            }
+            result = Arrays.copyOf(result, count);
+        }
+        keywords.set(searchTerm, result, version);
+        return result;
+    }
+
+    private static boolean contains(String text, String term) {
+        return text != null && text.contains(term);
+    }
+
+    // Films are matched ignoring case, so their text is lowered to match the lowered term
+    private static boolean containsIgnoringCase(String text, String lowerCaseTerm) {
+        return text != null && text.toLowerCase().contains(lowerCaseTerm);
+    }
+}
@@ -1,9 +1,14 @@
 package utils;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
@@ -12,10 +17,13 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.JLabel;
 import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -30,6 +38,7 @@ import stores.Company;
 import stores.CrewCredit;
 import stores.Genre;
 import stores.Keyword;
+import stores.MovieBatch;
 import interfaces.AbstractStores;
 
 public class LoadData implements Runnable {
@@ -158,50 +167,283 @@ public class LoadData implements Runnable {
     ArrayList<RatingRecord> backendRatings = new ArrayList<>();
     HashMap<Integer, ArrayList<RatingRecord>> backendRatingsByMovieId = new HashMap<>();
 
+    // Where each record goes once it has been parsed and validated
+    private final RecordSink sink;
+
+    /***
+     * Receives records from the file loaders as soon as each one has been parsed, so
+     * that they can either be kept in the backend or go straight into the stores.
+     * Records arrive in file order: all movies first, then credits, keywords and ratings.
+     */
+    private interface RecordSink {
+        void movie(MovieRecord mr);
+        void credit(CreditRecord cr);
+        void keyword(KeywordRecord kr);
+        void rating(RatingRecord rr);
+    }
+
+    // Keeps every record in the backend structures, for populate() to use later
+    private class BackendSink implements RecordSink {
+        @Override
+        public void movie(MovieRecord mr) {
+            backendMovies.add(mr);
+            backendMoviesByMovieId.put(mr.id, mr);
+        }
+
+        @Override
+        public void credit(CreditRecord cr) {
+            backendCredits.add(cr);
+            backendCreditsByMovieId.put(cr.movieId, cr);
+        }
+
+        @Override
+        public void keyword(KeywordRecord kr) {
+            backendKeywords.add(kr);
+            backendKeywordsByMovieId.put(kr.movieId, kr);
+        }
+
+        @Override
+        public void rating(RatingRecord rr) {
+            backendRatings.add(rr);
+            if (!backendRatingsByMovieId.containsKey(rr.movieId)){
+                backendRatingsByMovieId.put(rr.movieId, new ArrayList<>());
+            }
+            backendRatingsByMovieId.get(rr.movieId).add(rr);
+        }
+    }
+
+    /***
+     * Adds every record straight to the stores, so the dataset is never held twice.
+     * When restricted, only the movies in [firstMovieIndex, firstMovieIndex + numMovies)
+     * of the movies file are added, along with the other records for those movies only.
+     */
+    private static class StoreSink implements RecordSink {
+        // Records are handed to the stores' bulk-load methods this many at a time
+        private static final int BATCH_SIZE = 4096;
+
+        private final AbstractStores stores;
+        private final boolean loadSection;
+        private final int firstMovieIndex;
+        private final int numMovies;
+
+        private int movieIndex = 0;
+        private final HashSet<Integer> addedMovies = new HashSet<>();
+        private int credits = 0, keywords = 0, movies = 0, ratings = 0;
+
+        private final MovieBatch movieBatch = new MovieBatch(BATCH_SIZE);
+        private final ArrayList<CreditRecord> creditBatch = new ArrayList<>(BATCH_SIZE);
+        private final ArrayList<RatingRecord> ratingBatch = new ArrayList<>(BATCH_SIZE);
+
+        StoreSink(AbstractStores stores, boolean loadSection, int firstMovieIndex, int numMovies) {
+            this.stores = stores;
+            this.loadSection = loadSection;
+            this.firstMovieIndex = firstMovieIndex;
+            this.numMovies = numMovies;
+        }
+
+        private boolean wanted(int movieId) {
+            return !loadSection || addedMovies.contains(movieId);
+        }
+
+        @Override
+        public void movie(MovieRecord mr) {
+            int index = movieIndex++;
+            if (loadSection && (index < firstMovieIndex || index >= firstMovieIndex + numMovies)) {
+                return;
+            }
+            addedMovies.add(mr.id);
+            addToBatch(movieBatch, mr);
+            movies++;
+            if (movieBatch.size() == BATCH_SIZE) {
+                flushMovies();
+            }
+        }
+
+        @Override
+        public void credit(CreditRecord cr) {
+            if (wanted(cr.movieId)) {
+                creditBatch.add(cr);
+                credits++;
+                if (creditBatch.size() == BATCH_SIZE) {
+                    flushCredits();
+                }
+            }
+        }
+
+        @Override
+        public void keyword(KeywordRecord kr) {
+            if (wanted(kr.movieId)) {
+                stores.getKeywords().add(kr.movieId, kr.keywords);
+                keywords++;
+            }
+        }
+
+        @Override
+        public void rating(RatingRecord rr) {
+            if (wanted(rr.movieId)) {
+                ratingBatch.add(rr);
+                ratings++;
+                if (ratingBatch.size() == BATCH_SIZE) {
+                    flushRatings();
+                }
+            }
+        }
+
+        private void flushMovies() {
+            stores.getMovies().addAll(movieBatch);
+            movieBatch.clear();
+        }
+
+        private void flushCredits() {
+            addCredits(stores.getCredits(), creditBatch);
+            creditBatch.clear();
+        }
+
+        private void flushRatings() {
+            addRatings(stores.getRatings(), ratingBatch);
+            ratingBatch.clear();
+        }
+
+        // Adds whatever is left in the batches, once the last file has been read
+        void flush() {
+            flushMovies();
+            flushCredits();
+            flushRatings();
+        }
+
+        NumRecordsAdded numRecordsAdded() {
+            return new NumRecordsAdded(credits, keywords, movies, ratings);
+        }
+    }
+
+    /***
+     * Counts the bytes pulled through it, so loading progress can be reported against
+     * File.length() without reading each input file a second time just to count its lines.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private volatile long bytesRead = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) { bytesRead++; }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) { bytesRead += n; }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            bytesRead += skipped;
+            return skipped;
+        }
+
+        long getBytesRead() {
+            return bytesRead;
+        }
+    }
+
     private class FileLoadUiUpdater {
-        int totalNumLines = 0;
-        int totalNumCurrentlyProcessed = 0;
-        HashMap<StoreType, Long> numLines = new HashMap<>();
+        // Number of distinct progress ticks posted to the EDT over the whole load
+        private static final int NUM_TICKS = 1000;
+
+        long totalNumBytes = 0;
+        long numBytesInFinishedFiles = 0;
+        HashMap<StoreType, Long> numBytes = new HashMap<>();
         JProgressBar loadingBar;
         JLabel loadingText;
-        public FileLoadUiUpdater(JProgressBar loadingBar, JLabel loadingText, File creditsFile, File keywordsFile, File movieFile, File ratingsFile) throws DataLoadException{
+
+        private StoreType currentType = null;
+        private CountingInputStream currentStream = null;
+
+        // Latest values waiting to be shown. Only one update is queued on the EDT at a time,
+        // so a burst of records collapses into a single repaint.
+        private int lastTick = -1;
+        private volatile int pendingValue = 0;
+        private volatile String pendingText = "";
+        private final AtomicBoolean updatePending = new AtomicBoolean(false);
+
+        public FileLoadUiUpdater(JProgressBar loadingBar, JLabel loadingText, File creditsFile, File keywordsFile, File movieFile, File ratingsFile) {
             this.loadingBar = loadingBar;
             this.loadingText = loadingText;
-            try{
-                // Populate numLines with how many lines each file has
-                numLines.put(StoreType.CREDITS,  (Files.lines(creditsFile.toPath()).count() - 2));
-                numLines.put(StoreType.KEYWORDS, (Files.lines(keywordsFile.toPath()).count() - 2));
-                numLines.put(StoreType.METADATA, (Files.lines(movieFile.toPath()).count() - 2));
-                numLines.put(StoreType.RATINGS,  (Files.lines(ratingsFile.toPath()).count() - 2));
-                for (long fileNumLines : numLines.values()){
-                    totalNumLines += fileNumLines;
-                }
+            // Populate numBytes with the size of each file. File.length() is a metadata lookup,
+            // so unlike counting lines this doesn't read any of the files.
+            numBytes.put(StoreType.CREDITS,  creditsFile.length());
+            numBytes.put(StoreType.KEYWORDS, keywordsFile.length());
+            numBytes.put(StoreType.METADATA, movieFile.length());
+            numBytes.put(StoreType.RATINGS,  ratingsFile.length());
+            for (long fileNumBytes : numBytes.values()){
+                totalNumBytes += fileNumBytes;
             }
-            catch(IOException e){
-                throw new DataLoadException(e.getMessage());
+        }
+
+        /***
+         * Open a file for parsing, tracking how many of its bytes have been consumed
+         * @param fileType Which of the input files this is
+         * @param file The file to open
+         * @return A UTF-8 reader over the file
+         * @throws IOException If the file cannot be opened
+         */
+        private Reader open(StoreType fileType, File file) throws IOException {
+            if (currentType != null) {
+                numBytesInFinishedFiles += numBytes.get(currentType);
             }
+            currentType = fileType;
+            currentStream = new CountingInputStream(new FileInputStream(file));
+            return new BufferedReader(new InputStreamReader(currentStream, StandardCharsets.UTF_8));
         }
+
         private void incrementUI(StoreType fileType, int numRecordsProcessed) {
-            if (loadingBar == null || loadingText == null) {
+            if (loadingBar == null || loadingText == null || totalNumBytes == 0) {
                 return;
             }
-            totalNumCurrentlyProcessed++;
-            loadingBar.setValue((int) ((totalNumCurrentlyProcessed / (double) totalNumLines)*(double)loadingBar.getMaximum()));
-            loadingString = "[1/2] Loading Data into backend: ";
+            long fileBytesRead = (fileType == currentType && currentStream != null) ? currentStream.getBytesRead() : 0;
+            double fraction = (numBytesInFinishedFiles + fileBytesRead) / (double) totalNumBytes;
+            int tick = (int) (Math.min(fraction, 1.0) * NUM_TICKS);
+            if (tick == lastTick) {
+                return;
+            }
+            lastTick = tick;
+
+            String text = (sink instanceof StoreSink) ? "Loading Data into stores: " : "[1/2] Loading Data into backend: ";
             switch (fileType) {
-                case CREDITS: loadingString += "Credits..."; 
+                case CREDITS: text += "Credits..."; 
                     break;
-                case KEYWORDS: loadingString += "Keywords..."; 
+                case KEYWORDS: text += "Keywords..."; 
                     break;
-                case METADATA: loadingString += "Film Metadata..."; 
+                case METADATA: text += "Film Metadata..."; 
                     break;
-                case RATINGS: loadingString += "Ratings..."; 
+                case RATINGS: text += "Ratings..."; 
                     break;
             }
-
-            loadingString += " (" + numRecordsProcessed + "/" + numLines.get(fileType) + ")";
-            loadingText.setText(loadingString);
-    }
+            long fileNumBytes = numBytes.get(fileType);
+            int filePercent = fileNumBytes > 0 ? (int) Math.min(100, (fileBytesRead * 100) / fileNumBytes) : 100;
+            text += " (" + numRecordsProcessed + " records, " + filePercent + "%)";
+            loadingString = text;
+
+            pendingValue = (int) (Math.min(fraction, 1.0) * loadingBar.getMaximum());
+            pendingText = text;
+            if (updatePending.compareAndSet(false, true)) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        updatePending.set(false);
+                        loadingBar.setValue(pendingValue);
+                        loadingText.setText(pendingText);
+                    }
+                });
+            }
+        }
     }
 
     //Load data into memory from default file locations
@@ -216,9 +458,24 @@ public class LoadData implements Runnable {
         this(null, null, creditsPath, keywordsPath, movieMetadataPath, ratingsPath);
     }
     public LoadData(JProgressBar loadingBar, JLabel loadingText, String creditsPath, String keywordsPath, String movieMetadataPath, String ratingsPath) throws DataLoadException{
+        this(loadingBar, loadingText, creditsPath, keywordsPath, movieMetadataPath, ratingsPath, null);
+    }
+
+    /***
+     * Load the input files, handing each record to the given sink as it is parsed
+     * @param sink Where records go, or null to keep them in the backend structures
+     */
+    private LoadData(JProgressBar loadingBar, JLabel loadingText, String creditsPath, String keywordsPath, String movieMetadataPath, String ratingsPath, RecordSink sink) throws DataLoadException{
         this.loadingBar = loadingBar;
         this.loadingText = loadingText;
-        System.out.println("Loading data into record structures (backend)");
+        if (sink == null) {
+            this.sink = new BackendSink();
+            System.out.println("Loading data into record structures (backend)");
+        }
+        else {
+            this.sink = sink;
+            System.out.println("Loading data straight into the stores");
+        }
 
         //Create File objects for all input files and check if they are normal files
         String formatString = "Cannot open %s file (%s). Does not exist or is not a normal file";
@@ -234,7 +491,7 @@ public class LoadData implements Runnable {
         File ratingsFile = new File(ratingsPath);
         if (!ratingsFile.isFile())  { throw new DataLoadException(String.format(formatString, "ratings", ratingsPath)); }
 
-        // class to set total number of lines and number of lines for each type so that the actual load function can just do updateUI with what type it is and how many it has loaded
+        // class to track the size of each file so that the actual load function can just do updateUI with what type it is and how many it has loaded
         FileLoadUiUpdater loadingUiUpdater = new FileLoadUiUpdater(loadingBar, loadingText, creditsFile, keywordsFile, moviesFile, ratingsFile);
 
         //Load Metadata first to load validMovieIds
@@ -275,7 +532,7 @@ public class LoadData implements Runnable {
         }
     }
 
-    public class NumRecordsAdded{
+    public static class NumRecordsAdded{
         public int credits;
         public int keywords;
         public int movies;
@@ -316,6 +573,54 @@ public class LoadData implements Runnable {
         return populate(stores, true, firstMovieIndex, numMovies);
     }
 
+    /***
+     * Load the input files straight into the stores, without keeping any of the records in
+     * the backend structures. Gives the same stores as loading and then calling populate(),
+     * while only ever holding one copy of the dataset.
+     * @param stores The stores to populate
+     * @param loadingBar Progress bar to update, or null
+     * @param loadingText Label to update, or null
+     * @return The number of records added to each store
+     * @throws DataLoadException If any of the files cannot be loaded
+     */
+    public static NumRecordsAdded populateStreaming(AbstractStores stores, JProgressBar loadingBar, JLabel loadingText, String creditsPath, String keywordsPath, String movieMetadataPath, String ratingsPath) throws DataLoadException{
+        return populateStreaming(stores, loadingBar, loadingText, creditsPath, keywordsPath, movieMetadataPath, ratingsPath, false, -1, -1);
+    }
+
+    /***
+     * Load a section of the input files straight into the stores, with the same restriction
+     * as populate(stores, firstMovieIndex, numMovies)
+     * @return The number of records added to each store, or null if the restriction is invalid
+     * @throws DataLoadException If any of the files cannot be loaded
+     */
+    public static NumRecordsAdded populateStreaming(AbstractStores stores, JProgressBar loadingBar, JLabel loadingText, String creditsPath, String keywordsPath, String movieMetadataPath, String ratingsPath, int firstMovieIndex, int numMovies) throws DataLoadException{
+        System.out.println("Populating stores with restriction: " + numMovies + " movies...");
+        if (firstMovieIndex < 0){
+            System.err.println("Unable to populate. Invalid firstMovieIndex given");
+            return null;
+        }
+        else if (numMovies <= 0){
+            System.err.println("Unable to populate. Cannot populate with " + (numMovies == 0 ? "0" : "negative") + " movies");
+            return null;
+        }
+        return populateStreaming(stores, loadingBar, loadingText, creditsPath, keywordsPath, movieMetadataPath, ratingsPath, true, firstMovieIndex, numMovies);
+    }
+
+    private static NumRecordsAdded populateStreaming(AbstractStores stores, JProgressBar loadingBar, JLabel loadingText, String creditsPath, String keywordsPath, String movieMetadataPath, String ratingsPath, boolean loadSection, int firstMovieIndex, int numMovies) throws DataLoadException{
+        Instant start = Instant.now();
+        StoreSink sink = new StoreSink(stores, loadSection, firstMovieIndex, numMovies);
+        new LoadData(loadingBar, loadingText, creditsPath, keywordsPath, movieMetadataPath, ratingsPath, sink);
+        sink.flush();
+
+        if (loadSection && firstMovieIndex + numMovies > sink.movieIndex){
+            System.err.println("Invalid parameters for loading a section of the dataset. Asking to load past the end of the dataset");
+        }
+        Duration d = Duration.between(start, Instant.now());
+        System.out.println("Overall time to load and populate stores:");
+        System.out.println(d.toMillis() + "ms");
+        return sink.numRecordsAdded();
+    }
+
     /***
      * Populate the student's data structures with a section of the data loaded into the backend structures.
      * This should be the only function that does this, to maintain consistency between
@@ -400,11 +705,22 @@ public class LoadData implements Runnable {
     }
 
 
-    private void populateCredits(ICredits credits, ArrayList<CreditRecord> creditRecords){
+    private static void populateCredits(ICredits credits, ArrayList<CreditRecord> creditRecords){
         System.out.println("Populating Credits Store...");
-        for (CreditRecord cr : creditRecords){
-            credits.add(cr.cast, cr.crew, cr.movieId);
+        addCredits(credits, creditRecords);
+    }
+
+    private static void addCredits(ICredits credits, ArrayList<CreditRecord> creditRecords){
+        int[] filmIDs = new int[creditRecords.size()];
+        CastCredit[][] cast = new CastCredit[filmIDs.length][];
+        CrewCredit[][] crew = new CrewCredit[filmIDs.length][];
+        for (int i = 0; i < filmIDs.length; i++){
+            CreditRecord cr = creditRecords.get(i);
+            filmIDs[i] = cr.movieId;
+            cast[i] = cr.cast;
+            crew[i] = cr.crew;
         }
+        credits.addAll(filmIDs, cast, crew);
     }
     
     private void populateKeywords(IKeywords keywords, ArrayList<KeywordRecord> keywordRecords){
@@ -414,30 +730,50 @@ public class LoadData implements Runnable {
         }
     }
 
-    private void populateMovies(IMovies movies, ArrayList<MovieRecord> movieRecords){
+    private static void populateMovies(IMovies movies, ArrayList<MovieRecord> movieRecords){
         System.out.println("Populating Movies Store...");
+        MovieBatch batch = new MovieBatch(movieRecords.size());
         for (MovieRecord mr : movieRecords){
-            movies.add(mr.id, mr.title, mr.originalTitle, mr.overview, mr.tagline, mr.status, mr.genres, mr.release, mr.budget, mr.revenue, mr.languages, mr.originalLanguage, mr.runtime, mr.homepage, mr.adult, mr.video, mr.poster);
-
-            movies.setVote(mr.id, mr.voteAverage, mr.voteCount);
-            movies.setIMDB(mr.id, mr.imdb);
-            movies.setPopularity(mr.id, mr.popularity);
-            movies.addToCollection(mr.id, mr.collectionID, mr.collectionName, mr.collectionPosterPath, mr.collectionBackdropPath);
-            for (Company c : mr.productionCompanies){
-                movies.addProductionCompany(mr.id, c);
-            }
+            addToBatch(batch, mr);
+        }
+        movies.addAll(batch);
+    }
 
-            for (String country : mr.productionCountries){
-                movies.addProductionCountry(mr.id, country);
-            }
+    // Builds the whole film in the batch, so the store adds it in one go rather than nine calls
+    private static void addToBatch(MovieBatch batch, MovieRecord mr){
+        int row = batch.add(mr.id, mr.title, mr.originalTitle, mr.overview, mr.tagline, mr.status, mr.genres, mr.release, mr.budget, mr.revenue, mr.languages, mr.originalLanguage, mr.runtime, mr.homepage, mr.adult, mr.video, mr.poster);
+
+        batch.setVote(row, mr.voteAverage, mr.voteCount);
+        batch.setIMDB(row, mr.imdb);
+        batch.setPopularity(row, mr.popularity);
+        batch.setCollection(row, mr.collectionID, mr.collectionName, mr.collectionPosterPath, mr.collectionBackdropPath);
+        for (Company c : mr.productionCompanies){
+            batch.addProductionCompany(row, c);
+        }
+
+        for (String country : mr.productionCountries){
+            batch.addProductionCountry(row, country);
         }
     }
 
-    private void populateRatings(IRatings ratings, ArrayList<RatingRecord> ratingRecords){
+    private static void populateRatings(IRatings ratings, ArrayList<RatingRecord> ratingRecords){
         System.out.println("Populating Ratings Store...");
-        for (RatingRecord rr : ratingRecords){
-            ratings.add(rr.userId, rr.movieId, rr.rating, rr.timestamp);
+        addRatings(ratings, ratingRecords);
+    }
+
+    private static void addRatings(IRatings ratings, ArrayList<RatingRecord> ratingRecords){
+        int[] userIDs = new int[ratingRecords.size()];
+        int[] movieIDs = new int[userIDs.length];
+        float[] values = new float[userIDs.length];
+        long[] timestamps = new long[userIDs.length];
+        for (int i = 0; i < userIDs.length; i++){
+            RatingRecord rr = ratingRecords.get(i);
+            userIDs[i] = rr.userId;
+            movieIDs[i] = rr.movieId;
+            values[i] = rr.rating;
+            timestamps[i] = rr.timestamp.toEpochSecond(ZoneOffset.UTC);
         }
+        ratings.addAll(userIDs, movieIDs, values, timestamps);
     }
 
 
@@ -464,7 +800,8 @@ public class LoadData implements Runnable {
                             .setSkipHeaderRecord(true)
                             .build();
         int record_count = 1;
-        try (CSVParser parser = CSVParser.parse(creditsCsvFile, Charset.forName("UTF-8"), csvFormat)){
+        HashSet<Integer> seenMovies = new HashSet<>();
+        try (CSVParser parser = CSVParser.parse(loadingUiUpdater.open(StoreType.CREDITS, creditsCsvFile), csvFormat)){
             for (CSVRecord csvRecord : parser){
                 if (csvRecord.size() != 3){
                     throw new DataLoadException("[CREDITS] Incorrect number of csv fields in record number: " + record_count + ". Number of fields found: " + csvRecord.size());
@@ -515,14 +852,12 @@ public class LoadData implements Runnable {
                     throw new DataLoadException(message);
                 }
                 
-                if (backendCreditsByMovieId.containsKey(movieId)){
+                if (!seenMovies.add(movieId)){
                     String message = "Credits file contains multiple records for movie (id:" + movieId + ")";
                     throw new DataLoadException(message);
                 }
 
-                CreditRecord cr = new CreditRecord(castArray, crewArray, movieId);
-                backendCredits.add(cr);
-                backendCreditsByMovieId.put(movieId, cr);
+                sink.credit(new CreditRecord(castArray, crewArray, movieId));
 
                 loadingUiUpdater.incrementUI(StoreType.CREDITS, record_count++);
                 
@@ -553,7 +888,8 @@ public class LoadData implements Runnable {
                             .setSkipHeaderRecord(true)
                             .build();
         int record_count = 1;
-        try (CSVParser parser = CSVParser.parse(keywordsCsvFile, Charset.forName("UTF-8") , csvFormat)){
+        HashSet<Integer> seenMovies = new HashSet<>();
+        try (CSVParser parser = CSVParser.parse(loadingUiUpdater.open(StoreType.KEYWORDS, keywordsCsvFile), csvFormat)){
             for (CSVRecord csvRecord : parser){ // For every csv line, excluding the header
                 if (csvRecord.size() != 2){
                     throw new DataLoadException("[KEYWORDS] Incorrect number of csv fields in record number: " + record_count + ". Number of fields found: " + csvRecord.size());
@@ -563,7 +899,7 @@ public class LoadData implements Runnable {
 
                 // Check if have already parsed a keyword record for that movieId 
                 // (if there are multiple lines for that movieId in the file)
-                if (backendKeywordsByMovieId.containsKey(movieId)){
+                if (!seenMovies.add(movieId)){
                     String message = "Keywords file contains multiple records for movie (id:" + movieId + ")";
                     throw new DataLoadException(message);
                 }
@@ -588,9 +924,7 @@ public class LoadData implements Runnable {
                     keywordArray[i] = new Keyword(keyword_id, keyword_name);
                 }
 
-                KeywordRecord kr = new KeywordRecord(movieId, keywordArray);
-                backendKeywords.add(kr);
-                backendKeywordsByMovieId.put(movieId, kr);
+                sink.keyword(new KeywordRecord(movieId, keywordArray));
                 
                 loadingUiUpdater.incrementUI(StoreType.KEYWORDS, record_count++);
             }
@@ -632,7 +966,9 @@ public class LoadData implements Runnable {
                             .setSkipHeaderRecord(true)
                             .build();
         int record_count = 0;
-        try (CSVParser parser = CSVParser.parse(metadataCsvFile, Charset.forName("UTF-8"), csvFormat)){
+        // Only the IDs are kept here, the records themselves go to the sink
+        HashSet<Integer> movieIds = new HashSet<>();
+        try (CSVParser parser = CSVParser.parse(loadingUiUpdater.open(StoreType.METADATA, metadataCsvFile), csvFormat)){
             for (CSVRecord csvRecord : parser){ // For each record line in the file
                 if (csvRecord.size() != 24) {
                     throw new DataLoadException("[" + record_count + "] --METADATA-- Incorrect number of fields. Number of fields found: " + csvRecord.size());
@@ -641,7 +977,7 @@ public class LoadData implements Runnable {
                 int movieId = Integer.parseInt(csvRecord.get("tmdb_id"));
 
                 //HARD FAIL if duplicate movies exist in the input file
-                if (backendMoviesByMovieId.containsKey(movieId)){
+                if (!movieIds.add(movieId)){
                     throw new DataLoadException("[" + record_count + "] --METADATA-- Input file ('" + metadataCsvFile.getPath() +"') contains duplicate Movie! id: " + movieId);
                 }
 
@@ -742,14 +1078,13 @@ public class LoadData implements Runnable {
                     runtime, homepage, adult, video, poster_path, vote_average, vote_count, collectionId, 
                     collectionName, collectionPoster, collectionBackdrop, imdbId, popularity, companyArray, countryArray);
                 
-                backendMovies.add(mr);
-                backendMoviesByMovieId.put(movieId, mr);
+                sink.movie(mr);
                 
                 loadingUiUpdater.incrementUI(StoreType.METADATA, record_count++);
 
             } //for each record
 
-            return backendMoviesByMovieId.keySet();
+            return movieIds;
 
         }
         catch (IOException e){
@@ -793,7 +1128,7 @@ public class LoadData implements Runnable {
                             .setSkipHeaderRecord(true)
                             .build();
         int record_count = 0;
-        try (CSVParser parser = CSVParser.parse(ratingsCsvFile, Charset.forName("utf-8"), csvFormat)){
+        try (CSVParser parser = CSVParser.parse(loadUiUpdater.open(StoreType.RATINGS, ratingsCsvFile), csvFormat)){
             for (CSVRecord csvRecord : parser){
                 //For each record in csv file
                 if (csvRecord.size() != 5){
@@ -815,13 +1150,7 @@ public class LoadData implements Runnable {
                 long ts_in_file = Long.parseLong(csvRecord.get("timestamp"));
                 LocalDateTime time = LocalDateTime.ofEpochSecond(ts_in_file, 0 , ZoneOffset.UTC);
 
-                RatingRecord rr = new RatingRecord(userId, movieId, rating, time);
-
-                backendRatings.add(rr);
-                if (!backendRatingsByMovieId.containsKey(movieId)){
-                    backendRatingsByMovieId.put(movieId, new ArrayList<>());
-                }
-                backendRatingsByMovieId.get(movieId).add(rr);
+                sink.rating(new RatingRecord(userId, movieId, rating, time));
 
                 loadUiUpdater.incrementUI(StoreType.RATINGS, record_count++);
 
@@ -0,0 +1,173 @@
+package utils;
+
+import java.awt.event.HierarchyEvent;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+/***
+ * Runs store queries off the event dispatch thread, so screens keep painting while
+ * they search, and hands the results back on it.
+ *
+ * Every query is for a target component: the pane its results are shown in. A target
+ * has at most one query live, so submitting a new one (a new search term, say) cancels
+ * the one before, and a target that leaves the window (the user went to another screen)
+ * cancels its query too. A cancelled query that has not started never runs, and the
+ * result of one already running is dropped.
+ *
+ * Queries run on a fixed pool of daemon threads, at least four so that the four search
+ * panes run side by side.
+ */
+public class QueryExecutor {
+    public static final int MIN_THREADS = 4;
+
+    private static volatile QueryExecutor shared;
+
+    private final ExecutorService pool;
+    // The live query of each target
+    private final Map<JComponent, Query> live = new WeakHashMap<>();
+
+    /***
+     * A submitted query, which can be cancelled until its result is handed over.
+     */
+    public static final class Query {
+        private volatile boolean cancelled = false;
+        private volatile Future<?> future;
+
+        public void cancel() {
+            cancelled = true;
+            Future<?> running = future;
+            if (running != null) {
+                running.cancel(false);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    public QueryExecutor(int numThreads) {
+        AtomicInteger threads = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(numThreads, task -> {
+            Thread thread = new Thread(task, "query-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return The executor shared by every screen
+     */
+    public static QueryExecutor getShared() {
+        if (shared == null) {
+            synchronized (QueryExecutor.class) {
+                if (shared == null) {
+                    shared = new QueryExecutor(Math.max(MIN_THREADS, Runtime.getRuntime().availableProcessors()));
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Runs a query in the background, cancelling the target's query before it
+     * @param target The component the results are shown in
+     * @param query The store query
+     * @param onResult Given the result on the event dispatch thread, unless the query is
+     *                 cancelled first
+     * @return The query, to cancel
+     */
+    public <T> Query submit(JComponent target, Supplier<T> query, Consumer<T> onResult) {
+        return submit(target, publish -> query.get(), null, onResult);
+    }
+
+    /**
+     * Runs a query in the background that can hand over some of its results before it
+     * has finished, cancelling the target's query before it
+     * @param target The component the results are shown in
+     * @param query The store query, given a publish function to hand over partial results
+     * @param onPartial Given each partial result on the event dispatch thread, unless the
+     *                  query is cancelled first
+     * @param onResult Given the result on the event dispatch thread, unless the query is
+     *                 cancelled first
+     * @return The query, to cancel
+     */
+    public <T> Query submit(JComponent target, Function<Consumer<T>, T> query, Consumer<T> onPartial, Consumer<T> onResult) {
+        Query submitted = new Query();
+        synchronized (live) {
+            Query before = live.put(target, submitted);
+            if (before != null) {
+                before.cancel();
+            }
+        }
+        listen(target);
+
+        submitted.future = pool.submit(() -> {
+            if (submitted.cancelled) {
+                return;
+            }
+            Consumer<T> publish = partial -> {
+                if (onPartial != null && !submitted.cancelled) {
+                    SwingUtilities.invokeLater(() -> {
+                        if (!submitted.cancelled) {
+                            onPartial.accept(partial);
+                        }
+                    });
+                }
+            };
+            T result;
+            try {
+                result = query.apply(publish);
+            } catch (RuntimeException e) {
+                System.err.println("Query failed: " + e);
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (submitted.cancelled) {
+                    return;
+                }
+                synchronized (live) {
+                    live.remove(target, submitted);
+                }
+                onResult.accept(result);
+            });
+        });
+        return submitted;
+    }
+
+    /**
+     * Cancels the target's live query, if it has one
+     */
+    public void cancel(JComponent target) {
+        Query query;
+        synchronized (live) {
+            query = live.remove(target);
+        }
+        if (query != null) {
+            query.cancel();
+        }
+    }
+
+    // Cancels the target's query once it is taken out of the window
+    private void listen(JComponent target) {
+        if (target.getClientProperty(this) != null) {
+            return;
+        }
+        target.putClientProperty(this, Boolean.TRUE);
+        target.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 && !target.isDisplayable()) {
+                cancel(target);
+            }
+        });
+    }
+}
@@ -0,0 +1,605 @@
+package utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import interfaces.AbstractStores;
+import interfaces.ICredits;
+import interfaces.IKeywords;
+import interfaces.IMovies;
+import interfaces.IRatings;
+import stores.CachedStores;
+import stores.CastCredit;
+import stores.CrewCredit;
+import stores.Genre;
+import stores.Keyword;
+import stores.Person;
+
+/***
+ * Answers store queries over HTTP, as JSON, so other services can use the movie data
+ * without linking the app. The server only listens on the loopback address.
+ *
+ * Every endpoint is a GET:
+ *   /movies?search=&from=&to=           films, optionally matching a search or released
+ *                                       between two ISO dates
+ *   /movies/{id}                        a film's details
+ *   /movies/{id}/credits, /keywords, /ratings
+ *   /ratings/top?by=average|weighted|count
+ *   /cast?search=, /crew?search=        people matching a name
+ *   /cast/most-credited                 the most credited cast
+ *   /cast/{id}, /crew/{id}              a person and their films
+ *   /keywords?search=, /keywords/{id}   keywords, and the films with one
+ *   /metrics                            request counts and latencies, per endpoint
+ *
+ * Lists are paged by offset and limit (at most MAX_LIMIT, DEFAULT_LIMIT if not given),
+ * and come back as {"total", "offset", "limit", "items"}.
+ *
+ * Each response is tagged with an ETag made from the versions of the stores it reads
+ * (see CachedStores), so a client sending it back in If-None-Match gets a 304 with no
+ * body until one of those stores changes. The ETag also holds the time the server
+ * started, as the versions start again from 0 on every run. /metrics reads no store but
+ * changes with every request, so it is never tagged.
+ *
+ * Requests are handled on a fixed pool of daemon threads, so the stores must be safe to
+ * query from many threads (ConcurrentStores or MappedStores).
+ */
+public class QueryServer {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 1000;
+    // Latencies kept per endpoint for the metrics percentiles
+    private static final int LATENCY_SAMPLES = 1024;
+
+    // The stores a response reads, for its ETag
+    private static final int MOVIES = 1, CREDITS = 2, KEYWORDS = 4, RATINGS = 8;
+
+    private final AbstractStores stores;
+    private final CachedStores cached;
+    private final HttpServer server;
+    private final ExecutorService pool;
+    private final String boot = Long.toHexString(System.currentTimeMillis());
+    // Metrics by endpoint, in name order
+    private final Map<String, Metrics> metrics = new TreeMap<>();
+
+    /***
+     * A request the client got wrong, answered with its status and message.
+     */
+    private static final class RequestException extends RuntimeException {
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /***
+     * An endpoint matched by a request: its name, the stores it reads, whether its answer
+     * only changes with those stores (and so can be tagged), and its answer.
+     */
+    private static final class Route {
+        final String name;
+        final int reads;
+        final boolean cacheable;
+        final Supplier<Object> answer;
+
+        Route(String name, int reads, Supplier<Object> answer) {
+            this(name, reads, true, answer);
+        }
+
+        Route(String name, int reads, boolean cacheable, Supplier<Object> answer) {
+            this.name = name;
+            this.reads = reads;
+            this.cacheable = cacheable;
+            this.answer = answer;
+        }
+    }
+
+    /***
+     * The requests to one endpoint, and how long the latest took.
+     */
+    private static final class Metrics {
+        long requests;
+        long notModified;
+        long errors;
+        long totalNanos;
+        long maxNanos;
+        final long[] latest = new long[LATENCY_SAMPLES];
+
+        synchronized void record(int status, long nanos) {
+            latest[(int) (requests % LATENCY_SAMPLES)] = nanos;
+            requests++;
+            if (status == 304) {
+                notModified++;
+            } else if (status >= 400) {
+                errors++;
+            }
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        synchronized JSONObject toJSON() {
+            long[] sorted = Arrays.copyOf(latest, (int) Math.min(requests, LATENCY_SAMPLES));
+            Arrays.sort(sorted);
+            JSONObject json = new JSONObject();
+            json.put("requests", requests);
+            json.put("notModified", notModified);
+            json.put("errors", errors);
+            json.put("meanMs", requests == 0 ? 0 : totalNanos / 1e6 / requests);
+            json.put("maxMs", maxNanos / 1e6);
+            json.put("p50Ms", percentile(sorted, 0.50));
+            json.put("p95Ms", percentile(sorted, 0.95));
+            json.put("p99Ms", percentile(sorted, 0.99));
+            return json;
+        }
+
+        private static double percentile(long[] sorted, double fraction) {
+            return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.floor(fraction * sorted.length))] / 1e6;
+        }
+    }
+
+    /**
+     * @param stores The stores to query. Stores that are not already cached are wrapped
+     *               in CachedStores for their versions, so changes must then be made
+     *               through getStores() for the ETags to follow them
+     * @param port The port to listen on, or 0 for any free port
+     * @param numThreads The number of requests handled at once
+     * @throws IOException If the port cannot be listened on
+     */
+    public QueryServer(AbstractStores stores, int port, int numThreads) throws IOException {
+        CachedStores found = stores.find(CachedStores.class);
+        this.stores = found == null ? new CachedStores(stores) : stores;
+        this.cached = found == null ? (CachedStores) this.stores : found;
+        AtomicInteger threads = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(numThreads, task -> {
+            Thread thread = new Thread(task, "query-server-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(pool);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops listening, letting requests being handled finish for up to a second
+     */
+    public void stop() {
+        server.stop(1);
+        pool.shutdown();
+    }
+
+    /**
+     * @return The port the server is listening on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return The stores the server queries
+     */
+    public AbstractStores getStores() {
+        return stores;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        String name = "unknown";
+        int status;
+        // The response body, or null for none
+        String body = null;
+        try {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                throw new RequestException(405, "Only GET is supported");
+            }
+            URI uri = exchange.getRequestURI();
+            Route route = route(uri.getPath(), parameters(uri.getRawQuery()));
+            name = route.name;
+
+            if (!route.cacheable) {
+                exchange.getResponseHeaders().set("Cache-Control", "no-store");
+                status = 200;
+                body = route.answer.get().toString();
+            } else {
+                // Read before the answer, so a change made while answering is not missed
+                String etag = etag(route.reads);
+                exchange.getResponseHeaders().set("ETag", etag);
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                    status = 304;
+                } else {
+                    status = 200;
+                    body = route.answer.get().toString();
+                }
+            }
+        } catch (RequestException e) {
+            // Errors are not tagged, so they are never taken as an answer
+            exchange.getResponseHeaders().remove("ETag");
+            status = e.status;
+            body = new JSONObject().put("error", e.getMessage()).toString();
+        } catch (RuntimeException e) {
+            System.err.println("Query server request failed: " + e);
+            exchange.getResponseHeaders().remove("ETag");
+            status = 500;
+            body = new JSONObject().put("error", "Internal error").toString();
+        }
+        // Recorded before the response is sent, so a client that has had its response
+        // always finds the request in /metrics
+        metrics(name).record(status, System.nanoTime() - start);
+        try {
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                send(exchange, status, body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        boolean head = exchange.getRequestMethod().equals("HEAD");
+        exchange.sendResponseHeaders(status, head ? -1 : bytes.length);
+        if (!head) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private Metrics metrics(String name) {
+        synchronized (metrics) {
+            return metrics.computeIfAbsent(name, n -> new Metrics());
+        }
+    }
+
+    private String etag(int reads) {
+        long[] versions = cached.getVersions();
+        StringBuilder etag = new StringBuilder("\"").append(boot);
+        for (int store = 0; store < versions.length; store++) {
+            etag.append('-').append((reads & (1 << store)) == 0 ? "x" : Long.toString(versions[store]));
+        }
+        return etag.append('"').toString();
+    }
+
+    // Whether an If-None-Match header lists the ETag, or is *
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int split = pair.indexOf('=');
+            String key = URLDecoder.decode(split < 0 ? pair : pair.substring(0, split), StandardCharsets.UTF_8);
+            String value = split < 0 ? "" : URLDecoder.decode(pair.substring(split + 1), StandardCharsets.UTF_8);
+            parameters.putIfAbsent(key, value);
+        }
+        return parameters;
+    }
+
+    // Matches a path to its endpoint, checking its parameters, without answering it yet
+    private Route route(String path, Map<String, String> parameters) {
+        String[] parts = Arrays.stream(path.split("/")).filter(part -> !part.isEmpty()).toArray(String[]::new);
+        IMovies movies = stores.getMovies();
+        ICredits credits = stores.getCredits();
+        IKeywords keywords = stores.getKeywords();
+        IRatings ratings = stores.getRatings();
+        int offset = integer(parameters, "offset", 0);
+        int limit = Math.min(MAX_LIMIT, integer(parameters, "limit", DEFAULT_LIMIT));
+        if (offset < 0 || limit < 0) {
+            throw new RequestException(400, "offset and limit must not be negative");
+        }
+
+        if (parts.length == 1 && parts[0].equals("metrics")) {
+            // Changes with every request rather than with the stores, so is never tagged
+            return new Route("metrics", 0, false, this::metricsJSON);
+        }
+        if (parts.length == 0 || parts.length > 3) {
+            throw new RequestException(404, "No such endpoint: " + path);
+        }
+        String collection = parts[0];
+        String item = parts.length > 1 ? parts[1] : null;
+        String detail = parts.length > 2 ? parts[2] : null;
+
+        switch (collection) {
+            case "movies":
+                if (item == null) {
+                    String search = parameters.get("search");
+                    LocalDate from = date(parameters, "from");
+                    LocalDate to = date(parameters, "to");
+                    if (search != null) {
+                        return new Route("movies?search", MOVIES, () -> filmPage(movies.findFilms(search), offset, limit));
+                    }
+                    if (from != null || to != null) {
+                        LocalDate start = from == null ? LocalDate.MIN : from;
+                        LocalDate end = to == null ? LocalDate.MAX : to;
+                        return new Route("movies?from", MOVIES, () -> filmPage(movies.getAllIDsReleasedInRange(start, end), offset, limit));
+                    }
+                    return new Route("movies", MOVIES, () -> filmPage(movies.getAllIDs(), offset, limit));
+                }
+                int filmID = id(item);
+                if (detail == null) {
+                    return new Route("movies/{id}", MOVIES, () -> film(filmID));
+                }
+                switch (detail) {
+                    case "credits":
+                        return new Route("movies/{id}/credits", CREDITS, () -> filmCredits(filmID));
+                    case "keywords":
+                        return new Route("movies/{id}/keywords", KEYWORDS, () -> new JSONObject().put("id", filmID).put("keywords", keywordsJSON(keywords.getKeywordsForFilm(filmID))));
+                    case "ratings":
+                        return new Route("movies/{id}/ratings", RATINGS, () -> filmRatings(filmID));
+                }
+                break;
+            case "ratings":
+                if ("top".equals(item) && detail == null) {
+                    String by = parameters.getOrDefault("by", "average");
+                    if (!by.equals("average") && !by.equals("weighted") && !by.equals("count")) {
+                        throw new RequestException(400, "by must be average, weighted or count");
+                    }
+                    // Ranked up to the end of the page, as the rankings are found best first
+                    int count = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+                    return new Route("ratings/top", MOVIES | RATINGS, () -> topFilms(by, count, offset, limit));
+                }
+                break;
+            case "cast":
+            case "crew":
+                boolean cast = collection.equals("cast");
+                if (item == null) {
+                    String search = parameters.get("search");
+                    if (search == null) {
+                        throw new RequestException(400, "search is needed");
+                    }
+                    return new Route(collection + "?search", CREDITS, () -> peoplePage(cast ? credits.findCast(search) : credits.findCrew(search), offset, limit));
+                }
+                if (cast && item.equals("most-credited") && detail == null) {
+                    int count = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+                    return new Route("cast/most-credited", CREDITS, () -> peoplePage(credits.getMostCastCredits(count), offset, limit));
+                }
+                int personID = id(item);
+                if (detail == null) {
+                    return new Route(collection + "/{id}", MOVIES | CREDITS, () -> person(cast, personID, offset, limit));
+                }
+                break;
+            case "keywords":
+                if (item == null) {
+                    String search = parameters.get("search");
+                    if (search == null) {
+                        throw new RequestException(400, "search is needed");
+                    }
+                    return new Route("keywords?search", KEYWORDS, () -> {
+                        Keyword[] found = keywords.findKeywords(search);
+                        return page(keywordsJSON(slice(found, offset, limit)), found.length, offset, limit);
+                    });
+                }
+                int keywordID = id(item);
+                if (detail == null) {
+                    return new Route("keywords/{id}", MOVIES | KEYWORDS, () -> filmPage(keywords.getFilmsWithKeyword(keywordID), offset, limit));
+                }
+                break;
+        }
+        throw new RequestException(404, "No such endpoint: " + path);
+    }
+
+    private static int integer(Map<String, String> parameters, String name, int otherwise) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return otherwise;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, name + " must be a whole number");
+        }
+    }
+
+    private static int id(String part) {
+        try {
+            return Integer.parseInt(part);
+        } catch (NumberFormatException e) {
+            throw new RequestException(404, "Not an ID: " + part);
+        }
+    }
+
+    private static LocalDate date(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        try {
+            return value == null ? null : LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new RequestException(400, name + " must be a date, e.g. 1995-10-30");
+        }
+    }
+
+    // A page of a list, given the items it shows and the size of the whole list
+    private static JSONObject page(JSONArray items, int total, int offset, int limit) {
+        return new JSONObject().put("total", total).put("offset", offset).put("limit", limit).put("items", items);
+    }
+
+    // The part of a list a page shows: from offset, at most limit long. Slicing before
+    // building the JSON keeps a page's cost to its own items, not the whole list's
+    private static int[] slice(int[] items, int offset, int limit) {
+        int from = Math.min(offset, items.length);
+        return Arrays.copyOfRange(items, from, from + Math.min(limit, items.length - from));
+    }
+
+    private static <T> T[] slice(T[] items, int offset, int limit) {
+        int from = Math.min(offset, items.length);
+        return Arrays.copyOfRange(items, from, from + Math.min(limit, items.length - from));
+    }
+
+    private JSONObject filmPage(int[] ids, int offset, int limit) {
+        return page(films(slice(ids, offset, limit)), ids.length, offset, limit);
+    }
+
+    private static JSONObject peoplePage(Person[] people, int offset, int limit) {
+        return page(people(slice(people, offset, limit)), people.length, offset, limit);
+    }
+
+    private JSONArray films(int[] ids) {
+        String[] titles = stores.getMovies().getTitles(ids);
+        JSONArray films = new JSONArray();
+        for (int i = 0; i < ids.length; i++) {
+            films.put(new JSONObject().put("id", ids[i]).put("title", titles[i] == null ? JSONObject.NULL : titles[i]));
+        }
+        return films;
+    }
+
+    private static JSONArray people(Person[] people) {
+        JSONArray json = new JSONArray();
+        for (Person person : people) {
+            json.put(new JSONObject().put("id", person.getID()).put("name", person.getName())
+                                     .put("profilePath", person.getProfilePath() == null ? JSONObject.NULL : person.getProfilePath()));
+        }
+        return json;
+    }
+
+    private static JSONArray keywordsJSON(Keyword[] keywords) {
+        JSONArray json = new JSONArray();
+        for (Keyword keyword : keywords) {
+            json.put(new JSONObject().put("id", keyword.getID()).put("name", keyword.getName()));
+        }
+        return json;
+    }
+
+    private JSONObject film(int filmID) {
+        IMovies movies = stores.getMovies();
+        String title = movies.getTitle(filmID);
+        if (title == null) {
+            throw new RequestException(404, "No film with ID " + filmID);
+        }
+        JSONArray genres = new JSONArray();
+        Genre[] filmGenres = movies.getGenres(filmID);
+        for (Genre genre : filmGenres == null ? new Genre[0] : filmGenres) {
+            genres.put(new JSONObject().put("id", genre.getID()).put("name", genre.getName()));
+        }
+        LocalDate release = movies.getRelease(filmID);
+        return new JSONObject()
+            .put("id", filmID)
+            .put("title", title)
+            .put("originalTitle", orNull(movies.getOriginalTitle(filmID)))
+            .put("overview", orNull(movies.getOverview(filmID)))
+            .put("tagline", orNull(movies.getTagline(filmID)))
+            .put("status", orNull(movies.getStatus(filmID)))
+            .put("release", release == null ? JSONObject.NULL : release.toString())
+            .put("runtime", movies.getRuntime(filmID))
+            .put("genres", genres)
+            .put("poster", orNull(movies.getPoster(filmID)))
+            .put("collectionID", movies.getCollectionID(filmID))
+            .put("voteAverage", movies.getVoteAverage(filmID))
+            .put("voteCount", movies.getVoteCount(filmID))
+            .put("popularity", movies.getPopularity(filmID));
+    }
+
+    private JSONObject filmCredits(int filmID) {
+        JSONArray cast = new JSONArray();
+        for (CastCredit credit : stores.getCredits().getFilmCast(filmID)) {
+            cast.put(new JSONObject().put("id", credit.getID()).put("name", credit.getName())
+                                     .put("character", orNull(credit.getCharacter())).put("order", credit.getOrder()));
+        }
+        JSONArray crew = new JSONArray();
+        for (CrewCredit credit : stores.getCredits().getFilmCrew(filmID)) {
+            crew.put(new JSONObject().put("id", credit.getID()).put("name", credit.getName())
+                                     .put("department", orNull(credit.getDepartment())).put("job", orNull(credit.getJob())));
+        }
+        return new JSONObject().put("id", filmID).put("cast", cast).put("crew", crew);
+    }
+
+    private JSONObject filmRatings(int filmID) {
+        IRatings ratings = stores.getRatings();
+        return new JSONObject()
+            .put("id", filmID)
+            .put("count", Math.max(0, ratings.getNumRatings(filmID)))
+            .put("average", ratings.getMovieAverageRating(filmID))
+            .put("weighted", ratings.getMovieWeightedRating(filmID))
+            .put("median", ratings.getMedianRating(filmID))
+            .put("stdDev", ratings.getRatingStdDev(filmID))
+            .put("histogram", new JSONArray(ratings.getMovieRatingHistogram(filmID)));
+    }
+
+    private JSONObject topFilms(String by, int count, int offset, int limit) {
+        IRatings ratings = stores.getRatings();
+        int[] top;
+        switch (by) {
+            case "weighted": top = ratings.getTopWeightedRatedMovies(count); break;
+            case "count":    top = ratings.getMostRatedMovies(count); break;
+            default:         top = ratings.getTopAverageRatedMovies(count); break;
+        }
+        int[] shown = slice(top, offset, limit);
+        float[] averages = ratings.getMovieAverageRatings(shown);
+        JSONArray films = films(shown);
+        for (int i = 0; i < shown.length; i++) {
+            double value = by.equals("weighted") ? ratings.getMovieWeightedRating(shown[i])
+                         : by.equals("count") ? ratings.getNumRatings(shown[i]) : averages[i];
+            films.getJSONObject(i).put("value", value);
+        }
+        return page(films, top.length, offset, limit);
+    }
+
+    private JSONObject person(boolean cast, int personID, int offset, int limit) {
+        ICredits credits = stores.getCredits();
+        Person person = cast ? credits.getCast(personID) : credits.getCrew(personID);
+        if (person == null) {
+            throw new RequestException(404, "No " + (cast ? "cast" : "crew") + " member with ID " + personID);
+        }
+        int[] films = cast ? credits.getCastFilms(personID) : credits.getCrewFilms(personID);
+        return new JSONObject().put("id", person.getID()).put("name", person.getName())
+                               .put("profilePath", orNull(person.getProfilePath()))
+                               .put("films", filmPage(films, offset, limit));
+    }
+
+    private JSONObject metricsJSON() {
+        JSONObject endpoints = new JSONObject();
+        synchronized (metrics) {
+            for (Map.Entry<String, Metrics> entry : metrics.entrySet()) {
+                endpoints.put(entry.getKey(), entry.getValue().toJSON());
+            }
+        }
+        return new JSONObject().put("endpoints", endpoints)
+                               .put("cacheHits", cached.getHits())
+                               .put("cacheMisses", cached.getMisses());
+    }
+
+    private static Object orNull(String value) {
+        return value == null ? JSONObject.NULL : value;
+    }
+}
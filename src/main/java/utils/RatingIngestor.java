@@ -0,0 +1,436 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import interfaces.IRatings;
+
+/***
+ * Feeds rating events from an upstream source into a ratings store in batches.
+ *
+ * Events go into a bounded queue, held as parallel primitive arrays so that queueing
+ * one allocates nothing. When the queue is full, put() blocks the producer until the
+ * store catches up (backpressure). A single consumer thread drains up to batchSize
+ * events at a time, waiting at most maxDelayMillis for a batch to fill. It applies each
+ * batch with one IRatings.addAll, which updates the movie averages once per movie per
+ * batch. It then recomputes the top-K most rated and top average rated movies once for
+ * the whole batch.
+ *
+ * Events are lines in the same format as the ratings csv file
+ * (userId,movieLensId,tmdbId,rating,timestamp). A header or malformed line is counted
+ * and skipped. Lines can come from any reader, stdin, or a file that is followed as it
+ * grows (tail). Ratings the store already has are skipped, as with addAll. A batch the
+ * store throws on is dropped and counted as failed, and the next batch is applied.
+ *
+ * The store is written from the consumer thread, so it must be safe to query while it
+ * changes (ConcurrentStores) if anything else reads it meanwhile.
+ */
+public class RatingIngestor implements Closeable {
+    private static final int TAIL_POLL_MILLIS = 100;
+
+    private final IRatings ratings;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final int topK;
+
+    // The queue: a ring of capacity events, from head for count events
+    private final int[] queueUsers;
+    private final int[] queueMovies;
+    private final float[] queueRatings;
+    private final long[] queueTimestamps;
+    private final long[] queueEnqueued;
+    private int head = 0;
+    private int count = 0;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private final Thread consumer;
+    private volatile boolean closed = false;
+
+    // Counters, readable from any thread
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+    private volatile long applied = 0;
+    private volatile long skipped = 0;
+    private volatile long failed = 0;
+    private volatile long batches = 0;
+    private volatile long lagNanos = 0;
+    private final long startNanos = System.nanoTime();
+
+    private volatile int[] mostRated = new int[0];
+    private volatile int[] topAverageRated = new int[0];
+
+    /***
+     * Start an ingestor writing to the given ratings
+     * @param ratings The store the events are added to
+     * @param capacity The most events that can be queued before producers block
+     * @param batchSize The most events applied with one addAll
+     * @param maxDelayMillis The longest an event waits for its batch to fill
+     * @param topK The number of movies kept in the top-K aggregates
+     */
+    public RatingIngestor(IRatings ratings, int capacity, int batchSize, long maxDelayMillis, int topK) {
+        this.ratings = ratings;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.topK = topK;
+        this.queueUsers = new int[capacity];
+        this.queueMovies = new int[capacity];
+        this.queueRatings = new float[capacity];
+        this.queueTimestamps = new long[capacity];
+        this.queueEnqueued = new long[capacity];
+        this.consumer = new Thread(this::consume, "rating-ingestor");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /***
+     * Start an ingestor with a queue of 65536 events, batches of up to 4096, a 50ms
+     * batching delay, and top-10 aggregates
+     */
+    public RatingIngestor(IRatings ratings) {
+        this(ratings, 1 << 16, 4096, 50, 10);
+    }
+
+    /***
+     * Queue a rating, waiting for space if the queue is full
+     * @param timestamp The time of the rating, in seconds since the epoch (UTC)
+     * @throws InterruptedException If interrupted while waiting for space
+     * @throws IllegalStateException If the ingestor has been closed
+     */
+    public void put(int userID, int movieID, float rating, long timestamp) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == queueUsers.length && !closed) {
+                notFull.await();
+            }
+            enqueue(userID, movieID, rating, timestamp);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * Queue a rating if there is space, without waiting
+     * @return TRUE if the rating was queued, FALSE if the queue is full
+     * @throws IllegalStateException If the ingestor has been closed
+     */
+    public boolean offer(int userID, int movieID, float rating, long timestamp) {
+        lock.lock();
+        try {
+            if (count == queueUsers.length) {
+                return false;
+            }
+            enqueue(userID, movieID, rating, timestamp);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must hold the lock, and the queue must have space
+    private void enqueue(int userID, int movieID, float rating, long timestamp) {
+        if (closed) {
+            throw new IllegalStateException("Rating ingestor is closed");
+        }
+        int tail = (head + count) % queueUsers.length;
+        queueUsers[tail] = userID;
+        queueMovies[tail] = movieID;
+        queueRatings[tail] = rating;
+        queueTimestamps[tail] = timestamp;
+        queueEnqueued[tail] = System.nanoTime();
+        count++;
+        received.incrementAndGet();
+        if (count == 1 || count == batchSize) {
+            notEmpty.signal();
+        }
+    }
+
+    /***
+     * Queue a line from the ratings csv format. A header or malformed line is counted
+     * and skipped
+     * @return TRUE if the line was a rating
+     * @throws InterruptedException If interrupted while waiting for space
+     */
+    public boolean putLine(String line) throws InterruptedException {
+        String[] fields = line.split(",");
+        if (fields.length != 5) {
+            malformed.incrementAndGet();
+            return false;
+        }
+        try {
+            int userID = Integer.parseInt(fields[0].trim());
+            int movieID = Integer.parseInt(fields[2].trim());
+            float rating = Float.parseFloat(fields[3].trim());
+            long timestamp = Long.parseLong(fields[4].trim());
+            put(userID, movieID, rating, timestamp);
+            return true;
+        }
+        catch (NumberFormatException e) {
+            malformed.incrementAndGet();
+            return false;
+        }
+    }
+
+    /***
+     * Queue every line from a reader, until it ends or the ingestor is closed
+     * @throws IOException If the reader fails
+     * @throws InterruptedException If interrupted while waiting for space
+     */
+    public void read(Reader source) throws IOException, InterruptedException {
+        BufferedReader reader = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+        String line;
+        while (!closed && (line = reader.readLine()) != null) {
+            putLine(line);
+        }
+    }
+
+    /***
+     * Queue the lines of a file from its start, then keep following it as lines are
+     * appended, until the ingestor is closed. A line is only taken once it is complete
+     * @throws IOException If the file cannot be read
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void tail(Path file) throws IOException, InterruptedException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            StringBuilder partial = new StringBuilder();
+            char[] buffer = new char[8192];
+            while (!closed) {
+                int read = reader.read(buffer);
+                if (read < 0) {
+                    Thread.sleep(TAIL_POLL_MILLIS);
+                    continue;
+                }
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        partial.append(buffer, start, i - start);
+                        putLine(partial.toString());
+                        partial.setLength(0);
+                        start = i + 1;
+                    }
+                }
+                partial.append(buffer, start, read - start);
+            }
+        }
+    }
+
+    /***
+     * Start a daemon thread that queues ratings from stdin, or follows a file if a path
+     * is given
+     * @param source A file to follow, or "-" for stdin
+     * @return The reading thread
+     */
+    public Thread startSource(String source) {
+        Thread reader = new Thread(() -> {
+            try {
+                if (source.equals("-")) {
+                    read(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                } else {
+                    tail(Path.of(source));
+                }
+            }
+            catch (IOException e) {
+                System.err.println("Unable to read ratings from \"" + source + "\": " + e.getMessage());
+            }
+            catch (InterruptedException | IllegalStateException e) {
+                // Closed while reading
+            }
+        }, "rating-source");
+        reader.setDaemon(true);
+        reader.start();
+        return reader;
+    }
+
+    private void consume() {
+        int[] userIDs = new int[batchSize];
+        int[] movieIDs = new int[batchSize];
+        float[] values = new float[batchSize];
+        long[] timestamps = new long[batchSize];
+        while (true) {
+            int n;
+            long oldest;
+            lock.lock();
+            try {
+                try {
+                    while (count == 0 && !closed) {
+                        notEmpty.await();
+                    }
+                    // Give a small batch a chance to fill, but never hold an event past the delay
+                    long deadline = queueEnqueued[head] + maxDelayNanos;
+                    for (long wait; count < batchSize && !closed && (wait = deadline - System.nanoTime()) > 0; ) {
+                        notEmpty.awaitNanos(wait);
+                    }
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                if (count == 0) {
+                    return; // Closed and drained
+                }
+                n = Math.min(count, batchSize);
+                oldest = queueEnqueued[head];
+                for (int i = 0; i < n; i++) {
+                    int at = (head + i) % queueUsers.length;
+                    userIDs[i] = queueUsers[at];
+                    movieIDs[i] = queueMovies[at];
+                    values[i] = queueRatings[at];
+                    timestamps[i] = queueTimestamps[at];
+                }
+                head = (head + n) % queueUsers.length;
+                count -= n;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            apply(n == batchSize ? userIDs : Arrays.copyOf(userIDs, n),
+                  n == batchSize ? movieIDs : Arrays.copyOf(movieIDs, n),
+                  n == batchSize ? values : Arrays.copyOf(values, n),
+                  n == batchSize ? timestamps : Arrays.copyOf(timestamps, n),
+                  oldest);
+        }
+    }
+
+    private void apply(int[] userIDs, int[] movieIDs, float[] values, long[] timestamps, long oldest) {
+        int added;
+        try {
+            added = ratings.addAll(userIDs, movieIDs, values, timestamps);
+            mostRated = ratings.getMostRatedMovies(topK);
+            topAverageRated = ratings.getTopAverageRatedMovies(topK);
+        }
+        catch (RuntimeException e) {
+            // Dropping the batch keeps the consumer alive, so producers are not blocked for good
+            System.err.println("Unable to apply " + userIDs.length + " ratings: " + e);
+            failed += userIDs.length;
+            return;
+        }
+        applied += added;
+        skipped += userIDs.length - added;
+        batches++;
+        lagNanos = System.nanoTime() - oldest;
+    }
+
+    /***
+     * @return The most rated movies, as of the last batch
+     */
+    public int[] getMostRated() {
+        return mostRated.clone();
+    }
+
+    /***
+     * @return The top average rated movies, as of the last batch
+     */
+    public int[] getTopAverageRated() {
+        return topAverageRated.clone();
+    }
+
+    /***
+     * @return The number of ratings queued so far
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /***
+     * @return The number of ratings added to the store so far
+     */
+    public long getApplied() {
+        return applied;
+    }
+
+    /***
+     * @return The number of ratings skipped because the store already had them
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /***
+     * @return The number of ratings dropped because the store failed to apply their batch
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /***
+     * @return The number of lines that were not ratings
+     */
+    public long getMalformed() {
+        return malformed.get();
+    }
+
+    /***
+     * @return The number of batches applied so far
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /***
+     * @return The number of ratings waiting in the queue
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * @return How long the oldest rating of the last batch waited before it was
+     *         applied, in milliseconds
+     */
+    public double getLagMillis() {
+        return lagNanos / 1e6;
+    }
+
+    /***
+     * @return The average number of ratings processed (added or skipped) per second
+     *         since the ingestor started
+     */
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? (applied + skipped) / seconds : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("received=%d applied=%d skipped=%d failed=%d malformed=%d batches=%d queued=%d lag=%.1fms throughput=%.0f/s",
+            getReceived(), getApplied(), getSkipped(), getFailed(), getMalformed(), getBatches(), getQueued(), getLagMillis(), getThroughput());
+    }
+
+    /***
+     * Stop taking new ratings, and wait for the queued ones to be applied
+     * @throws IOException Never, but required by Closeable
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            consumer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package utils;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+/***
+ * Keeps images scaled to the sizes they are shown at, so they are scaled once rather
+ * than on every repaint.
+ *
+ * Renditions are kept per source image, for its MAX_SIZES most recently used sizes, and
+ * are dropped with the source once nothing else holds it. They are made on a background
+ * thread by halving the image with bilinear filtering until it is within twice the
+ * target size, then a last bilinear step to the target. This is far faster than
+ * getScaledInstance's area averaging, and looks as good for the halvings used here.
+ */
+public class ScaledImages {
+    // Sizes kept per source image, enough for a window being resized without thrashing
+    private static final int MAX_SIZES = 4;
+
+    private static volatile ScaledImages shared;
+
+    // Renditions by source image (compared by identity), then by packed width and height
+    private final WeakHashMap<BufferedImage, LinkedHashMap<Long, BufferedImage>> renditions = new WeakHashMap<>();
+    // Renditions being made, so each is only made once
+    private final ConcurrentHashMap<Key, CompletableFuture<BufferedImage>> scaling = new ConcurrentHashMap<>();
+    private final ExecutorService pool = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "image-scaler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /***
+     * A source image, by identity, and a target size.
+     */
+    private static final class Key {
+        final BufferedImage image;
+        final int width;
+        final int height;
+
+        Key(BufferedImage image, int width, int height) {
+            this.image = image;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return image == key.image && width == key.width && height == key.height;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(image) * 31 + width) * 31 + height;
+        }
+    }
+
+    /**
+     * @return The renditions shared by every screen
+     */
+    public static ScaledImages getShared() {
+        if (shared == null) {
+            synchronized (ScaledImages.class) {
+                if (shared == null) {
+                    shared = new ScaledImages();
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * @return The rendition of an image at a size, or null if it has not been made
+     */
+    public BufferedImage get(BufferedImage image, int width, int height) {
+        synchronized (renditions) {
+            LinkedHashMap<Long, BufferedImage> sizes = renditions.get(image);
+            return sizes == null ? null : sizes.get(size(width, height));
+        }
+    }
+
+    /**
+     * @return The rendition of an image at a size, made on the calling thread if it has
+     *         not been made yet
+     */
+    public BufferedImage getNow(BufferedImage image, int width, int height) {
+        BufferedImage scaled = get(image, width, height);
+        if (scaled == null) {
+            scaled = scale(image, width, height);
+            put(image, width, height, scaled);
+        }
+        return scaled;
+    }
+
+    /**
+     * Makes the rendition of an image at a size in the background, then hands it to
+     * onScaled on the event dispatch thread. A rendition already made is handed over
+     * straight away when called on the event dispatch thread
+     */
+    public void load(BufferedImage image, int width, int height, Consumer<BufferedImage> onScaled) {
+        BufferedImage scaled = get(image, width, height);
+        if (scaled != null && SwingUtilities.isEventDispatchThread()) {
+            onScaled.accept(scaled);
+            return;
+        }
+        request(image, width, height).thenAccept(result -> SwingUtilities.invokeLater(() -> onScaled.accept(result)));
+    }
+
+    /**
+     * Makes the rendition of an image at a size in the background
+     * @return The rendition, once made
+     */
+    public CompletableFuture<BufferedImage> request(BufferedImage image, int width, int height) {
+        BufferedImage scaled = get(image, width, height);
+        if (scaled != null) {
+            return CompletableFuture.completedFuture(scaled);
+        }
+        Key key = new Key(image, width, height);
+        CompletableFuture<BufferedImage> created = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> result = scaling.putIfAbsent(key, created);
+        if (result != null) {
+            return result;
+        }
+        pool.execute(() -> {
+            try {
+                created.complete(getNow(image, width, height));
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+            } finally {
+                scaling.remove(key);
+            }
+        });
+        return created;
+    }
+
+    private void put(BufferedImage image, int width, int height, BufferedImage scaled) {
+        synchronized (renditions) {
+            LinkedHashMap<Long, BufferedImage> sizes = renditions.computeIfAbsent(image, i -> new LinkedHashMap<>(8, 0.75f, true));
+            sizes.put(size(width, height), scaled);
+            Iterator<Map.Entry<Long, BufferedImage>> eldest = sizes.entrySet().iterator();
+            while (sizes.size() > MAX_SIZES) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private static long size(int width, int height) {
+        return ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return The image scaled to the given size (at least 1x1), by halving it with
+     *         bilinear filtering then a last bilinear step
+     */
+    public static BufferedImage scale(BufferedImage image, int width, int height) {
+        width = Math.max(1, width);
+        height = Math.max(1, height);
+        int type = image.getTransparency() == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            // Halve while more than twice the target, otherwise go straight to it
+            currentWidth = currentWidth > 2 * width ? currentWidth / 2 : width;
+            currentHeight = currentHeight > 2 * height ? currentHeight / 2 : height;
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            g.dispose();
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+}
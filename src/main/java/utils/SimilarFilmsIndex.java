@@ -0,0 +1,451 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+import interfaces.AbstractStores;
+import stores.CastCredit;
+import stores.CrewCredit;
+import stores.Genre;
+import stores.Keyword;
+
+/***
+ * Finds the films most like a given film, by what the films are made of: their keywords,
+ * their genres, their top-billed cast and their director.
+ *
+ * Each film's features are one set, and two films are as similar as the Jaccard index of
+ * their sets (the features they share over the features either has). Comparing a film
+ * with every other would take a pass over the whole catalogue, so films are first
+ * narrowed down with locality-sensitive hashing: each film gets a MinHash signature of
+ * NUM_HASHES minimums, and the signature is cut into BANDS bands of ROWS minimums. Two
+ * films land in the same bucket of a band if all of that band's minimums agree, which is
+ * likely if they are similar and unlikely if not. Only films sharing a bucket with the
+ * film are scored, on their exact Jaccard index.
+ *
+ * Even the films most like each other rarely share more than a fifth of their features,
+ * so the bands are narrow: with 64 bands of 2, films with a Jaccard index of 0.2 share a
+ * bucket 93% of the time, films with 0.1 share one 47% of the time, and films with only
+ * a genre in common (around 0.03) share one 6% of the time.
+ *
+ * Every film is in a bucket of every band, so the buckets are kept as primitive arrays:
+ * for each band, the bucket key and slot of every film, sorted by key, so a bucket is a
+ * binary search. Films changed since the arrays were last sorted are pending: their old
+ * entries are skipped, and their new keys checked one by one, until MAX_PENDING have
+ * changed and they are merged in.
+ *
+ * The index is built from the stores it is given, and kept up to date one film at a time
+ * with update and remove, which SimilarFilmsStores calls as keywords and credits change.
+ * It is safe to update and read from different threads.
+ */
+public class SimilarFilmsIndex {
+    public static final int TOP_BILLED = 5;
+
+    private static final int BANDS = 64;
+    private static final int ROWS = 2;
+    private static final int NUM_HASHES = BANDS * ROWS;
+    // Films scored for one query at most, so a few huge buckets (films whose only feature is
+    // a common genre) cannot make a query slow
+    private static final int MAX_CANDIDATES = 5000;
+    private static final int MAX_PENDING = 64;
+
+    // The kind of a feature, in the top half of the long the feature is kept as
+    private static final long KEYWORD = 1L << 32;
+    private static final long GENRE = 2L << 32;
+    private static final long CAST = 3L << 32;
+    private static final long DIRECTOR = 4L << 32;
+
+    private final AbstractStores stores;
+    private final long[] seeds = new long[NUM_HASHES];
+
+    // Every film seen gets a slot, which it keeps even when taken out of the index
+    private final HashMap<Integer, Integer> slots = new HashMap<>();
+    private int[] filmIDs = new int[0];
+    // Each slot's features, sorted, or null if its film is not indexed
+    private long[][] features = new long[0][];
+    private int numSlots = 0;
+    private int size = 0;
+
+    // For each band, the bucket keys of the films indexed when the arrays were last
+    // sorted, in order, and the slot each key belongs to
+    private final int[][] keys = new int[BANDS][];
+    private final int[][] members = new int[BANDS][];
+
+    // The slots changed since then, with their new keys (null if no longer indexed)
+    private boolean[] pending = new boolean[0];
+    private final int[] pendingSlots = new int[MAX_PENDING];
+    private final int[][] pendingKeys = new int[MAX_PENDING][];
+    private int numPending = 0;
+
+    // Marks the slots already taken as candidates by the current query
+    private int[] seen = new int[0];
+    private int query = 0;
+
+    /***
+     * Builds the index over every film in the stores
+     * @param stores The stores the features are read from, now and on every update
+     */
+    public SimilarFilmsIndex(AbstractStores stores) {
+        this.stores = stores;
+        SplittableRandom random = new SplittableRandom(0x5EED);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            seeds[i] = random.nextLong();
+        }
+
+        AbstractStores view = stores.snapshot();
+        for (int filmID : view.getMovies().getAllIDs()) {
+            slot(filmID);
+        }
+        for (int filmID : view.getKeywords().getFilmIDs()) {
+            slot(filmID);
+        }
+        for (int filmID : view.getCredits().getFilmIDs()) {
+            slot(filmID);
+        }
+
+        // Each band's entries as key and slot in one long, so sorting orders them by key
+        long[][] entries = new long[BANDS][numSlots];
+        int count = 0;
+        for (int slot = 0; slot < numSlots; slot++) {
+            long[] filmFeatures = features(view, filmIDs[slot]);
+            if (filmFeatures.length == 0) {
+                continue;
+            }
+            features[slot] = filmFeatures;
+            int[] filmKeys = bandKeys(filmFeatures);
+            for (int band = 0; band < BANDS; band++) {
+                entries[band][count] = ((long) filmKeys[band] << 32) | slot;
+            }
+            count++;
+        }
+        size = count;
+        for (int band = 0; band < BANDS; band++) {
+            Arrays.sort(entries[band], 0, count);
+            keys[band] = new int[count];
+            members[band] = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[band][i] = (int) (entries[band][i] >> 32);
+                members[band][i] = (int) entries[band][i];
+            }
+            entries[band] = null;
+        }
+    }
+
+    /***
+     * Reads a film's features from the stores again, and moves it to its new buckets.
+     * The read is made under the lock, so an update that read the film earlier can
+     * never be applied over a later one
+     * @param filmID The film whose keywords, genres or credits have changed
+     */
+    public synchronized void update(int filmID) {
+        long[] filmFeatures = features(stores.snapshot(), filmID);
+        change(slot(filmID), filmFeatures.length == 0 ? null : filmFeatures, filmFeatures.length == 0 ? null : bandKeys(filmFeatures));
+    }
+
+    /***
+     * Takes a film out of the index
+     * @return TRUE if the film was in the index, FALSE otherwise
+     */
+    public synchronized boolean remove(int filmID) {
+        Integer slot = slots.get(filmID);
+        if (slot == null || features[slot] == null) {
+            return false;
+        }
+        change(slot, null, null);
+        return true;
+    }
+
+    /***
+     * @param filmID The film to find films like
+     * @param k The number of films wanted
+     * @return The IDs of at most k films like the given one, most similar first (ties
+     *         lowest ID first). Films with no feature in common are never returned, and
+     *         an empty array if the film is not indexed
+     */
+    public synchronized int[] similarFilms(int filmID, int k) {
+        Integer slot = slots.get(filmID);
+        if (slot == null || features[slot] == null || k <= 0) {
+            return new int[0];
+        }
+        long[] own = features[slot];
+        int[] filmKeys = bandKeys(own);
+
+        int[] candidates = new int[MAX_CANDIDATES];
+        int numCandidates = 0;
+        query++;
+        seen[slot] = query;
+        for (int band = 0; band < BANDS && numCandidates < MAX_CANDIDATES; band++) {
+            int[] bandKeys = keys[band];
+            for (int i = lowerBound(bandKeys, filmKeys[band]); i < bandKeys.length && bandKeys[i] == filmKeys[band]; i++) {
+                int member = members[band][i];
+                if (!pending[member] && seen[member] != query) {
+                    seen[member] = query;
+                    candidates[numCandidates++] = member;
+                    if (numCandidates == MAX_CANDIDATES) {
+                        break;
+                    }
+                }
+            }
+        }
+        for (int p = 0; p < numPending && numCandidates < MAX_CANDIDATES; p++) {
+            int member = pendingSlots[p];
+            if (pendingKeys[p] != null && seen[member] != query && sharesBucket(filmKeys, pendingKeys[p])) {
+                seen[member] = query;
+                candidates[numCandidates++] = member;
+            }
+        }
+
+        // The k best seen so far, worst at the head
+        PriorityQueue<Match> best = new PriorityQueue<>(k + 1, (a, b) -> -compare(a, b));
+        for (int i = 0; i < numCandidates; i++) {
+            int member = candidates[i];
+            Match match = new Match(filmIDs[member], jaccard(own, features[member]));
+            if (match.similarity > 0 && (best.size() < k || compare(match, best.peek()) < 0)) {
+                best.add(match);
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+        }
+        int[] result = new int[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll().filmID;
+        }
+        return result;
+    }
+
+    /***
+     * @return The Jaccard index of two films' features, or -1 if either is not indexed
+     */
+    public synchronized double getSimilarity(int filmA, int filmB) {
+        Integer a = slots.get(filmA);
+        Integer b = slots.get(filmB);
+        if (a == null || b == null || features[a] == null || features[b] == null) {
+            return -1;
+        }
+        return jaccard(features[a], features[b]);
+    }
+
+    /***
+     * @return The number of films in the index
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private static final class Match {
+        final int filmID;
+        final double similarity;
+
+        Match(int filmID, double similarity) {
+            this.filmID = filmID;
+            this.similarity = similarity;
+        }
+    }
+
+    // Most similar first, then lowest film ID
+    private static int compare(Match a, Match b) {
+        int bySimilarity = Double.compare(b.similarity, a.similarity);
+        return bySimilarity != 0 ? bySimilarity : Integer.compare(a.filmID, b.filmID);
+    }
+
+    /**
+     * A film's keywords, genres, top-billed cast and directors, each as its kind and ID in
+     * one long, sorted and without repeats
+     */
+    static long[] features(AbstractStores view, int filmID) {
+        Keyword[] keywords = view.getKeywords().getKeywordsForFilm(filmID);
+        Genre[] genres = view.getMovies().getGenres(filmID);
+        CastCredit[] cast = view.getCredits().getFilmCast(filmID);
+        CrewCredit[] crew = view.getCredits().getFilmCrew(filmID);
+        int max = (keywords == null ? 0 : keywords.length) + (genres == null ? 0 : genres.length)
+                + (cast == null ? 0 : cast.length) + (crew == null ? 0 : crew.length);
+        long[] result = new long[max];
+        int n = 0;
+        if (keywords != null) {
+            for (Keyword keyword : keywords) {
+                result[n++] = KEYWORD | (keyword.getID() & 0xffffffffL);
+            }
+        }
+        if (genres != null) {
+            for (Genre genre : genres) {
+                result[n++] = GENRE | (genre.getID() & 0xffffffffL);
+            }
+        }
+        if (cast != null) {
+            for (CastCredit castMember : cast) {
+                if (castMember.getOrder() < TOP_BILLED) {
+                    result[n++] = CAST | (castMember.getID() & 0xffffffffL);
+                }
+            }
+        }
+        if (crew != null) {
+            for (CrewCredit crewMember : crew) {
+                if ("Director".equals(crewMember.getJob())) {
+                    result[n++] = DIRECTOR | (crewMember.getID() & 0xffffffffL);
+                }
+            }
+        }
+        Arrays.sort(result, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || result[i] != result[unique - 1]) {
+                result[unique++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, unique);
+    }
+
+    /**
+     * The Jaccard index of two sorted sets of features
+     */
+    static double jaccard(long[] a, long[] b) {
+        int i = 0, j = 0, shared = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = a.length + b.length - shared;
+        return union == 0 ? 0 : (double) shared / union;
+    }
+
+    // The slot of a film, giving it a new one if it has none. Must hold the lock
+    private int slot(int filmID) {
+        Integer slot = slots.get(filmID);
+        if (slot != null) {
+            return slot;
+        }
+        if (numSlots == filmIDs.length) {
+            int capacity = Math.max(16, numSlots * 2);
+            filmIDs = Arrays.copyOf(filmIDs, capacity);
+            features = Arrays.copyOf(features, capacity);
+            pending = Arrays.copyOf(pending, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+        }
+        filmIDs[numSlots] = filmID;
+        slots.put(filmID, numSlots);
+        return numSlots++;
+    }
+
+    // Gives a slot new features and keys, or takes it out if they are null. Must hold the lock
+    private void change(int slot, long[] filmFeatures, int[] filmKeys) {
+        size += (filmFeatures != null ? 1 : 0) - (features[slot] != null ? 1 : 0);
+        features[slot] = filmFeatures;
+        if (pending[slot]) {
+            for (int p = 0; p < numPending; p++) {
+                if (pendingSlots[p] == slot) {
+                    pendingKeys[p] = filmKeys;
+                }
+            }
+            return;
+        }
+        pending[slot] = true;
+        pendingSlots[numPending] = slot;
+        pendingKeys[numPending] = filmKeys;
+        numPending++;
+        if (numPending == MAX_PENDING) {
+            merge();
+        }
+    }
+
+    // Merges the pending films into each band's sorted arrays. Must hold the lock
+    private void merge() {
+        long[] added = new long[numPending];
+        for (int band = 0; band < BANDS; band++) {
+            int numAdded = 0;
+            for (int p = 0; p < numPending; p++) {
+                if (pendingKeys[p] != null) {
+                    added[numAdded++] = ((long) pendingKeys[p][band] << 32) | pendingSlots[p];
+                }
+            }
+            Arrays.sort(added, 0, numAdded);
+
+            int[] oldKeys = keys[band], oldMembers = members[band];
+            int[] newKeys = new int[oldKeys.length + numAdded];
+            int[] newMembers = new int[newKeys.length];
+            int n = 0, a = 0;
+            for (int i = 0; i <= oldKeys.length; i++) {
+                // Take every added entry that goes before the next old one, then the old one
+                while (a < numAdded && (i == oldKeys.length || (int) (added[a] >> 32) <= oldKeys[i])) {
+                    newKeys[n] = (int) (added[a] >> 32);
+                    newMembers[n++] = (int) added[a++];
+                }
+                if (i < oldKeys.length && !pending[oldMembers[i]]) {
+                    newKeys[n] = oldKeys[i];
+                    newMembers[n++] = oldMembers[i];
+                }
+            }
+            keys[band] = Arrays.copyOf(newKeys, n);
+            members[band] = Arrays.copyOf(newMembers, n);
+        }
+        for (int p = 0; p < numPending; p++) {
+            pending[pendingSlots[p]] = false;
+            pendingKeys[p] = null;
+        }
+        numPending = 0;
+    }
+
+    // The key of each band of a film's MinHash signature
+    private int[] bandKeys(long[] filmFeatures) {
+        long[] minimums = new long[NUM_HASHES];
+        Arrays.fill(minimums, Long.MAX_VALUE);
+        for (long feature : filmFeatures) {
+            for (int i = 0; i < NUM_HASHES; i++) {
+                long hash = mix(feature ^ seeds[i]);
+                if (hash < minimums[i]) {
+                    minimums[i] = hash;
+                }
+            }
+        }
+        int[] filmKeys = new int[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long key = band;
+            for (int row = 0; row < ROWS; row++) {
+                key = mix(key * 31 + minimums[band * ROWS + row]);
+            }
+            filmKeys[band] = (int) (key >>> 32);
+        }
+        return filmKeys;
+    }
+
+    private static boolean sharesBucket(int[] a, int[] b) {
+        for (int band = 0; band < BANDS; band++) {
+            if (a[band] == b[band]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Index of the first key that is at least key
+    private static int lowerBound(int[] keys, int key) {
+        int low = 0, high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // The 64-bit finaliser of MurmurHash3, which spreads every input bit over the output
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
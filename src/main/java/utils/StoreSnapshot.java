@@ -0,0 +1,807 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import interfaces.*;
+import stores.CastCredit;
+import stores.Company;
+import stores.CrewCredit;
+import stores.Genre;
+import stores.Keyword;
+
+/***
+ * Binary snapshot of populated stores, so that a warm start can skip parsing the
+ * csv and json input files altogether.
+ *
+ * Layout (all values big-endian):
+ *   header   : magic, version, number of movies the stores were restricted to (-1 for all)
+ *   strings  : every distinct string once, as a byte offset column and a UTF-8 blob
+ *   columns  : column count, then the movies, collections, credits, keywords and ratings
+ *              sections as a fixed sequence of length-prefixed primitive columns, each tagged
+ *              with its type. Strings are stored as indexes into the string table (-1 for
+ *              null), and per-film lists (genres, cast, ...) as an offsets column plus
+ *              flattened value columns.
+ *   trailer  : CRC32 of everything above
+ */
+public final class StoreSnapshot {
+
+    private static final int MAGIC = 0x57505353; // "WPSS"
+    public static final int VERSION = 1;
+
+    // Read and write primitive columns in chunks rather than one value at a time
+    private static final int CHUNK_BYTES = 1 << 16;
+
+    // Flags stored per movie
+    private static final int FLAG_ADULT          = 1;
+    private static final int FLAG_VIDEO          = 1 << 1;
+    private static final int FLAG_NULL_GENRES    = 1 << 2;
+    private static final int FLAG_NULL_LANGUAGES = 1 << 3;
+
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+    private static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+
+    private StoreSnapshot() { }
+
+    /***
+     * Write a snapshot of fully populated stores
+     * @param stores The stores to snapshot
+     * @param path Where to write the snapshot
+     * @throws IOException If the snapshot cannot be written
+     */
+    public static void write(AbstractStores stores, Path path) throws IOException {
+        write(stores, path, -1);
+    }
+
+    /***
+     * Write a snapshot of the stores. The file is written next to the target and then
+     * moved into place, so a failed write never leaves a truncated snapshot behind.
+     * @param stores The stores to snapshot
+     * @param path Where to write the snapshot
+     * @param numMovies The number of movies the stores were restricted to when populated, or -1
+     * @throws IOException If the snapshot cannot be written
+     */
+    public static void write(AbstractStores stores, Path path, int numMovies) throws IOException {
+        System.out.println("Writing store snapshot to \"" + path + "\"...");
+        Instant start = Instant.now();
+
+        // The stores may be changed while they are written; a snapshot keeps the file consistent
+        stores = stores.snapshot();
+        StringTable strings = new StringTable();
+        ArrayList<Column> columns = new ArrayList<>();
+        // Columns are gathered first so that the string table can be written before them
+        collectMovies(stores.getMovies(), strings, columns);
+        collectCredits(stores.getCredits(), strings, columns);
+        collectKeywords(stores.getKeywords(), strings, columns);
+        collectRatings(stores.getRatings(), columns);
+
+        Path absolute = path.toAbsolutePath();
+        if (absolute.getParent() != null) {
+            Files.createDirectories(absolute.getParent());
+        }
+        Path tmp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (BufferedOutputStream file = new BufferedOutputStream(Files.newOutputStream(tmp), CHUNK_BYTES)) {
+            CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numMovies);
+
+            strings.write(out);
+            // Sections are read back in exactly the order they were collected
+            out.writeInt(columns.size());
+            for (Column column : columns) {
+                column.write(out);
+            }
+            out.flush();
+
+            new DataOutputStream(file).writeLong(checked.getChecksum().getValue());
+        }
+        Files.move(tmp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Duration d = Duration.between(start, Instant.now());
+        System.out.println("Snapshot written (" + Files.size(absolute) + " bytes) in " + d.toMillis() + "ms");
+    }
+
+    /***
+     * Populate (empty) stores from a snapshot. The whole file is decoded and its checksum
+     * verified before anything is added, so a corrupt snapshot leaves the stores untouched.
+     * @param path The snapshot to read
+     * @param stores The stores to populate
+     * @throws IOException If the file cannot be read, is not a snapshot of this version, or is corrupt
+     */
+    public static void read(Path path, AbstractStores stores) throws IOException {
+        System.out.println("Reading store snapshot from \"" + path + "\"...");
+        Instant start = Instant.now();
+
+        String[] strings;
+        ColumnReader columns = new ColumnReader();
+        long length = Files.size(path);
+        try (BufferedInputStream file = new BufferedInputStream(Files.newInputStream(path), CHUNK_BYTES)) {
+            CountingInputStream counted = new CountingInputStream(file);
+            CheckedInputStream checked = new CheckedInputStream(counted, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            // Lengths are checked against what is left of the file before anything is
+            // allocated for them, so a corrupt length fails like any other corruption
+            LongSupplier remaining = () -> length - counted.count;
+
+            readHeader(in, path);
+            in.readInt(); // restriction, only needed by isFresh
+
+            strings = StringTable.read(in, remaining);
+            columns.readAll(in, remaining);
+
+            long expected = checked.getChecksum().getValue();
+            long stored = new DataInputStream(file).readLong();
+            if (expected != stored) {
+                throw new IOException("Snapshot \"" + path + "\" is corrupt (checksum mismatch)");
+            }
+            if (file.read() != -1) {
+                throw new IOException("Snapshot \"" + path + "\" has trailing data");
+            }
+        }
+
+        populateMovies(stores.getMovies(), strings, columns);
+        populateCredits(stores.getCredits(), strings, columns);
+        populateKeywords(stores.getKeywords(), strings, columns);
+        populateRatings(stores.getRatings(), columns);
+
+        Duration d = Duration.between(start, Instant.now());
+        System.out.println("Snapshot read in " + d.toMillis() + "ms");
+    }
+
+    /***
+     * Check whether a snapshot can be used instead of loading the csv files: it must exist,
+     * be newer than every source file, and have been taken with the same movie restriction.
+     * @param path The snapshot
+     * @param numMovies The requested restriction on the number of movies, or null for all
+     * @param sourcePaths The csv files the snapshot would replace
+     * @return TRUE if the snapshot is usable, FALSE otherwise
+     */
+    public static boolean isFresh(Path path, Integer numMovies, String... sourcePaths) {
+        File snapshotFile = path.toFile();
+        if (!snapshotFile.isFile()) {
+            return false;
+        }
+        for (String sourcePath : sourcePaths) {
+            File source = new File(sourcePath);
+            if (source.isFile() && source.lastModified() >= snapshotFile.lastModified()) {
+                return false;
+            }
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            readHeader(in, path);
+            int restriction = in.readInt();
+            return restriction == (numMovies == null ? -1 : numMovies);
+        }
+        catch (IOException e) {
+            System.err.println("Ignoring unreadable snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void readHeader(DataInputStream in, Path path) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("\"" + path + "\" is not a store snapshot");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Snapshot \"" + path + "\" is version " + version + ", expected " + VERSION);
+        }
+    }
+
+
+    /****************************************************/
+    /*                                                  */
+    /*                 Column Collection                */
+    /*                                                  */
+    /****************************************************/
+
+    private static void collectMovies(IMovies movies, StringTable strings, ArrayList<Column> columns) {
+        int[] ids = movies.getAllIDs();
+        int n = ids.length;
+
+        IntColumn title = new IntColumn(n), originalTitle = new IntColumn(n), overview = new IntColumn(n);
+        IntColumn tagline = new IntColumn(n), status = new IntColumn(n), originalLanguage = new IntColumn(n);
+        IntColumn homepage = new IntColumn(n), poster = new IntColumn(n), imdb = new IntColumn(n);
+        IntColumn release = new IntColumn(n), voteCount = new IntColumn(n), flags = new IntColumn(n);
+        LongColumn budget = new LongColumn(n), revenue = new LongColumn(n);
+        LongColumn runtime = new LongColumn(n), voteAverage = new LongColumn(n), popularity = new LongColumn(n);
+
+        IntColumn genreOffsets = new IntColumn(n + 1), genreIds = new IntColumn(n), genreNames = new IntColumn(n);
+        IntColumn languageOffsets = new IntColumn(n + 1), languages = new IntColumn(n);
+        IntColumn companyOffsets = new IntColumn(n + 1), companyIds = new IntColumn(n), companyNames = new IntColumn(n);
+        IntColumn countryOffsets = new IntColumn(n + 1), countries = new IntColumn(n);
+
+        LinkedHashSet<Integer> collectionIDs = new LinkedHashSet<>();
+
+        genreOffsets.add(0);
+        languageOffsets.add(0);
+        companyOffsets.add(0);
+        countryOffsets.add(0);
+        for (int id : ids) {
+            title.add(strings.ref(movies.getTitle(id)));
+            originalTitle.add(strings.ref(movies.getOriginalTitle(id)));
+            overview.add(strings.ref(movies.getOverview(id)));
+            tagline.add(strings.ref(movies.getTagline(id)));
+            status.add(strings.ref(movies.getStatus(id)));
+            originalLanguage.add(strings.ref(movies.getOriginalLanguage(id)));
+            homepage.add(strings.ref(movies.getHomepage(id)));
+            poster.add(strings.ref(movies.getPoster(id)));
+            imdb.add(strings.ref(movies.getIMDB(id)));
+
+            LocalDate releaseDate = movies.getRelease(id);
+            release.add(releaseDate == null ? NULL_DATE : (int) releaseDate.toEpochDay());
+            voteCount.add(movies.getVoteCount(id));
+            budget.add(movies.getBudget(id));
+            revenue.add(movies.getRevenue(id));
+            runtime.add(Double.doubleToRawLongBits(movies.getRuntime(id)));
+            voteAverage.add(Double.doubleToRawLongBits(movies.getVoteAverage(id)));
+            popularity.add(Double.doubleToRawLongBits(movies.getPopularity(id)));
+
+            Genre[] genres = movies.getGenres(id);
+            String[] spokenLanguages = movies.getLanguages(id);
+            int flag = 0;
+            if (movies.getAdult(id))     { flag |= FLAG_ADULT; }
+            if (movies.getVideo(id))     { flag |= FLAG_VIDEO; }
+            if (genres == null)          { flag |= FLAG_NULL_GENRES; }
+            if (spokenLanguages == null) { flag |= FLAG_NULL_LANGUAGES; }
+            flags.add(flag);
+
+            if (genres != null) {
+                for (Genre g : genres) {
+                    genreIds.add(g.getID());
+                    genreNames.add(strings.ref(g.getName()));
+                }
+            }
+            genreOffsets.add(genreIds.size);
+
+            if (spokenLanguages != null) {
+                for (String language : spokenLanguages) {
+                    languages.add(strings.ref(language));
+                }
+            }
+            languageOffsets.add(languages.size);
+
+            for (Company c : movies.getProductionCompanies(id)) {
+                companyIds.add(c.getID());
+                companyNames.add(strings.ref(c.getName()));
+            }
+            companyOffsets.add(companyIds.size);
+
+            for (String country : movies.getProductionCountries(id)) {
+                countries.add(strings.ref(country));
+            }
+            countryOffsets.add(countries.size);
+
+            int collectionID = movies.getCollectionID(id);
+            if (collectionID != -1) {
+                collectionIDs.add(collectionID);
+            }
+        }
+        // Films without a collection can still have been added to collection -1 explicitly
+        if (movies.getFilmsInCollection(-1).length > 0) {
+            collectionIDs.add(-1);
+        }
+
+        IntColumn collectionIdColumn = new IntColumn(collectionIDs.size());
+        IntColumn collectionNames = new IntColumn(collectionIDs.size());
+        IntColumn collectionPosters = new IntColumn(collectionIDs.size());
+        IntColumn collectionBackdrops = new IntColumn(collectionIDs.size());
+        IntColumn collectionFilmOffsets = new IntColumn(collectionIDs.size() + 1);
+        IntColumn collectionFilms = new IntColumn(n);
+        collectionFilmOffsets.add(0);
+        for (int collectionID : collectionIDs) {
+            collectionIdColumn.add(collectionID);
+            collectionNames.add(strings.ref(movies.getCollectionName(collectionID)));
+            collectionPosters.add(strings.ref(movies.getCollectionPoster(collectionID)));
+            collectionBackdrops.add(strings.ref(movies.getCollectionBackdrop(collectionID)));
+            // Keep the collection's own film order
+            for (int filmID : movies.getFilmsInCollection(collectionID)) {
+                collectionFilms.add(filmID);
+            }
+            collectionFilmOffsets.add(collectionFilms.size);
+        }
+
+        addAll(columns, new IntColumn(ids), title, originalTitle, overview, tagline, status,
+               originalLanguage, homepage, poster, imdb, release, voteCount, flags,
+               budget, revenue, runtime, voteAverage, popularity,
+               genreOffsets, genreIds, genreNames, languageOffsets, languages,
+               companyOffsets, companyIds, companyNames, countryOffsets, countries);
+        addAll(columns, collectionIdColumn, collectionNames, collectionPosters, collectionBackdrops,
+               collectionFilmOffsets, collectionFilms);
+    }
+
+    private static void collectCredits(ICredits credits, StringTable strings, ArrayList<Column> columns) {
+        int[] ids = credits.getFilmIDs();
+        int n = ids.length;
+
+        IntColumn castOffsets = new IntColumn(n + 1), castElementIds = new IntColumn(n), castCharacters = new IntColumn(n);
+        IntColumn castCreditIds = new IntColumn(n), castIds = new IntColumn(n), castNames = new IntColumn(n);
+        IntColumn castOrders = new IntColumn(n), castProfiles = new IntColumn(n);
+        IntColumn crewOffsets = new IntColumn(n + 1), crewElementIds = new IntColumn(n), crewDepartments = new IntColumn(n);
+        IntColumn crewIds = new IntColumn(n), crewJobs = new IntColumn(n), crewNames = new IntColumn(n);
+        IntColumn crewProfiles = new IntColumn(n);
+
+        castOffsets.add(0);
+        crewOffsets.add(0);
+        for (int id : ids) {
+            for (CastCredit c : credits.getFilmCast(id)) {
+                castElementIds.add(c.getElementID());
+                castCharacters.add(strings.ref(c.getCharacter()));
+                castCreditIds.add(strings.ref(c.getCreditID()));
+                castIds.add(c.getID());
+                castNames.add(strings.ref(c.getName()));
+                castOrders.add(c.getOrder());
+                castProfiles.add(strings.ref(c.getProfilePath()));
+            }
+            castOffsets.add(castIds.size);
+
+            for (CrewCredit c : credits.getFilmCrew(id)) {
+                crewElementIds.add(strings.ref(c.getElementID()));
+                crewDepartments.add(strings.ref(c.getDepartment()));
+                crewIds.add(c.getID());
+                crewJobs.add(strings.ref(c.getJob()));
+                crewNames.add(strings.ref(c.getName()));
+                crewProfiles.add(strings.ref(c.getProfilePath()));
+            }
+            crewOffsets.add(crewIds.size);
+        }
+
+        addAll(columns, new IntColumn(ids),
+               castOffsets, castElementIds, castCharacters, castCreditIds, castIds, castNames, castOrders, castProfiles,
+               crewOffsets, crewElementIds, crewDepartments, crewIds, crewJobs, crewNames, crewProfiles);
+    }
+
+    private static void collectKeywords(IKeywords keywords, StringTable strings, ArrayList<Column> columns) {
+        int[] ids = keywords.getFilmIDs();
+        int n = ids.length;
+
+        IntColumn offsets = new IntColumn(n + 1), keywordIds = new IntColumn(n), keywordNames = new IntColumn(n);
+        offsets.add(0);
+        for (int id : ids) {
+            Keyword[] filmKeywords = keywords.getKeywordsForFilm(id);
+            if (filmKeywords != null) {
+                for (Keyword k : filmKeywords) {
+                    keywordIds.add(k.getID());
+                    keywordNames.add(strings.ref(k.getName()));
+                }
+            }
+            offsets.add(keywordIds.size);
+        }
+
+        addAll(columns, new IntColumn(ids), offsets, keywordIds, keywordNames);
+    }
+
+    private static void collectRatings(IRatings ratings, ArrayList<Column> columns) {
+        int n = ratings.size();
+        IntColumn users = new IntColumn(n), movies = new IntColumn(n), values = new IntColumn(n);
+        LongColumn timestamps = new LongColumn(n);
+
+        for (int movieID : ratings.getRatedMovies()) {
+            for (int userID : ratings.getMovieRaters(movieID)) {
+                users.add(userID);
+                movies.add(movieID);
+                values.add(Float.floatToRawIntBits(ratings.getRating(userID, movieID)));
+                LocalDateTime timestamp = ratings.getTimestamp(userID, movieID);
+                timestamps.add(timestamp == null ? NULL_TIMESTAMP : timestamp.toEpochSecond(ZoneOffset.UTC));
+            }
+        }
+
+        addAll(columns, users, movies, values, timestamps);
+    }
+
+    private static void addAll(ArrayList<Column> columns, Column... toAdd) {
+        for (Column column : toAdd) {
+            columns.add(column);
+        }
+    }
+
+
+    /****************************************************/
+    /*                                                  */
+    /*                  Store Population                */
+    /*                                                  */
+    /****************************************************/
+
+    private static void populateMovies(IMovies movies, String[] s, ColumnReader columns) throws IOException {
+        System.out.println("Populating Movies Store...");
+        int[] ids = columns.nextInts();
+        int[] title = columns.nextInts(), originalTitle = columns.nextInts(), overview = columns.nextInts();
+        int[] tagline = columns.nextInts(), status = columns.nextInts(), originalLanguage = columns.nextInts();
+        int[] homepage = columns.nextInts(), poster = columns.nextInts(), imdb = columns.nextInts();
+        int[] release = columns.nextInts(), voteCount = columns.nextInts(), flags = columns.nextInts();
+        long[] budget = columns.nextLongs(), revenue = columns.nextLongs();
+        long[] runtime = columns.nextLongs(), voteAverage = columns.nextLongs(), popularity = columns.nextLongs();
+        int[] genreOffsets = columns.nextInts(), genreIds = columns.nextInts(), genreNames = columns.nextInts();
+        int[] languageOffsets = columns.nextInts(), languages = columns.nextInts();
+        int[] companyOffsets = columns.nextInts(), companyIds = columns.nextInts(), companyNames = columns.nextInts();
+        int[] countryOffsets = columns.nextInts(), countries = columns.nextInts();
+
+        for (int i = 0; i < ids.length; i++) {
+            int id = ids[i];
+
+            Genre[] genres = null;
+            if ((flags[i] & FLAG_NULL_GENRES) == 0) {
+                genres = new Genre[genreOffsets[i + 1] - genreOffsets[i]];
+                for (int j = 0; j < genres.length; j++) {
+                    int k = genreOffsets[i] + j;
+                    genres[j] = new Genre(genreIds[k], str(s, genreNames[k]));
+                }
+            }
+
+            String[] spokenLanguages = null;
+            if ((flags[i] & FLAG_NULL_LANGUAGES) == 0) {
+                spokenLanguages = new String[languageOffsets[i + 1] - languageOffsets[i]];
+                for (int j = 0; j < spokenLanguages.length; j++) {
+                    spokenLanguages[j] = str(s, languages[languageOffsets[i] + j]);
+                }
+            }
+
+            LocalDate releaseDate = release[i] == NULL_DATE ? null : LocalDate.ofEpochDay(release[i]);
+
+            movies.add(id, str(s, title[i]), str(s, originalTitle[i]), str(s, overview[i]), str(s, tagline[i]),
+                       str(s, status[i]), genres, releaseDate, budget[i], revenue[i], spokenLanguages,
+                       str(s, originalLanguage[i]), Double.longBitsToDouble(runtime[i]), str(s, homepage[i]),
+                       (flags[i] & FLAG_ADULT) != 0, (flags[i] & FLAG_VIDEO) != 0, str(s, poster[i]));
+
+            movies.setVote(id, Double.longBitsToDouble(voteAverage[i]), voteCount[i]);
+            movies.setIMDB(id, str(s, imdb[i]));
+            movies.setPopularity(id, Double.longBitsToDouble(popularity[i]));
+            for (int k = companyOffsets[i]; k < companyOffsets[i + 1]; k++) {
+                movies.addProductionCompany(id, new Company(companyIds[k], str(s, companyNames[k])));
+            }
+            for (int k = countryOffsets[i]; k < countryOffsets[i + 1]; k++) {
+                movies.addProductionCountry(id, str(s, countries[k]));
+            }
+        }
+
+        int[] collectionIds = columns.nextInts(), collectionNames = columns.nextInts();
+        int[] collectionPosters = columns.nextInts(), collectionBackdrops = columns.nextInts();
+        int[] collectionFilmOffsets = columns.nextInts(), collectionFilms = columns.nextInts();
+        for (int i = 0; i < collectionIds.length; i++) {
+            for (int k = collectionFilmOffsets[i]; k < collectionFilmOffsets[i + 1]; k++) {
+                movies.addToCollection(collectionFilms[k], collectionIds[i], str(s, collectionNames[i]),
+                                       str(s, collectionPosters[i]), str(s, collectionBackdrops[i]));
+            }
+        }
+    }
+
+    private static void populateCredits(ICredits credits, String[] s, ColumnReader columns) throws IOException {
+        System.out.println("Populating Credits Store...");
+        int[] ids = columns.nextInts();
+        int[] castOffsets = columns.nextInts(), castElementIds = columns.nextInts(), castCharacters = columns.nextInts();
+        int[] castCreditIds = columns.nextInts(), castIds = columns.nextInts(), castNames = columns.nextInts();
+        int[] castOrders = columns.nextInts(), castProfiles = columns.nextInts();
+        int[] crewOffsets = columns.nextInts(), crewElementIds = columns.nextInts(), crewDepartments = columns.nextInts();
+        int[] crewIds = columns.nextInts(), crewJobs = columns.nextInts(), crewNames = columns.nextInts();
+        int[] crewProfiles = columns.nextInts();
+
+        for (int i = 0; i < ids.length; i++) {
+            CastCredit[] cast = new CastCredit[castOffsets[i + 1] - castOffsets[i]];
+            for (int j = 0; j < cast.length; j++) {
+                int k = castOffsets[i] + j;
+                cast[j] = new CastCredit(castElementIds[k], str(s, castCharacters[k]), str(s, castCreditIds[k]),
+                                         castIds[k], str(s, castNames[k]), castOrders[k], str(s, castProfiles[k]));
+            }
+            CrewCredit[] crew = new CrewCredit[crewOffsets[i + 1] - crewOffsets[i]];
+            for (int j = 0; j < crew.length; j++) {
+                int k = crewOffsets[i] + j;
+                crew[j] = new CrewCredit(str(s, crewElementIds[k]), str(s, crewDepartments[k]), crewIds[k],
+                                         str(s, crewJobs[k]), str(s, crewNames[k]), str(s, crewProfiles[k]));
+            }
+            credits.add(cast, crew, ids[i]);
+        }
+    }
+
+    private static void populateKeywords(IKeywords keywords, String[] s, ColumnReader columns) throws IOException {
+        System.out.println("Populating Keywords Store...");
+        int[] ids = columns.nextInts();
+        int[] offsets = columns.nextInts(), keywordIds = columns.nextInts(), keywordNames = columns.nextInts();
+
+        for (int i = 0; i < ids.length; i++) {
+            Keyword[] filmKeywords = new Keyword[offsets[i + 1] - offsets[i]];
+            for (int j = 0; j < filmKeywords.length; j++) {
+                int k = offsets[i] + j;
+                filmKeywords[j] = new Keyword(keywordIds[k], str(s, keywordNames[k]));
+            }
+            keywords.add(ids[i], filmKeywords);
+        }
+    }
+
+    private static void populateRatings(IRatings ratings, ColumnReader columns) throws IOException {
+        System.out.println("Populating Ratings Store...");
+        int[] users = columns.nextInts(), movies = columns.nextInts(), values = columns.nextInts();
+        long[] timestamps = columns.nextLongs();
+
+        for (int i = 0; i < users.length; i++) {
+            LocalDateTime timestamp = timestamps[i] == NULL_TIMESTAMP ? null : LocalDateTime.ofEpochSecond(timestamps[i], 0, ZoneOffset.UTC);
+            ratings.add(users[i], movies[i], Float.intBitsToFloat(values[i]), timestamp);
+        }
+    }
+
+    private static String str(String[] strings, int ref) {
+        return ref < 0 ? null : strings[ref];
+    }
+
+
+    /****************************************************/
+    /*                                                  */
+    /*                 Column Primitives                */
+    /*                                                  */
+    /****************************************************/
+
+    private static final byte INT_COLUMN = 'I';
+    private static final byte LONG_COLUMN = 'L';
+
+    private abstract static class Column {
+        int size = 0;
+
+        abstract void write(DataOutputStream out) throws IOException;
+    }
+
+    // Growable int column
+    private static class IntColumn extends Column {
+        int[] data;
+
+        IntColumn(int capacity) {
+            data = new int[Math.max(capacity, 4)];
+        }
+
+        IntColumn(int[] values) {
+            data = values;
+            size = values.length;
+        }
+
+        void add(int value) {
+            if (size == data.length) {
+                int[] tmp = new int[data.length * 2];
+                System.arraycopy(data, 0, tmp, 0, size);
+                data = tmp;
+            }
+            data[size++] = value;
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(INT_COLUMN);
+            out.writeInt(size);
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES);
+            int i = 0;
+            while (i < size) {
+                int n = Math.min(size - i, CHUNK_BYTES / Integer.BYTES);
+                buffer.clear();
+                buffer.asIntBuffer().put(data, i, n);
+                out.write(buffer.array(), 0, n * Integer.BYTES);
+                i += n;
+            }
+        }
+    }
+
+    // Growable long column, also used for doubles (stored as their raw bits)
+    private static class LongColumn extends Column {
+        long[] data;
+
+        LongColumn(int capacity) {
+            data = new long[Math.max(capacity, 4)];
+        }
+
+        void add(long value) {
+            if (size == data.length) {
+                long[] tmp = new long[data.length * 2];
+                System.arraycopy(data, 0, tmp, 0, size);
+                data = tmp;
+            }
+            data[size++] = value;
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(LONG_COLUMN);
+            out.writeInt(size);
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES);
+            int i = 0;
+            while (i < size) {
+                int n = Math.min(size - i, CHUNK_BYTES / Long.BYTES);
+                buffer.clear();
+                buffer.asLongBuffer().put(data, i, n);
+                out.write(buffer.array(), 0, n * Long.BYTES);
+                i += n;
+            }
+        }
+    }
+
+    // Deduplicates strings, so that repeated names, jobs, departments etc. are only stored once
+    private static class StringTable {
+        private final HashMap<String, Integer> index = new HashMap<>();
+        private final ArrayList<String> strings = new ArrayList<>();
+
+        int ref(String s) {
+            if (s == null) {
+                return -1;
+            }
+            Integer ref = index.get(s);
+            if (ref == null) {
+                ref = strings.size();
+                index.put(s, ref);
+                strings.add(s);
+            }
+            return ref;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            byte[][] encoded = new byte[strings.size()][];
+            IntColumn offsets = new IntColumn(strings.size() + 1);
+            int total = 0;
+            offsets.add(0);
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                total += encoded[i].length;
+                offsets.add(total);
+            }
+            offsets.write(out);
+            out.writeInt(total);
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+        }
+
+        static String[] read(DataInputStream in, LongSupplier remaining) throws IOException {
+            int[] offsets = ColumnReader.readColumn(in, INT_COLUMN, remaining).ints;
+            int total = in.readInt();
+            if (offsets.length == 0 || total < 0 || total > remaining.getAsLong() || offsets[0] != 0 || offsets[offsets.length - 1] != total) {
+                throw new IOException("Snapshot string table is corrupt");
+            }
+            for (int i = 1; i < offsets.length; i++) {
+                if (offsets[i] < offsets[i - 1]) {
+                    throw new IOException("Snapshot string table is corrupt");
+                }
+            }
+            byte[] blob = new byte[total];
+            in.readFully(blob);
+            String[] strings = new String[offsets.length - 1];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = new String(blob, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+            }
+            return strings;
+        }
+    }
+
+    // Counts the bytes read through it
+    private static class CountingInputStream extends FilterInputStream {
+        long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) { count++; }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) { count += n; }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    // A column as read back from the file
+    private static class ReadColumn {
+        byte type;
+        int[] ints;
+        long[] longs;
+    }
+
+    // Reads every column of the file up front, then hands them out in file order
+    private static class ColumnReader {
+        private final ArrayList<ReadColumn> columns = new ArrayList<>();
+        private int next = 0;
+
+        void readAll(DataInputStream in, LongSupplier remaining) throws IOException {
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Snapshot has a negative number of columns");
+            }
+            for (int i = 0; i < count; i++) {
+                columns.add(readColumn(in, (byte) 0, remaining));
+            }
+        }
+
+        int[] nextInts() throws IOException {
+            return next(INT_COLUMN).ints;
+        }
+
+        long[] nextLongs() throws IOException {
+            return next(LONG_COLUMN).longs;
+        }
+
+        private ReadColumn next(byte type) throws IOException {
+            if (next >= columns.size()) {
+                throw new IOException("Snapshot is missing columns");
+            }
+            ReadColumn column = columns.get(next++);
+            if (column.type != type) {
+                throw new IOException("Snapshot column " + (next - 1) + " has an unexpected type");
+            }
+            return column;
+        }
+
+        /***
+         * Read one tagged column
+         * @param in The stream to read from
+         * @param expectedType The type the column must have, or 0 for either
+         * @param remaining The number of bytes left in the file
+         */
+        static ReadColumn readColumn(DataInputStream in, byte expectedType, LongSupplier remaining) throws IOException {
+            ReadColumn column = new ReadColumn();
+            column.type = in.readByte();
+            if ((column.type != INT_COLUMN && column.type != LONG_COLUMN)
+                || (expectedType != 0 && column.type != expectedType)) {
+                throw new IOException("Snapshot column has an unexpected type");
+            }
+            int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("Snapshot column has a negative length");
+            }
+            int width = column.type == INT_COLUMN ? Integer.BYTES : Long.BYTES;
+            if ((long) size * width > remaining.getAsLong()) {
+                throw new IOException("Snapshot column is longer than the rest of the file");
+            }
+            if (column.type == INT_COLUMN) {
+                column.ints = new int[size];
+            } else {
+                column.longs = new long[size];
+            }
+            byte[] chunk = new byte[CHUNK_BYTES];
+            int i = 0;
+            while (i < size) {
+                int n = Math.min(size - i, CHUNK_BYTES / width);
+                in.readFully(chunk, 0, n * width);
+                ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, n * width);
+                if (column.type == INT_COLUMN) {
+                    buffer.asIntBuffer().get(column.ints, i, n);
+                } else {
+                    buffer.asLongBuffer().get(column.longs, i, n);
+                }
+                i += n;
+            }
+            return column;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/***
+ * Ranks movies by how fast they are being rated right now.
+ *
+ * Time is cut into buckets (a day, by default). Each movie keeps a ring of counts for
+ * the last numBuckets buckets, and its score is those counts weighted by recency, each
+ * bucket counting for half as much every halfLife buckets. "Now" is the newest bucket
+ * any rating has fallen in, so the engine works the same on live ratings and on
+ * historic ones replayed in time order.
+ *
+ * Scores are kept in forward-decayed form: a rating in bucket b adds growth^b (relative
+ * to a landmark bucket) rather than decaying every score as time moves on. Moving on
+ * then scales every score by the same factor, so the ranking of movies is unchanged and
+ * only the movies a rating touches, or whose bucket leaves the window, are re-ranked.
+ * The ranking is an ordered set of every movie with a score, and the first K of it are
+ * cached, so reading the trending list is O(K).
+ *
+ * The engine is fed through TrendingStores, and is safe to update and read from
+ * different threads.
+ */
+public class TrendingEngine {
+    public static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+
+    // Weights are rebased onto a new landmark before growth^(bucket - landmark) gets near overflow
+    private static final double MAX_EXPONENT = 512;
+
+    private final long bucketSeconds;
+    private final int numBuckets;
+    private final double growth;
+    private final int topK;
+
+    private final HashMap<Integer, Trend> trends = new HashMap<>();
+    // The movies with a rating in each bucket still in the window, by bucket
+    private final TreeMap<Long, HashSet<Integer>> expiring = new TreeMap<>();
+    private TreeSet<Trend> ranking = new TreeSet<>(TrendingEngine::compare);
+    private long now = Long.MIN_VALUE;
+    private long landmark = 0;
+    private int[] top = new int[0];
+    private boolean topChanged = false;
+
+    /***
+     * One movie's counts for the buckets in the window, and its forward-decayed score.
+     */
+    private static final class Trend {
+        final int movieID;
+        final int[] counts;
+        int total;
+        double score;
+
+        Trend(int movieID, int numBuckets) {
+            this.movieID = movieID;
+            this.counts = new int[numBuckets];
+        }
+    }
+
+    // Highest score first, then lowest movie ID
+    private static int compare(Trend a, Trend b) {
+        int byScore = Double.compare(b.score, a.score);
+        return byScore != 0 ? byScore : Integer.compare(a.movieID, b.movieID);
+    }
+
+    /***
+     * A week of daily buckets, with a half-life of two days
+     * @param topK The length of the trending list
+     */
+    public TrendingEngine(int topK) {
+        this(Duration.ofDays(1), 7, 2.0, topK);
+    }
+
+    /***
+     * @param bucket The length of each bucket
+     * @param numBuckets The number of buckets in the window
+     * @param halfLife The number of buckets after which a rating counts for half as much
+     * @param topK The length of the trending list
+     */
+    public TrendingEngine(Duration bucket, int numBuckets, double halfLife, int topK) {
+        if (bucket.getSeconds() <= 0 || numBuckets <= 0 || !(halfLife > 0) || topK < 0) {
+            throw new IllegalArgumentException("Bucket, number of buckets and half-life must be positive, and topK not negative");
+        }
+        this.bucketSeconds = bucket.getSeconds();
+        this.numBuckets = numBuckets;
+        this.growth = Math.pow(2, 1 / halfLife);
+        this.topK = topK;
+    }
+
+    private double weight(long bucket) {
+        return Math.pow(growth, bucket - landmark);
+    }
+
+    /***
+     * Count a rating made at the given time
+     * @param movieID The movie rated
+     * @param epochSecond The time of the rating, in seconds since the epoch (UTC), or
+     *                    NULL_TIMESTAMP
+     * @return TRUE if the rating is inside the window and was counted, FALSE otherwise
+     */
+    public synchronized boolean add(int movieID, long epochSecond) {
+        return update(movieID, epochSecond, 1);
+    }
+
+    /***
+     * Stop counting a rating, when it is removed or replaced
+     * @return TRUE if the rating was inside the window and was taken off, FALSE otherwise
+     */
+    public synchronized boolean remove(int movieID, long epochSecond) {
+        return update(movieID, epochSecond, -1);
+    }
+
+    private boolean update(int movieID, long epochSecond, int delta) {
+        if (epochSecond == NULL_TIMESTAMP) {
+            return false;
+        }
+        long bucket = Math.floorDiv(epochSecond, bucketSeconds);
+        if (bucket > now) {
+            if (delta < 0) {
+                // Never counted, as nothing has been seen this late
+                return false;
+            }
+            advance(bucket);
+        }
+        if (bucket <= now - numBuckets) {
+            return false;
+        }
+
+        int slot = (int) Math.floorMod(bucket, (long) numBuckets);
+        Trend trend = trends.get(movieID);
+        if (delta < 0 && (trend == null || trend.counts[slot] == 0)) {
+            return false;
+        }
+        if (trend == null) {
+            trend = new Trend(movieID, numBuckets);
+            trends.put(movieID, trend);
+        }
+        if (delta > 0 && trend.counts[slot] == 0) {
+            expiring.computeIfAbsent(bucket, b -> new HashSet<>()).add(movieID);
+        }
+        ranking.remove(trend);
+        trend.counts[slot] += delta;
+        trend.total += delta;
+        trend.score += delta * weight(bucket);
+        rerank(trend);
+        return true;
+    }
+
+    // Put a changed trend back into the ranking, or drop it once it has no ratings left
+    private void rerank(Trend trend) {
+        if (trend.total == 0) {
+            trends.remove(trend.movieID);
+        } else {
+            ranking.add(trend);
+        }
+        topChanged = true;
+    }
+
+    // Move now forward to the given bucket, taking off the buckets that leave the window
+    private void advance(long bucket) {
+        if (now == Long.MIN_VALUE) {
+            landmark = bucket;
+        }
+        now = bucket;
+        Map.Entry<Long, HashSet<Integer>> entry;
+        while ((entry = expiring.firstEntry()) != null && entry.getKey() <= now - numBuckets) {
+            expiring.pollFirstEntry();
+            long expired = entry.getKey();
+            int slot = (int) Math.floorMod(expired, (long) numBuckets);
+            for (int movieID : entry.getValue()) {
+                Trend trend = trends.get(movieID);
+                if (trend == null || trend.counts[slot] == 0) {
+                    continue;
+                }
+                ranking.remove(trend);
+                trend.score -= trend.counts[slot] * weight(expired);
+                trend.total -= trend.counts[slot];
+                trend.counts[slot] = 0;
+                rerank(trend);
+            }
+        }
+
+        if ((now - landmark) * Math.log(growth) / Math.log(2) > MAX_EXPONENT) {
+            // Scaling every score by the same factor keeps their order, but rebuild the set
+            // rather than trust rounding not to swap two close scores
+            double scale = weight(now);
+            landmark = now;
+            TreeSet<Trend> rebased = new TreeSet<>(TrendingEngine::compare);
+            for (Trend trend : trends.values()) {
+                trend.score /= scale;
+                rebased.add(trend);
+            }
+            ranking = rebased;
+            topChanged = true;
+        }
+    }
+
+    /***
+     * @return The trending movie IDs, highest score first. At most topK of them
+     */
+    public synchronized int[] getTrending() {
+        if (topChanged) {
+            int[] result = new int[Math.min(topK, ranking.size())];
+            int i = 0;
+            for (Trend trend : ranking) {
+                if (i == result.length) {
+                    break;
+                }
+                result[i++] = trend.movieID;
+            }
+            top = result;
+            topChanged = false;
+        }
+        return top.clone();
+    }
+
+    /***
+     * @return A movie's score: its ratings in the window, each weighted by how recent it
+     *         is (1 for a rating in the current bucket). 0 if it has none
+     */
+    public synchronized double getScore(int movieID) {
+        Trend trend = trends.get(movieID);
+        return trend == null ? 0 : trend.score / weight(now);
+    }
+
+    /***
+     * @return The start of the current bucket, or null if nothing has been counted yet
+     */
+    public synchronized LocalDateTime getNow() {
+        return now == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(now * bucketSeconds, 0, ZoneOffset.UTC);
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    /***
+     * Offline evaluation: replay the ratings in a ratings csv file in time order, and
+     * at every interval of rating time compare the trending list with the movies
+     * actually rated most over the next interval.
+     *
+     * For each interval one line is written: its start, the precision (the share of
+     * the trending list that is among the next interval's topK most rated movies), and
+     * the trending list. Intervals with nothing trending, or no ratings after them,
+     * are not scored.
+     *
+     * @param ratingsFile A file in the ratings csv format (userId,movieLensId,tmdbId,rating,timestamp)
+     * @param engine A fresh engine to replay into
+     * @param interval How often the trending list is checked
+     * @param out Where the per-interval lines are written, or null
+     * @return The mean precision over the scored intervals, or -1 if none were scored
+     * @throws IOException If the file cannot be read
+     */
+    public static double replay(Path ratingsFile, TrendingEngine engine, Duration interval, PrintStream out) throws IOException {
+        long intervalSeconds = interval.getSeconds();
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+
+        // Each rating as (timestamp, movie) in one long, so sorting puts them in time order
+        long[] events = new long[1 << 16];
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(ratingsFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                if (fields.length != 5) {
+                    continue;
+                }
+                try {
+                    int movieID = Integer.parseInt(fields[2].trim());
+                    long timestamp = Long.parseLong(fields[4].trim());
+                    if (movieID < 0 || timestamp < 0 || timestamp > Integer.MAX_VALUE) {
+                        continue;
+                    }
+                    if (count == events.length) {
+                        events = Arrays.copyOf(events, count * 2);
+                    }
+                    events[count++] = (timestamp << 32) | movieID;
+                }
+                catch (NumberFormatException e) {
+                    // The header, or a malformed line
+                }
+            }
+        }
+        Arrays.sort(events, 0, count);
+
+        double precisionSum = 0;
+        int scored = 0;
+        int[] predicted = null;
+        long start = count > 0 ? events[0] >>> 32 : 0;
+        HashMap<Integer, Integer> actual = new HashMap<>();
+        for (int i = 0; i <= count; i++) {
+            long timestamp = i < count ? events[i] >>> 32 : Long.MAX_VALUE;
+            if (timestamp - start >= intervalSeconds) {
+                // The interval has ended: score what was predicted at its start, then predict the next
+                if (predicted != null && predicted.length > 0 && !actual.isEmpty()) {
+                    double precision = precision(predicted, actual, engine.topK);
+                    precisionSum += precision;
+                    scored++;
+                    if (out != null) {
+                        out.printf("%s,%.3f,%s%n", LocalDateTime.ofEpochSecond(start, 0, ZoneOffset.UTC), precision, Arrays.toString(predicted));
+                    }
+                }
+                if (i == count) {
+                    break;
+                }
+                predicted = engine.getTrending();
+                actual.clear();
+                // Skip any empty intervals
+                start += (timestamp - start) / intervalSeconds * intervalSeconds;
+            }
+            int movieID = (int) events[i];
+            engine.add(movieID, timestamp);
+            actual.merge(movieID, 1, Integer::sum);
+        }
+        return scored == 0 ? -1 : precisionSum / scored;
+    }
+
+    // Share of the predicted movies that are among the k most rated in actual
+    private static double precision(int[] predicted, HashMap<Integer, Integer> actual, int k) {
+        Integer[] movies = actual.keySet().toArray(new Integer[0]);
+        Arrays.sort(movies, (a, b) -> Integer.compare(actual.get(b), actual.get(a)));
+        HashSet<Integer> best = new HashSet<>(Arrays.asList(movies).subList(0, Math.min(k, movies.length)));
+        int hits = 0;
+        for (int movieID : predicted) {
+            if (best.contains(movieID)) {
+                hits++;
+            }
+        }
+        return (double) hits / predicted.length;
+    }
+}
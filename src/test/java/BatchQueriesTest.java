@@ -0,0 +1,194 @@
+import stores.*;
+import utils.BatchQueries;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchQueriesTest {
+
+    private static ConcurrentStores loaded() {
+        ConcurrentStores stores = new ConcurrentStores();
+        stores.getMovies().add(862, "Toy Story", "Toy Story", "", "", "Released", new Genre[0], null, 0, 0, new String[0], "en", 81, "", false, false, "");
+        stores.getMovies().add(863, "Toy Story 2", "Toy Story 2", "", "", "Released", new Genre[0], null, 0, 0, new String[0], "en", 92, "", false, false, "");
+        stores.getMovies().add(8844, "Jumanji, the Game", "Jumanji", "", "", "Released", new Genre[0], null, 0, 0, new String[0], "en", 104, "", false, false, "");
+        stores.getCredits().add(new CastCredit[] {new CastCredit(14, "Woody (voice)", "52fe4284c3a36847f8024f95", 31, "Tom Hanks", 0, null)}, new CrewCredit[0], 862);
+        stores.getCredits().add(new CastCredit[] {new CastCredit(14, "Woody (voice)", "52fe4284c3a36847f8024f96", 31, "Tom Hanks", 0, null)}, new CrewCredit[0], 863);
+        stores.getRatings().add(1, 862, 5.0f, null);
+        stores.getRatings().add(2, 862, 4.0f, null);
+        stores.getRatings().add(1, 8844, 3.0f, null);
+        return stores;
+    }
+
+    private static String[] run(BatchQueries batch, List<String> queries, BatchQueries.Format format, ByteArrayOutputStream report) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batch.run(queries, format, new PrintStream(out, true), new PrintStream(report, true));
+        return out.toString(StandardCharsets.UTF_8).split("\n");
+    }
+
+    /**
+     * Queries should each write their rows together, as CSV or JSON lines, and each
+     * should have its time reported
+     */
+    @Test void testBatchQueriesPos() throws IOException {
+        System.out.println("\nStarting testBatchQueriesPos...");
+
+        Path file = Files.createTempFile("queries", ".txt");
+        try {
+            Files.write(file, Arrays.asList("# nightly report", "top-rated 2", "", "find-films toy", "cast-films 31", "most-credited"));
+            List<String> queries = BatchQueries.read(file);
+            assertEquals(Arrays.asList("top-rated 2", "find-films toy", "cast-films 31", "most-credited"), queries, "Blank lines and comments should be skipped.");
+
+            BatchQueries batch = new BatchQueries(loaded(), 4);
+            ByteArrayOutputStream report = new ByteArrayOutputStream();
+            String[] csv = run(batch, queries, BatchQueries.Format.CSV, report);
+            assertEquals("query,text,rank,id,name,value", csv[0]);
+            assertEquals(1 + 2 + 2 + 2 + 1, csv.length);
+            assertTrue(Arrays.asList(csv).contains("1,top-rated 2,1,862,Toy Story,4.5"));
+            assertTrue(Arrays.asList(csv).contains("1,top-rated 2,2,8844,\"Jumanji, the Game\",3.0"), "Fields with commas should be quoted.");
+            assertTrue(Arrays.asList(csv).contains("4,most-credited,1,31,Tom Hanks,2"));
+            // Each query's rows are together once it has finished, so a query number never comes back
+            Set<String> finished = new HashSet<>();
+            for (int row = 1; row < csv.length; row++) {
+                String query = csv[row].substring(0, csv[row].indexOf(','));
+                assertFalse(finished.contains(query), "The rows of a query should be kept together.");
+                if (row + 1 == csv.length || !csv[row + 1].startsWith(query + ",")) {
+                    finished.add(query);
+                }
+            }
+            String times = report.toString(StandardCharsets.UTF_8);
+            assertTrue(times.contains("find-films toy  (2 rows)"), "Each query should have its time reported.");
+            assertTrue(times.contains("Ran 4 queries (0 failed) on 4 threads"));
+
+            String[] json = run(batch, Arrays.asList("find-films toy story 2"), BatchQueries.Format.JSON, new ByteArrayOutputStream());
+            assertEquals(1, json.length);
+            JSONObject row = new JSONObject(json[0]);
+            assertEquals(1, row.getInt("query"));
+            assertEquals("find-films toy story 2", row.getString("text"));
+            assertEquals(863, row.getInt("id"));
+            assertEquals("Toy Story 2", row.getString("name"));
+            assertEquals(-1.0, row.getDouble("value"), 1e-9, "A film with no ratings should have no average.");
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Unknown or malformed queries should be reported as failed, without stopping the
+     * queries around them
+     */
+    @Test void testBatchQueriesNeg() {
+        System.out.println("\nStarting testBatchQueriesNeg...");
+
+        BatchQueries batch = new BatchQueries(loaded(), 2);
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int failed = batch.run(Arrays.asList("bogus 1", "top-rated x", "find-films", "cast-films 999", "top-rated 1"),
+                               BatchQueries.Format.JSON, new PrintStream(out, true), new PrintStream(report, true));
+        assertEquals(3, failed);
+        String[] rows = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, rows.length, "Only the good queries should write rows.");
+        assertEquals(5, new JSONObject(rows[0]).getInt("query"));
+        String times = report.toString(StandardCharsets.UTF_8);
+        assertTrue(times.contains("bogus 1  FAILED: Unknown query: bogus"));
+        assertTrue(times.contains("top-rated x  FAILED: Not a number"));
+        assertTrue(times.contains("find-films  FAILED: Missing search term"));
+        assertTrue(times.contains("cast-films 999  (0 rows)"), "A query finding nothing should not fail.");
+
+        assertEquals(0, batch.run(Arrays.asList(), BatchQueries.Format.JSON, new PrintStream(new ByteArrayOutputStream()), new PrintStream(new ByteArrayOutputStream())));
+    }
+
+    // Runs the headless queries over the first films of the sample data, with its results
+    // written to out
+    private static int runHeadless(String creditsPath, String queryPath, Integer servePort, ByteArrayOutputStream out) {
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(out, true));
+        try {
+            LaunchOptions launch = new LaunchOptions();
+            launch.creditsPath = creditsPath;
+            launch.keywordsPath = "data/keywords.csv";
+            launch.movieMetadataPath = "data/movies_metadata.csv";
+            launch.ratingsPath = "data/ratings.csv";
+            launch.numMovies = 20;
+            launch.queryPath = queryPath;
+            launch.numThreads = 2;
+            launch.servePort = servePort;
+            return WarwickPlus.runHeadless(new ConcurrentStores(), launch);
+        }
+        finally {
+            System.setOut(stdout);
+        }
+    }
+
+    private static Path credits() throws IOException {
+        Path credits = Files.createTempFile("credits", ".csv");
+        Files.write(credits, Arrays.asList("cast,crew,tmdb_id"));
+        return credits;
+    }
+
+    /**
+     * A headless run whose queries all run should print their results and exit with 0
+     */
+    @Test void testRunHeadlessPos() throws IOException {
+        System.out.println("\nStarting testRunHeadlessPos...");
+
+        Path credits = credits();
+        Path queries = Files.createTempFile("queries", ".txt");
+        try {
+            Files.write(queries, Arrays.asList("top-rated 2", "find-films a"));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            PrintStream stdout = System.out;
+            assertEquals(0, runHeadless(credits.toString(), queries.toString(), null, out), "Queries that all run should exit with 0.");
+            assertSame(stdout, System.out, "stdout should be given back once the queries have run.");
+            String[] rows = out.toString(StandardCharsets.UTF_8).split("\n");
+            assertEquals("query,text,rank,id,name,value", rows[0], "Only the results should go to stdout.");
+            assertTrue(rows.length > 1);
+
+            // An empty file runs no queries, so none fail
+            Files.write(queries, Arrays.asList("# nothing tonight"));
+            assertEquals(0, runHeadless(credits.toString(), queries.toString(), null, new ByteArrayOutputStream()));
+        }
+        finally {
+            Files.deleteIfExists(credits);
+            Files.deleteIfExists(queries);
+        }
+    }
+
+    /**
+     * Failed queries, nothing to run, and queries or stores that cannot be read should all
+     * exit non-zero
+     */
+    @Test void testRunHeadlessNeg() throws IOException {
+        System.out.println("\nStarting testRunHeadlessNeg...");
+
+        Path credits = credits();
+        Path queries = Files.createTempFile("queries", ".txt");
+        try {
+            Files.write(queries, Arrays.asList("top-rated 2", "bogus 1"));
+            assertEquals(1, runHeadless(credits.toString(), queries.toString(), null, new ByteArrayOutputStream()), "A failed query should exit non-zero.");
+            assertEquals(1, runHeadless(credits.toString(), null, null, new ByteArrayOutputStream()), "Nothing to run should exit non-zero.");
+            assertEquals(1, runHeadless(credits.toString(), "no/such/queries.txt", null, new ByteArrayOutputStream()), "Unreadable queries should exit non-zero.");
+
+            Files.write(queries, Arrays.asList("top-rated 2"));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(1, runHeadless("no/such/credits.csv", queries.toString(), null, out), "Stores that cannot be loaded should exit non-zero.");
+            assertEquals("", out.toString(StandardCharsets.UTF_8), "Nothing should be printed as results when the stores fail to load.");
+        }
+        finally {
+            Files.deleteIfExists(credits);
+            Files.deleteIfExists(queries);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+import interfaces.AbstractStores;
+import stores.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class BulkGettersTest {
+
+    private static final int[] IDS = {2, 1, 999, 2};
+
+    private Path path;
+    private AbstractStores[] all;
+
+    private static void fill(AbstractStores stores) {
+        stores.getMovies().add(2, "Toy Story", "Toy Story", "overview", "tagline", "Released",
+            new Genre[0], LocalDate.of(1995, 10, 30), 0, 0, new String[] {"en"}, "en", 81.0, "", false, false, "/poster.jpg");
+        stores.getMovies().add(1, "Jumanji", "Jumanji", "overview", "tagline", "Released",
+            new Genre[0], LocalDate.of(1995, 12, 15), 0, 0, new String[] {"en"}, "en", 104.0, "", false, false, "");
+        stores.getCredits().add(
+            new CastCredit[] {new CastCredit(14, "Woody (voice)", "52fe4284c3a36847f8024f95", 31, "Tom Hanks", 0, null),
+                              new CastCredit(15, "Buzz (voice)", "52fe4284c3a36847f8024f99", 12898, "Tim Allen", 1, null)},
+            new CrewCredit[] {new CrewCredit("52fe4284c3a36847f8024f49", "Directing", 7879, "Director", "John Lasseter", null)},
+            2);
+        stores.getRatings().add(101, 2, 4.5f, null);
+        stores.getRatings().add(102, 2, 3.0f, null);
+        stores.getRatings().add(101, 1, 2.5f, null);
+    }
+
+    @BeforeAll
+    void setUp() throws IOException {
+        Stores stores = new Stores();
+        fill(stores);
+        ConcurrentStores concurrent = new ConcurrentStores();
+        fill(concurrent);
+        path = Files.createTempFile("stores", ".image");
+        MappedStores.write(stores, path, -1);
+        all = new AbstractStores[] {stores, concurrent, new MappedStores(path), new CachedStores(stores)};
+    }
+
+    @AfterAll
+    void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Bulk getters should give the same as the single getters, in the order of the IDs
+     */
+    @Test void testBulkGettersPos() {
+        System.out.println("\nStarting testBulkGettersPos...");
+
+        for (AbstractStores stores : all) {
+            String[] titles = stores.getMovies().getTitles(IDS);
+            float[] averages = stores.getRatings().getMovieAverageRatings(IDS);
+            CastCredit[][] casts = stores.getCredits().getFilmCasts(IDS);
+            CrewCredit[][] crews = stores.getCredits().getFilmCrews(IDS);
+            assertEquals(IDS.length, titles.length);
+            for (int i = 0; i < IDS.length; i++) {
+                assertEquals(stores.getMovies().getTitle(IDS[i]), titles[i], "Titles should match getTitle in " + stores.getClass().getSimpleName());
+                assertEquals(stores.getRatings().getMovieAverageRating(IDS[i]), averages[i], 1e-6);
+                // Mapped stores make new credits on each call, so they are compared as text
+                assertEquals(Arrays.toString(stores.getCredits().getFilmCast(IDS[i])), Arrays.toString(casts[i]));
+                assertEquals(Arrays.toString(stores.getCredits().getFilmCrew(IDS[i])), Arrays.toString(crews[i]));
+            }
+            assertEquals("Toy Story", titles[0]);
+            assertEquals(3.75f, averages[0], 1e-6);
+            assertEquals("Tom Hanks", casts[3][0].getName(), "Repeated IDs should each be answered.");
+        }
+    }
+
+    /**
+     * Unknown IDs should give what the single getters give for them, and no IDs nothing
+     */
+    @Test void testBulkGettersNeg() {
+        System.out.println("\nStarting testBulkGettersNeg...");
+
+        for (AbstractStores stores : all) {
+            assertNull(stores.getMovies().getTitles(IDS)[2], "An unknown film should have no title.");
+            assertEquals(-1.0f, stores.getRatings().getMovieAverageRatings(IDS)[2], "An unknown film should have no average.");
+            assertEquals(0, stores.getCredits().getFilmCasts(IDS)[1].length, "A film without credits should have no cast.");
+            assertEquals(0, stores.getCredits().getFilmCrews(IDS)[2].length);
+
+            assertEquals(0, stores.getMovies().getTitles(new int[0]).length);
+            assertEquals(0, stores.getRatings().getMovieAverageRatings(new int[0]).length);
+            assertEquals(0, stores.getCredits().getFilmCasts(new int[0]).length);
+        }
+    }
+
+    /**
+     * A batch from the concurrent stores should be answered from one version of them,
+     * even while they are being changed, and a snapshot's batches should not see later
+     * changes
+     */
+    @Test void testConsistencyPos() throws Exception {
+        System.out.println("\nStarting testConsistencyPos...");
+
+        ConcurrentStores stores = new ConcurrentStores();
+        int[] movieIDs = new int[50];
+        for (int i = 0; i < movieIDs.length; i++) {
+            movieIDs[i] = i + 1;
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        // Each batch gives every movie the same new rating, so every version has equal averages
+        Thread writer = new Thread(() -> {
+            for (int user = 1; running.get() && user <= 2000; user++) {
+                int[] userIDs = new int[movieIDs.length];
+                float[] ratings = new float[movieIDs.length];
+                Arrays.fill(userIDs, user);
+                Arrays.fill(ratings, 0.5f + user % 10 * 0.5f);
+                stores.getRatings().addAll(userIDs, movieIDs, ratings, new long[movieIDs.length]);
+            }
+        });
+        writer.start();
+        try {
+            for (int read = 0; read < 2000 && writer.isAlive(); read++) {
+                float[] averages = stores.getRatings().getMovieAverageRatings(movieIDs);
+                for (float average : averages) {
+                    assertEquals(averages[0], average, "Every average in a batch should come from the same version.");
+                }
+            }
+        }
+        finally {
+            running.set(false);
+            writer.join();
+        }
+
+        AbstractStores snapshot = stores.snapshot();
+        float[] before = snapshot.getRatings().getMovieAverageRatings(movieIDs);
+        String[] titles = snapshot.getMovies().getTitles(movieIDs);
+        stores.getRatings().addAll(new int[] {-1}, new int[] {1}, new float[] {5.0f}, new long[1]);
+        stores.getMovies().add(1, "Toy Story", "Toy Story", "", "", "Released", new Genre[0], null, 0, 0, new String[0], "en", 81.0, "", false, false, "");
+        assertArrayEquals(before, snapshot.getRatings().getMovieAverageRatings(movieIDs), "A snapshot should not see later ratings.");
+        assertArrayEquals(titles, snapshot.getMovies().getTitles(movieIDs), "A snapshot should not see later movies.");
+        assertEquals("Toy Story", stores.getMovies().getTitles(movieIDs)[0]);
+        assertNotEquals(before[0], stores.getRatings().getMovieAverageRatings(movieIDs)[0], "The stores should see their own changes.");
+    }
+
+    /**
+     * Changing what a bulk getter returned should not change the stores, and IDs no
+     * film has, however many, should each get the unknown value
+     */
+    @Test void testConsistencyNeg() {
+        System.out.println("\nStarting testConsistencyNeg...");
+
+        for (AbstractStores stores : all) {
+            String name = stores.getClass().getSimpleName();
+            CastCredit[][] casts = stores.getCredits().getFilmCasts(IDS);
+            casts[0][0] = null;
+            casts[3] = new CastCredit[0];
+            CrewCredit[][] crews = stores.getCredits().getFilmCrews(IDS);
+            crews[0][0] = null;
+            assertEquals("Tom Hanks", stores.getCredits().getFilmCasts(IDS)[0][0].getName(), "Changing a returned cast should not change " + name);
+            assertEquals("Tom Hanks", stores.getCredits().getFilmCasts(IDS)[3][0].getName());
+            assertEquals("John Lasseter", stores.getCredits().getFilmCrews(IDS)[0][0].getName(), "Changing a returned crew should not change " + name);
+
+            int[] unknown = new int[1000];
+            for (int i = 0; i < unknown.length; i++) {
+                unknown[i] = i % 2 == 0 ? -i - 1 : 1000 + i;
+            }
+            String[] titles = stores.getMovies().getTitles(unknown);
+            float[] averages = stores.getRatings().getMovieAverageRatings(unknown);
+            CastCredit[][] unknownCasts = stores.getCredits().getFilmCasts(unknown);
+            CrewCredit[][] unknownCrews = stores.getCredits().getFilmCrews(unknown);
+            for (int i = 0; i < unknown.length; i++) {
+                assertNull(titles[i], "ID " + unknown[i] + " should have no title in " + name);
+                assertEquals(-1.0f, averages[i]);
+                assertEquals(0, unknownCasts[i].length);
+                assertEquals(0, unknownCrews[i].length);
+            }
+        }
+
+        // A film removed after its batch was read is unknown in the next batch
+        Stores stores = new Stores();
+        fill(stores);
+        CachedStores cached = new CachedStores(stores);
+        assertEquals(2, cached.getCredits().getFilmCasts(new int[] {2})[0].length);
+        assertTrue(cached.getCredits().remove(2));
+        assertTrue(cached.getRatings().remove(101, 1));
+        assertEquals(0, cached.getCredits().getFilmCasts(new int[] {2})[0].length, "Removed credits should not be found in a batch.");
+        assertEquals(-1.0f, cached.getRatings().getMovieAverageRatings(new int[] {1})[0], "A film with no ratings left should have no average.");
+    }
+}
@@ -0,0 +1,215 @@
+import interfaces.AbstractStores;
+import interfaces.ICredits;
+import interfaces.IRatings;
+import stores.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkLoadTest {
+
+    private static long epoch(int year) {
+        return LocalDateTime.of(year, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Bulk-loaded data should answer queries the same as data added one item at a time
+     */
+    @Test void testAddAllPos() {
+        System.out.println("\nStarting testAddAllPos...");
+        Stores stores = new Stores();
+
+        MovieBatch batch = new MovieBatch(1);
+        int row = batch.add(2, "Toy Story", "Toy Story", "overview", "tagline", "Released",
+            null, LocalDate.of(1995, 10, 30), 30000000, 373554033, null, "en", 81.0, null, false, false, null);
+        batch.setVote(row, 7.7, 5415);
+        batch.setCollection(row, 10194, "Toy Story Collection", "/c.jpg", "/b.jpg");
+        batch.addProductionCompany(row, new Company(3, "Pixar Animation Studios"));
+        row = batch.add(1, "Jumanji", "Jumanji", null, null, "Released",
+            null, LocalDate.of(1995, 12, 15), 0, 0, null, "en", 104.0, null, false, false, null);
+        batch.setIMDB(row, "tt0113497");
+        assertEquals(2, stores.getMovies().addAll(batch), "Both films should be added.");
+        assertEquals(7.7, stores.getMovies().getVoteAverage(2), "Incorrect vote average.");
+        assertEquals("tt0113497", stores.getMovies().getIMDB(1), "Incorrect IMDb ID.");
+        assertArrayEquals(new int[] {2}, stores.getMovies().getFilmsInCollection(10194), "Incorrect collection.");
+        assertEquals(1, stores.getMovies().getProductionCompanies(2).length, "Incorrect production companies.");
+
+        assertEquals(3, stores.getRatings().addAll(new int[] {101, 102, 101}, new int[] {2, 2, 1},
+            new float[] {4.5f, 3.0f, 2.5f}, new long[] {epoch(2001), epoch(2005), epoch(2009)}), "All ratings should be added.");
+        assertEquals(3.75f, stores.getRatings().getMovieAverageRating(2), "Incorrect average rating.");
+        assertEquals(2, stores.getRatings().getUserRatings(101).length, "Incorrect number of user ratings.");
+        assertEquals(LocalDateTime.of(2005, 1, 1, 0, 0), stores.getRatings().getTimestamp(102, 2), "Incorrect timestamp.");
+
+        CastCredit woody = new CastCredit(14, "Woody (voice)", "52fe4284c3a36847f8024f95", 31, "Tom Hanks", 0, null);
+        assertEquals(2, stores.getCredits().addAll(new int[] {2, 1}, new CastCredit[][] {{woody}, {}}, new CrewCredit[][] {{}, {}}),
+            "Both films should be added.");
+        assertArrayEquals(new int[] {2}, stores.getCredits().getCastFilms(31), "Incorrect cast films.");
+        assertEquals(0, stores.getCredits().sizeOfCast(1), "Incorrect cast size.");
+    }
+
+    /**
+     * Items that are already stored, or repeated within a batch, should be skipped
+     */
+    @Test void testAddAllNeg() {
+        System.out.println("\nStarting testAddAllNeg...");
+        Stores stores = new Stores();
+        stores.getRatings().add(101, 2, 4.5f, LocalDateTime.of(2001, 1, 1, 0, 0));
+
+        assertEquals(1, stores.getRatings().addAll(new int[] {101, 102, 102}, new int[] {2, 2, 2},
+            new float[] {1.0f, 3.0f, 5.0f}, new long[] {epoch(2002), epoch(2003), epoch(2004)}), "Only the first new rating should be added.");
+        assertEquals(4.5f, stores.getRatings().getRating(101, 2), "Existing rating should not be replaced.");
+        assertEquals(3.75f, stores.getRatings().getMovieAverageRating(2), "Skipped ratings should not count towards the average.");
+        assertEquals(0, stores.getRatings().addAll(new int[] {101}, new int[0], new float[0], new long[0]),
+            "Arrays of different lengths should add nothing.");
+
+        MovieBatch batch = new MovieBatch();
+        batch.add(1, "Jumanji", "Jumanji", null, null, null, null, null, 0, 0, null, null, 104.0, null, false, false, null);
+        batch.add(1, "Duplicate", "Duplicate", null, null, null, null, null, 0, 0, null, null, 0.0, null, false, false, null);
+        assertEquals(1, stores.getMovies().addAll(batch), "Repeated film should be skipped.");
+        assertEquals("Jumanji", stores.getMovies().getTitle(1), "First film should be kept.");
+    }
+
+    private static int[] sorted(int[] values) {
+        int[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    private static float[] sorted(float[] values) {
+        float[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    // Checks that two rating stores hold the same ratings, and agree on every index built from them
+    private static void assertSameRatings(IRatings expected, IRatings actual, int numUsers, int numMovies, String name) {
+        assertEquals(expected.size(), actual.size(), name + ": incorrect number of ratings.");
+        assertArrayEquals(sorted(expected.getRatedMovies()), sorted(actual.getRatedMovies()), name);
+        assertArrayEquals(expected.getRatingHistogram(), actual.getRatingHistogram(), name);
+        for (int movieID = 1; movieID <= numMovies; movieID++) {
+            assertEquals(expected.getNumRatings(movieID), actual.getNumRatings(movieID), name + ": incorrect count for " + movieID);
+            assertArrayEquals(sorted(expected.getMovieRaters(movieID)), sorted(actual.getMovieRaters(movieID)), name + ": incorrect raters of " + movieID);
+            assertEquals(expected.getMovieAverageRating(movieID), actual.getMovieAverageRating(movieID), 1e-4, name + ": incorrect average of " + movieID);
+            assertEquals(expected.getMovieWeightedRating(movieID), actual.getMovieWeightedRating(movieID), 1e-4, name + ": incorrect weighted rating of " + movieID);
+            assertArrayEquals(expected.getMovieRatingHistogram(movieID), actual.getMovieRatingHistogram(movieID), name);
+            assertArrayEquals(expected.getMovieRatingsBetween(movieID, null, null), actual.getMovieRatingsBetween(movieID, null, null), name + ": incorrect timeline of " + movieID);
+        }
+        for (int userID = 1; userID <= numUsers; userID++) {
+            assertArrayEquals(sorted(expected.getUserRatings(userID)), sorted(actual.getUserRatings(userID)), name + ": incorrect ratings by " + userID);
+            assertEquals(expected.getUserAverageRating(userID), actual.getUserAverageRating(userID), 1e-4, name);
+            assertArrayEquals(expected.getUserRatingHistogram(userID), actual.getUserRatingHistogram(userID), name);
+        }
+    }
+
+    /**
+     * Ratings loaded in batches, with repeats within and across batches, should give the
+     * same store as the same ratings added one at a time, and stay the same as ratings
+     * are then removed and set
+     */
+    @Test void testBatchesPos() {
+        System.out.println("\nStarting testBatchesPos...");
+
+        Random random = new Random(30);
+        int numUsers = 120, numMovies = 80, n = 4000;
+        int[] users = new int[n], movies = new int[n];
+        float[] ratings = new float[n];
+        long[] times = new long[n];
+        for (int i = 0; i < n; i++) {
+            users[i] = 1 + random.nextInt(numUsers);
+            movies[i] = 1 + random.nextInt(numMovies);
+            ratings[i] = (1 + random.nextInt(10)) / 2.0f;
+            times[i] = epoch(1996) + random.nextInt(1000000);
+        }
+
+        Stores single = new Stores();
+        for (int i = 0; i < n; i++) {
+            single.getRatings().add(users[i], movies[i], ratings[i], LocalDateTime.ofEpochSecond(times[i], 0, ZoneOffset.UTC));
+        }
+        for (AbstractStores stores : new AbstractStores[] {new Stores(), new ConcurrentStores()}) {
+            String name = stores.getClass().getSimpleName();
+            int added = 0;
+            for (int start = 0; start < n; start += 700) {
+                int end = Math.min(n, start + 700);
+                added += stores.getRatings().addAll(Arrays.copyOfRange(users, start, end), Arrays.copyOfRange(movies, start, end),
+                    Arrays.copyOfRange(ratings, start, end), Arrays.copyOfRange(times, start, end));
+            }
+            assertEquals(single.getRatings().size(), added, name + ": every new rating, and only those, should be added.");
+            assertSameRatings(single.getRatings(), stores.getRatings(), numUsers, numMovies, name);
+        }
+
+        // Changes after a bulk load should keep every index in step
+        Stores bulk = new Stores();
+        bulk.getRatings().addAll(users, movies, ratings, times);
+        for (int i = 0; i < n; i += 7) {
+            assertEquals(single.getRatings().remove(users[i], movies[i]), bulk.getRatings().remove(users[i], movies[i]));
+        }
+        for (int i = 3; i < n; i += 11) {
+            LocalDateTime when = LocalDateTime.ofEpochSecond(epoch(2000) + i, 0, ZoneOffset.UTC);
+            single.getRatings().set(users[i], movies[i], 0.5f, when);
+            bulk.getRatings().set(users[i], movies[i], 0.5f, when);
+        }
+        assertSameRatings(single.getRatings(), bulk.getRatings(), numUsers, numMovies, "After changes");
+    }
+
+    /**
+     * Films in a batch that clashes with stored films should be skipped without touching
+     * what is stored, a cleared batch should not carry anything into its next use, and
+     * bulk-loaded credits should be removed as fully as added ones
+     */
+    @Test void testBatchesNeg() {
+        System.out.println("\nStarting testBatchesNeg...");
+        Stores stores = new Stores();
+        stores.getMovies().add(1, "Jumanji", "Jumanji", null, null, null, null, null, 0, 0, null, null, 104.0, null, false, false, null);
+        stores.getMovies().addToCollection(1, 50, "Collection", null, null);
+
+        MovieBatch batch = new MovieBatch(0);
+        assertEquals(0, stores.getMovies().addAll(batch), "An empty batch should add nothing.");
+        int row = batch.add(1, "Clash", "Clash", null, null, null, null, null, 0, 0, null, null, 0.0, null, false, false, null);
+        batch.setCollection(row, 60, "Other collection", null, null);
+        row = batch.add(2, "Zathura", "Zathura", null, null, null, null, null, 0, 0, null, null, 101.0, null, false, false, null);
+        batch.setCollection(row, 50, "Renamed", null, null);
+        assertEquals(1, stores.getMovies().addAll(batch));
+        assertEquals("Jumanji", stores.getMovies().getTitle(1), "A stored film should not be replaced.");
+        assertEquals(50, stores.getMovies().getCollectionID(1), "A skipped film should not move collection.");
+        assertArrayEquals(new int[0], stores.getMovies().getFilmsInCollection(60), "A skipped film's collection should not be made.");
+        assertArrayEquals(new int[] {1, 2}, sorted(stores.getMovies().getFilmsInCollection(50)), "A new film should join a stored collection.");
+        assertEquals("Collection", stores.getMovies().getCollectionName(50), "A stored collection should keep its name.");
+
+        batch.clear();
+        assertEquals(0, batch.size());
+        batch.add(3, "Cleared", "Cleared", null, null, null, null, null, 0, 0, null, null, 0.0, null, false, false, null);
+        assertEquals(1, stores.getMovies().addAll(batch));
+        assertEquals(-1, stores.getMovies().getCollectionID(3), "A cleared row should not keep its old collection.");
+        assertEquals("Zathura", stores.getMovies().getTitle(2), "Clearing a batch should not change films already stored.");
+
+        MovieBatch large = new MovieBatch(1);
+        for (int id = 1000; id < 6000; id++) {
+            large.add(id, "Film " + id, null, null, null, null, null, null, 0, 0, null, null, 0.0, null, false, false, null);
+        }
+        assertEquals(5000, stores.getMovies().addAll(large), "A batch should grow past its expected size.");
+        assertEquals("Film 5999", stores.getMovies().getTitle(5999));
+        assertEquals(5003, stores.getMovies().size());
+
+        ICredits credits = stores.getCredits();
+        CastCredit woody = new CastCredit(14, "Woody (voice)", "c1", 31, "Tom Hanks", 0, null);
+        CastCredit other = new CastCredit(15, "Other", "c2", 31, "Tom Hanks", 0, null);
+        CrewCredit director = new CrewCredit("d1", "Directing", 7879, "Director", "John Lasseter", null);
+        assertEquals(0, credits.addAll(new int[] {1, 2}, new CastCredit[][] {{woody}}, new CrewCredit[][] {{}, {}}), "Arrays of different lengths should add nothing.");
+        assertEquals(2, credits.addAll(new int[] {1, 2, 1}, new CastCredit[][] {{woody}, {}, {other}}, new CrewCredit[][] {{director}, {director}, {}}));
+        assertEquals(1, credits.getFilmCast(1).length, "A film repeated in a batch should keep its first credits.");
+        assertArrayEquals(new int[] {1}, credits.getCastFilms(31));
+        assertArrayEquals(new int[] {1, 2}, sorted(credits.getCrewFilms(7879)));
+        assertEquals(0, credits.addAll(new int[] {2}, new CastCredit[][] {{other}}, new CrewCredit[][] {{}}), "A stored film should be skipped.");
+        assertArrayEquals(new int[] {1}, credits.getCastFilms(31), "A skipped film should not be indexed.");
+
+        assertTrue(credits.remove(1));
+        assertArrayEquals(new int[0], credits.getCastFilms(31), "A removed film should leave the cast index.");
+        assertArrayEquals(new int[] {2}, credits.getCrewFilms(7879), "A removed film should leave the crew index.");
+    }
+}
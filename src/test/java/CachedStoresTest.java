@@ -0,0 +1,210 @@
+import interfaces.AbstractStores;
+import interfaces.IRatings;
+import stores.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachedStoresTest {
+
+    private static CachedStores loaded() {
+        Stores stores = new Stores();
+        IRatings ratings = stores.getRatings();
+        ratings.add(1, 10, 4.0f, null);
+        ratings.add(2, 10, 3.0f, null);
+        ratings.add(1, 20, 5.0f, null);
+        stores.getCredits().add(new CastCredit[] {new CastCredit(0, "Woody (voice)", "credit31", 31, "Tom Hanks", 0, null)}, new CrewCredit[0], 10);
+        return new CachedStores(stores);
+    }
+
+    // Stores whose first top average query waits, once it has its result, until released
+    private static AbstractStores gated(Stores stores, CountDownLatch entered, CountDownLatch release) {
+        IRatings gate = (IRatings) Proxy.newProxyInstance(IRatings.class.getClassLoader(), new Class<?>[] {IRatings.class}, (proxy, method, args) -> {
+            Object result;
+            try {
+                result = method.invoke(stores.getRatings(), args);
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (method.getName().equals("getTopAverageRatedMovies") && entered.getCount() > 0) {
+                entered.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return result;
+        });
+        return new AbstractStores() {{
+            this.credits = stores.getCredits();
+            this.keywords = stores.getKeywords();
+            this.movies = stores.getMovies();
+            this.ratings = gate;
+        }};
+    }
+
+    /**
+     * A repeated query should be answered from the remembered result, and a change to
+     * one store should forget only that store's results
+     */
+    @Test void testCachedStoresPos() {
+        System.out.println("\nStarting testCachedStoresPos...");
+
+        CachedStores stores = loaded();
+        int[] top = stores.getRatings().getTopAverageRatedMovies(10);
+        assertArrayEquals(new int[] {20, 10}, top);
+        assertEquals(1, stores.getMisses());
+        assertArrayEquals(new int[] {20, 10}, stores.getRatings().getTopAverageRatedMovies(10));
+        assertEquals(1, stores.getHits(), "A repeated query should be remembered.");
+        assertEquals(1, stores.getCredits().getMostCastCredits(10).length);
+
+        top[0] = -1;
+        assertArrayEquals(new int[] {20, 10}, stores.getRatings().getTopAverageRatedMovies(10), "Changing a result should not change the remembered one.");
+
+        assertTrue(stores.getRatings().add(3, 10, 5.0f, null));
+        assertTrue(stores.getRatings().set(1, 20, 1.0f, null));
+        assertArrayEquals(new int[] {10, 20}, stores.getRatings().getTopAverageRatedMovies(10), "A rating change should forget the ratings results.");
+        long hits = stores.getHits();
+        assertEquals(1, stores.getCredits().getMostCastCredits(10).length);
+        assertEquals(hits + 1, stores.getHits(), "A rating change should keep the credits results.");
+    }
+
+    /**
+     * Different arguments should not share results, and a change the store rejects
+     * should not forget any
+     */
+    @Test void testCachedStoresNeg() {
+        System.out.println("\nStarting testCachedStoresNeg...");
+
+        CachedStores stores = loaded();
+        assertArrayEquals(new int[] {20}, stores.getRatings().getTopAverageRatedMovies(1));
+        assertArrayEquals(new int[] {20, 10}, stores.getRatings().getTopAverageRatedMovies(2), "Different arguments should not share a result.");
+        assertEquals(2, stores.getMisses());
+
+        assertFalse(stores.getRatings().add(1, 10, 1.0f, null), "A repeated rating should be rejected.");
+        assertFalse(stores.getRatings().remove(9, 10));
+        assertArrayEquals(new int[] {20}, stores.getRatings().getTopAverageRatedMovies(1));
+        assertEquals(1, stores.getHits(), "A rejected change should not forget results.");
+
+        assertTrue(stores.getCredits().remove(10));
+        assertEquals(0, stores.getCredits().getMostCastCredits(10).length, "Removed credits should not be found.");
+        assertEquals(0, stores.getCredits().findCast("Tom").length);
+        assertEquals(stores, stores.find(CachedStores.class), "The stores should find themselves.");
+        assertNotNull(stores.find(Stores.class), "The wrapped stores should be found.");
+    }
+
+    /**
+     * Each store should keep its most recently used results, forgetting the least
+     * recently used once it has more than MAX_ENTRIES
+     */
+    @Test void testEvictionPos() {
+        System.out.println("\nStarting testEvictionPos...");
+
+        CachedStores stores = loaded();
+        IRatings ratings = stores.getRatings();
+        for (int numResults = 1; numResults <= CachedStores.MAX_ENTRIES; numResults++) {
+            ratings.getMostRatedMovies(numResults);
+        }
+        assertEquals(CachedStores.MAX_ENTRIES, stores.getMisses());
+        ratings.getMostRatedMovies(1);
+        assertEquals(1, stores.getHits(), "A full store should still remember all its results.");
+
+        ratings.getMostRatedMovies(CachedStores.MAX_ENTRIES + 1);
+        long misses = stores.getMisses();
+        ratings.getMostRatedMovies(1);
+        assertEquals(misses, stores.getMisses(), "A result just used should be kept.");
+        ratings.getMostRatedMovies(CachedStores.MAX_ENTRIES);
+        ratings.getMostRatedMovies(CachedStores.MAX_ENTRIES + 1);
+        assertEquals(misses, stores.getMisses(), "The most recently used results should be kept.");
+        ratings.getMostRatedMovies(2);
+        assertEquals(misses + 1, stores.getMisses(), "The least recently used result should be forgotten.");
+    }
+
+    /**
+     * One store's results should not push out another's, and searches that differ at all
+     * should be remembered apart
+     */
+    @Test void testEvictionNeg() {
+        System.out.println("\nStarting testEvictionNeg...");
+
+        CachedStores stores = loaded();
+        assertEquals(1, stores.getCredits().findCast("Tom").length);
+        for (int numResults = 1; numResults <= 2 * CachedStores.MAX_ENTRIES; numResults++) {
+            stores.getRatings().getMostRatedUsers(numResults);
+        }
+        long misses = stores.getMisses();
+        assertEquals(1, stores.getCredits().findCast("Tom").length);
+        assertEquals(misses, stores.getMisses(), "The ratings results should not push out the credits ones.");
+
+        assertEquals(0, stores.getCredits().findCast("tom hanks jr").length);
+        assertEquals(1, stores.getCredits().findCast("Tom ").length, "A search that differs only by a space should run.");
+        assertEquals(misses + 2, stores.getMisses());
+        assertArrayEquals(new int[0], stores.getMovies().findFilms("Toy"));
+        assertArrayEquals(new int[0], stores.getMovies().findFilms("Toy"));
+        assertEquals(misses + 3, stores.getMisses(), "An empty result should be remembered too.");
+    }
+
+    /**
+     * A change should bump the version of its own store only, and a result should only
+     * be handed back at the version it was found at
+     */
+    @Test void testVersionsPos() {
+        System.out.println("\nStarting testVersionsPos...");
+
+        CachedStores stores = loaded();
+        assertArrayEquals(new long[] {0, 0, 0, 0}, stores.getVersions());
+        assertTrue(stores.getMovies().add(10, "Toy Story", "Toy Story", "", "", "Released", new Genre[0], null, 0, 0, new String[0], "en", 81, "", false, false, ""));
+        assertArrayEquals(new long[] {1, 0, 0, 0}, stores.getVersions(), "A movie change should only bump the movies.");
+        assertTrue(stores.getCredits().add(new CastCredit[0], new CrewCredit[] {new CrewCredit("credit7", "Directing", 7, "Director", "John Lasseter", null)}, 20));
+        assertArrayEquals(new long[] {1, 1, 0, 0}, stores.getVersions(), "A credits change should only bump the credits.");
+        assertTrue(stores.getKeywords().add(10, new Keyword(931, "jealousy")));
+        assertArrayEquals(new long[] {1, 1, 1, 0}, stores.getVersions(), "A keywords change should only bump the keywords.");
+        assertEquals(2, stores.getRatings().addAll(new int[] {5, 6}, new int[] {10, 10}, new float[] {1.0f, 1.0f}, new long[] {0, 0}));
+        assertArrayEquals(new long[] {1, 1, 1, 1}, stores.getVersions(), "A batch of ratings should bump the ratings once.");
+
+        assertArrayEquals(new int[] {10}, stores.getMovies().findFilms("Toy"));
+        assertArrayEquals(new int[] {10}, stores.getKeywords().getFilmIDs());
+        assertEquals(1, stores.getCredits().getUniqueCrew().length);
+        assertTrue(stores.getKeywords().remove(10));
+        assertEquals(0, stores.getKeywords().getFilmIDs().length, "Removing a film's keywords should forget the keywords results.");
+        assertArrayEquals(new int[] {10}, stores.getMovies().findFilms("Toy"));
+        assertTrue(stores.getMovies().remove(10));
+        assertArrayEquals(new int[0], stores.getMovies().findFilms("Toy"), "Removing a film should forget the movies results.");
+        assertArrayEquals(new long[] {2, 1, 2, 1}, stores.getVersions());
+    }
+
+    /**
+     * Changes the wrapped store rejects should not bump a version, and a result found
+     * while a change was made should not be handed back after it
+     */
+    @Test void testVersionsNeg() throws Exception {
+        System.out.println("\nStarting testVersionsNeg...");
+
+        CachedStores stores = loaded();
+        assertFalse(stores.getKeywords().removeKeywordFromFilm(10, 99));
+        assertFalse(stores.getCredits().remove(99));
+        assertFalse(stores.getMovies().setVote(99, 5.0, 1));
+        assertEquals(0, stores.getRatings().addAll(new int[] {1, 2}, new int[] {10, 10}, new float[] {1.0f, 1.0f}, new long[] {0, 0}), "Ratings already stored should not be added again.");
+        assertEquals(0, stores.getRatings().addAll(new int[0], new int[0], new float[0], new long[0]));
+        assertArrayEquals(new long[] {0, 0, 0, 0}, stores.getVersions(), "Rejected changes should not bump any version.");
+
+        Stores wrapped = new Stores();
+        wrapped.getRatings().add(1, 10, 4.0f, null);
+        wrapped.getRatings().add(1, 20, 3.0f, null);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CachedStores racing = new CachedStores(gated(wrapped, entered, release));
+        CompletableFuture<int[]> running = CompletableFuture.supplyAsync(() -> racing.getRatings().getTopAverageRatedMovies(10));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        assertTrue(racing.getRatings().add(2, 10, 1.0f, null));
+        release.countDown();
+        assertArrayEquals(new int[] {10, 20}, running.get(5, TimeUnit.SECONDS));
+        assertArrayEquals(new int[] {20, 10}, racing.getRatings().getTopAverageRatedMovies(10), "A result found before a change should not be handed back after it.");
+        assertEquals(0, racing.getHits());
+        assertSame(racing, racing.snapshot(), "Stores that are their own snapshot should stay so when wrapped.");
+    }
+}
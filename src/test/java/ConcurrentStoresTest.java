@@ -0,0 +1,154 @@
+import interfaces.AbstractStores;
+import interfaces.IRatings;
+import stores.*;
+import structures.PersistentIntMap;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentStoresTest {
+
+    /**
+     * The concurrent stores should answer queries the same way as Ratings and Credits
+     */
+    @Test void testQueriesPos() {
+        System.out.println("\nStarting testQueriesPos...");
+        ConcurrentStores stores = new ConcurrentStores();
+
+        assertTrue(stores.getRatings().add(101, 2, 4.5f, LocalDateTime.of(2001, 1, 1, 0, 0)), "Rating should be added.");
+        assertTrue(stores.getRatings().add(102, 2, 3.0f, LocalDateTime.of(2005, 6, 1, 12, 30)), "Rating should be added.");
+        assertTrue(stores.getRatings().add(101, 1, 2.5f, null), "Rating should be added.");
+        assertTrue(stores.getRatings().set(101, 1, 3.5f, null), "Rating should be replaced.");
+        assertEquals(3, stores.getRatings().size(), "Incorrect number of ratings.");
+        assertEquals(3.75f, stores.getRatings().getMovieAverageRating(2), "Incorrect average rating.");
+        assertEquals(3.5f, stores.getRatings().getRating(101, 1), "Rating should have been replaced.");
+        assertEquals(LocalDateTime.of(2005, 6, 1, 12, 30), stores.getRatings().getTimestamp(102, 2), "Incorrect timestamp.");
+        assertArrayEquals(new int[] {2, 1}, stores.getRatings().getMostRatedMovies(5), "Incorrect most rated movies.");
+        assertEquals(4.0f, stores.getRatings().getUserAverageRating(101), "Incorrect user average rating.");
+
+        CastCredit woody = new CastCredit(14, "Woody (voice)", "52fe4284c3a36847f8024f95", 31, "Tom Hanks", 0, null);
+        CastCredit buzz = new CastCredit(15, "Buzz (voice)", "52fe4284c3a36847f8024f99", 12898, "Tim Allen", 1, null);
+        assertTrue(stores.getCredits().add(new CastCredit[] {buzz, woody}, new CrewCredit[0], 2), "Credits should be added.");
+        assertEquals("Tom Hanks", stores.getCredits().getFilmCast(2)[0].getName(), "Cast should be in billing order.");
+        assertArrayEquals(new int[] {2}, stores.getCredits().getCastStarsInFilms(12898), "Incorrect star films.");
+        assertEquals(2, stores.getCredits().getUniqueCast().length, "Incorrect unique cast.");
+        assertTrue(stores.getCredits().remove(2), "Credits should be removed.");
+        assertEquals(0, stores.getCredits().getNumCastCredits(31), "Cast member should be left with no credits.");
+    }
+
+    /**
+     * Duplicates and missing IDs behave as in Ratings and Credits
+     */
+    @Test void testQueriesNeg() {
+        System.out.println("\nStarting testQueriesNeg...");
+        ConcurrentStores stores = new ConcurrentStores();
+
+        assertTrue(stores.getRatings().add(101, 2, 4.5f, null), "Rating should be added.");
+        assertFalse(stores.getRatings().add(101, 2, 1.0f, null), "Duplicate rating should not be added.");
+        assertTrue(stores.getRatings().remove(101, 2), "Rating should be removed.");
+        assertFalse(stores.getRatings().remove(101, 2), "Missing rating should not be removed.");
+        assertEquals(-1, stores.getRatings().getNumRatings(2), "Movie without ratings should have -1 ratings.");
+        assertEquals(0, stores.getRatings().getUserRatings(101).length, "User without ratings should have none.");
+
+        assertTrue(stores.getCredits().add(new CastCredit[0], new CrewCredit[0], 2), "Credits should be added.");
+        assertFalse(stores.getCredits().add(new CastCredit[0], new CrewCredit[0], 2), "Duplicate film should not be added.");
+        assertNull(stores.getCredits().getCast(31), "Missing cast member should return null.");
+        assertEquals(-1, stores.getCredits().sizeOfCast(3), "Missing film should return -1.");
+    }
+
+    /**
+     * Ratings written from many threads at once should leave the store consistent
+     */
+    @Test void testConcurrentWrites() throws Exception {
+        System.out.println("\nStarting testConcurrentWrites...");
+        IRatings ratings = new ConcurrentStores().getRatings();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Random random = new Random(t);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    int userID = random.nextInt(100), movieID = random.nextInt(50);
+                    switch (random.nextInt(3)) {
+                        case 0: ratings.add(userID, movieID, 3.0f, null); break;
+                        case 1: ratings.set(userID, movieID, 4.0f, null); break;
+                        default: ratings.remove(userID, movieID);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        int byMovie = 0, byUser = 0;
+        for (int movieID : ratings.getRatedMovies()) {
+            byMovie += ratings.getNumRatings(movieID);
+        }
+        for (int userID = 0; userID < 100; userID++) {
+            byUser += ratings.getUserRatings(userID).length;
+        }
+        assertEquals(ratings.size(), byMovie, "Movie index should match the number of ratings.");
+        assertEquals(ratings.size(), byUser, "User index should match the number of ratings.");
+    }
+
+    /**
+     * A snapshot should not change when the stores do, and should be consistent across them
+     */
+    @Test void testSnapshot() {
+        System.out.println("\nStarting testSnapshot...");
+        ConcurrentStores stores = new ConcurrentStores();
+        assertTrue(stores.getMovies().add(2, "Ariel", "Ariel", "A film", "", "Released", new Genre[0], null, 0, 0, new String[0], "fi", 73, "", false, false, ""), "Film should be added.");
+        assertTrue(stores.getRatings().add(101, 2, 4.5f, null), "Rating should be added.");
+        assertTrue(stores.getKeywords().add(2, new Keyword(10, "factory")), "Keyword should be added.");
+
+        AbstractStores snapshot = stores.snapshot();
+        assertTrue(stores.getMovies().setPopularity(2, 9.5), "Popularity should be set.");
+        assertTrue(stores.getMovies().add(3, "Shadows", "Shadows", "", "", "Released", new Genre[0], null, 0, 0, new String[0], "fi", 76, "", false, false, ""), "Film should be added.");
+        assertTrue(stores.getRatings().remove(101, 2), "Rating should be removed.");
+        assertTrue(stores.getRatings().add(102, 3, 2.0f, null), "Rating should be added.");
+        assertTrue(stores.getKeywords().remove(2), "Keywords should be removed.");
+
+        assertEquals(1, snapshot.getMovies().size(), "Snapshot should keep its films.");
+        assertEquals(0.0, snapshot.getMovies().getPopularity(2), "Snapshot should keep the old popularity.");
+        assertEquals(9.5, stores.getMovies().getPopularity(2), "Stores should have the new popularity.");
+        assertEquals(4.5f, snapshot.getRatings().getRating(101, 2), "Snapshot should keep the removed rating.");
+        assertArrayEquals(new int[] {2}, snapshot.getRatings().getRatedMovies(), "Snapshot should keep its rated movies.");
+        assertEquals(1, snapshot.getKeywords().getKeywordsForFilm(2).length, "Snapshot should keep the film's keywords.");
+        assertNull(stores.getKeywords().getKeywordsForFilm(2), "Stores should have removed the keywords.");
+
+        assertFalse(snapshot.getRatings().add(103, 2, 1.0f, null), "Snapshot should not be changed.");
+        assertEquals(1, snapshot.getRatings().size(), "Snapshot should not be changed.");
+        assertSame(snapshot, snapshot.snapshot(), "A snapshot should be its own snapshot.");
+    }
+
+    /**
+     * Old versions of the map should be unchanged by later puts and removes
+     */
+    @Test void testPersistentIntMap() {
+        System.out.println("\nStarting testPersistentIntMap...");
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+        for (int i = -5000; i < 5000; i++) {
+            map = map.put(i, i);
+        }
+        PersistentIntMap<Integer> full = map;
+        for (int i = -5000; i < 5000; i += 2) {
+            map = map.remove(i);
+        }
+        assertEquals(10000, full.size(), "Old version should keep its size.");
+        assertEquals(-5000, full.get(-5000), "Old version should keep removed keys.");
+        assertEquals(5000, map.size(), "Incorrect size after removals.");
+        assertNull(map.get(-5000), "Removed key should be absent.");
+        assertEquals(-4999, map.get(-4999), "Remaining key should be present.");
+        assertEquals(5000, map.keys().length, "Incorrect number of keys.");
+        assertSame(map, map.remove(-5000), "Removing a missing key should not make a new map.");
+    }
+}
@@ -0,0 +1,235 @@
+import utils.ImageCache;
+import utils.ImageLoader;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageCacheTest {
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Images should be kept in memory and on disk, and a loader given the cache should
+     * only read each image once, even across loaders sharing a directory
+     */
+    @Test void testImageCachePos() throws Exception {
+        System.out.println("\nStarting testImageCachePos...");
+
+        Path images = Files.createTempDirectory("images");
+        Path cacheDirectory = Files.createTempDirectory("cache");
+        Files.createDirectories(images.resolve("w342"));
+        Files.write(images.resolve("w342/a.png"), png(5, 5));
+        try {
+            ImageCache cache = new ImageCache(1000, cacheDirectory, 1 << 20);
+            cache.put("a", new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
+            cache.put("b", new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
+            assertEquals(800, cache.getMemoryBytes(), "Images should be weighed by their pixels.");
+            assertNotNull(cache.get("a"));
+            cache.put("c", new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
+            assertNull(cache.get("b"), "The least recently used image should make room.");
+            assertNotNull(cache.get("a"), "A recently used image should be kept.");
+
+            byte[] bytes = png(2, 2);
+            cache.putBytes("x", bytes);
+            cache.putBytes("y", bytes);
+            assertEquals(bytes.length, cache.getDiskBytes(), "The same bytes should only be stored once.");
+            assertArrayEquals(bytes, cache.getBytes("y"));
+            assertArrayEquals(bytes, new ImageCache(1000, cacheDirectory, 1 << 20).getBytes("x"), "Bytes should be kept across caches.");
+
+            String url = images.toUri() + "w342/a.png";
+            ImageLoader loader = new ImageLoader(2, 2, new ImageCache(1 << 20, cacheDirectory, 1 << 20));
+            assertEquals(5, loader.load(url).get(10, TimeUnit.SECONDS).getWidth());
+            assertSame(loader.load(url).get(), loader.load(url).get(), "A loaded image should come from memory.");
+            assertEquals(1, loader.getReads(), "A loaded image should not be read again.");
+
+            Files.delete(images.resolve("w342/a.png"));
+            ImageLoader restarted = new ImageLoader(2, 2, new ImageCache(1 << 20, cacheDirectory, 1 << 20));
+            assertEquals(5, restarted.load(url).get(10, TimeUnit.SECONDS).getWidth(), "A downloaded image should be read from disk.");
+
+            assertSame(ImageCache.getFile("src/main/resources/img/Person-Unknown.png"), ImageCache.getFile("src/main/resources/img/Person-Unknown.png"),
+                "Image files should be read once and shared.");
+        } finally {
+            delete(images);
+            delete(cacheDirectory);
+        }
+    }
+
+    /**
+     * Caches should stay within their limits, and missing images should not be cached
+     */
+    @Test void testImageCacheNeg() throws Exception {
+        System.out.println("\nStarting testImageCacheNeg...");
+
+        Path cacheDirectory = Files.createTempDirectory("cache");
+        try {
+            ImageCache cache = new ImageCache(100, cacheDirectory, 200);
+            cache.put("big", new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
+            assertNull(cache.get("big"), "An image bigger than the cache should not be kept.");
+            assertEquals(0, cache.getMemoryBytes());
+            assertNull(cache.getBytes("missing"), "A url never cached should have no bytes.");
+
+            cache.putBytes("a", new byte[150]);
+            cache.putBytes("b", new byte[100]);
+            assertNull(cache.getBytes("a"), "The least recently used bytes should be removed to make room.");
+            assertEquals(100, cache.getDiskBytes());
+            assertEquals(100, new ImageCache(100, cacheDirectory, 200).getDiskBytes(), "Removed bytes should be gone from disk.");
+
+            ImageCache memoryOnly = new ImageCache(100, null, 200);
+            memoryOnly.putBytes("a", new byte[10]);
+            assertNull(memoryOnly.getBytes("a"), "A cache without a directory should keep nothing on disk.");
+
+            ImageLoader loader = new ImageLoader(2, 2, cache);
+            assertNull(loader.load(cacheDirectory.toUri() + "missing.png").get(10, TimeUnit.SECONDS), "A missing image should load as null.");
+            assertEquals(100, cache.getDiskBytes(), "A missing image should not be cached.");
+            assertThrows(IOException.class, () -> ImageCache.getFile("missing.png"));
+        } finally {
+            delete(cacheDirectory);
+        }
+    }
+
+    // The blob files kept in a cache directory
+    private static List<Path> blobs(Path cacheDirectory) throws IOException {
+        List<Path> found = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(cacheDirectory.resolve("blobs"))) {
+            paths.forEach(found::add);
+        }
+        return found;
+    }
+
+    /**
+     * Reading bytes should make them recently used, on disk and across restarts, a URL
+     * cached again should give its new bytes, and memory should stay within its limit
+     * when used from many threads
+     */
+    @Test void testDiskPos() throws Exception {
+        System.out.println("\nStarting testDiskPos...");
+
+        Path cacheDirectory = Files.createTempDirectory("cache");
+        try {
+            ImageCache cache = new ImageCache(1000, cacheDirectory, 250);
+            byte[] a = new byte[100], b = new byte[100], c = new byte[100];
+            a[0] = 1; b[0] = 2; c[0] = 3;
+            cache.putBytes("a", a);
+            Thread.sleep(20);
+            cache.putBytes("b", b);
+            Thread.sleep(20);
+            assertArrayEquals(a, cache.getBytes("a"));
+            cache.putBytes("c", c);
+            assertNull(cache.getBytes("b"), "The least recently read bytes should make room.");
+            assertArrayEquals(a, cache.getBytes("a"), "Recently read bytes should be kept.");
+            assertEquals(200, cache.getDiskBytes());
+
+            Thread.sleep(20);
+            assertArrayEquals(a, cache.getBytes("a"));
+            ImageCache smaller = new ImageCache(1000, cacheDirectory, 150);
+            assertEquals(100, smaller.getDiskBytes(), "A smaller cache should trim what it finds.");
+            assertArrayEquals(a, smaller.getBytes("a"), "Bytes read last should be kept across restarts.");
+            assertNull(smaller.getBytes("c"));
+
+            byte[] newer = new byte[50];
+            smaller.putBytes("a", newer);
+            assertArrayEquals(newer, smaller.getBytes("a"), "A URL cached again should give its new bytes.");
+
+            cache.put("x", new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
+            cache.put("x", new BufferedImage(5, 5, BufferedImage.TYPE_INT_RGB));
+            assertEquals(100, cache.getMemoryBytes(), "A replaced image should no longer be weighed.");
+
+            ImageCache shared = new ImageCache(4 * 100 * 5, null, 0);
+            AtomicBoolean over = new AtomicBoolean();
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                int offset = t;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        shared.put("image" + (i * 4 + offset) % 40, new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
+                        shared.get("image" + i % 40);
+                        over.compareAndSet(false, shared.getMemoryBytes() > 2000);
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertFalse(over.get(), "Memory should never go over its limit.");
+            assertEquals(2000, shared.getMemoryBytes());
+        } finally {
+            delete(cacheDirectory);
+        }
+    }
+
+    /**
+     * Bytes deleted or damaged on disk behind the cache's back should be downloaded again
+     * rather than given out or counted, and a directory that cannot be used should leave
+     * a memory only cache
+     */
+    @Test void testDiskNeg() throws Exception {
+        System.out.println("\nStarting testDiskNeg...");
+
+        Path cacheDirectory = Files.createTempDirectory("cache");
+        Path images = Files.createTempDirectory("images");
+        Path notDirectory = Files.createTempFile("cache", ".txt");
+        try {
+            ImageCache cache = new ImageCache(1000, cacheDirectory, 1 << 20);
+            byte[] bytes = png(3, 3);
+            cache.putBytes("deleted", bytes);
+            Files.delete(blobs(cacheDirectory).get(0));
+            assertNull(cache.getBytes("deleted"), "Deleted bytes should not be given out.");
+            assertEquals(0, cache.getDiskBytes(), "Deleted bytes should no longer be counted.");
+            cache.putBytes("deleted", bytes);
+            assertArrayEquals(bytes, cache.getBytes("deleted"), "Deleted bytes should be kept again when downloaded again.");
+
+            Path image = images.resolve("a.png");
+            Files.write(image, png(4, 4));
+            ImageCache onDisk = new ImageCache(0, cacheDirectory, 1 << 20);
+            ImageLoader loader = new ImageLoader(1, 1, onDisk);
+            assertEquals(4, loader.load(image.toUri().toString()).get(10, TimeUnit.SECONDS).getWidth());
+            for (Path blob : blobs(cacheDirectory)) {
+                byte[] damaged = Files.readAllBytes(blob);
+                damaged[damaged.length / 2] ^= 0x55;
+                Files.write(blob, damaged);
+            }
+            assertNull(onDisk.getBytes(image.toUri().toString()), "Damaged bytes should not be given out.");
+            assertEquals(4, new ImageLoader(1, 1, onDisk).load(image.toUri().toString()).get(10, TimeUnit.SECONDS).getWidth(),
+                "A damaged image should be downloaded again.");
+            assertNotNull(onDisk.getBytes(image.toUri().toString()));
+
+            Files.write(cacheDirectory.resolve("blobs/write123.tmp"), new byte[500]);
+            assertEquals(onDisk.getDiskBytes(), new ImageCache(0, cacheDirectory, 1 << 20).getDiskBytes(), "Unfinished writes should not be counted.");
+
+            ImageCache unusable = new ImageCache(1000, notDirectory, 1 << 20);
+            unusable.putBytes("a", bytes);
+            assertEquals(0, unusable.getDiskBytes());
+            unusable.put("a", new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB));
+            assertNotNull(unusable.get("a"), "An unusable directory should still leave a memory cache.");
+        } finally {
+            delete(cacheDirectory);
+            delete(images);
+            Files.deleteIfExists(notDirectory);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+import utils.ImageCache;
+import utils.ImageLoader;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageLoaderTest {
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Images should load in the background, no more than the limit at a time from one
+     * host, with repeated requests sharing one read and results handed over on the EDT
+     */
+    @Test void testImageLoaderPos() throws Exception {
+        System.out.println("\nStarting testImageLoaderPos...");
+
+        byte[] image = png(4, 6);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+                exchange.sendResponseHeaders(200, image.length);
+                exchange.getResponseBody().write(image);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/w342/";
+            ImageLoader loader = new ImageLoader(8, 2);
+
+            CompletableFuture<BufferedImage> first = loader.load(base + "0.png");
+            assertSame(first, loader.load(base + "0.png"), "A repeated request should share the read in flight.");
+            CompletableFuture<?>[] loads = new CompletableFuture<?>[6];
+            for (int i = 0; i < loads.length; i++) {
+                loads[i] = loader.load(base + i + ".png");
+            }
+            CompletableFuture.allOf(loads).get(10, TimeUnit.SECONDS);
+            assertEquals(4, first.get().getWidth(), "Incorrect image.");
+            assertEquals(6, loader.getReads(), "Each image should be read once.");
+            assertTrue(maxActive.get() <= 2, "No more than the limit should be read from a host at once.");
+
+            CountDownLatch loaded = new CountDownLatch(1);
+            AtomicBoolean onEDT = new AtomicBoolean();
+            loader.load(base + "6.png", im -> {
+                onEDT.set(SwingUtilities.isEventDispatchThread());
+                loaded.countDown();
+            });
+            assertTrue(loaded.await(10, TimeUnit.SECONDS), "The image should be handed over once loaded.");
+            assertTrue(onEDT.get(), "Images should be handed over on the event dispatch thread.");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Missing images and paths should not load, and a local directory should stand in
+     * for the image server
+     */
+    @Test void testImageLoaderNeg() throws Exception {
+        System.out.println("\nStarting testImageLoaderNeg...");
+
+        Path directory = Files.createTempDirectory("images");
+        Files.createDirectories(directory.resolve("w342"));
+        Files.write(directory.resolve("w342/poster.png"), png(3, 3));
+        try {
+            ImageLoader.setBase(directory.toString());
+            assertNull(ImageLoader.imageURL("w342", null), "A missing path should have no url.");
+            assertNull(ImageLoader.imageURL("w342", ""), "An empty path should have no url.");
+
+            ImageLoader loader = new ImageLoader(2, 2);
+            assertEquals(3, loader.load(ImageLoader.imageURL("w342", "/poster.png")).get(10, TimeUnit.SECONDS).getWidth(),
+                "Images should load from a local directory.");
+            assertNull(loader.load(ImageLoader.imageURL("w342", "/missing.png")).get(10, TimeUnit.SECONDS), "A missing image should load as null.");
+            assertNull(loader.load("not a url").get(10, TimeUnit.SECONDS), "A bad url should load as null.");
+        } finally {
+            ImageLoader.setBase(ImageLoader.TMDB_BASE);
+            Files.delete(directory.resolve("w342/poster.png"));
+            Files.delete(directory.resolve("w342"));
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * A host whose reads are stuck should not hold up other hosts, a failed read should
+     * free its slot for the host's next read, and a cached image should be handed over
+     * straight away on the EDT without a read
+     */
+    @Test void testHostsPos() throws Exception {
+        System.out.println("\nStarting testHostsPos...");
+
+        byte[] image = png(5, 5);
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            try {
+                if (exchange.getRequestURI().getPath().contains("stuck")) {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                if (exchange.getRequestURI().getPath().contains("missing")) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, image.length);
+                    exchange.getResponseBody().write(image);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            int port = server.getAddress().getPort();
+            // The same server under two host names, so each has its own slots
+            String slow = "http://127.0.0.1:" + port + "/";
+            String fast = "http://localhost:" + port + "/";
+            ImageLoader loader = new ImageLoader(2, 1);
+
+            CompletableFuture<BufferedImage> stuck = loader.load(slow + "stuck.png");
+            CompletableFuture<BufferedImage> queued = loader.load(slow + "queued.png");
+            assertNull(loader.load(fast + "missing.png").get(10, TimeUnit.SECONDS), "A failed read should load as null.");
+            assertEquals(5, loader.load(fast + "a.png").get(10, TimeUnit.SECONDS).getWidth(), "A failed read should free its host's slot.");
+            assertEquals(5, loader.load(fast + "b.png").get(10, TimeUnit.SECONDS).getWidth(), "A stuck host should not hold up another.");
+            assertFalse(stuck.isDone());
+            assertFalse(queued.isDone(), "A host's reads beyond its limit should wait.");
+            release.countDown();
+            assertEquals(5, queued.get(10, TimeUnit.SECONDS).getWidth(), "A waiting read should run once its host has a slot.");
+            assertEquals(5, stuck.get(10, TimeUnit.SECONDS).getWidth());
+            assertNull(loader.load(fast + "missing.png").get(10, TimeUnit.SECONDS));
+            assertEquals(6, loader.getReads(), "A failed read should be tried again when asked for again.");
+
+            ImageLoader cached = new ImageLoader(2, 2, new ImageCache(1 << 20, null, 0));
+            cached.load(fast + "c.png").get(10, TimeUnit.SECONDS);
+            CompletableFuture<BufferedImage> again = cached.load(fast + "c.png");
+            assertTrue(again.isDone(), "A cached image should not wait for a read.");
+            assertEquals(1, cached.getReads());
+            AtomicReference<BufferedImage> handed = new AtomicReference<>();
+            SwingUtilities.invokeAndWait(() -> cached.load(fast + "c.png", handed::set));
+            assertNotNull(handed.get(), "A cached image should be handed over at once on the EDT.");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * No URL, or bytes that are not an image, should load as null, and the placeholder
+     * should be left alone
+     */
+    @Test void testHostsNeg() throws Exception {
+        System.out.println("\nStarting testHostsNeg...");
+
+        Path text = Files.createTempFile("poster", ".png");
+        Files.write(text, "not an image".getBytes());
+        try {
+            ImageLoader loader = new ImageLoader(1, 1);
+            assertNull(loader.load((String) null).get(10, TimeUnit.SECONDS), "No url should load as null.");
+            assertEquals(0, loader.getReads(), "No url should not be read.");
+            assertNull(loader.load(text.toUri().toString()).get(10, TimeUnit.SECONDS), "Bytes that are not an image should load as null.");
+
+            ImageLoader cached = new ImageLoader(1, 1, new ImageCache(1 << 20, null, 0));
+            assertNull(cached.load(text.toUri().toString()).get(10, TimeUnit.SECONDS));
+            assertNull(cached.load(text.toUri().toString()).get(10, TimeUnit.SECONDS));
+            assertEquals(2, cached.getReads(), "Something that is not an image should not be cached.");
+
+            AtomicBoolean called = new AtomicBoolean();
+            loader.load(text.toUri().toString(), im -> called.set(true));
+            loader.load(null, im -> called.set(true));
+            Thread.sleep(200);
+            SwingUtilities.invokeAndWait(() -> {});
+            assertFalse(called.get(), "Nothing should be handed over for an image that did not load.");
+        } finally {
+            Files.deleteIfExists(text);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+import interfaces.AbstractStores;
+import interfaces.IRatings;
+import stores.*;
+import utils.ItemRecommender;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItemRecommenderTest {
+
+    // Movies 10 and 11 are liked by the same users, and 12 by the others
+    private static Stores loaded() {
+        Stores stores = new Stores();
+        LocalDateTime time = LocalDateTime.of(2010, 1, 1, 0, 0);
+        stores.getRatings().add(1, 10, 5.0f, time);
+        stores.getRatings().add(1, 11, 4.5f, time);
+        stores.getRatings().add(1, 12, 1.0f, time);
+        stores.getRatings().add(2, 10, 4.0f, time);
+        stores.getRatings().add(2, 11, 5.0f, time);
+        stores.getRatings().add(2, 12, 2.0f, time);
+        stores.getRatings().add(3, 10, 1.0f, time);
+        stores.getRatings().add(3, 11, 1.5f, time);
+        stores.getRatings().add(3, 12, 5.0f, time);
+        stores.getRatings().add(4, 10, 5.0f, time);
+        stores.getRatings().add(4, 12, 1.0f, time);
+        return stores;
+    }
+
+    /**
+     * Movies rated alike should be neighbours, and be recommended to users who liked
+     * one of them, including after a refresh
+     */
+    @Test void testRecommendPos() {
+        System.out.println("\nStarting testRecommendPos...");
+
+        Stores stores = loaded();
+        ItemRecommender recommender = new ItemRecommender(stores);
+        assertArrayEquals(new int[] {11}, recommender.getSimilarMovies(10), "Only the movie rated alike should be a neighbour.");
+        assertTrue(recommender.getSimilarity(10, 11) > 0.5f, "Movies rated alike should be similar.");
+        assertArrayEquals(new int[] {11}, recommender.recommendForUser(4, 5), "The neighbour of a liked movie should be recommended.");
+
+        stores.getRatings().add(5, 12, 5.0f, LocalDateTime.of(2010, 1, 1, 0, 0));
+        stores.getRatings().add(5, 13, 5.0f, LocalDateTime.of(2010, 1, 1, 0, 0));
+        stores.getRatings().add(3, 13, 4.5f, LocalDateTime.of(2010, 1, 1, 0, 0));
+        stores.getRatings().add(4, 13, 1.0f, LocalDateTime.of(2010, 1, 1, 0, 0));
+        assertEquals(2, recommender.refresh(), "Only the changed movies should be refreshed.");
+        assertArrayEquals(new int[] {12}, recommender.getSimilarMovies(13), "New movies should get neighbours.");
+        assertArrayEquals(new int[] {13}, recommender.getSimilarMovies(12), "New neighbours should be offered to unchanged movies.");
+    }
+
+    /**
+     * Unknown users and movies, and users who rated everything, should get nothing
+     */
+    @Test void testRecommendNeg() {
+        System.out.println("\nStarting testRecommendNeg...");
+
+        ItemRecommender recommender = new ItemRecommender(loaded());
+        assertArrayEquals(new int[0], recommender.recommendForUser(99, 5), "Unknown user should get no recommendations.");
+        assertArrayEquals(new int[0], recommender.recommendForUser(1, 5), "Rated movies should never be recommended.");
+        assertArrayEquals(new int[0], recommender.recommendForUser(4, 0), "No recommendations should be returned for k of 0.");
+        assertArrayEquals(new int[0], recommender.getSimilarMovies(99), "Unknown movie should have no neighbours.");
+        assertEquals(0, recommender.refresh(), "Nothing should be refreshed when nothing changed.");
+        assertArrayEquals(new int[0], new ItemRecommender(new Stores()).recommendForUser(1, 5), "Empty store should give no recommendations.");
+    }
+
+    // The loaded stores, but listing each movie's ratings in the reverse order of its raters
+    private static AbstractStores reversed(Stores loaded) {
+        IRatings listed = (IRatings) Proxy.newProxyInstance(IRatings.class.getClassLoader(), new Class<?>[] {IRatings.class}, (proxy, method, args) -> {
+            Object result;
+            try {
+                result = method.invoke(loaded.getRatings(), args);
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (method.getName().equals("getMovieRatings")) {
+                float[] values = (float[]) result;
+                for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+                    float value = values[i];
+                    values[i] = values[j];
+                    values[j] = value;
+                }
+            }
+            return result;
+        });
+        return new AbstractStores() {{
+            this.credits = loaded.getCredits();
+            this.keywords = loaded.getKeywords();
+            this.movies = loaded.getMovies();
+            this.ratings = listed;
+        }};
+    }
+
+    /**
+     * Each rating should be paired with its own rater, whatever order the store lists
+     * a movie's ratings in
+     */
+    @Test void testMatrixPos() {
+        System.out.println("\nStarting testMatrixPos...");
+
+        ItemRecommender expected = new ItemRecommender(loaded());
+        ItemRecommender shuffled = new ItemRecommender(reversed(loaded()));
+        for (int movieID : new int[] {10, 11, 12}) {
+            assertArrayEquals(expected.getSimilarMovies(movieID), shuffled.getSimilarMovies(movieID), "Neighbours should not depend on the order ratings are listed in.");
+        }
+        assertEquals(expected.getSimilarity(10, 11), shuffled.getSimilarity(10, 11), 1e-6f);
+        assertArrayEquals(expected.recommendForUser(4, 5), shuffled.recommendForUser(4, 5));
+
+        ItemRecommender plain = new ItemRecommender(loaded(), 1, false, java.util.concurrent.ForkJoinPool.commonPool());
+        assertEquals(1, plain.getSimilarMovies(10).length, "Only numNeighbours neighbours should be kept.");
+        assertTrue(plain.getSimilarity(10, plain.getSimilarMovies(10)[0]) > 0, "Plain cosine of positive ratings should be positive.");
+    }
+
+    /**
+     * Movies with too few raters in common, or only one rating, should have no
+     * neighbours, and a removed movie should leave every neighbour list
+     */
+    @Test void testMatrixNeg() {
+        System.out.println("\nStarting testMatrixNeg...");
+
+        Stores stores = loaded();
+        stores.getRatings().add(1, 14, 3.0f, LocalDateTime.of(2010, 1, 1, 0, 0));
+        ItemRecommender recommender = new ItemRecommender(stores);
+        assertArrayEquals(new int[0], recommender.getSimilarMovies(14), "A movie sharing one rater should have no neighbours.");
+        assertEquals(0, recommender.getSimilarity(10, 14));
+        assertEquals(0, recommender.getSimilarity(99, 10), "An unknown movie should be similar to nothing.");
+
+        for (int userID = 1; userID <= 3; userID++) {
+            stores.getRatings().remove(userID, 11);
+        }
+        assertEquals(1, recommender.refresh());
+        assertArrayEquals(new int[0], recommender.getSimilarMovies(11), "A removed movie should have no neighbours.");
+        for (int movieID : new int[] {10, 12, 14}) {
+            for (int neighbour : recommender.getSimilarMovies(movieID)) {
+                assertNotEquals(11, neighbour, "A removed movie should leave every neighbour list.");
+            }
+        }
+    }
+
+    /**
+     * Rating changes made through the stores should reach the recommendations, in the
+     * background for stores with snapshots and on the next read for the others
+     */
+    @Test void testRecommenderStoresPos() throws InterruptedException {
+        System.out.println("\nStarting testRecommenderStoresPos...");
+
+        ConcurrentStores concurrent = new ConcurrentStores();
+        Stores loaded = loaded();
+        for (int movieID : loaded.getRatings().getRatedMovies()) {
+            for (int userID : loaded.getRatings().getMovieRaters(movieID)) {
+                concurrent.getRatings().add(userID, movieID, loaded.getRatings().getRating(userID, movieID), null);
+            }
+        }
+        RecommenderStores stores = new RecommenderStores(concurrent);
+        assertSame(stores, stores.find(RecommenderStores.class));
+        assertArrayEquals(new int[] {11}, stores.recommendForUser(4, 5));
+
+        stores.getRatings().add(5, 12, 5.0f, null);
+        stores.getRatings().add(5, 13, 5.0f, null);
+        stores.getRatings().add(3, 13, 4.5f, null);
+        stores.getRatings().add(4, 13, 1.0f, null);
+        stores.awaitRefresh();
+        assertArrayEquals(new int[] {12}, stores.getRecommender().getSimilarMovies(13), "Added ratings should be refreshed in the background.");
+
+        RecommenderStores plain = new RecommenderStores(loaded());
+        plain.getRatings().set(4, 11, 1.0f, null);
+        assertArrayEquals(new int[] {11}, plain.getRecommender().recommendForUser(4, 5), "Stores without snapshots should not be refreshed in the background.");
+        assertArrayEquals(new int[0], plain.recommendForUser(4, 5), "A rated movie should not be recommended once refreshed.");
+    }
+
+    /**
+     * Rejected changes should not mark the model dirty
+     */
+    @Test void testRecommenderStoresNeg() throws InterruptedException {
+        System.out.println("\nStarting testRecommenderStoresNeg...");
+
+        Stores loaded = loaded();
+        ItemRecommender recommender = new ItemRecommender(loaded);
+        RecommenderStores stores = new RecommenderStores(loaded, recommender);
+        assertFalse(stores.getRatings().add(1, 10, 2.0f, null), "A duplicate rating should be rejected.");
+        assertFalse(stores.getRatings().remove(99, 10));
+        assertEquals(0, stores.getRatings().addAll(new int[] {1}, new int[] {10}, new float[] {2.0f}, new long[] {0}));
+        stores.awaitRefresh();
+        assertArrayEquals(new int[] {11}, stores.recommendForUser(4, 5));
+        assertEquals(0, recommender.refresh(), "Nothing should have changed.");
+        assertNull(stores.find(TrendingStores.class));
+    }
+}
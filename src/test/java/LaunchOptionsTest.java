@@ -0,0 +1,79 @@
+import utils.BatchQueries;
+import utils.Constants;
+
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.ParseException;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LaunchOptionsTest {
+
+    private static LaunchOptions parse(String... args) throws ParseException {
+        return LaunchOptions.from(new DefaultParser().parse(LaunchOptions.options(), args));
+    }
+
+    /**
+     * Every option given should be read into its field, and the rest should keep their
+     * defaults
+     */
+    @Test void testLaunchOptionsPos() throws ParseException {
+        System.out.println("\nStarting testLaunchOptionsPos...");
+
+        LaunchOptions defaults = parse();
+        assertEquals(Constants.defaultCreditsPath, defaults.creditsPath);
+        assertEquals(Constants.defaultRatingsPath, defaults.ratingsPath);
+        assertNull(defaults.numMovies);
+        assertNull(defaults.servePort);
+        assertFalse(defaults.headless);
+        assertEquals(BatchQueries.Format.CSV, defaults.format);
+        assertEquals(Runtime.getRuntime().availableProcessors(), defaults.numThreads);
+
+        LaunchOptions launch = parse("--credits", "c.csv", "--keywords", "k.csv", "--movies", "m.csv", "--ratings", "r.csv",
+            "-n", "50", "--snapshot", "s.bin", "--mapped", "m.img", "--wal", "r.log", "--ingest", "-", "--trending", "--similar",
+            "--concurrent", "--headless", "--query-file", "q.txt", "--format", "Json", "--threads", "3", "--serve", "0",
+            "--images", "img", "--image-cache", "none");
+        assertEquals("c.csv", launch.creditsPath);
+        assertEquals("k.csv", launch.keywordsPath);
+        assertEquals("m.csv", launch.movieMetadataPath);
+        assertEquals("r.csv", launch.ratingsPath);
+        assertEquals(50, launch.numMovies);
+        assertEquals("s.bin", launch.snapshotPath);
+        assertEquals("m.img", launch.mappedPath);
+        assertEquals("r.log", launch.walPath);
+        assertEquals("-", launch.ingestPath);
+        assertTrue(launch.trending && launch.similar && launch.concurrent && launch.headless);
+        assertEquals("q.txt", launch.queryPath);
+        assertEquals(BatchQueries.Format.JSON, launch.format, "The format should be read whatever its case.");
+        assertEquals(3, launch.numThreads);
+        assertEquals(0, launch.servePort, "Port 0 should be allowed, to serve on any free port.");
+        assertEquals("img", launch.imageBase);
+        assertEquals("none", launch.imageCachePath);
+        assertEquals(65535, parse("--serve", "65535").servePort);
+    }
+
+    /**
+     * A value an option cannot take should fail the parse, naming the option and the
+     * value, rather than be replaced with a default
+     */
+    @Test void testLaunchOptionsNeg() {
+        System.out.println("\nStarting testLaunchOptionsNeg...");
+
+        String[][] invalid = {
+            {"-n", "0"}, {"-n", "many"}, {"-n", "-3"},
+            {"--threads", "0"}, {"--threads", "2.5"},
+            {"--serve", "-1"}, {"--serve", "65536"}, {"--serve", "http"},
+            {"--format", "xml"},
+        };
+        for (String[] args : invalid) {
+            ParseException e = assertThrows(ParseException.class, () -> parse(args), "Expected " + String.join(" ", args) + " to be refused.");
+            String option = args[0].replace("-", "");
+            assertTrue(e.getMessage().startsWith(option), e.getMessage());
+        }
+        ParseException e = assertThrows(ParseException.class, () -> parse("-n", "many"));
+        assertTrue(e.getMessage().contains("\"many\""), e.getMessage());
+
+        assertThrows(ParseException.class, () -> parse("--threads"), "An option missing its value should be refused.");
+        assertThrows(ParseException.class, () -> parse("--films", "f.csv"), "An unknown option should be refused.");
+    }
+}
@@ -0,0 +1,163 @@
+import stores.*;
+import interfaces.IKeyword;
+import interfaces.IPerson;
+import utils.LiveSearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LiveSearchTest {
+
+    private static void addFilm(Stores stores, int id, String title) {
+        stores.getMovies().add(id, title, title, "", "", "Released", new Genre[0], null, 0, 0, new String[0], "en", 90, "", false, false, "");
+    }
+
+    private static void addCast(Stores stores, int filmID, int personID, String name) {
+        stores.getCredits().add(new CastCredit[] {new CastCredit(0, "Self", "credit" + personID, personID, name, 0, null)}, new CrewCredit[0], filmID);
+    }
+
+    /**
+     * Refining a search as the user types should find the same as searching afresh, and
+     * the first matches of a long search should be handed over before it finishes
+     */
+    @Test void testLiveSearchPos() {
+        System.out.println("\nStarting testLiveSearchPos...");
+
+        Stores stores = new Stores();
+        for (int id = 1; id <= 50; id++) {
+            addFilm(stores, id, (id % 2 == 0 ? "Star " : "Moon ") + "Film " + id);
+        }
+        addCast(stores, 1, 31, "Tom Hanks");
+        addCast(stores, 2, 32, "Tom Holland");
+        addCast(stores, 3, 33, "Tim Allen");
+        stores.getKeywords().add(1, new Keyword[] {new Keyword(1, "space travel"), new Keyword(2, "space opera"), new Keyword(3, "time travel")});
+
+        LiveSearch search = new LiveSearch(new CachedStores(stores));
+        List<int[]> partials = new ArrayList<>();
+        assertEquals(50, search.findFilms("f", partials::add).length);
+        assertTrue(partials.isEmpty(), "A fresh search is one store query, so nothing is handed over early.");
+        int[] films = search.findFilms("fi", partials::add);
+        assertEquals(50, films.length);
+        assertEquals(1, partials.size(), "The first matches should be handed over once.");
+        assertEquals(LiveSearch.FIRST_MATCHES, partials.get(0).length);
+
+        for (String term : new String[] {"st", "STA", "star f", "star film 1"}) {
+            int[] refined = search.findFilms(term, null);
+            int[] fresh = stores.getMovies().findFilms(term);
+            Arrays.sort(refined);
+            Arrays.sort(fresh);
+            assertArrayEquals(fresh, refined, "Refining to '" + term + "' should find what a fresh search does.");
+        }
+
+        assertEquals(2, search.findCast("Tom", null).length);
+        IPerson[] cast = search.findCast("Tom Ha", null);
+        assertEquals(1, cast.length, "Refining cast should filter the previous matches.");
+        assertEquals("Tom Hanks", cast[0].getName());
+        assertEquals(2, search.findKeywords("travel", null).length);
+        IKeyword[] keywords = search.findKeywords("me travel", null);
+        assertEquals(1, keywords.length, "Refining keywords should filter the previous matches.");
+        assertEquals("time travel", keywords[0].getName());
+    }
+
+    /**
+     * Empty terms should find nothing, and previous results should not be reused once
+     * the store has changed or the term no longer contains the previous one
+     */
+    @Test void testLiveSearchNeg() {
+        System.out.println("\nStarting testLiveSearchNeg...");
+
+        Stores stores = new Stores();
+        addFilm(stores, 1, "Star Wars");
+        addFilm(stores, 2, "Moon");
+
+        LiveSearch search = new LiveSearch(stores);
+        assertEquals(0, search.findFilms("", null).length, "An empty term should find nothing.");
+        assertEquals(0, search.findFilms(null, null).length, "A null term should find nothing.");
+        assertEquals(0, search.findCast("", null).length);
+        assertEquals(0, search.findKeywords(null, null).length);
+
+        assertArrayEquals(new int[] {1}, search.findFilms("star", null));
+        addFilm(stores, 3, "Star Trek");
+        int[] films = search.findFilms("star ", null);
+        Arrays.sort(films);
+        assertArrayEquals(new int[] {1, 3}, films, "A film added since the last search should be found.");
+
+        assertArrayEquals(new int[] {2}, search.findFilms("moon", null), "A term not containing the last should be searched afresh.");
+        assertEquals(0, search.findFilms("mooned", null).length);
+
+        List<int[]> partials = new ArrayList<>();
+        search.findFilms("star", partials::add);
+        assertTrue(partials.isEmpty(), "Fewer matches than FIRST_MATCHES should not be handed over early.");
+    }
+
+    /**
+     * Previous results should be reused while their store is at the same version, through
+     * CachedStores or ConcurrentStores, and kept for one store when another changes
+     */
+    @Test void testStoreVersionPos() {
+        System.out.println("\nStarting testStoreVersionPos...");
+
+        Stores loaded = new Stores();
+        addFilm(loaded, 1, "Star Wars");
+        addFilm(loaded, 2, "Moon");
+        addCast(loaded, 1, 31, "Mark Hamill");
+        CachedStores cached = new CachedStores(loaded);
+        LiveSearch search = new LiveSearch(cached);
+        assertArrayEquals(new int[] {1}, search.findFilms("star", null));
+
+        // Behind the cache's back, so only a reused result would miss it
+        addFilm(loaded, 3, "Star Trek");
+        assertArrayEquals(new int[] {1}, search.findFilms("star ", null), "An unchanged version should reuse the previous results.");
+
+        // A change to the credits leaves the films' results reusable
+        assertEquals(1, search.findCast("Mark", null).length);
+        assertTrue(cached.getCredits().add(new CastCredit[] {new CastCredit(0, "Self", "credit32", 32, "Mark Hamill Jr", 0, null)}, new CrewCredit[0], 2));
+        assertEquals(2, search.findCast("Mark H", null).length, "A changed store should be searched afresh.");
+        assertArrayEquals(new int[] {1}, search.findFilms("star w", null), "Another store's change should not forget the films' results.");
+
+        ConcurrentStores concurrent = new ConcurrentStores();
+        concurrent.getMovies().add(1, "Star Wars", "Star Wars", "", "", "Released", new Genre[0], null, 0, 0, new String[0], "en", 90, "", false, false, "");
+        LiveSearch concurrentSearch = new LiveSearch(concurrent);
+        assertArrayEquals(new int[] {1}, concurrentSearch.findFilms("star", null));
+        concurrent.getMovies().add(3, "Star Trek", "Star Trek", "", "", "Released", new Genre[0], null, 0, 0, new String[0], "en", 90, "", false, false, "");
+        int[] films = concurrentSearch.findFilms("star ", null);
+        Arrays.sort(films);
+        assertArrayEquals(new int[] {1, 3}, films, "A new version of the concurrent stores should be searched afresh.");
+    }
+
+    /**
+     * A change that leaves a store the same size should still stop its results being
+     * reused, and stores with no version should always be searched afresh
+     */
+    @Test void testStoreVersionNeg() {
+        System.out.println("\nStarting testStoreVersionNeg...");
+
+        Stores loaded = new Stores();
+        addFilm(loaded, 1, "Star Wars");
+        addFilm(loaded, 2, "Moon");
+        CachedStores cached = new CachedStores(loaded);
+        LiveSearch search = new LiveSearch(cached);
+        assertArrayEquals(new int[] {1}, search.findFilms("star", null));
+        assertTrue(cached.getMovies().remove(2));
+        assertTrue(cached.getMovies().add(3, "Star Trek", "Star Trek", "", "", "Released", new Genre[0], null, 0, 0, new String[0], "en", 90, "", false, false, ""));
+        assertEquals(2, cached.getMovies().size());
+        assertFalse(cached.getMovies().remove(42), "A rejected change should not matter.");
+        int[] films = search.findFilms("star ", null);
+        Arrays.sort(films);
+        assertArrayEquals(new int[] {1, 3}, films, "A store of the same size but a new version should be searched afresh.");
+
+        Stores plain = new Stores();
+        addFilm(plain, 1, "Star Wars");
+        LiveSearch unversioned = new LiveSearch(plain);
+        assertArrayEquals(new int[] {1}, unversioned.findFilms("star", null));
+        addFilm(plain, 2, "Star Trek");
+        films = unversioned.findFilms("star ", null);
+        Arrays.sort(films);
+        assertArrayEquals(new int[] {1, 2}, films, "Stores without a version should never reuse results.");
+        assertEquals(0, unversioned.findFilms("zzz", null).length);
+    }
+}
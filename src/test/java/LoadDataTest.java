@@ -0,0 +1,171 @@
+import interfaces.AbstractStores;
+import stores.Stores;
+import utils.LoadData;
+import utils.LoadData.DataLoadException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.JLabel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class LoadDataTest {
+
+    private static final String KEYWORDS = "data/keywords.csv";
+    private static final String MOVIES = "data/movies_metadata.csv";
+    private static final String RATINGS = "data/ratings.csv";
+
+    // The sample data has no credits file, so one with a single film is written for the tests
+    private Path credits;
+
+    @BeforeAll
+    void setUp() throws IOException {
+        credits = Files.createTempFile("credits", ".csv");
+        Files.write(credits, Arrays.asList(
+            "cast,crew,tmdb_id",
+            "\"[{\"\"cast_id\"\": 1, \"\"character\"\": \"\"Ann\"\", \"\"credit_id\"\": \"\"c1\"\", \"\"gender\"\": 1, \"\"id\"\": 7, "
+                + "\"\"name\"\": \"\"Margot Robbie\"\", \"\"order\"\": 0, \"\"profile_path\"\": \"\"/m.jpg\"\"}]\",[],193687"));
+    }
+
+    @AfterAll
+    void tearDown() throws IOException {
+        Files.deleteIfExists(credits);
+    }
+
+    // Runs everything queued on the EDT so far
+    private static void flushEDT() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {});
+    }
+
+    /**
+     * Progress should only go up, reach the end with the last file, and be posted far
+     * less often than once per record
+     */
+    @Test void testLoadProgressPos() throws Exception {
+        System.out.println("\nStarting testLoadProgressPos...");
+
+        JProgressBar bar = new JProgressBar(0, 100000);
+        JLabel label = new JLabel();
+        List<Integer> values = new ArrayList<>();
+        bar.addChangeListener(e -> values.add(bar.getValue()));
+
+        LoadData data = new LoadData(bar, label, credits.toString(), KEYWORDS, MOVIES, RATINGS);
+        flushEDT();
+
+        int records = data.getNumMovieRecords() + data.getNumCreditRecords() + data.getNumKeywordRecords() + data.getNumRatingRecords();
+        assertFalse(values.isEmpty(), "Progress should be shown.");
+        for (int i = 1; i < values.size(); i++) {
+            assertTrue(values.get(i) >= values.get(i - 1), "Progress should never go back.");
+        }
+        assertTrue(bar.getValue() >= bar.getMaximum() * 0.99, "Progress should reach the end: " + bar.getValue());
+        assertTrue(values.size() <= 1001, "Updates should be coalesced into at most one per 0.1%.");
+        assertTrue(values.size() < records / 10, "Updates should be far fewer than records.");
+        assertTrue(label.getText().startsWith("[1/2] Loading Data into backend: Ratings..."), label.getText());
+        assertTrue(label.getText().endsWith("%)"), "The label should show how much of the file is done.");
+    }
+
+    /**
+     * A missing file should fail before anything is shown, and loading without a bar or
+     * label should still work
+     */
+    @Test void testLoadProgressNeg() throws Exception {
+        System.out.println("\nStarting testLoadProgressNeg...");
+
+        JProgressBar bar = new JProgressBar(0, 100000);
+        JLabel label = new JLabel("Loading...");
+        DataLoadException missing = assertThrows(DataLoadException.class,
+            () -> new LoadData(bar, label, "no/such/credits.csv", KEYWORDS, MOVIES, RATINGS));
+        assertTrue(missing.getMessage().contains("credits"));
+        flushEDT();
+        assertEquals(0, bar.getValue(), "Nothing should be shown for a load that never started.");
+        assertEquals("Loading...", label.getText());
+
+        LoadData data = new LoadData(null, null, credits.toString(), KEYWORDS, MOVIES, RATINGS);
+        assertEquals(1, data.getNumCreditRecords(), "Loading without a bar should still load.");
+        assertTrue(data.getNumMovieRecords() > 0);
+    }
+
+    private static void assertSameStores(AbstractStores expected, AbstractStores actual) {
+        int[] ids = expected.getMovies().getAllIDs();
+        int[] actualIDs = actual.getMovies().getAllIDs();
+        Arrays.sort(ids);
+        Arrays.sort(actualIDs);
+        assertArrayEquals(ids, actualIDs, "The same films should be loaded.");
+        assertEquals(expected.getCredits().size(), actual.getCredits().size(), "The same credits should be loaded.");
+        assertEquals(expected.getKeywords().size(), actual.getKeywords().size(), "The same keywords should be loaded.");
+        assertEquals(expected.getRatings().size(), actual.getRatings().size(), "The same ratings should be loaded.");
+        for (int id : ids) {
+            assertEquals(expected.getMovies().getTitle(id), actual.getMovies().getTitle(id));
+            assertEquals(expected.getRatings().getNumRatings(id), actual.getRatings().getNumRatings(id), "Incorrect ratings for " + id);
+            assertEquals(expected.getKeywords().getKeywordsForFilm(id).length, actual.getKeywords().getKeywordsForFilm(id).length);
+        }
+    }
+
+    /**
+     * Streaming the files into the stores should give the same stores as loading them
+     * and then populating, for the whole data and for a section of it
+     */
+    @Test void testPopulateStreamingPos() throws Exception {
+        System.out.println("\nStarting testPopulateStreamingPos...");
+
+        LoadData data = new LoadData(credits.toString(), KEYWORDS, MOVIES, RATINGS);
+        Stores populated = new Stores();
+        data.populate(populated);
+        Stores streamed = new Stores();
+        LoadData.NumRecordsAdded added = LoadData.populateStreaming(streamed, null, null, credits.toString(), KEYWORDS, MOVIES, RATINGS);
+        assertSameStores(populated, streamed);
+        assertEquals(data.getNumMovieRecords(), added.movies, "Every film should be counted.");
+        assertEquals(data.getNumRatingRecords(), added.ratings, "Every rating should be counted.");
+        assertEquals(1, added.credits);
+        assertEquals("Margot Robbie", streamed.getCredits().getFilmCast(193687)[0].getName());
+
+        Stores populatedSection = new Stores();
+        data.populate(populatedSection, 10, 25);
+        Stores streamedSection = new Stores();
+        added = LoadData.populateStreaming(streamedSection, null, null, credits.toString(), KEYWORDS, MOVIES, RATINGS, 10, 25);
+        assertSameStores(populatedSection, streamedSection);
+        assertEquals(25, added.movies, "Only the section's films should be added.");
+        assertTrue(added.ratings < data.getNumRatingRecords(), "Only the section's ratings should be added.");
+    }
+
+    /**
+     * An invalid section should add nothing, and a credit for a film that is not in the
+     * movies file should fail the load
+     */
+    @Test void testPopulateStreamingNeg() throws Exception {
+        System.out.println("\nStarting testPopulateStreamingNeg...");
+
+        Stores stores = new Stores();
+        assertNull(LoadData.populateStreaming(stores, null, null, credits.toString(), KEYWORDS, MOVIES, RATINGS, -1, 10));
+        assertNull(LoadData.populateStreaming(stores, null, null, credits.toString(), KEYWORDS, MOVIES, RATINGS, 0, 0));
+        assertNull(LoadData.populateStreaming(stores, null, null, credits.toString(), KEYWORDS, MOVIES, RATINGS, 0, -5));
+        assertEquals(0, stores.getMovies().size(), "An invalid section should add nothing.");
+
+        // Past the end of the file only the films that are there are added
+        LoadData.NumRecordsAdded added = LoadData.populateStreaming(stores, null, null, credits.toString(), KEYWORDS, MOVIES, RATINGS, 0, Integer.MAX_VALUE - 1);
+        assertEquals(stores.getMovies().size(), added.movies);
+
+        Path unknown = Files.createTempFile("credits", ".csv");
+        try {
+            Files.write(unknown, Arrays.asList("cast,crew,tmdb_id", "[],[],-42"));
+            DataLoadException e = assertThrows(DataLoadException.class,
+                () -> LoadData.populateStreaming(new Stores(), null, null, unknown.toString(), KEYWORDS, MOVIES, RATINGS));
+            assertTrue(e.getMessage().contains("-42"), e.getMessage());
+        }
+        finally {
+            Files.deleteIfExists(unknown);
+        }
+    }
+}
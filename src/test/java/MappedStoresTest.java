@@ -0,0 +1,204 @@
+import stores.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class MappedStoresTest {
+
+    private Path path;
+    private MappedStores mapped;
+
+    @BeforeAll
+    void setUp() throws IOException {
+        Stores stores = new Stores();
+        Genre[] genres = new Genre[] {new Genre(1, "Horror"), new Genre(2, "Comedy")};
+
+        stores.getMovies().add(2, "Toy Story", "Toy Story", "overview", "tagline", "Released",
+            genres, LocalDate.of(1995, 10, 30), 30000000, 373554033, new String[] {"en"}, "en",
+            81.0, "http://toystory.com", false, false, "/poster.jpg");
+        stores.getMovies().add(1, "Jumanji", "Jumanji", null, null, "Released",
+            null, LocalDate.of(1995, 12, 15), 0, 0, null, "en", 104.0, null, true, false, null);
+        stores.getMovies().addToCollection(2, 10194, "Toy Story Collection", "/c.jpg", "/b.jpg");
+
+        stores.getCredits().add(
+            new CastCredit[] {new CastCredit(14, "Woody (voice)", "52fe4284c3a36847f8024f95", 31, "Tom Hanks", 0, "/tom.jpg"),
+                              new CastCredit(15, "Buzz (voice)", "52fe4284c3a36847f8024f99", 12898, "Tim Allen", 1, null)},
+            new CrewCredit[] {new CrewCredit("52fe4284c3a36847f8024f49", "Directing", 7879, "Director", "John Lasseter", null)},
+            2);
+
+        stores.getKeywords().add(2, new Keyword[] {new Keyword(931, "jealousy"), new Keyword(4290, "toy")});
+
+        stores.getRatings().add(101, 2, 4.5f, LocalDateTime.of(2001, 1, 1, 0, 0));
+        stores.getRatings().add(102, 2, 3.0f, LocalDateTime.of(2005, 6, 1, 12, 30));
+        stores.getRatings().add(101, 1, 2.5f, LocalDateTime.of(2009, 1, 1, 0, 0));
+
+        path = Files.createTempFile("stores", ".image");
+        MappedStores.write(stores, path, -1);
+        mapped = new MappedStores(path);
+    }
+
+    @AfterAll
+    void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Mapped stores should answer queries the same way as the stores they were written from
+     */
+    @Test void testQueriesPos() {
+        System.out.println("\nStarting testQueriesPos...");
+
+        assertArrayEquals(new int[] {1, 2}, mapped.getMovies().getAllIDs(), "IDs should be in ascending order.");
+        assertEquals("Toy Story", mapped.getMovies().getTitle(2), "Incorrect title.");
+        assertNull(mapped.getMovies().getGenres(1), "Null genres should be preserved.");
+        assertEquals(2, mapped.getMovies().getGenres(2).length, "Incorrect number of genres.");
+        assertEquals(10194, mapped.getMovies().getCollectionID(2), "Incorrect collection.");
+        assertArrayEquals(new int[] {2}, mapped.getMovies().getAllIDsReleasedInRange(LocalDate.of(1995, 1, 1), LocalDate.of(1995, 12, 15)),
+            "Films released on the end date should not be included.");
+
+        assertEquals("Tom Hanks", mapped.getCredits().getFilmCast(2)[0].getName(), "Cast should be in billing order.");
+        assertArrayEquals(new int[] {2}, mapped.getCredits().getCastFilms(12898), "Incorrect cast films.");
+        assertEquals("John Lasseter", mapped.getCredits().getCrew(7879).getName(), "Incorrect crew member.");
+
+        assertArrayEquals(new int[] {2}, mapped.getKeywords().getFilmsWithKeyword(4290), "Incorrect films for keyword.");
+
+        assertEquals(3, mapped.getRatings().size(), "Incorrect number of ratings.");
+        assertEquals(3.75f, mapped.getRatings().getMovieAverageRating(2), "Incorrect average rating.");
+        assertEquals(LocalDateTime.of(2005, 6, 1, 12, 30), mapped.getRatings().getTimestamp(102, 2), "Incorrect timestamp.");
+        assertArrayEquals(new int[] {2, 1}, mapped.getRatings().getMostRatedMovies(5), "Incorrect most rated movies.");
+        assertArrayEquals(new int[] {101, 102}, mapped.getRatings().getMostRatedUsers(5), "Incorrect most rated users.");
+        assertArrayEquals(new float[] {4.5f, 3.0f}, mapped.getRatings().getMovieRatingsBetween(2, null, null), "Ratings should be in time order.");
+        assertArrayEquals(new int[] {1}, mapped.getRatings().getTrendingMovies(Duration.ofDays(365), 5), "Incorrect trending movies.");
+        assertArrayEquals(new int[0], mapped.getRatings().getTopWeightedRatedMovies(5), "Movies with too few ratings should not be ranked.");
+        assertEquals((7.5 + 10 * 10 / 3.0) / 12, mapped.getRatings().getMovieWeightedRating(2), 1e-4, "Incorrect weighted rating.");
+        assertArrayEquals(new int[] {0, 0, 0, 0, 0, 1, 0, 0, 1, 0}, mapped.getRatings().getMovieRatingHistogram(2), "Incorrect movie histogram.");
+        assertArrayEquals(new int[] {0, 0, 0, 0, 1, 0, 0, 0, 1, 0}, mapped.getRatings().getUserRatingHistogram(101), "Incorrect user histogram.");
+        assertEquals(3.75f, mapped.getRatings().getMedianRating(2), "Incorrect median rating.");
+    }
+
+    /**
+     * Mapped stores are read-only, and missing IDs behave as in the other stores
+     */
+    @Test void testQueriesNeg() {
+        System.out.println("\nStarting testQueriesNeg...");
+
+        assertFalse(mapped.getRatings().add(103, 2, 1.0f, LocalDateTime.of(2010, 1, 1, 0, 0)), "Mapped stores should not accept new ratings.");
+        assertFalse(mapped.getMovies().remove(2), "Mapped stores should not remove films.");
+        assertNull(mapped.getMovies().getTitle(3), "Missing film should return null.");
+        assertEquals(-1, mapped.getRatings().getNumRatings(3), "Missing film should have -1 ratings.");
+        assertEquals(-1.0f, mapped.getRatings().getRating(102, 1), "Missing rating should return -1.");
+        assertArrayEquals(new CastCredit[0], mapped.getCredits().getFilmCast(1), "Film without credits should have no cast.");
+        assertNull(mapped.getKeywords().getKeywordsForFilm(1), "Film without keywords should return null.");
+    }
+
+    // Copies the test image, so it can be changed without affecting the other tests
+    private Path copy() throws IOException {
+        Path copy = Files.createTempFile("stores", ".image");
+        Files.copy(path, copy, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    /**
+     * Empty stores and restricted loads should give usable images, and an image rewritten
+     * while mapped should leave the mapped stores answering from the old one
+     */
+    @Test void testImagePos() throws IOException {
+        System.out.println("\nStarting testImagePos...");
+
+        Path empty = Files.createTempFile("empty", ".image");
+        Path copy = copy();
+        try {
+            MappedStores.write(new Stores(), empty, 5);
+            MappedStores none = new MappedStores(empty);
+            assertEquals(5, none.getNumMovies());
+            assertArrayEquals(new int[0], none.getMovies().getAllIDs(), "An empty image should have no films.");
+            assertEquals(0, none.getRatings().size());
+            assertArrayEquals(new int[0], none.getRatings().getMostRatedMovies(5));
+            assertArrayEquals(new int[0], none.getCredits().getCastFilms(31));
+            assertNull(none.getMovies().getTitle(2));
+            assertTrue(MappedStores.isFresh(empty, 5), "An image should be fresh for the restriction it was written with.");
+            assertTrue(MappedStores.isFresh(path, null), "An unrestricted image should be fresh for an unrestricted load.");
+
+            MappedStores old = new MappedStores(copy);
+            MappedStores.write(new Stores(), copy, -1);
+            assertEquals("Toy Story", old.getMovies().getTitle(2), "Mapped stores should keep the image they mapped.");
+            assertEquals(3, old.getRatings().size());
+            assertEquals(0, new MappedStores(copy).getRatings().size(), "The rewritten image should be mapped afresh.");
+            assertFalse(Files.exists(copy.resolveSibling(copy.getFileName() + ".tmp")), "No partly written image should be left behind.");
+        }
+        finally {
+            Files.deleteIfExists(empty);
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    /**
+     * Missing, foreign, truncated and corrupt images should fail with an IOException, and
+     * stale images or ones with another restriction should not be used
+     */
+    @Test void testImageNeg() throws IOException {
+        System.out.println("\nStarting testImageNeg...");
+
+        Path missing = path.resolveSibling("no-such-" + path.getFileName());
+        assertFalse(MappedStores.isFresh(missing, null));
+        assertThrows(IOException.class, () -> new MappedStores(missing));
+        assertFalse(MappedStores.isFresh(path, 5), "An image should not be used for another restriction.");
+
+        Path copy = copy();
+        Path source = Files.createTempFile("movies", ".csv");
+        try {
+            copy.toFile().setLastModified(System.currentTimeMillis() - 60000);
+            assertFalse(MappedStores.isFresh(copy, null, source.toString()), "An image older than its sources should not be used.");
+            assertTrue(MappedStores.isFresh(copy, null, missing.toString()), "A missing source should not make the image stale.");
+
+            byte[] image = Files.readAllBytes(path);
+            Files.write(copy, "cast,crew,tmdb_id\n".repeat(100).getBytes());
+            IOException foreign = assertThrows(IOException.class, () -> new MappedStores(copy));
+            assertTrue(foreign.getMessage().contains("not a store image"), foreign.getMessage());
+            assertFalse(MappedStores.isFresh(copy, null));
+
+            ByteBuffer versioned = ByteBuffer.wrap(image.clone()).order(ByteOrder.LITTLE_ENDIAN);
+            versioned.putInt(Integer.BYTES, 99);
+            Files.write(copy, versioned.array());
+            IOException version = assertThrows(IOException.class, () -> new MappedStores(copy));
+            assertTrue(version.getMessage().contains("version 99"), version.getMessage());
+
+            Files.write(copy, java.util.Arrays.copyOf(image, image.length / 2));
+            assertThrows(IOException.class, () -> new MappedStores(copy), "A truncated image should be refused.");
+            Files.write(copy, java.util.Arrays.copyOf(image, 10));
+            assertThrows(IOException.class, () -> new MappedStores(copy), "A truncated header should be refused.");
+
+            // A section one byte longer than its neighbours expect should be caught on opening,
+            // not by a lookup running off its end later
+            for (int section = 0; section < 54; section++) {
+                ByteBuffer corrupt = ByteBuffer.wrap(image.clone()).order(ByteOrder.LITTLE_ENDIAN);
+                int lengthAt = 4 * Integer.BYTES + (2 * section + 1) * Long.BYTES;
+                long offset = corrupt.getLong(lengthAt - Long.BYTES);
+                long length = corrupt.getLong(lengthAt);
+                if (offset + length + 1 > image.length) {
+                    continue;
+                }
+                corrupt.putLong(lengthAt, length + 1);
+                Files.write(copy, corrupt.array());
+                assertThrows(IOException.class, () -> new MappedStores(copy), "Section " + section + " should be checked.");
+            }
+        }
+        finally {
+            Files.deleteIfExists(copy);
+            Files.deleteIfExists(source);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+import utils.QueryExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryExecutorTest {
+
+    /**
+     * Queries should run in the background, side by side, with their results handed over
+     * on the event dispatch thread
+     */
+    @Test void testQueryExecutorPos() throws Exception {
+        System.out.println("\nStarting testQueryExecutorPos...");
+
+        QueryExecutor executor = new QueryExecutor(QueryExecutor.MIN_THREADS);
+        CountDownLatch started = new CountDownLatch(4);
+        CountDownLatch delivered = new CountDownLatch(4);
+        AtomicBoolean onEDT = new AtomicBoolean(true);
+        for (int i = 0; i < 4; i++) {
+            int pane = i;
+            executor.submit(new JPanel(), () -> {
+                // Only returns once all four are running at once
+                started.countDown();
+                try {
+                    return started.await(10, TimeUnit.SECONDS) ? pane : -1;
+                } catch (InterruptedException e) {
+                    return -1;
+                }
+            }, result -> {
+                if (!SwingUtilities.isEventDispatchThread() || result != pane) {
+                    onEDT.set(false);
+                }
+                delivered.countDown();
+            });
+        }
+        assertTrue(delivered.await(10, TimeUnit.SECONDS), "Every result should be handed over.");
+        assertTrue(onEDT.get(), "Results should be handed over on the event dispatch thread, after running side by side.");
+    }
+
+    /**
+     * A query superseded by a new one for the same pane, or cancelled, should never hand
+     * over its result
+     */
+    @Test void testQueryExecutorNeg() throws Exception {
+        System.out.println("\nStarting testQueryExecutorNeg...");
+
+        QueryExecutor executor = new QueryExecutor(1);
+        JPanel pane = new JPanel();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger results = new AtomicInteger();
+
+        // Holds the only thread, so the queries after it wait
+        QueryExecutor.Query blocking = executor.submit(new JPanel(), () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 0;
+        }, result -> results.addAndGet(1));
+        AtomicBoolean ran = new AtomicBoolean();
+        QueryExecutor.Query first = executor.submit(pane, () -> {
+            ran.set(true);
+            return "old term";
+        }, result -> results.addAndGet(10));
+        CountDownLatch delivered = new CountDownLatch(1);
+        QueryExecutor.Query second = executor.submit(pane, () -> "new term", result -> {
+            results.addAndGet(100);
+            delivered.countDown();
+        });
+        assertTrue(first.isCancelled(), "A new query for the pane should cancel the one before.");
+        assertFalse(second.isCancelled());
+        blocking.cancel();
+        release.countDown();
+
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        SwingUtilities.invokeAndWait(() -> { });
+        assertFalse(ran.get(), "A cancelled query should not run.");
+        assertEquals(100, results.get(), "Only the latest query's result should be handed over.");
+
+        CountDownLatch failed = new CountDownLatch(1);
+        executor.submit(pane, () -> {
+            failed.countDown();
+            throw new IllegalStateException("store failure");
+        }, result -> results.addAndGet(1000));
+        executor.cancel(new JPanel());
+        assertTrue(failed.await(10, TimeUnit.SECONDS));
+        executor.submit(new JPanel(), () -> 0, result -> { }).cancel();
+        SwingUtilities.invokeAndWait(() -> { });
+        assertEquals(100, results.get(), "A failed query should hand over nothing.");
+    }
+
+    /**
+     * A query should hand over its partial results on the event dispatch thread, in the
+     * order it published them, before its result
+     */
+    @Test void testPartialPos() throws Exception {
+        System.out.println("\nStarting testPartialPos...");
+
+        QueryExecutor executor = new QueryExecutor(1);
+        List<String> handed = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean onEDT = new AtomicBoolean(true);
+        CountDownLatch delivered = new CountDownLatch(1);
+        executor.submit(new JPanel(), publish -> {
+            publish.accept("a");
+            publish.accept("ab");
+            publish.accept("abc");
+            return "abcd";
+        }, partial -> {
+            onEDT.compareAndSet(true, SwingUtilities.isEventDispatchThread());
+            handed.add("partial " + partial);
+        }, result -> {
+            onEDT.compareAndSet(true, SwingUtilities.isEventDispatchThread());
+            handed.add("result " + result);
+            delivered.countDown();
+        });
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("partial a", "partial ab", "partial abc", "result abcd"), handed,
+                "Partial results should come in order, before the result.");
+        assertTrue(onEDT.get(), "Partial results should be handed over on the event dispatch thread.");
+
+        // A query with nothing to take its partial results can still publish them
+        CountDownLatch unheard = new CountDownLatch(1);
+        executor.<Integer>submit(new JPanel(), publish -> {
+            publish.accept(1);
+            return 2;
+        }, null, result -> {
+            if (result == 2) {
+                unheard.countDown();
+            }
+        });
+        assertTrue(unheard.await(10, TimeUnit.SECONDS), "Publishing with no partial consumer should not fail the query.");
+    }
+
+    /**
+     * A query cancelled while running should hand over none of the partial results it
+     * publishes after, nor any it had published that were not yet handed over
+     */
+    @Test void testPartialNeg() throws Exception {
+        System.out.println("\nStarting testPartialNeg...");
+
+        QueryExecutor executor = new QueryExecutor(1);
+        JPanel pane = new JPanel();
+        CountDownLatch published = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicInteger handed = new AtomicInteger();
+        CountDownLatch edtHeld = new CountDownLatch(1);
+        CountDownLatch edtRelease = new CountDownLatch(1);
+
+        // Holds the event dispatch thread, so the first partial result waits behind it
+        SwingUtilities.invokeLater(() -> {
+            edtHeld.countDown();
+            try {
+                edtRelease.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(edtHeld.await(10, TimeUnit.SECONDS));
+        executor.submit(pane, publish -> {
+            publish.accept(1);
+            published.countDown();
+            try {
+                cancelled.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            publish.accept(2);
+            finished.countDown();
+            return 3;
+        }, partial -> handed.incrementAndGet(), result -> handed.addAndGet(100));
+        assertTrue(published.await(10, TimeUnit.SECONDS));
+        executor.cancel(pane);
+        cancelled.countDown();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        edtRelease.countDown();
+        Thread.sleep(100);
+        SwingUtilities.invokeAndWait(() -> { });
+        assertEquals(0, handed.get(), "A cancelled query should hand over nothing, even what it published before.");
+
+        // Cancelling a pane with no live query, or twice, does nothing
+        executor.cancel(pane);
+        executor.cancel(new JPanel());
+    }
+
+    /**
+     * A pane taken out of the window should cancel its query, and the executor should
+     * go on running the queries of other panes
+     */
+    @Test void testDetachPos() throws Exception {
+        System.out.println("\nStarting testDetachPos...");
+
+        QueryExecutor executor = new QueryExecutor(1);
+        JPanel window = new JPanel();
+        JPanel pane = new JPanel();
+        window.add(pane);
+        SwingUtilities.invokeAndWait(window::addNotify);
+        assertTrue(pane.isDisplayable());
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger handed = new AtomicInteger();
+        QueryExecutor.Query query = executor.submit(pane, () -> {
+            running.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        }, result -> handed.addAndGet(result));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        SwingUtilities.invokeAndWait(() -> window.remove(pane));
+        assertTrue(query.isCancelled(), "Taking the pane out of the window should cancel its query.");
+        release.countDown();
+
+        CountDownLatch delivered = new CountDownLatch(1);
+        executor.submit(new JPanel(), () -> 10, result -> {
+            handed.addAndGet(result);
+            delivered.countDown();
+        });
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        SwingUtilities.invokeAndWait(() -> { });
+        assertEquals(10, handed.get(), "Only the query of the pane still shown should hand over its result.");
+
+        assertSame(QueryExecutor.getShared(), QueryExecutor.getShared(), "Every screen should share one executor.");
+    }
+
+    /**
+     * Changes to a pane that leave it in the window should not cancel its query, and a
+     * pane submitted to many times should only listen once
+     */
+    @Test void testDetachNeg() throws Exception {
+        System.out.println("\nStarting testDetachNeg...");
+
+        QueryExecutor executor = new QueryExecutor(1);
+        JPanel window = new JPanel();
+        JPanel pane = new JPanel();
+        window.add(pane);
+        SwingUtilities.invokeAndWait(window::addNotify);
+
+        for (int i = 0; i < 5; i++) {
+            executor.submit(pane, () -> 0, result -> { }).cancel();
+        }
+        assertEquals(1, pane.getHierarchyListeners().length, "A pane should be listened to once, however many queries it has.");
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(1);
+        QueryExecutor.Query query = executor.submit(pane, () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        }, result -> delivered.countDown());
+        SwingUtilities.invokeAndWait(() -> {
+            pane.setVisible(false);
+            pane.setVisible(true);
+            JPanel child = new JPanel();
+            pane.add(child);
+            pane.remove(child);
+        });
+        assertFalse(query.isCancelled(), "A pane still in the window should keep its query.");
+        release.countDown();
+        assertTrue(delivered.await(10, TimeUnit.SECONDS), "A pane still in the window should be handed its result.");
+    }
+}
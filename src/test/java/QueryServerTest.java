@@ -0,0 +1,297 @@
+import interfaces.AbstractStores;
+import interfaces.IMovies;
+import stores.*;
+import utils.QueryServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryServerTest {
+
+    private QueryServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ConcurrentStores stores = new ConcurrentStores();
+        stores.getMovies().add(862, "Toy Story", "Toy Story", "Woody and Buzz", "", "Released", new Genre[] {new Genre(16, "Animation")},
+            LocalDate.of(1995, 10, 30), 0, 0, new String[0], "en", 81, "", false, false, "/poster.jpg");
+        stores.getMovies().add(863, "Toy Story 2", "Toy Story 2", "", "", "Released", new Genre[0], LocalDate.of(1999, 10, 30), 0, 0, new String[0], "en", 92, "", false, false, "");
+        stores.getMovies().add(8844, "Jumanji", "Jumanji", "", "", "Released", new Genre[0], LocalDate.of(1995, 12, 15), 0, 0, new String[0], "en", 104, "", false, false, "");
+        stores.getCredits().add(new CastCredit[] {new CastCredit(14, "Woody (voice)", "52fe4284c3a36847f8024f95", 31, "Tom Hanks", 0, null)},
+            new CrewCredit[] {new CrewCredit("52fe4284c3a36847f8024f49", "Directing", 7879, "Director", "John Lasseter", null)}, 862);
+        stores.getKeywords().add(862, new Keyword(931, "jealousy"));
+        stores.getRatings().add(1, 862, 5.0f, null);
+        stores.getRatings().add(2, 862, 4.0f, null);
+        stores.getRatings().add(1, 8844, 3.0f, null);
+        server = new QueryServer(stores, 0, 2);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    // Stores of many films, each rated and crediting its own cast member, whose movies
+    // count the most titles found in one call
+    private static AbstractStores many(int numFilms, AtomicInteger mostTitles) {
+        ConcurrentStores stores = new ConcurrentStores();
+        for (int id = 1; id <= numFilms; id++) {
+            stores.getMovies().add(id, "Film " + id, "Film " + id, "", "", "Released", new Genre[0], LocalDate.of(2000, 1, 1), 0, 0, new String[0], "en", 90, "", false, false, "");
+            stores.getRatings().add(1, id, 0.5f + id % 10 / 2.0f, null);
+            stores.getCredits().add(new CastCredit[] {new CastCredit(id, "Extra", "credit" + id, 100000 + id, "Extra " + id, 0, null)}, new CrewCredit[0], id);
+        }
+        IMovies counted = (IMovies) Proxy.newProxyInstance(IMovies.class.getClassLoader(), new Class<?>[] {IMovies.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getTitles")) {
+                mostTitles.accumulateAndGet(((int[]) args[0]).length, Math::max);
+            }
+            try {
+                return method.invoke(stores.getMovies(), args);
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+        return new AbstractStores() {{
+            this.credits = stores.getCredits();
+            this.keywords = stores.getKeywords();
+            this.movies = counted;
+            this.ratings = stores.getRatings();
+        }};
+    }
+
+    private HttpURLConnection open(String path, String method, String ifNoneMatch) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (ifNoneMatch != null) {
+            connection.setRequestProperty("If-None-Match", ifNoneMatch);
+        }
+        return connection;
+    }
+
+    private static String body(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+        return in == null ? "" : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private JSONObject get(String path) throws IOException {
+        HttpURLConnection connection = open(path, "GET", null);
+        assertEquals(200, connection.getResponseCode(), "Expected " + path + " to be answered.");
+        assertTrue(connection.getContentType().startsWith("application/json"));
+        return new JSONObject(body(connection));
+    }
+
+    /**
+     * Queries should be answered as JSON, paged, and tagged so unchanged answers need
+     * not be sent again
+     */
+    @Test void testQueryServerPos() throws IOException {
+        System.out.println("\nStarting testQueryServerPos...");
+
+        JSONObject film = get("/movies/862");
+        assertEquals("Toy Story", film.getString("title"));
+        assertEquals("1995-10-30", film.getString("release"));
+        assertEquals("Animation", film.getJSONArray("genres").getJSONObject(0).getString("name"));
+
+        JSONObject page = get("/movies?search=toy&limit=1");
+        assertEquals(2, page.getInt("total"), "The total should count every match, not just the page.");
+        assertEquals(1, page.getJSONArray("items").length());
+        JSONObject next = get("/movies?search=toy&offset=1&limit=1");
+        assertNotEquals(page.getJSONArray("items").getJSONObject(0).getInt("id"), next.getJSONArray("items").getJSONObject(0).getInt("id"));
+        assertEquals(2, get("/movies?from=1995-01-01&to=1995-12-31").getInt("total"));
+
+        JSONArray top = get("/ratings/top?limit=2").getJSONArray("items");
+        assertEquals(862, top.getJSONObject(0).getInt("id"));
+        assertEquals(4.5, top.getJSONObject(0).getDouble("value"), 1e-6);
+        assertEquals(2, get("/movies/862/ratings").getInt("count"));
+        assertEquals("Tom Hanks", get("/movies/862/credits").getJSONArray("cast").getJSONObject(0).getString("name"));
+        assertEquals("Director", get("/movies/862/credits").getJSONArray("crew").getJSONObject(0).getString("job"));
+        assertEquals("jealousy", get("/movies/862/keywords").getJSONArray("keywords").getJSONObject(0).getString("name"));
+        assertEquals(862, get("/keywords/931").getJSONArray("items").getJSONObject(0).getInt("id"));
+        assertEquals(31, get("/cast?search=Hanks").getJSONArray("items").getJSONObject(0).getInt("id"));
+        assertEquals("Toy Story", get("/cast/31").getJSONObject("films").getJSONArray("items").getJSONObject(0).getString("title"));
+        assertEquals("John Lasseter", get("/crew/7879").getString("name"));
+
+        // An unchanged answer is not sent again
+        HttpURLConnection first = open("/ratings/top", "GET", null);
+        assertEquals(200, first.getResponseCode());
+        String etag = first.getHeaderField("ETag");
+        assertNotNull(etag);
+        HttpURLConnection again = open("/ratings/top", "GET", etag);
+        assertEquals(304, again.getResponseCode());
+        assertEquals("", body(again));
+
+        // Changing the ratings changes the tag of answers using them, but not of others
+        String creditsTag = open("/movies/862/credits", "GET", null).getHeaderField("ETag");
+        server.getStores().getRatings().add(3, 8844, 5.0f, null);
+        HttpURLConnection changed = open("/ratings/top", "GET", etag);
+        assertEquals(200, changed.getResponseCode());
+        assertNotEquals(etag, changed.getHeaderField("ETag"));
+        assertEquals(304, open("/movies/862/credits", "GET", creditsTag).getResponseCode());
+
+        JSONObject metrics = get("/metrics").getJSONObject("endpoints");
+        JSONObject topMetrics = metrics.getJSONObject("ratings/top");
+        assertEquals(4, topMetrics.getInt("requests"));
+        assertEquals(1, topMetrics.getInt("notModified"));
+        assertTrue(topMetrics.getDouble("p95Ms") >= topMetrics.getDouble("p50Ms"));
+        assertTrue(topMetrics.getDouble("maxMs") > 0);
+    }
+
+    /**
+     * Unknown paths and IDs, bad parameters and other methods should be refused with
+     * a JSON error
+     */
+    @Test void testQueryServerNeg() throws IOException {
+        System.out.println("\nStarting testQueryServerNeg...");
+
+        HttpURLConnection unknown = open("/films", "GET", null);
+        assertEquals(404, unknown.getResponseCode());
+        assertTrue(new JSONObject(body(unknown)).getString("error").contains("/films"));
+        HttpURLConnection missing = open("/movies/999", "GET", null);
+        assertEquals(404, missing.getResponseCode(), "An unknown film should not be found.");
+        assertNull(missing.getHeaderField("ETag"), "Errors should not be tagged.");
+        assertEquals(404, open("/movies/abc", "GET", null).getResponseCode());
+        assertEquals(404, open("/cast/999", "GET", null).getResponseCode());
+        assertEquals(404, open("/movies/862/posters", "GET", null).getResponseCode());
+
+        assertEquals(400, open("/movies?limit=many", "GET", null).getResponseCode());
+        assertEquals(400, open("/movies?offset=-1", "GET", null).getResponseCode());
+        assertEquals(400, open("/movies?from=yesterday", "GET", null).getResponseCode());
+        assertEquals(400, open("/ratings/top?by=popularity", "GET", null).getResponseCode());
+        assertEquals(400, open("/cast", "GET", null).getResponseCode(), "Listing people should need a search.");
+
+        HttpURLConnection post = open("/movies", "POST", null);
+        assertEquals(405, post.getResponseCode());
+        assertEquals("GET, HEAD", post.getHeaderField("Allow"));
+
+        JSONObject page = get("/movies?offset=10&limit=5000");
+        assertEquals(3, page.getInt("total"));
+        assertEquals(0, page.getJSONArray("items").length(), "A page past the end should be empty.");
+        assertEquals(QueryServer.MAX_LIMIT, page.getInt("limit"), "Pages should be no bigger than the maximum.");
+        assertEquals(0, get("/movies?search=zzz").getInt("total"));
+
+        assertEquals(200, open("/movies/862", "GET", "\"stale\"").getResponseCode(), "An old tag should get the full answer.");
+        assertEquals(9, get("/metrics").getJSONObject("endpoints").getJSONObject("unknown").getInt("errors"));
+    }
+
+    /**
+     * Metrics should change with every request, so they should never be tagged and
+     * always be sent in full
+     */
+    @Test void testMetricsPos() throws IOException {
+        System.out.println("\nStarting testMetricsPos...");
+
+        HttpURLConnection first = open("/metrics", "GET", null);
+        assertEquals(200, first.getResponseCode());
+        assertNull(first.getHeaderField("ETag"), "Metrics should not be tagged.");
+        assertEquals("no-store", first.getHeaderField("Cache-Control"));
+        assertFalse(new JSONObject(body(first)).getJSONObject("endpoints").has("movies"));
+
+        get("/movies");
+        HttpURLConnection second = open("/metrics", "GET", "*");
+        assertEquals(200, second.getResponseCode(), "Metrics should be sent even if any tag is accepted.");
+        JSONObject endpoints = new JSONObject(body(second)).getJSONObject("endpoints");
+        assertEquals(1, endpoints.getJSONObject("movies").getInt("requests"), "Metrics should show requests made since they were last sent.");
+        assertEquals(1, endpoints.getJSONObject("metrics").getInt("requests"));
+        assertEquals(0, endpoints.getJSONObject("metrics").getInt("notModified"));
+    }
+
+    /**
+     * A tag from another answer, or a made up one, should not stop metrics being sent,
+     * and other answers should still be tagged
+     */
+    @Test void testMetricsNeg() throws IOException {
+        System.out.println("\nStarting testMetricsNeg...");
+
+        String tag = open("/ratings/top", "GET", null).getHeaderField("ETag");
+        assertNotNull(tag);
+        HttpURLConnection metrics = open("/metrics", "GET", tag);
+        assertEquals(200, metrics.getResponseCode(), "Another answer's tag should not match metrics.");
+        assertNull(metrics.getHeaderField("ETag"));
+        assertEquals(200, open("/metrics", "GET", "\"stale\"").getResponseCode());
+        assertEquals(200, open("/metrics", "HEAD", "*").getResponseCode());
+
+        JSONObject endpoints = get("/metrics").getJSONObject("endpoints");
+        assertEquals(3, endpoints.getJSONObject("metrics").getInt("requests"));
+        assertEquals(0, endpoints.getJSONObject("metrics").getInt("notModified"), "Metrics should never be answered with a 304.");
+        assertEquals(304, open("/ratings/top", "GET", tag).getResponseCode(), "Other answers should still be tagged.");
+    }
+
+    /**
+     * A page should hold the items from its offset, with the size of the whole list, and
+     * only find the titles of the films on it
+     */
+    @Test void testPagingPos() throws IOException {
+        System.out.println("\nStarting testPagingPos...");
+
+        server.stop();
+        AtomicInteger mostTitles = new AtomicInteger();
+        server = new QueryServer(many(3000, mostTitles), 0, 2);
+        server.start();
+
+        JSONObject page = get("/movies?offset=5&limit=10");
+        assertEquals(3000, page.getInt("total"), "The total should count every film.");
+        assertEquals(5, page.getInt("offset"));
+        assertEquals(10, page.getInt("limit"));
+        JSONArray items = page.getJSONArray("items");
+        assertEquals(10, items.length());
+        assertTrue(mostTitles.get() <= 10, "Only the titles on the page should be found, not " + mostTitles.get());
+        int[] ids = server.getStores().getMovies().getAllIDs();
+        for (int i = 0; i < items.length(); i++) {
+            assertEquals(ids[5 + i], items.getJSONObject(i).getInt("id"), "A page should hold the films from its offset.");
+            assertEquals("Film " + ids[5 + i], items.getJSONObject(i).getString("title"));
+        }
+
+        JSONObject top = get("/ratings/top?offset=2&limit=3");
+        int[] ranked = server.getStores().getRatings().getTopAverageRatedMovies(5);
+        assertEquals(5, top.getInt("total"), "The top films are ranked to the end of the page.");
+        for (int i = 0; i < 3; i++) {
+            JSONObject film = top.getJSONArray("items").getJSONObject(i);
+            assertEquals(ranked[2 + i], film.getInt("id"));
+            assertEquals(server.getStores().getRatings().getMovieAverageRating(ranked[2 + i]), film.getDouble("value"), 1e-6, "Each film on the page should have its own value.");
+        }
+        JSONObject found = get("/cast?search=Extra&offset=100&limit=20");
+        assertEquals(3000, found.getInt("total"));
+        assertEquals(20, found.getJSONArray("items").length());
+        assertEquals(3, get("/cast/most-credited?offset=7&limit=3").getJSONArray("items").length());
+        assertEquals(10, get("/movies?from=1999-01-01&limit=10").getJSONArray("items").length());
+        assertTrue(mostTitles.get() <= 10, "Only the titles on each page should be found, not " + mostTitles.get());
+    }
+
+    /**
+     * Pages past the end, or of no items, should be empty but still give the total
+     */
+    @Test void testPagingNeg() throws IOException {
+        System.out.println("\nStarting testPagingNeg...");
+
+        JSONObject past = get("/movies?offset=3&limit=10");
+        assertEquals(3, past.getInt("total"));
+        assertEquals(0, past.getJSONArray("items").length(), "A page past the end should be empty.");
+        assertEquals(0, get("/movies?offset=" + Integer.MAX_VALUE + "&limit=" + QueryServer.MAX_LIMIT).getJSONArray("items").length(), "A huge offset should not overflow.");
+        JSONObject none = get("/movies?limit=0");
+        assertEquals(3, none.getInt("total"), "A page of no items should still give the total.");
+        assertEquals(0, none.getJSONArray("items").length());
+        JSONObject last = get("/movies?offset=2&limit=10");
+        assertEquals(1, last.getJSONArray("items").length(), "The last page should hold only what is left.");
+        assertEquals(0, get("/keywords?search=jealousy&offset=1").getJSONArray("items").length());
+        assertEquals(1, get("/keywords?search=jealousy&offset=1").getInt("total"));
+        assertEquals(0, get("/ratings/top?offset=5").getJSONArray("items").length());
+        assertEquals(0, get("/cast/31?offset=1").getJSONObject("films").getJSONArray("items").length());
+        assertEquals(1, get("/cast/31?offset=1").getJSONObject("films").getInt("total"));
+        assertEquals(0, get("/movies?search=nothing like it").getInt("total"));
+    }
+}
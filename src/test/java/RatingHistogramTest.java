@@ -0,0 +1,132 @@
+import interfaces.AbstractStores;
+import interfaces.IRatings;
+import stores.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RatingHistogramTest {
+
+    /**
+     * Histograms, medians and standard deviations should count every rating, and follow
+     * ratings as they are changed and removed
+     */
+    @Test void testRatingHistogramPos() {
+        System.out.println("\nStarting testRatingHistogramPos...");
+
+        for (AbstractStores stores : new AbstractStores[] {new Stores(), new ConcurrentStores()}) {
+            IRatings ratings = stores.getRatings();
+            ratings.add(1, 10, 1.0f, null);
+            ratings.add(2, 10, 3.0f, null);
+            ratings.add(3, 10, 5.0f, null);
+            ratings.add(1, 20, 4.5f, null);
+
+            assertArrayEquals(new int[] {0, 1, 0, 0, 0, 1, 0, 0, 0, 1}, ratings.getMovieRatingHistogram(10), "Incorrect movie histogram.");
+            assertArrayEquals(new int[] {0, 1, 0, 0, 0, 0, 0, 0, 1, 0}, ratings.getUserRatingHistogram(1), "Incorrect user histogram.");
+            assertArrayEquals(new int[] {0, 1, 0, 0, 0, 1, 0, 0, 1, 1}, ratings.getRatingHistogram(), "Incorrect overall histogram.");
+            assertEquals(3.0f, ratings.getMedianRating(10), "Median should be the middle rating.");
+            assertEquals(Math.sqrt(8 / 3.0), ratings.getRatingStdDev(10), 1e-5, "Incorrect standard deviation.");
+
+            assertTrue(ratings.add(4, 10, 4.0f, null));
+            assertEquals(3.5f, ratings.getMedianRating(10), "Median of an even count should be the mean of the middle two.");
+            assertTrue(ratings.set(1, 10, 2.0f, null));
+            assertArrayEquals(new int[] {0, 0, 0, 1, 0, 1, 0, 1, 0, 1}, ratings.getMovieRatingHistogram(10), "A changed rating should move buckets.");
+            assertArrayEquals(new int[] {0, 0, 0, 1, 0, 0, 0, 0, 1, 0}, ratings.getUserRatingHistogram(1), "A changed rating should move the user's buckets.");
+            assertTrue(ratings.remove(1, 20));
+            assertArrayEquals(new int[] {0, 0, 0, 1, 0, 0, 0, 0, 0, 0}, ratings.getUserRatingHistogram(1), "A removed rating should leave the user's histogram.");
+            assertArrayEquals(new int[] {0, 0, 0, 1, 0, 1, 0, 1, 0, 1}, ratings.getRatingHistogram(), "A removed rating should leave the overall histogram.");
+
+            ratings.getMovieRatingHistogram(10)[0] = 99;
+            assertEquals(0, ratings.getMovieRatingHistogram(10)[0], "Returned histograms should be copies.");
+        }
+    }
+
+    /**
+     * Movies and users without ratings should have empty histograms, and no median or
+     * standard deviation
+     */
+    @Test void testRatingHistogramNeg() {
+        System.out.println("\nStarting testRatingHistogramNeg...");
+
+        for (AbstractStores stores : new AbstractStores[] {new Stores(), new ConcurrentStores()}) {
+            IRatings ratings = stores.getRatings();
+            assertArrayEquals(new int[0], ratings.getMovieRatingHistogram(10), "A movie without ratings should have an empty histogram.");
+            assertArrayEquals(new int[0], ratings.getUserRatingHistogram(1), "A user without ratings should have an empty histogram.");
+            assertArrayEquals(new int[10], ratings.getRatingHistogram(), "The overall histogram should start at zero.");
+            assertEquals(-1.0f, ratings.getMedianRating(10), "A movie without ratings should have no median.");
+            assertEquals(-1.0f, ratings.getRatingStdDev(10), "A movie without ratings should have no standard deviation.");
+
+            ratings.add(1, 10, 4.0f, null);
+            assertEquals(0.0f, ratings.getRatingStdDev(10), "A single rating should not spread.");
+            assertTrue(ratings.remove(1, 10));
+            assertArrayEquals(new int[0], ratings.getMovieRatingHistogram(10), "A movie with its ratings removed should have an empty histogram.");
+            assertArrayEquals(new int[0], ratings.getUserRatingHistogram(1), "A user with their ratings removed should have an empty histogram.");
+            assertEquals(-1.0f, ratings.getMedianRating(10));
+        }
+    }
+
+    /**
+     * A movie's running totals should match its ratings counted afresh, through many
+     * adds, changes and removes
+     */
+    @Test void testSumAndCountPos() {
+        System.out.println("\nStarting testSumAndCountPos...");
+
+        for (AbstractStores stores : new AbstractStores[] {new Stores(), new ConcurrentStores()}) {
+            IRatings ratings = stores.getRatings();
+            Random random = new Random(40);
+            for (int step = 0; step < 500; step++) {
+                int userID = random.nextInt(30);
+                float rating = 0.5f + random.nextInt(10) / 2.0f;
+                switch (random.nextInt(3)) {
+                    case 0: ratings.add(userID, 10, rating, null); break;
+                    case 1: ratings.set(userID, 10, rating, null); break;
+                    default: ratings.remove(userID, 10); break;
+                }
+            }
+
+            float[] movieRatings = ratings.getMovieRatings(10);
+            double sum = 0;
+            double squares = 0;
+            int[] histogram = new int[10];
+            for (float rating : movieRatings) {
+                sum += rating;
+                squares += rating * rating;
+                histogram[Math.round(rating * 2) - 1]++;
+            }
+            double mean = sum / movieRatings.length;
+            assertEquals(movieRatings.length, ratings.getNumRatings(10));
+            assertEquals(mean, ratings.getMovieAverageRating(10), 1e-4, "The running average should match the ratings.");
+            assertEquals(Math.sqrt(squares / movieRatings.length - mean * mean), ratings.getRatingStdDev(10), 1e-4, "The running spread should match the ratings.");
+            assertArrayEquals(histogram, ratings.getMovieRatingHistogram(10), "The running histogram should match the ratings.");
+        }
+    }
+
+    /**
+     * Ratings off the half-star steps should be counted in the nearest bucket, and a
+     * movie whose ratings are all removed should keep nothing
+     */
+    @Test void testSumAndCountNeg() {
+        System.out.println("\nStarting testSumAndCountNeg...");
+
+        for (AbstractStores stores : new AbstractStores[] {new Stores(), new ConcurrentStores()}) {
+            IRatings ratings = stores.getRatings();
+            assertTrue(ratings.add(1, 10, 0.5f, null));
+            assertTrue(ratings.add(2, 10, 5.0f, null));
+            assertTrue(ratings.add(3, 10, 3.2f, null));
+            assertArrayEquals(new int[] {1, 0, 0, 0, 0, 1, 0, 0, 0, 1}, ratings.getMovieRatingHistogram(10), "Off-step ratings should go in the nearest bucket.");
+            assertEquals(2.9f, ratings.getMovieAverageRating(10), 1e-5, "Off-step ratings should count at their own value in the average.");
+
+            for (int userID = 1; userID <= 3; userID++) {
+                assertTrue(ratings.remove(userID, 10));
+            }
+            assertFalse(ratings.getNumRatings(10) > 0, "Every rating should be gone.");
+            assertEquals(-1.0f, ratings.getRatingStdDev(10), "A movie with its ratings removed should have no spread.");
+            assertTrue(ratings.add(1, 10, 4.0f, null));
+            assertEquals(4.0f, ratings.getMovieAverageRating(10), 1e-6, "Totals should start again from nothing.");
+            assertArrayEquals(new int[] {0, 0, 0, 0, 0, 0, 0, 1, 0, 0}, ratings.getMovieRatingHistogram(10));
+        }
+    }
+}
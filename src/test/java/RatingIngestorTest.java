@@ -0,0 +1,239 @@
+import interfaces.IRatings;
+import stores.*;
+import utils.RatingIngestor;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RatingIngestorTest {
+
+    /**
+     * Queued ratings should all reach the store, in batches, with the aggregates updated
+     */
+    @Test void testIngestPos() throws IOException, InterruptedException {
+        System.out.println("\nStarting testIngestPos...");
+        Stores stores = new Stores();
+        RatingIngestor ingestor = new RatingIngestor(stores.getRatings(), 16, 8, 5, 2);
+        for (int i = 0; i < 100; i++) {
+            ingestor.put(i, i % 3, 1.0f + i % 3, 1000000000L + i);
+        }
+        ingestor.read(new StringReader("userId,movieLensId,tmdbId,rating,timestamp\n200,1,5,5.0,1000000000\n"));
+        ingestor.close();
+
+        assertEquals(101, ingestor.getReceived(), "Every rating should be received.");
+        assertEquals(101, ingestor.getApplied(), "Every rating should be applied.");
+        assertEquals(101, stores.getRatings().size(), "Every rating should be in the store.");
+        assertEquals(5.0f, stores.getRatings().getRating(200, 5), "Line should be parsed as a rating.");
+        assertTrue(ingestor.getBatches() >= 101 / 8, "Ratings should be applied in batches of at most 8.");
+        assertArrayEquals(new int[] {0, 1}, ingestor.getMostRated(), "Incorrect most rated movies.");
+        assertArrayEquals(new int[] {5, 2}, ingestor.getTopAverageRated(), "Incorrect top average rated movies.");
+        assertEquals(0, ingestor.getQueued(), "Queue should be drained on close.");
+    }
+
+    /**
+     * Malformed lines, duplicates and ratings after closing should not reach the store
+     */
+    @Test void testIngestNeg() throws IOException, InterruptedException {
+        System.out.println("\nStarting testIngestNeg...");
+        Stores stores = new Stores();
+        RatingIngestor ingestor = new RatingIngestor(stores.getRatings());
+        assertFalse(ingestor.putLine("userId,movieLensId,tmdbId,rating,timestamp"), "Header should be skipped.");
+        assertFalse(ingestor.putLine("1,2,x,4.0,100"), "Malformed line should be skipped.");
+        assertTrue(ingestor.putLine("1,2,3,4.0,100"), "Rating should be queued.");
+        assertTrue(ingestor.putLine("1,2,3,2.0,200"), "Duplicate should still be queued.");
+        ingestor.close();
+
+        assertEquals(2, ingestor.getMalformed(), "Incorrect number of malformed lines.");
+        assertEquals(1, ingestor.getApplied(), "Duplicate should not be applied.");
+        assertEquals(1, ingestor.getSkipped(), "Duplicate should be skipped.");
+        assertEquals(4.0f, stores.getRatings().getRating(1, 3), "First rating should be kept.");
+        assertThrows(IllegalStateException.class, () -> ingestor.put(2, 3, 1.0f, 100), "Closed ingestor should not take ratings.");
+    }
+
+    // Ratings whose addAll waits for release once entered, and throws for a batch holding user -1
+    private static IRatings gated(IRatings ratings, CountDownLatch entered, CountDownLatch release) {
+        return (IRatings) Proxy.newProxyInstance(IRatings.class.getClassLoader(), new Class<?>[] {IRatings.class}, (proxy, method, args) -> {
+            if (method.getName().equals("addAll")) {
+                entered.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                for (int userID : (int[]) args[0]) {
+                    if (userID == -1) {
+                        throw new IllegalArgumentException("Bad rating");
+                    }
+                }
+            }
+            try {
+                return method.invoke(ratings, args);
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    private static void await(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(message);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * The queue should wrap round without losing or reordering ratings, a lone rating
+     * should be applied once the batching delay is up, a full queue should hold producers
+     * back until the store catches up, and a followed file should only give complete lines
+     */
+    @Test void testQueuePos() throws Exception {
+        System.out.println("\nStarting testQueuePos...");
+
+        Stores stores = new Stores();
+        RatingIngestor ring = new RatingIngestor(stores.getRatings(), 5, 3, 1, 2);
+        for (int i = 0; i < 50; i++) {
+            // Every rating is repeated three later, so in another batch, with a different value
+            ring.put(i % 47, i % 47, i < 47 ? 1.0f : 5.0f, 1000000000L + i);
+        }
+        ring.close();
+        assertEquals(47, ring.getApplied());
+        assertEquals(3, ring.getSkipped());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1.0f, stores.getRatings().getRating(i, i), "The first of two ratings should be kept, across batches.");
+        }
+
+        RatingIngestor delayed = new RatingIngestor(new Stores().getRatings(), 16, 100, 20, 2);
+        delayed.put(1, 1, 4.0f, 1000000000L);
+        await(() -> delayed.getApplied() == 1, "A lone rating should be applied once the delay is up.");
+        assertEquals(1, delayed.getBatches());
+        assertTrue(delayed.getLagMillis() >= 0);
+        delayed.close();
+
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RatingIngestor full = new RatingIngestor(gated(new Stores().getRatings(), entered, release), 2, 1, 0, 2);
+        full.put(1, 1, 1.0f, 1);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        full.put(2, 1, 2.0f, 2);
+        full.put(3, 1, 3.0f, 3);
+        assertEquals(2, full.getQueued());
+        assertFalse(full.offer(4, 1, 4.0f, 4), "A full queue should not take an offer.");
+        Thread producer = new Thread(() -> {
+            try {
+                full.put(4, 1, 4.0f, 4);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        await(() -> producer.getState() == Thread.State.WAITING, "A put into a full queue should wait.");
+        release.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive(), "The put should go through once the store catches up.");
+        full.close();
+        assertEquals(4, full.getApplied());
+        assertEquals(4, full.getReceived());
+
+        Path file = Files.createTempFile("ratings", ".csv");
+        Stores tailed = new Stores();
+        RatingIngestor follower = new RatingIngestor(tailed.getRatings(), 16, 4, 5, 2);
+        try {
+            Files.write(file, "userId,movieLensId,tmdbId,rating,timestamp\n1,1,7,3.0,100\n2,1,7,4.0,100\n3,1,7,4".getBytes(StandardCharsets.UTF_8));
+            Thread source = follower.startSource(file.toString());
+            await(() -> follower.getApplied() == 2, "The complete lines should be applied.");
+            Thread.sleep(250);
+            assertEquals(-1.0f, tailed.getRatings().getRating(3, 7), "A partly written line should wait for the rest of it.");
+            Files.write(file, ".5,100\n4,1,7,1.0,100\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            await(() -> follower.getApplied() == 4, "Appended lines should be followed.");
+            assertEquals(4.5f, tailed.getRatings().getRating(3, 7), "A line written in two parts should be read whole.");
+            assertEquals(1, follower.getMalformed(), "Only the header should be malformed.");
+            follower.close();
+            source.join(5000);
+            assertFalse(source.isAlive(), "Following should stop once closed.");
+        }
+        finally {
+            follower.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A batch the store throws on should be dropped without stopping later batches, a
+     * producer waiting on a full queue should be refused when the ingestor closes, and
+     * lines that are not five fields should be skipped
+     */
+    @Test void testQueueNeg() throws Exception {
+        System.out.println("\nStarting testQueueNeg...");
+
+        Stores stores = new Stores();
+        CountDownLatch open = new CountDownLatch(0);
+        RatingIngestor ingestor = new RatingIngestor(gated(stores.getRatings(), open, open), 16, 2, 1000, 2);
+        ingestor.put(1, 1, 1.0f, 1);
+        await(() -> ingestor.getApplied() == 1, "The first batch should be applied.");
+        ingestor.put(-1, 1, 1.0f, 1);
+        ingestor.put(2, 1, 2.0f, 2);
+        await(() -> ingestor.getFailed() == 2, "A batch the store throws on should be counted as failed.");
+        ingestor.put(3, 1, 3.0f, 3);
+        ingestor.close();
+        assertEquals(2, ingestor.getApplied(), "Batches after a failed one should still be applied.");
+        assertEquals(2, stores.getRatings().size());
+        assertTrue(ingestor.toString().contains("failed=2"), ingestor.toString());
+
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RatingIngestor full = new RatingIngestor(gated(new Stores().getRatings(), entered, release), 1, 1, 0, 2);
+        full.put(1, 1, 1.0f, 1);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        full.put(2, 1, 2.0f, 2);
+        AtomicReference<Throwable> refused = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                full.put(3, 1, 3.0f, 3);
+            }
+            catch (Throwable e) {
+                refused.set(e);
+            }
+        });
+        producer.start();
+        await(() -> producer.getState() == Thread.State.WAITING, "A put into a full queue should wait.");
+        Thread closer = new Thread(() -> {
+            try {
+                full.close();
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        closer.start();
+        producer.join(5000);
+        assertTrue(refused.get() instanceof IllegalStateException, "A waiting put should be refused on close: " + refused.get());
+        release.countDown();
+        closer.join(5000);
+        assertFalse(closer.isAlive());
+        assertEquals(2, full.getApplied(), "Ratings queued before closing should still be applied.");
+
+        RatingIngestor lines = new RatingIngestor(new Stores().getRatings());
+        assertFalse(lines.putLine(""));
+        assertFalse(lines.putLine("1,2,3,4.0,100,extra"));
+        assertFalse(lines.putLine("1,2,3,4.0"));
+        assertFalse(lines.putLine("1,2,3,,100"));
+        lines.close();
+        assertEquals(4, lines.getMalformed());
+        assertEquals(0, lines.getReceived());
+        assertThrows(IOException.class, () -> new RatingIngestor(new Stores().getRatings()).tail(Path.of("no/such/ratings.csv")));
+    }
+}
@@ -0,0 +1,262 @@
+import interfaces.AbstractStores;
+import interfaces.IRatings;
+import stores.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RatingTimesTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2010, 1, 1, 0, 0);
+
+    // Ratings of movie 1 over four days, out of order, plus one bulk-loaded rating of movie 2
+    private static IRatings loaded(AbstractStores stores) {
+        IRatings ratings = stores.getRatings();
+        ratings.add(101, 1, 4.0f, START.plusDays(2));
+        ratings.add(102, 1, 3.0f, START);
+        ratings.add(103, 1, 5.0f, START.plusDays(3));
+        ratings.add(104, 1, 2.0f, START.plusDays(1));
+        ratings.add(105, 1, 1.0f, null);
+        long day3 = START.plusDays(3).toEpochSecond(ZoneOffset.UTC);
+        ratings.addAll(new int[] {101, 102}, new int[] {2, 2}, new float[] {3.5f, 4.5f}, new long[] {day3 + 60, day3});
+        return ratings;
+    }
+
+    /**
+     * Window queries should be answered in time order, and follow sets and removes
+     */
+    @Test void testTimeRangePos() {
+        System.out.println("\nStarting testTimeRangePos...");
+
+        for (AbstractStores stores : new AbstractStores[] {new Stores(), new ConcurrentStores()}) {
+            IRatings ratings = loaded(stores);
+            assertArrayEquals(new float[] {3.0f, 2.0f, 4.0f, 5.0f}, ratings.getMovieRatingsBetween(1, null, null), "Ratings should be in time order.");
+            assertArrayEquals(new float[] {2.0f, 4.0f}, ratings.getMovieRatingsBetween(1, START.plusDays(1), START.plusDays(3)), "Window should include its start only.");
+            assertArrayEquals(new int[] {1, 1, 1, 1, 0}, ratings.getMovieRatingsOverTime(1, START, Duration.ofDays(1), 5), "Incorrect histogram.");
+            assertArrayEquals(new int[] {2, 1}, ratings.getTrendingMovies(Duration.ofDays(1), 5), "Incorrect trending movies.");
+            assertEquals(START.plusDays(2), ratings.getTimestamp(101, 1), "Timestamp should be kept in seconds.");
+
+            ratings.set(102, 1, 1.5f, START.plusDays(3));
+            ratings.remove(103, 1);
+            assertArrayEquals(new float[] {2.0f, 4.0f, 1.5f}, ratings.getMovieRatingsBetween(1, START, null), "Timeline should follow sets and removes.");
+            assertArrayEquals(new int[] {2, 1}, ratings.getTrendingMovies(Duration.ofDays(1), 2), "Trending should follow sets and removes.");
+        }
+    }
+
+    /**
+     * Missing films, empty windows and invalid buckets should give empty results
+     */
+    @Test void testTimeRangeNeg() {
+        System.out.println("\nStarting testTimeRangeNeg...");
+
+        for (AbstractStores stores : new AbstractStores[] {new Stores(), new ConcurrentStores()}) {
+            assertArrayEquals(new int[0], stores.getRatings().getTrendingMovies(Duration.ofDays(1), 5), "Empty store should have no trending movies.");
+            IRatings ratings = loaded(stores);
+            assertArrayEquals(new float[0], ratings.getMovieRatingsBetween(3, null, null), "Missing film should have no ratings.");
+            assertArrayEquals(new float[0], ratings.getMovieRatingsBetween(1, START.plusDays(3), START), "Reversed window should be empty.");
+            assertArrayEquals(new int[3], ratings.getMovieRatingsOverTime(3, START, Duration.ofDays(1), 3), "Missing film should have empty buckets.");
+            assertArrayEquals(new int[0], ratings.getMovieRatingsOverTime(1, START, Duration.ZERO, 3), "Zero length buckets should be rejected.");
+            assertArrayEquals(new int[0], ratings.getTrendingMovies(Duration.ofDays(-1), 5), "Negative window should be rejected.");
+            assertNull(ratings.getTimestamp(105, 1), "Rating without a time should have no timestamp.");
+        }
+    }
+
+    // Plain stores with a movie's ratings bulk loaded latest first, so its first query sorts
+    // them. Each rating is the number of seconds after START it was made, modulo 10, halved
+    private static IRatings unsorted(int numRatings) {
+        long start = START.toEpochSecond(ZoneOffset.UTC);
+        int[] users = new int[numRatings];
+        int[] movies = new int[numRatings];
+        float[] values = new float[numRatings];
+        long[] times = new long[numRatings];
+        for (int row = 0; row < numRatings; row++) {
+            int second = numRatings - 1 - row;
+            users[row] = row;
+            movies[row] = 1;
+            values[row] = 0.5f + second % 10 / 2.0f;
+            times[row] = start + second;
+        }
+        IRatings ratings = new Stores().getRatings();
+        ratings.addAll(users, movies, values, times);
+        return ratings;
+    }
+
+    // Runs two queries on their own threads at the same moment
+    private static <A, B> Object[] together(Supplier<A> first, Supplier<B> second) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        CompletableFuture<A> a = CompletableFuture.supplyAsync(() -> atBarrier(barrier, first), runnable -> new Thread(runnable).start());
+        CompletableFuture<B> b = CompletableFuture.supplyAsync(() -> atBarrier(barrier, second), runnable -> new Thread(runnable).start());
+        return new Object[] {a.get(10, TimeUnit.SECONDS), b.get(10, TimeUnit.SECONDS)};
+    }
+
+    private static <T> T atBarrier(CyclicBarrier barrier, Supplier<T> query) {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return query.get();
+    }
+
+    // Ratings of movie 1 made at the same times, in the past and with no time, added one
+    // at a time, and of movie 2 bulk loaded out of order and then added to
+    private static void timeline(IRatings ratings) {
+        ratings.add(201, 1, 1.0f, START);
+        ratings.add(202, 1, 2.0f, START);
+        ratings.add(203, 1, 3.0f, START.minusSeconds(1));
+        ratings.add(204, 1, 4.0f, LocalDateTime.of(1960, 6, 1, 0, 0));
+        ratings.add(205, 1, 5.0f, null);
+        long start = START.toEpochSecond(ZoneOffset.UTC);
+        ratings.addAll(new int[] {201, 202, 203}, new int[] {2, 2, 2}, new float[] {1.0f, 2.0f, 3.0f}, new long[] {start + 5, start + 2, start + 9});
+        ratings.add(204, 2, 4.0f, START.plusSeconds(3));
+    }
+
+    /**
+     * Ratings made at the same time should stay in the order they were added, times
+     * before 1970 should sort first, bulk loads should be sorted before they are queried,
+     * and windows and buckets should include their start but not their end. Mapped
+     * stores should give the same answers
+     */
+    @Test void testTimelinePos() throws IOException {
+        System.out.println("\nStarting testTimelinePos...");
+
+        Stores written = new Stores();
+        timeline(written.getRatings());
+        Path image = Files.createTempFile("timeline", ".image");
+        try {
+            MappedStores.write(written, image, -1);
+            ConcurrentStores concurrent = new ConcurrentStores();
+            timeline(concurrent.getRatings());
+            for (AbstractStores stores : new AbstractStores[] {written, concurrent, new MappedStores(image)}) {
+                IRatings ratings = stores.getRatings();
+                String name = stores.getClass().getSimpleName();
+                assertArrayEquals(new float[] {4.0f, 3.0f, 1.0f, 2.0f}, ratings.getMovieRatingsBetween(1, null, null), name + ": ratings at the same time should keep their order.");
+                assertEquals(LocalDateTime.of(1960, 6, 1, 0, 0), ratings.getTimestamp(204, 1), name + ": times before 1970 should be kept.");
+                assertArrayEquals(new float[] {4.0f}, ratings.getMovieRatingsBetween(1, null, LocalDateTime.of(1970, 1, 1, 0, 0)), name);
+                assertArrayEquals(new float[] {2.0f, 4.0f, 1.0f, 3.0f}, ratings.getMovieRatingsBetween(2, null, null), name + ": bulk loads should be sorted.");
+                assertArrayEquals(new float[] {2.0f, 4.0f}, ratings.getMovieRatingsBetween(2, START.plusSeconds(2), START.plusSeconds(5)), name);
+
+                // A rating at the end of a bucket is in the next one
+                assertArrayEquals(new int[] {0, 2, 1, 0, 1, 0}, ratings.getMovieRatingsOverTime(2, START, Duration.ofSeconds(2), 6), name);
+                assertArrayEquals(new int[] {1, 1}, ratings.getMovieRatingsOverTime(2, START.plusSeconds(2), Duration.ofMillis(500), 2), name + ": buckets under a second should be a second long.");
+                // Buckets too long to add up saturate rather than wrap round
+                assertArrayEquals(new int[] {4, 0, 0}, ratings.getMovieRatingsOverTime(2, START, Duration.ofSeconds(Long.MAX_VALUE / 2), 3), name);
+
+                // The window ends at, and includes, the latest rating in the store
+                assertArrayEquals(new int[] {2}, ratings.getTrendingMovies(Duration.ofSeconds(1), 5), name);
+                assertArrayEquals(new int[] {2, 1}, ratings.getTrendingMovies(Duration.ofSeconds(10), 5), name);
+                assertArrayEquals(new int[] {2}, ratings.getTrendingMovies(Duration.ofDays(365), 1), name + ": trending should be cut to the number asked for.");
+            }
+
+            IRatings ratings = concurrent.getRatings();
+            assertTrue(ratings.remove(202, 1));
+            assertArrayEquals(new float[] {4.0f, 3.0f, 1.0f}, ratings.getMovieRatingsBetween(1, null, null), "Only the removed user's rating should go.");
+            assertTrue(written.getRatings().remove(201, 1));
+            assertArrayEquals(new float[] {4.0f, 3.0f, 2.0f}, written.getRatings().getMovieRatingsBetween(1, null, null), "Only the removed user's rating should go.");
+        }
+        finally {
+            Files.deleteIfExists(image);
+        }
+    }
+
+    /**
+     * Ratings without a time should never be in a window, a moved rating should leave its
+     * old time, and an image whose timeline does not match its ratings should be refused
+     */
+    @Test void testTimelineNeg() throws IOException {
+        System.out.println("\nStarting testTimelineNeg...");
+
+        for (AbstractStores stores : new AbstractStores[] {new Stores(), new ConcurrentStores()}) {
+            IRatings ratings = stores.getRatings();
+            ratings.add(101, 1, 4.0f, null);
+            ratings.add(102, 1, 3.0f, null);
+            assertArrayEquals(new float[0], ratings.getMovieRatingsBetween(1, null, null), "Ratings without a time should be in no window.");
+            assertArrayEquals(new int[0], ratings.getTrendingMovies(Duration.ofDays(1), 5), "Ratings without a time should not trend.");
+            assertArrayEquals(new int[2], ratings.getMovieRatingsOverTime(1, LocalDateTime.of(1900, 1, 1, 0, 0), Duration.ofDays(36500), 2));
+            assertEquals(2, ratings.getNumRatings(1), "Ratings without a time should still count.");
+
+            ratings.set(101, 1, 2.0f, START);
+            ratings.set(101, 1, 1.0f, START.plusDays(1));
+            assertArrayEquals(new float[] {1.0f}, ratings.getMovieRatingsBetween(1, null, null), "A rating should only be at its latest time.");
+            assertTrue(ratings.remove(101, 1));
+            assertNull(ratings.getTimestamp(101, 1));
+            assertArrayEquals(new float[0], ratings.getMovieRatingsBetween(1, START, null));
+            assertArrayEquals(new int[0], ratings.getTrendingMovies(Duration.ofDays(1), 0), "No results should be asked for.");
+            assertArrayEquals(new int[0], ratings.getMovieRatingsOverTime(1, START, Duration.ofDays(1), -1));
+            assertArrayEquals(new int[0], ratings.getMovieRatingsOverTime(1, null, Duration.ofDays(1), 2), "Buckets need a start.");
+        }
+
+        Stores stores = new Stores();
+        loaded(stores);
+        Path image = Files.createTempFile("timeline", ".image");
+        try {
+            MappedStores.write(stores, image, -1);
+            byte[] bytes = Files.readAllBytes(image);
+            // Cut a row from each timeline section, as if the image was written by a broken writer
+            for (int section : new int[] {52, 53}) {
+                ByteBuffer corrupt = ByteBuffer.wrap(bytes.clone()).order(ByteOrder.LITTLE_ENDIAN);
+                int lengthAt = 4 * Integer.BYTES + (2 * section + 1) * Long.BYTES;
+                corrupt.putLong(lengthAt, corrupt.getLong(lengthAt) - (section == 52 ? Long.BYTES : Float.BYTES));
+                Files.write(image, corrupt.array());
+                assertThrows(IOException.class, () -> new MappedStores(image), "A short timeline section " + section + " should be refused.");
+            }
+        }
+        finally {
+            Files.deleteIfExists(image);
+        }
+    }
+
+    /**
+     * Two threads making the first query of a bulk-loaded timeline at once should both
+     * get every rating, in time order
+     */
+    @Test void testConcurrentQueriesPos() throws Exception {
+        System.out.println("\nStarting testConcurrentQueriesPos...");
+
+        int n = 50000;
+        float[] expected = new float[n];
+        for (int second = 0; second < n; second++) {
+            expected[second] = 0.5f + second % 10 / 2.0f;
+        }
+        for (int round = 0; round < 20; round++) {
+            IRatings ratings = unsorted(n);
+            Object[] results = together(() -> ratings.getMovieRatingsBetween(1, null, null), () -> ratings.getMovieRatingsBetween(1, null, null));
+            assertArrayEquals(expected, (float[]) results[0], "The first of two queries at once should get the sorted timeline.");
+            assertArrayEquals(expected, (float[]) results[1], "The second of two queries at once should get the sorted timeline.");
+        }
+    }
+
+    /**
+     * Different first queries of a bulk-loaded timeline at once should neither fail nor
+     * see ratings paired with the wrong times
+     */
+    @Test void testConcurrentQueriesNeg() throws Exception {
+        System.out.println("\nStarting testConcurrentQueriesNeg...");
+
+        int n = 50000;
+        for (int round = 0; round < 20; round++) {
+            IRatings ratings = unsorted(n);
+            Object[] results = together(() -> ratings.getMovieRatingsOverTime(1, START, Duration.ofSeconds(n / 10), 10),
+                                        () -> ratings.getMovieRatingsBetween(1, START.plusSeconds(n / 2), START.plusSeconds(n / 2 + 10)));
+            int[] histogram = (int[]) results[0];
+            for (int count : histogram) {
+                assertEquals(n / 10, count, "Every bucket should hold the ratings made in it.");
+            }
+            assertArrayEquals(new float[] {0.5f, 1.0f, 1.5f, 2.0f, 2.5f, 3.0f, 3.5f, 4.0f, 4.5f, 5.0f}, (float[]) results[1],
+                    "Ratings should stay paired with their times.");
+        }
+    }
+}
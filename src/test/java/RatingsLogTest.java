@@ -0,0 +1,324 @@
+import stores.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RatingsLogTest {
+
+    private static Stores loaded() {
+        Stores stores = new Stores();
+        stores.getRatings().add(101, 1, 4.5f, LocalDateTime.of(2001, 1, 1, 0, 0));
+        stores.getRatings().add(102, 1, 3.0f, LocalDateTime.of(2005, 6, 1, 12, 30));
+        return stores;
+    }
+
+    /**
+     * Changes made through logged stores should be replayed on top of the loaded data,
+     * before and after compaction
+     */
+    @Test void testReplayPos() throws IOException {
+        System.out.println("\nStarting testReplayPos...");
+
+        Path path = Files.createTempFile("ratings", ".wal");
+        Files.delete(path);
+        try {
+            RatingsLog log = RatingsLog.open(path, loaded().getRatings());
+            LoggedStores stores = new LoggedStores(loaded(), log);
+            assertTrue(stores.getRatings().add(103, 1, 5.0f, LocalDateTime.of(2010, 3, 4, 5, 6)), "Rating should be added.");
+            assertTrue(stores.getRatings().set(101, 1, 1.0f, null), "Rating should be set.");
+            assertTrue(stores.getRatings().remove(102, 1), "Rating should be removed.");
+            assertFalse(stores.getRatings().remove(102, 1), "Missing rating should not be removed.");
+            assertEquals(3, log.size(), "Only accepted changes should be logged.");
+            log.close();
+
+            for (int pass = 0; pass < 2; pass++) {
+                Stores replayed = loaded();
+                log = RatingsLog.open(path, replayed.getRatings());
+                assertEquals(3, log.getReplayed(), "Every change should be replayed.");
+                assertEquals(2, replayed.getRatings().size(), "Incorrect number of ratings after replay.");
+                assertEquals(1.0f, replayed.getRatings().getRating(101, 1), "Set rating should be replayed.");
+                assertEquals(-1.0f, replayed.getRatings().getRating(102, 1), "Removed rating should be replayed.");
+                assertEquals(LocalDateTime.of(2010, 3, 4, 5, 6), replayed.getRatings().getTimestamp(103, 1), "Timestamp should be replayed.");
+                log.compact();
+                log.close();
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * A damaged record should end the replay, and later appends should follow the last good one
+     */
+    @Test void testReplayNeg() throws IOException {
+        System.out.println("\nStarting testReplayNeg...");
+
+        Path path = Files.createTempFile("ratings", ".wal");
+        try {
+            Files.write(path, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+            assertThrows(IOException.class, () -> RatingsLog.open(path, new Stores().getRatings()), "A file that is not a log should be rejected.");
+            Files.delete(path);
+
+            RatingsLog log = RatingsLog.open(path, new Stores().getRatings());
+            LoggedStores stores = new LoggedStores(new Stores(), log);
+            stores.getRatings().add(101, 1, 4.5f, null);
+            stores.getRatings().add(102, 1, 3.0f, null);
+            log.close();
+
+            // Corrupt the rating of the second record, as a torn write would
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.seek(8 + 25 + 9);
+                file.writeFloat(2.0f);
+            }
+            Stores replayed = new Stores();
+            log = RatingsLog.open(path, replayed.getRatings());
+            assertEquals(1, log.getReplayed(), "Replay should stop at the damaged record.");
+            assertEquals(-1.0f, replayed.getRatings().getRating(102, 1), "Damaged record should not be replayed.");
+            new LoggedStores(replayed, log).getRatings().add(103, 1, 1.0f, null);
+            log.close();
+
+            replayed = new Stores();
+            log = RatingsLog.open(path, replayed.getRatings());
+            assertEquals(2, log.getReplayed(), "New records should replace the damaged one.");
+            assertEquals(1.0f, replayed.getRatings().getRating(103, 1), "New record should be replayed.");
+            log.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Compaction should keep what replay gives, including a loaded rating that was
+     * removed and then added again, and should happen by itself as the log grows
+     */
+    @Test void testCompactPos() throws IOException, InterruptedException {
+        System.out.println("\nStarting testCompactPos...");
+
+        Path path = Files.createTempFile("ratings", ".wal");
+        Files.delete(path);
+        try {
+            RatingsLog log = RatingsLog.open(path, loaded().getRatings());
+            LoggedStores stores = new LoggedStores(loaded(), log);
+            assertTrue(stores.getRatings().remove(101, 1), "Loaded rating should be removed.");
+            assertTrue(stores.getRatings().add(101, 1, 2.0f, LocalDateTime.of(2020, 2, 2, 2, 2)), "Rating should be added again.");
+            assertTrue(stores.getRatings().set(102, 1, 5.0f, null));
+            assertTrue(stores.getRatings().remove(102, 1));
+            assertTrue(stores.getRatings().add(104, 2, 3.5f, null));
+            log.compact();
+            assertEquals(3, log.size(), "Only the last change to each pair should be kept.");
+            log.close();
+
+            Stores replayed = loaded();
+            log = RatingsLog.open(path, replayed.getRatings());
+            assertEquals(3, log.getReplayed());
+            assertEquals(2.0f, replayed.getRatings().getRating(101, 1), "The new rating should replace the loaded one.");
+            assertEquals(LocalDateTime.of(2020, 2, 2, 2, 2), replayed.getRatings().getTimestamp(101, 1));
+            assertEquals(-1.0f, replayed.getRatings().getRating(102, 1), "A removal should still remove the loaded rating.");
+            assertEquals(3.5f, replayed.getRatings().getRating(104, 2), "A new rating should still be added.");
+
+            // Changing the same few ratings over and over compacts the log once it reaches
+            // its minimum compaction size of 2^16 records
+            stores = new LoggedStores(replayed, log);
+            for (int i = 0; i < 1 << 16; i++) {
+                stores.getRatings().set(200 + i % 10, 3, (i % 10) / 2.0f, null);
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (log.size() >= 1 << 16 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(log.size() < 1 << 16, "The log should have compacted itself: " + log.size());
+            log.close();
+
+            replayed = loaded();
+            log = RatingsLog.open(path, replayed.getRatings());
+            assertEquals(4.5f, replayed.getRatings().getRating(209, 3), "The last change should survive compaction.");
+            assertEquals(2.0f, replayed.getRatings().getRating(101, 1));
+            log.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Compacting an empty log, or one whose changes all cancel out, should leave a log
+     * that replays to the loaded ratings
+     */
+    @Test void testCompactNeg() throws IOException {
+        System.out.println("\nStarting testCompactNeg...");
+
+        Path path = Files.createTempFile("ratings", ".wal");
+        Files.delete(path);
+        try {
+            RatingsLog log = RatingsLog.open(path, loaded().getRatings());
+            log.compact();
+            assertEquals(0, log.size(), "An empty log should stay empty.");
+            LoggedStores stores = new LoggedStores(loaded(), log);
+            assertTrue(stores.getRatings().add(105, 1, 1.0f, null));
+            assertTrue(stores.getRatings().remove(105, 1));
+            log.compact();
+            log.close();
+
+            Stores replayed = loaded();
+            log = RatingsLog.open(path, replayed.getRatings());
+            assertEquals(2, replayed.getRatings().size(), "The loaded ratings should be left as they were.");
+            assertEquals(-1.0f, replayed.getRatings().getRating(105, 1), "A removed rating should not come back.");
+            log.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Ratings added in bulk should be logged, with rows without a time logged as
+     * having none
+     */
+    @Test void testAddAllPos() throws IOException {
+        System.out.println("\nStarting testAddAllPos...");
+
+        Path path = Files.createTempFile("ratings", ".wal");
+        Files.delete(path);
+        try {
+            RatingsLog log = RatingsLog.open(path, loaded().getRatings());
+            LoggedStores stores = new LoggedStores(loaded(), log);
+            long time = LocalDateTime.of(2012, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+            assertEquals(2, stores.getRatings().addAll(new int[] {103, 104}, new int[] {1, 2}, new float[] {2.0f, 3.0f}, new long[] {time, Long.MIN_VALUE}));
+            assertEquals(2, log.size(), "Both rows should be logged.");
+            assertNull(stores.getRatings().getTimestamp(104, 2));
+            log.close();
+
+            Stores replayed = loaded();
+            log = RatingsLog.open(path, replayed.getRatings());
+            assertEquals(4, replayed.getRatings().size());
+            assertEquals(LocalDateTime.of(2012, 1, 1, 0, 0), replayed.getRatings().getTimestamp(103, 1));
+            assertEquals(3.0f, replayed.getRatings().getRating(104, 2));
+            assertNull(replayed.getRatings().getTimestamp(104, 2), "A row without a time should be replayed without one.");
+            log.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Rows the ratings skip, and batches of mismatched arrays, should not be logged
+     */
+    @Test void testAddAllNeg() throws IOException {
+        System.out.println("\nStarting testAddAllNeg...");
+
+        Path path = Files.createTempFile("ratings", ".wal");
+        Files.delete(path);
+        try {
+            RatingsLog log = RatingsLog.open(path, loaded().getRatings());
+            LoggedStores stores = new LoggedStores(loaded(), log);
+            assertEquals(1, stores.getRatings().addAll(new int[] {101, 103, 103}, new int[] {1, 1, 1},
+                new float[] {1.0f, 2.0f, 3.0f}, new long[] {Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE}));
+            assertEquals(1, log.size(), "Only the added row should be logged.");
+            assertEquals(0, stores.getRatings().addAll(new int[] {105}, new int[0], new float[0], new long[0]));
+            assertEquals(1, log.size(), "A mismatched batch should log nothing.");
+            log.close();
+
+            Stores replayed = loaded();
+            log = RatingsLog.open(path, replayed.getRatings());
+            assertEquals(4.5f, replayed.getRatings().getRating(101, 1), "A skipped row should not replace the loaded rating.");
+            assertEquals(2.0f, replayed.getRatings().getRating(103, 1), "The first of repeated rows should be kept.");
+            log.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Changes appended while the log compacts itself in the background should all
+     * survive, and the compaction should leave nothing behind
+     */
+    @Test void testBackgroundCompactPos() throws Exception {
+        System.out.println("\nStarting testBackgroundCompactPos...");
+
+        Path path = Files.createTempFile("ratings", ".wal");
+        Files.delete(path);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            RatingsLog log = RatingsLog.open(path, loaded().getRatings());
+            LoggedStores stores = new LoggedStores(loaded(), log);
+            AtomicBoolean compacting = new AtomicBoolean(true);
+            // Compacts over and over, so many of the appends below land mid-compaction
+            Thread compactor = new Thread(() -> {
+                try {
+                    while (compacting.get()) {
+                        log.compact();
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            compactor.start();
+            int n = 3 << 16;
+            for (int i = 0; i < n; i++) {
+                stores.getRatings().set(300 + i % 1000, 4, 0.5f + (i / 1000) % 10 / 2.0f, null);
+            }
+            compacting.set(false);
+            compactor.join();
+            assertTrue(log.size() < n, "The log should have been compacted: " + log.size());
+            log.close();
+            assertFalse(Files.exists(temp), "Compaction should leave no temporary file.");
+
+            Stores replayed = loaded();
+            RatingsLog reopened = RatingsLog.open(path, replayed.getRatings());
+            for (int i = n - 1000; i < n; i++) {
+                assertEquals(0.5f + (i / 1000) % 10 / 2.0f, replayed.getRatings().getRating(300 + i % 1000, 4), "The last change to each rating should survive.");
+            }
+            assertEquals(4.5f, replayed.getRatings().getRating(101, 1), "Loaded ratings should be left alone.");
+            reopened.close();
+        } finally {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * A compaction that cannot write its new log, or of a closed log, should fail but
+     * leave the log as it was and nothing behind
+     */
+    @Test void testBackgroundCompactNeg() throws IOException {
+        System.out.println("\nStarting testBackgroundCompactNeg...");
+
+        Path path = Files.createTempFile("ratings", ".wal");
+        Files.delete(path);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            RatingsLog log = RatingsLog.open(path, loaded().getRatings());
+            LoggedStores stores = new LoggedStores(loaded(), log);
+            assertTrue(stores.getRatings().add(105, 1, 1.0f, null));
+            assertTrue(stores.getRatings().set(105, 1, 2.0f, null));
+
+            // The new log cannot be made where a directory is in the way
+            Files.createDirectory(temp);
+            Files.createFile(temp.resolve("in the way"));
+            assertThrows(IOException.class, log::compact, "A compaction that cannot write should fail.");
+            assertEquals(2, log.size(), "A failed compaction should keep the log.");
+            Files.delete(temp.resolve("in the way"));
+            Files.delete(temp);
+            assertTrue(stores.getRatings().remove(102, 1), "The log should still take changes.");
+            log.compact();
+            assertEquals(2, log.size());
+            log.close();
+            assertThrows(IOException.class, log::compact, "A closed log should not compact.");
+            assertFalse(Files.exists(temp), "A failed compaction should leave no temporary file.");
+
+            Stores replayed = loaded();
+            RatingsLog reopened = RatingsLog.open(path, replayed.getRatings());
+            assertEquals(2.0f, replayed.getRatings().getRating(105, 1));
+            assertEquals(-1.0f, replayed.getRatings().getRating(102, 1));
+            reopened.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+import stores.Stores;
+import ui.MovieReel;
+import utils.ImageLoader;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReelTest {
+
+    /***
+     * A reel whose items' pictures are at given URLs, each a single colour.
+     */
+    private static class ColourReel extends MovieReel {
+        private final HashMap<Integer, String> urls;
+
+        final AtomicInteger clicked = new AtomicInteger();
+
+        ColourReel(HashMap<Integer, String> urls) {
+            super(new JPanel(), new Stores());
+            this.urls = urls;
+            setSize(600, 260);
+        }
+
+        void show(int[] items, String[] labels) throws Exception {
+            SwingUtilities.invokeAndWait(() -> {
+                displayItems(items, labels);
+                doLayout();
+                getViewport().doLayout();
+            });
+        }
+
+        void scrollTo(int x) throws Exception {
+            SwingUtilities.invokeAndWait(() -> getViewport().setViewPosition(new Point(x, 0)));
+        }
+
+        @Override
+        protected void itemClickAction(int itemId) {
+            clicked.set(itemId);
+        }
+
+        @Override
+        protected String getImageURL(int itemId) {
+            return urls.get(itemId);
+        }
+
+        @Override
+        protected BufferedImage getPlaceholder() {
+            return solid(Color.GRAY);
+        }
+    }
+
+    private static BufferedImage solid(Color colour) {
+        BufferedImage image = new BufferedImage(20, 30, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        g.setColor(colour);
+        g.fillRect(0, 0, 20, 30);
+        g.dispose();
+        return image;
+    }
+
+    private static Path png(Color colour) throws IOException {
+        Path path = Files.createTempFile("poster", ".png");
+        path.toFile().deleteOnExit();
+        ImageIO.write(solid(colour), "png", path.toFile());
+        return path;
+    }
+
+    // The labels the reel is showing, in order of the items they show
+    private static List<JLabel> shown(ColourReel reel) throws Exception {
+        List<JLabel> labels = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> {
+            for (Component component : ((JPanel) reel.getViewport().getView()).getComponents()) {
+                if (component instanceof JLabel && component.isVisible() && ((JLabel) component).getIcon() != null) {
+                    labels.add((JLabel) component);
+                }
+            }
+            labels.sort((a, b) -> Integer.compare(a.getX(), b.getX()));
+        });
+        return labels;
+    }
+
+    // The items and labels for a reel of the given length
+    private static int[] items(int count) {
+        int[] items = new int[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = 1000 + i;
+        }
+        return items;
+    }
+
+    private static String[] names(int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = "Item " + i;
+        }
+        return names;
+    }
+
+    // Every label the reel has made, shown or kept to reuse
+    private static int made(ColourReel reel) throws Exception {
+        int[] made = new int[1];
+        SwingUtilities.invokeAndWait(() -> {
+            for (Component component : ((JPanel) reel.getViewport().getView()).getComponents()) {
+                if (component instanceof JLabel) {
+                    made[0]++;
+                }
+            }
+        });
+        return made[0];
+    }
+
+    // The colour in the middle of a label's picture
+    private static Color colour(JLabel label) {
+        Image image = ((ImageIcon) label.getIcon()).getImage();
+        BufferedImage copy = new BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_RGB);
+        Graphics g = copy.getGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return new Color(copy.getRGB(copy.getWidth() / 2, copy.getHeight() / 2));
+    }
+
+    // Waits for the first label's picture to become the given colour
+    private static void awaitColour(ColourReel reel, Color expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            List<JLabel> labels = shown(reel);
+            if (!labels.isEmpty() && colour(labels.get(0)).equals(expected)) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("The picture never became " + expected);
+    }
+
+    /**
+     * Each item should get its own picture, and a picture that arrives after the reel
+     * was given new items should not be put on the label now showing another item
+     */
+    @Test void testLatePosterPos() throws Exception {
+        System.out.println("\nStarting testLatePosterPos...");
+
+        ImageLoader.setCacheDirectory(null);
+        Path red = png(Color.RED);
+        Path blue = png(Color.BLUE);
+        byte[] green = Files.readAllBytes(png(Color.GREEN));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch served = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+                exchange.sendResponseHeaders(200, green.length);
+                exchange.getResponseBody().write(green);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+                served.countDown();
+            }
+        });
+        server.start();
+        try {
+            HashMap<Integer, String> urls = new HashMap<>();
+            urls.put(1, red.toUri().toString());
+            urls.put(2, blue.toUri().toString());
+            urls.put(3, "http://127.0.0.1:" + server.getAddress().getPort() + "/slow-" + System.nanoTime() + ".png");
+            ColourReel reel = new ColourReel(urls);
+
+            reel.show(new int[] {1, 2}, new String[] {"Red", "Blue"});
+            awaitColour(reel, Color.RED);
+            List<JLabel> labels = shown(reel);
+            assertEquals(2, labels.size(), "Every item in view should get a label.");
+            assertEquals("Red", labels.get(0).getText());
+            assertEquals("Blue", labels.get(1).getText());
+
+            // The slow picture is still loading when its label is given to a new item
+            reel.show(new int[] {3}, new String[] {"Green"});
+            reel.show(new int[] {2}, new String[] {"Blue"});
+            awaitColour(reel, Color.BLUE);
+            release.countDown();
+            assertTrue(served.await(5, TimeUnit.SECONDS));
+            Thread.sleep(300);
+            SwingUtilities.invokeAndWait(() -> {});
+            labels = shown(reel);
+            assertEquals(1, labels.size());
+            assertEquals("Blue", labels.get(0).getText());
+            assertEquals(Color.BLUE, colour(labels.get(0)), "A picture for items no longer shown should be dropped.");
+        }
+        finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Items without a picture should keep the placeholder, and no items should show a
+     * message rather than labels
+     */
+    @Test void testLatePosterNeg() throws Exception {
+        System.out.println("\nStarting testLatePosterNeg...");
+
+        HashMap<Integer, String> urls = new HashMap<>();
+        Path unreadable = Files.createTempFile("poster", ".png");
+        unreadable.toFile().deleteOnExit();
+        urls.put(1, unreadable.toUri().toString());
+        ColourReel reel = new ColourReel(urls);
+        reel.show(new int[] {1, 2}, new String[] {"Unreadable", "None"});
+        Thread.sleep(200);
+        SwingUtilities.invokeAndWait(() -> {});
+        List<JLabel> labels = shown(reel);
+        assertEquals(2, labels.size());
+        for (JLabel label : labels) {
+            assertEquals(Color.GRAY, colour(label), "An item without a readable picture should keep the placeholder.");
+        }
+
+        ColourReel empty = new ColourReel(urls);
+        empty.show(new int[0], new String[0]);
+        assertTrue(shown(empty).isEmpty(), "No items should get no labels.");
+        boolean message = false;
+        for (Component component : ((JPanel) empty.getViewport().getView()).getComponents()) {
+            message |= component instanceof JLabel && "No reel items found!".equals(((JLabel) component).getText());
+        }
+        assertTrue(message, "An empty reel should say so.");
+    }
+
+    /**
+     * A long reel should only label the items in or near the view, reusing the labels as
+     * it is scrolled, and a click should go to the item a label is now showing
+     */
+    @Test void testViewPos() throws Exception {
+        System.out.println("\nStarting testViewPos...");
+
+        ColourReel reel = new ColourReel(new HashMap<>());
+        reel.show(items(1000), names(1000));
+        List<JLabel> labels = shown(reel);
+        assertTrue(labels.size() > 4 && labels.size() < 20, "Only the items in or near the view should get a label, not " + labels.size());
+        assertEquals("Item 0", labels.get(0).getText());
+        int width = labels.get(0).getWidth();
+        int preferred = reel.getViewport().getView().getPreferredSize().width;
+        assertTrue(preferred >= 1000 * width, "The reel should be as wide as all its items.");
+
+        for (int x = 0; x < preferred; x += 97) {
+            reel.scrollTo(x);
+        }
+        reel.scrollTo(preferred - reel.getViewport().getWidth());
+        labels = shown(reel);
+        assertEquals("Item 999", labels.get(labels.size() - 1).getText(), "Scrolling to the end should label the last item.");
+        assertTrue(made(reel) < 20, "Labels scrolled out of view should be reused, not " + made(reel) + " made.");
+        for (JLabel label : labels) {
+            Rectangle bounds = label.getBounds();
+            int index = Integer.parseInt(label.getText().substring("Item ".length()));
+            assertEquals(index * (width + 4), bounds.x, "A reused label should be put at its new item.");
+        }
+
+        JLabel last = labels.get(labels.size() - 1);
+        SwingUtilities.invokeAndWait(() -> last.dispatchEvent(new MouseEvent(last, MouseEvent.MOUSE_CLICKED, 0, 0, 1, 1, 1, false)));
+        SwingUtilities.invokeAndWait(() -> { });
+        assertEquals(1999, reel.clicked.get(), "A click should go to the item the label is showing.");
+    }
+
+    /**
+     * A reel shorter than its view should label every item and no more, and showing fewer
+     * items should hide the labels left over
+     */
+    @Test void testViewNeg() throws Exception {
+        System.out.println("\nStarting testViewNeg...");
+
+        ColourReel reel = new ColourReel(new HashMap<>());
+        reel.show(items(12), names(12));
+        int before = shown(reel).size();
+        assertTrue(before > 2);
+        reel.show(items(2), names(2));
+        List<JLabel> labels = shown(reel);
+        assertEquals(2, labels.size(), "Only the items shown should have a label.");
+        assertEquals("Item 0", labels.get(0).getText());
+        assertEquals("Item 1", labels.get(1).getText());
+        assertTrue(made(reel) <= before + 1, "Labels from the items before should be kept to reuse.");
+
+        SwingUtilities.invokeAndWait(() -> reel.getHorizontalScrollBar().setValue(10000));
+        assertEquals(2, shown(reel).size(), "Scrolling as far as it goes should not label items that are not there.");
+        for (Component component : ((JPanel) reel.getViewport().getView()).getComponents()) {
+            if (component instanceof JLabel && !component.isVisible()) {
+                JLabel spare = (JLabel) component;
+                SwingUtilities.invokeAndWait(() -> spare.dispatchEvent(new MouseEvent(spare, MouseEvent.MOUSE_CLICKED, 0, 0, 1, 1, 1, false)));
+            }
+        }
+        SwingUtilities.invokeAndWait(() -> { });
+        assertEquals(0, reel.clicked.get(), "A label not showing an item should not be clickable.");
+    }
+}
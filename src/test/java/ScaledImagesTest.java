@@ -0,0 +1,156 @@
+import utils.ScaledImages;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScaledImagesTest {
+
+    private static BufferedImage image(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Renditions should be the requested size, made once per size, and handed over on
+     * the event dispatch thread
+     */
+    @Test void testScaledImagesPos() throws Exception {
+        System.out.println("\nStarting testScaledImagesPos...");
+
+        BufferedImage poster = image(500, 750, Color.RED);
+        BufferedImage scaled = ScaledImages.scale(poster, 60, 90);
+        assertEquals(60, scaled.getWidth(), "Incorrect width.");
+        assertEquals(90, scaled.getHeight(), "Incorrect height.");
+        assertEquals(Color.RED.getRGB(), scaled.getRGB(30, 45), "Scaling should keep the colours.");
+        assertEquals(1000, ScaledImages.scale(poster, 1000, 20).getWidth(), "Images should scale up as well as down.");
+
+        ScaledImages renditions = new ScaledImages();
+        assertNull(renditions.get(poster, 60, 90));
+        BufferedImage first = renditions.getNow(poster, 60, 90);
+        assertSame(first, renditions.getNow(poster, 60, 90), "A rendition should only be made once.");
+        assertSame(first, renditions.request(poster, 60, 90).get(10, TimeUnit.SECONDS));
+        assertEquals(30, renditions.request(poster, 30, 45).get(10, TimeUnit.SECONDS).getWidth(), "Renditions should be made in the background.");
+
+        CountDownLatch loaded = new CountDownLatch(1);
+        AtomicBoolean onEDT = new AtomicBoolean();
+        renditions.load(poster, 20, 30, image -> {
+            onEDT.set(SwingUtilities.isEventDispatchThread());
+            loaded.countDown();
+        });
+        assertTrue(loaded.await(10, TimeUnit.SECONDS), "The rendition should be handed over once made.");
+        assertTrue(onEDT.get(), "Renditions should be handed over on the event dispatch thread.");
+        assertNotNull(renditions.get(poster, 20, 30));
+    }
+
+    /**
+     * Sizes beyond the limit should be dropped, and sizes below 1 should still scale
+     */
+    @Test void testScaledImagesNeg() {
+        System.out.println("\nStarting testScaledImagesNeg...");
+
+        BufferedImage poster = image(100, 100, Color.BLUE);
+        ScaledImages renditions = new ScaledImages();
+        for (int size = 10; size <= 50; size += 10) {
+            renditions.getNow(poster, size, size);
+        }
+        assertNull(renditions.get(poster, 10, 10), "The least recently used size should be dropped.");
+        assertNotNull(renditions.get(poster, 50, 50));
+        assertNull(renditions.get(image(100, 100, Color.BLUE), 50, 50), "Renditions should be kept by image, not by its contents.");
+
+        BufferedImage empty = ScaledImages.scale(poster, 0, -5);
+        assertEquals(1, empty.getWidth(), "Images should not scale below 1 pixel.");
+        assertEquals(1, empty.getHeight(), "Images should not scale below 1 pixel.");
+        BufferedImage transparent = new BufferedImage(40, 40, BufferedImage.TYPE_INT_ARGB);
+        assertEquals(Transparency.TRANSLUCENT, ScaledImages.scale(transparent, 10, 10).getTransparency(), "Transparency should be kept.");
+    }
+
+    /**
+     * Using a size should keep it over older ones, requests for a rendition being made
+     * should share it, very wide or tall images should scale to exactly the size asked
+     * for, and renditions should go once their source image is no longer used
+     */
+    @Test void testRenditionsPos() throws Exception {
+        System.out.println("\nStarting testRenditionsPos...");
+
+        BufferedImage poster = image(100, 100, Color.GREEN);
+        ScaledImages renditions = new ScaledImages();
+        for (int size = 10; size <= 40; size += 10) {
+            renditions.getNow(poster, size, size);
+        }
+        assertNotNull(renditions.get(poster, 10, 10));
+        renditions.getNow(poster, 50, 50);
+        assertNotNull(renditions.get(poster, 10, 10), "A size just used should be kept.");
+        assertNull(renditions.get(poster, 20, 20), "The size used longest ago should be dropped.");
+        assertNotSame(renditions.getNow(poster, 10, 20), renditions.getNow(poster, 20, 10), "Width and height should not be mixed up.");
+
+        // Keeps the scaling thread busy, so the next requests are still waiting when repeated
+        CompletableFuture<BufferedImage> busy = renditions.request(image(4000, 4000, Color.GREEN), 7, 7);
+        CompletableFuture<BufferedImage> first = renditions.request(poster, 33, 33);
+        assertSame(first, renditions.request(poster, 33, 33), "Requests for a rendition being made should share it.");
+        assertSame(first.get(10, TimeUnit.SECONDS), renditions.get(poster, 33, 33));
+        assertEquals(7, busy.get(10, TimeUnit.SECONDS).getWidth());
+
+        BufferedImage wide = ScaledImages.scale(image(3000, 7, Color.GREEN), 5, 5);
+        assertEquals(5, wide.getWidth());
+        assertEquals(5, wide.getHeight());
+        BufferedImage tall = ScaledImages.scale(image(1, 1000, Color.GREEN), 500, 1);
+        assertEquals(500, tall.getWidth());
+        assertEquals(1, tall.getHeight());
+        assertEquals(Color.GREEN.getRGB(), tall.getRGB(250, 0));
+
+        BufferedImage source = image(50, 50, Color.GREEN);
+        WeakReference<BufferedImage> rendition = new WeakReference<>(renditions.getNow(source, 10, 10));
+        source = null;
+        for (int i = 0; i < 50 && rendition.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+            // Stale entries are only cleared when the map is used
+            renditions.get(poster, 10, 10);
+        }
+        assertNull(rendition.get(), "Renditions should go once their source is no longer used.");
+    }
+
+    /**
+     * A rendition that cannot be made should fail its request rather than leave it
+     * waiting, and not be handed over or kept
+     */
+    @Test void testRenditionsNeg() throws Exception {
+        System.out.println("\nStarting testRenditionsNeg...");
+
+        ScaledImages renditions = new ScaledImages();
+        CompletableFuture<BufferedImage> failed = renditions.request(null, 10, 10);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof NullPointerException, e.getCause().toString());
+        Thread.sleep(50);
+        assertNotSame(failed, renditions.request(null, 10, 10), "A failed rendition should be tried again.");
+
+        AtomicBoolean handed = new AtomicBoolean();
+        renditions.load(null, 10, 10, image -> handed.set(true));
+        Thread.sleep(200);
+        SwingUtilities.invokeAndWait(() -> {});
+        assertFalse(handed.get(), "Nothing should be handed over for a rendition that failed.");
+        assertNull(renditions.get(null, 10, 10));
+
+        BufferedImage poster = image(10, 10, Color.BLUE);
+        assertNull(renditions.get(poster, 10, 10), "Nothing should be made without being asked for.");
+        assertSame(renditions.getNow(poster, 10, 10), renditions.getNow(poster, 10, 10));
+        assertEquals(10, renditions.getNow(poster, 10, 10).getWidth(), "Scaling to the same size should still give that size.");
+    }
+}
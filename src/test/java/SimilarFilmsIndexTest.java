@@ -0,0 +1,169 @@
+import interfaces.AbstractStores;
+import interfaces.IKeywords;
+import stores.*;
+import utils.SimilarFilmsIndex;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimilarFilmsIndexTest {
+
+    private static final Genre ANIMATION = new Genre(16, "Animation");
+    private static final Genre DRAMA = new Genre(18, "Drama");
+    private static final CastCredit WOODY = new CastCredit(14, "Woody (voice)", "52fe4284c3a36847f8024f95", 31, "Tom Hanks", 0, null);
+    private static final CrewCredit LASSETER = new CrewCredit("52fe4284c3a36847f8024f49", "Directing", 7879, "Director", "John Lasseter", null);
+
+    private static void addFilm(Stores stores, int id, Genre genre, int... keywordIDs) {
+        stores.getMovies().add(id, "Film " + id, "Film " + id, "", "", "Released", new Genre[] {genre}, null, 0, 0, new String[0], "en", 90, "", false, false, "");
+        Keyword[] keywords = new Keyword[keywordIDs.length];
+        for (int i = 0; i < keywordIDs.length; i++) {
+            keywords[i] = new Keyword(keywordIDs[i], "keyword " + keywordIDs[i]);
+        }
+        stores.getKeywords().add(id, keywords);
+    }
+
+    /**
+     * Films sharing the most keywords, genres, cast and directors should come first, and
+     * changes through the stores should be indexed as they are made
+     */
+    @Test void testSimilarFilmsPos() {
+        System.out.println("\nStarting testSimilarFilmsPos...");
+
+        Stores loaded = new Stores();
+        addFilm(loaded, 1, ANIMATION, 1, 2, 3, 4);
+        addFilm(loaded, 2, ANIMATION, 1, 2, 3, 5);
+        addFilm(loaded, 3, DRAMA, 9);
+        loaded.getCredits().add(new CastCredit[] {WOODY}, new CrewCredit[] {LASSETER}, 1);
+        loaded.getCredits().add(new CastCredit[0], new CrewCredit[] {LASSETER}, 2);
+
+        SimilarFilmsStores stores = new SimilarFilmsStores(loaded);
+        assertEquals(3, stores.getIndex().size(), "Every film with features should be indexed.");
+        assertArrayEquals(new int[] {2}, stores.similarFilms(1, 5), "Only the film with features in common should be found.");
+        assertEquals(5.0 / 8, stores.getIndex().getSimilarity(1, 2), 1e-9, "Similarity should be shared features over all features.");
+
+        assertTrue(stores.getKeywords().add(4, new Keyword[] {new Keyword(1, "keyword 1"), new Keyword(2, "keyword 2"), new Keyword(3, "keyword 3"), new Keyword(4, "keyword 4")}));
+        assertTrue(stores.getCredits().add(new CastCredit[] {WOODY}, new CrewCredit[] {LASSETER}, 4));
+        assertArrayEquals(new int[] {4, 2}, stores.similarFilms(1, 5), "Added keywords and credits should be indexed.");
+        assertEquals(stores, stores.find(SimilarFilmsStores.class), "The stores should find themselves.");
+
+        // Enough changes that they are merged into the index, not only kept pending
+        for (int id = 100; id < 200; id++) {
+            stores.getKeywords().add(id, new Keyword(9, "keyword 9"));
+        }
+        assertEquals(104, stores.getIndex().size());
+        assertEquals(5, stores.similarFilms(3, 5).length, "Films sharing a keyword should be found after a merge.");
+        assertEquals(100, stores.similarFilms(3, 5)[0], "Equally similar films should come lowest ID first.");
+        assertArrayEquals(new int[] {4, 2}, stores.similarFilms(1, 5), "Merged films should keep their buckets.");
+    }
+
+    /**
+     * Unknown films, films without features and removed films should never be found
+     */
+    @Test void testSimilarFilmsNeg() {
+        System.out.println("\nStarting testSimilarFilmsNeg...");
+
+        ConcurrentStores loaded = new ConcurrentStores();
+        assertTrue(loaded.getKeywords().add(1, new Keyword[] {new Keyword(1, "keyword 1"), new Keyword(2, "keyword 2")}));
+        assertTrue(loaded.getKeywords().add(2, new Keyword[] {new Keyword(1, "keyword 1")}));
+        assertTrue(loaded.getKeywords().add(3, new Keyword[0]));
+
+        SimilarFilmsStores stores = new SimilarFilmsStores(loaded);
+        assertEquals(2, stores.getIndex().size(), "A film without features should not be indexed.");
+        assertArrayEquals(new int[0], stores.similarFilms(3, 5), "A film without features should have no similar films.");
+        assertArrayEquals(new int[0], stores.similarFilms(42, 5), "An unknown film should have no similar films.");
+        assertArrayEquals(new int[0], stores.similarFilms(1, 0), "Asking for no films should find none.");
+        assertEquals(-1, stores.getIndex().getSimilarity(1, 42), "Similarity to an unknown film should be -1.");
+        assertFalse(stores.getIndex().remove(42), "An unknown film cannot be removed.");
+        assertNull(stores.find(TrendingStores.class), "Stores not wrapped should not be found.");
+
+        assertEquals(0.5, stores.getIndex().getSimilarity(1, 2), 1e-9);
+        assertTrue(stores.getKeywords().add(2, new Keyword[] {new Keyword(2, "keyword 2")}));
+        assertEquals(1.0, stores.getIndex().getSimilarity(1, 2), 1e-9, "Keywords added to a film should be indexed.");
+
+        assertTrue(stores.getKeywords().remove(2));
+        assertArrayEquals(new int[0], stores.similarFilms(1, 5), "A removed film should not be found.");
+        assertArrayEquals(new int[0], stores.similarFilms(2, 5), "A removed film should have no similar films.");
+        assertEquals(1, stores.getIndex().size());
+    }
+
+    /**
+     * An update that read a film before a later update should not be applied over it,
+     * however the two threads interleave
+     */
+    @Test void testUpdatePos() throws Exception {
+        System.out.println("\nStarting testUpdatePos...");
+
+        ConcurrentStores loaded = new ConcurrentStores();
+        loaded.getKeywords().add(1, new Keyword[] {new Keyword(1, "keyword 1")});
+        loaded.getKeywords().add(2, new Keyword[] {new Keyword(1, "keyword 1")});
+
+        // The next read of a film's keywords waits, once the test arms it, until released
+        CountDownLatch armed = new CountDownLatch(1);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IKeywords gated = (IKeywords) Proxy.newProxyInstance(IKeywords.class.getClassLoader(), new Class<?>[] {IKeywords.class}, (proxy, method, args) -> {
+            Object result;
+            try {
+                result = method.invoke(loaded.getKeywords(), args);
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (method.getName().equals("getKeywordsForFilm") && armed.getCount() == 0 && reading.getCount() > 0) {
+                reading.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return result;
+        });
+        AbstractStores stores = new AbstractStores() {{
+            this.credits = loaded.getCredits();
+            this.keywords = gated;
+            this.movies = loaded.getMovies();
+            this.ratings = loaded.getRatings();
+        }};
+        SimilarFilmsIndex index = new SimilarFilmsIndex(stores);
+        assertEquals(1.0, index.getSimilarity(1, 2), 1e-9);
+
+        // The first update reads the old keywords, then a change and a second update come in
+        armed.countDown();
+        Thread first = new Thread(() -> index.update(2));
+        first.start();
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        loaded.getKeywords().add(2, new Keyword(2, "keyword 2"));
+        Thread second = new Thread(() -> index.update(2));
+        second.start();
+        second.join(200);
+        release.countDown();
+        first.join();
+        second.join();
+        assertEquals(0.5, index.getSimilarity(1, 2), 1e-9, "The later keywords should be indexed.");
+    }
+
+    /**
+     * Updating a film that has lost its features, or that was never in the stores,
+     * should leave it out of the index
+     */
+    @Test void testUpdateNeg() {
+        System.out.println("\nStarting testUpdateNeg...");
+
+        Stores loaded = new Stores();
+        addFilm(loaded, 1, ANIMATION, 1);
+        SimilarFilmsIndex index = new SimilarFilmsIndex(loaded);
+        index.update(42);
+        assertEquals(1, index.size(), "A film with no features should not be indexed.");
+        assertArrayEquals(new int[0], index.similarFilms(42, 5));
+
+        loaded.getKeywords().remove(1);
+        loaded.getMovies().remove(1);
+        index.update(1);
+        assertEquals(0, index.size(), "A film that lost its features should be taken out.");
+        assertFalse(index.remove(1), "A film taken out should not be removed again.");
+        index.update(1);
+        assertEquals(0, index.size(), "Updating twice should change nothing.");
+    }
+}
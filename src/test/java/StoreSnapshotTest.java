@@ -0,0 +1,199 @@
+import stores.*;
+import utils.StoreSnapshot;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class StoreSnapshotTest {
+
+    private Stores stores = new Stores();
+
+    @BeforeAll
+    void setUp() {
+        Genre[] genres = new Genre[] {new Genre(1, "Horror"), new Genre(2, "Comedy")};
+        String[] languages = new String[] {"en", "fr"};
+
+        stores.getMovies().add(1, "Toy Story", "Toy Story", "overview", "tagline", "Released",
+            genres, LocalDate.of(1995, 10, 30), 30000000, 373554033, languages, "en",
+            81.0, "http://toystory.com", false, false, "/poster.jpg");
+        stores.getMovies().add(2, "Jumanji", "Jumanji", null, null, "Released",
+            null, null, 0, 0, null, "en", 104.0, null, true, false, null);
+        stores.getMovies().setPopularity(1, 21.9f);
+        stores.getMovies().setVote(1, 7.7f, 5415);
+        stores.getMovies().addToCollection(1, 10194, "Toy Story Collection", "/c.jpg", "/b.jpg");
+
+        stores.getCredits().add(
+            new CastCredit[] {new CastCredit(14, "Woody (voice)", "52fe4284c3a36847f8024f95", 31, "Tom Hanks", 0, "/tom.jpg")},
+            new CrewCredit[] {new CrewCredit("52fe4284c3a36847f8024f49", "Directing", 7879, "Director", "John Lasseter", null)},
+            1);
+
+        stores.getKeywords().add(1, new Keyword[] {new Keyword(931, "jealousy"), new Keyword(4290, "toy")});
+
+        stores.getRatings().add(101, 1, 4.5f, LocalDateTime.of(2001, 1, 1, 0, 0));
+        stores.getRatings().add(102, 1, 3.0f, LocalDateTime.of(2005, 6, 1, 12, 30));
+        stores.getRatings().add(101, 2, 2.5f, LocalDateTime.of(2009, 1, 1, 0, 0));
+    }
+
+    /**
+     * A snapshot read back into empty stores should reproduce the original data
+     */
+    @Test void testRoundTripPos() throws IOException {
+        System.out.println("\nStarting testRoundTripPos...");
+
+        Path path = Files.createTempFile("stores", ".snapshot");
+        try {
+            StoreSnapshot.write(stores, path);
+            Stores copy = new Stores();
+            StoreSnapshot.read(path, copy);
+
+            assertEquals(2, copy.getMovies().size(), "Incorrect number of movies.");
+            assertEquals("Toy Story", copy.getMovies().getTitle(1), "Incorrect title.");
+            assertNull(copy.getMovies().getOverview(2), "Null overview should be preserved.");
+            assertEquals(LocalDate.of(1995, 10, 30), copy.getMovies().getRelease(1), "Incorrect release date.");
+            assertEquals(21.9f, (float) copy.getMovies().getPopularity(1), "Incorrect popularity.");
+            assertTrue(copy.getMovies().getAdult(2), "Adult flag should be preserved.");
+            assertEquals(10194, copy.getMovies().getCollectionID(1), "Incorrect collection.");
+
+            assertEquals(1, copy.getCredits().size(), "Incorrect number of credits.");
+            assertEquals("Tom Hanks", copy.getCredits().getFilmCast(1)[0].getName(), "Incorrect cast member.");
+            assertEquals("Director", copy.getCredits().getFilmCrew(1)[0].getJob(), "Incorrect crew job.");
+
+            assertEquals(2, copy.getKeywords().getKeywordsForFilm(1).length, "Incorrect number of keywords.");
+
+            assertEquals(3, copy.getRatings().size(), "Incorrect number of ratings.");
+            assertEquals(3.0f, copy.getRatings().getRating(102, 1), "Incorrect rating.");
+            assertEquals(LocalDateTime.of(2005, 6, 1, 12, 30), copy.getRatings().getTimestamp(102, 1), "Incorrect timestamp.");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * A snapshot with a corrupted byte should be rejected, leaving the stores untouched
+     */
+    @Test void testRoundTripNeg() throws IOException {
+        System.out.println("\nStarting testRoundTripNeg...");
+
+        Path path = Files.createTempFile("stores", ".snapshot");
+        try {
+            StoreSnapshot.write(stores, path);
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.seek(file.length() / 2);
+                int b = file.read();
+                file.seek(file.length() / 2);
+                file.write(b ^ 0xFF);
+            }
+            Stores copy = new Stores();
+            assertThrows(IOException.class, () -> StoreSnapshot.read(path, copy), "Corrupt snapshot should not be read.");
+            assertEquals(0, copy.getMovies().size(), "Stores should be empty after a failed read.");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * A snapshot of empty stores, whose columns all have no values, should read back
+     * as empty stores
+     */
+    @Test void testReadBoundsPos() throws IOException {
+        System.out.println("\nStarting testReadBoundsPos...");
+
+        Path path = Files.createTempFile("stores", ".snapshot");
+        try {
+            StoreSnapshot.write(new Stores(), path);
+            Stores copy = new Stores();
+            StoreSnapshot.read(path, copy);
+            assertEquals(0, copy.getMovies().size(), "No movies should be read.");
+            assertEquals(0, copy.getRatings().size(), "No ratings should be read.");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * A length longer than the rest of the file, or a cut off file, should be rejected
+     * with an IOException rather than allocating for it
+     */
+    @Test void testReadBoundsNeg() throws IOException {
+        System.out.println("\nStarting testReadBoundsNeg...");
+
+        Path path = Files.createTempFile("stores", ".snapshot");
+        try {
+            StoreSnapshot.write(stores, path);
+            byte[] original = Files.readAllBytes(path);
+
+            // The string table's offsets column starts after the 12 byte header: its type, then its length
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.seek(13);
+                file.writeInt(Integer.MAX_VALUE);
+            }
+            Stores copy = new Stores();
+            IOException e = assertThrows(IOException.class, () -> StoreSnapshot.read(path, copy), "A huge length should not be read.");
+            assertTrue(e.getMessage().contains("longer than the rest of the file"), e.getMessage());
+            assertEquals(0, copy.getMovies().size(), "Stores should be empty after a failed read.");
+
+            Files.write(path, Arrays.copyOf(original, original.length / 2));
+            assertThrows(IOException.class, () -> StoreSnapshot.read(path, copy), "A cut off snapshot should not be read.");
+            Files.write(path, Arrays.copyOf(original, 6));
+            assertThrows(IOException.class, () -> StoreSnapshot.read(path, copy), "A cut off header should not be read.");
+            assertEquals(0, copy.getRatings().size(), "Stores should be empty after a failed read.");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * A snapshot newer than its sources, taken with the same restriction, should be fresh
+     */
+    @Test void testIsFreshPos() throws IOException {
+        System.out.println("\nStarting testIsFreshPos...");
+
+        Path source = Files.createTempFile("movies", ".csv");
+        Path path = Files.createTempFile("stores", ".snapshot");
+        try {
+            source.toFile().setLastModified(System.currentTimeMillis() - 60000);
+            StoreSnapshot.write(stores, path);
+            assertTrue(StoreSnapshot.isFresh(path, null, source.toString()), "A newer snapshot should be fresh.");
+            assertTrue(StoreSnapshot.isFresh(path, null, source.toString(), "no/such/file.csv"), "Missing sources should be ignored.");
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * A snapshot older than a source, with another restriction, missing or not a
+     * snapshot at all should not be fresh
+     */
+    @Test void testIsFreshNeg() throws IOException {
+        System.out.println("\nStarting testIsFreshNeg...");
+
+        Path source = Files.createTempFile("movies", ".csv");
+        Path path = Files.createTempFile("stores", ".snapshot");
+        try {
+            source.toFile().setLastModified(System.currentTimeMillis() - 60000);
+            StoreSnapshot.write(stores, path);
+            assertFalse(StoreSnapshot.isFresh(path, 100, source.toString()), "Another restriction should not be fresh.");
+            source.toFile().setLastModified(System.currentTimeMillis() + 60000);
+            assertFalse(StoreSnapshot.isFresh(path, null, source.toString()), "An older snapshot should not be fresh.");
+            Files.write(path, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+            assertFalse(StoreSnapshot.isFresh(path, null), "A file that is not a snapshot should not be fresh.");
+            Files.delete(path);
+            assertFalse(StoreSnapshot.isFresh(path, null), "A missing snapshot should not be fresh.");
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+import stores.*;
+import utils.TrendingEngine;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrendingEngineTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2010, 1, 1, 0, 0);
+
+    private static long day(int days) {
+        return START.plusDays(days).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Recent ratings should count for more, and changes through the stores should be
+     * counted as they are made
+     */
+    @Test void testTrendingPos() {
+        System.out.println("\nStarting testTrendingPos...");
+
+        TrendingEngine engine = new TrendingEngine(Duration.ofDays(1), 7, 1.0, 2);
+        engine.add(1, day(0));
+        engine.add(1, day(0));
+        engine.add(2, day(3));
+        assertArrayEquals(new int[] {2, 1}, engine.getTrending(), "A rating three days newer should beat two older ones.");
+        assertEquals(1.0, engine.getScore(2), 1e-9, "A rating in the current day should count as 1.");
+        assertEquals(0.25, engine.getScore(1), 1e-9, "Ratings should halve every half-life.");
+
+        engine.add(3, day(7));
+        assertEquals(0, engine.getScore(1), "Ratings should leave the window after a week.");
+        assertArrayEquals(new int[] {3, 2}, engine.getTrending(), "Expired movies should leave the trending list.");
+
+        Stores loaded = new Stores();
+        loaded.getRatings().add(101, 1, 4.0f, START);
+        TrendingStores stores = new TrendingStores(loaded, new TrendingEngine(5));
+        assertArrayEquals(new int[] {1}, stores.getTrending(), "Loaded ratings should be counted.");
+        stores.getRatings().add(102, 2, 3.0f, START.plusDays(1));
+        stores.getRatings().add(103, 2, 3.0f, START.plusDays(1));
+        assertArrayEquals(new int[] {2, 1}, stores.getTrending(), "Added ratings should be counted.");
+        stores.getRatings().remove(102, 2);
+        stores.getRatings().set(103, 2, 1.0f, START.minusDays(30));
+        assertArrayEquals(new int[] {1}, stores.getTrending(), "Removed and moved ratings should be taken off.");
+    }
+
+    /**
+     * Ratings without a time, outside the window, or never counted should be ignored
+     */
+    @Test void testTrendingNeg() {
+        System.out.println("\nStarting testTrendingNeg...");
+
+        TrendingEngine engine = new TrendingEngine(Duration.ofDays(1), 7, 1.0, 2);
+        assertArrayEquals(new int[0], engine.getTrending(), "Nothing should be trending before any ratings.");
+        assertFalse(engine.add(1, TrendingEngine.NULL_TIMESTAMP), "A rating without a time should not be counted.");
+        assertTrue(engine.add(1, day(10)));
+        assertFalse(engine.add(2, day(2)), "A rating older than the window should not be counted.");
+        assertFalse(engine.remove(3, day(10)), "A rating never counted should not be taken off.");
+        assertFalse(engine.remove(1, day(11)), "A rating newer than any counted should not be taken off.");
+        assertEquals(1.0, engine.getScore(1), 1e-9, "Ignored changes should not affect scores.");
+        assertThrows(IllegalArgumentException.class, () -> new TrendingEngine(Duration.ZERO, 7, 1.0, 2), "Empty buckets should be rejected.");
+    }
+
+    /**
+     * A bucket leaving the window should take off only its own ratings, and its slot
+     * in the ring should count afresh when time comes round to it again
+     */
+    @Test void testExpiryPos() {
+        System.out.println("\nStarting testExpiryPos...");
+
+        TrendingEngine engine = new TrendingEngine(Duration.ofDays(1), 3, 1.0, 5);
+        engine.add(1, day(0));
+        engine.add(1, day(1));
+        engine.add(1, day(2));
+        engine.add(2, day(2));
+        assertEquals(1.75, engine.getScore(1), 1e-9);
+        assertEquals(START.plusDays(2), engine.getNow());
+
+        engine.add(2, day(3));
+        assertEquals(0.75, engine.getScore(1), 1e-9, "Only the oldest bucket should have left the window.");
+        assertFalse(engine.remove(1, day(0)), "An expired rating should not be taken off again.");
+        assertTrue(engine.remove(1, day(1)));
+        assertEquals(0.5, engine.getScore(1), 1e-9);
+
+        // Day 3 reuses day 0's slot, which must have been emptied
+        engine.add(3, day(3));
+        assertEquals(1.0, engine.getScore(3), 1e-9);
+        assertArrayEquals(new int[] {2, 3, 1}, engine.getTrending());
+
+        engine.add(4, day(6));
+        assertArrayEquals(new int[] {4}, engine.getTrending(), "Every older movie should have expired.");
+        assertEquals(0, engine.getScore(1));
+        assertEquals(START.plusDays(6), engine.getNow());
+    }
+
+    /**
+     * Late, repeated and mismatched changes around the edge of the window should not
+     * change any score
+     */
+    @Test void testExpiryNeg() {
+        System.out.println("\nStarting testExpiryNeg...");
+
+        TrendingEngine engine = new TrendingEngine(Duration.ofDays(1), 3, 1.0, 5);
+        assertNull(engine.getNow(), "There should be no current bucket before any ratings.");
+        engine.add(1, day(5));
+        assertFalse(engine.add(1, day(2)), "A rating one bucket past the window should not be counted.");
+        assertTrue(engine.add(1, day(3)), "A rating in the oldest bucket of the window should be counted.");
+        assertFalse(engine.remove(1, day(4)), "A rating never counted in that bucket should not be taken off.");
+        assertFalse(engine.remove(2, day(5)));
+        assertTrue(engine.remove(1, day(3)));
+        assertFalse(engine.remove(1, day(3)), "A rating should only be taken off once.");
+        assertEquals(1.0, engine.getScore(1), 1e-9);
+
+        assertTrue(engine.remove(1, day(5)));
+        assertArrayEquals(new int[0], engine.getTrending(), "A movie with no ratings left should not be trending.");
+        assertEquals(START.plusDays(5), engine.getNow(), "Taking ratings off should not move time back.");
+        assertArrayEquals(new int[0], new TrendingEngine(Duration.ofDays(1), 3, 1.0, 0).getTrending());
+    }
+
+    /**
+     * Running far past the landmark should rebase the weights without changing any
+     * score or the order of the trending list
+     */
+    @Test void testRebasePos() {
+        System.out.println("\nStarting testRebasePos...");
+
+        // With a half-life of a bucket, weights are rebased every 512 buckets or so
+        TrendingEngine engine = new TrendingEngine(Duration.ofDays(1), 7, 1.0, 3);
+        for (int d = 0; d <= 2000; d++) {
+            engine.add(1, day(d));
+            if (d % 2 == 0) {
+                engine.add(2, day(d));
+            }
+        }
+        assertEquals(127 / 64.0, engine.getScore(1), 1e-9, "A rating every day should score the same after rebasing.");
+        assertEquals(85 / 64.0, engine.getScore(2), 1e-9);
+        assertArrayEquals(new int[] {1, 2}, engine.getTrending());
+
+        assertTrue(engine.remove(1, day(2000)));
+        assertTrue(engine.remove(1, day(1999)));
+        assertEquals(31 / 64.0, engine.getScore(1), 1e-9, "Ratings from before a rebase should come off at their own weight.");
+        assertArrayEquals(new int[] {2, 1}, engine.getTrending());
+
+        // Ratings far apart inside a long window, so the old one is rebased down but kept
+        TrendingEngine wide = new TrendingEngine(Duration.ofDays(1), 2000, 1.0, 3);
+        wide.add(1, day(0));
+        wide.add(2, day(1000));
+        assertTrue(wide.getScore(1) > 0, "A tiny weight should survive a rebase.");
+        assertArrayEquals(new int[] {2, 1}, wide.getTrending());
+        assertTrue(wide.remove(1, day(0)));
+        assertEquals(0, wide.getScore(1), "Taking off a rebased rating should leave nothing behind.");
+        assertArrayEquals(new int[] {2}, wide.getTrending());
+    }
+
+    /**
+     * Jumps far into the future, and short half-lives, should never give an infinite
+     * or undefined score
+     */
+    @Test void testRebaseNeg() {
+        System.out.println("\nStarting testRebaseNeg...");
+
+        TrendingEngine engine = new TrendingEngine(Duration.ofDays(1), 7, 1.0, 3);
+        engine.add(1, day(0));
+        engine.add(2, day(100000));
+        assertEquals(0, engine.getScore(1));
+        assertEquals(1.0, engine.getScore(2), 1e-9, "A jump far ahead should not overflow the weights.");
+        assertArrayEquals(new int[] {2}, engine.getTrending());
+
+        // A rating counts for a thousandth as much every bucket, so rebasing is frequent
+        TrendingEngine fast = new TrendingEngine(Duration.ofHours(1), 24, 0.1, 3);
+        for (int h = 0; h < 24 * 30; h++) {
+            fast.add(h % 3, START.plusHours(h).toEpochSecond(ZoneOffset.UTC));
+        }
+        for (int movieID = 0; movieID < 3; movieID++) {
+            double score = fast.getScore(movieID);
+            assertFalse(Double.isNaN(score) || Double.isInfinite(score), "Scores should stay finite: " + score);
+        }
+        assertEquals(1.0, fast.getScore((24 * 30 - 1) % 3), 1e-6);
+        assertEquals((24 * 30 - 1) % 3, fast.getTrending()[0], "The latest movie should lead after many rebases.");
+    }
+}
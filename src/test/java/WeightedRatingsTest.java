@@ -0,0 +1,264 @@
+import interfaces.AbstractStores;
+import interfaces.IRatings;
+import stores.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WeightedRatingsTest {
+
+    private static void rate(IRatings ratings, int movieID, int firstUser, int numRatings, float rating) {
+        for (int userID = firstUser; userID < firstUser + numRatings; userID++) {
+            ratings.add(userID, movieID, rating, null);
+        }
+    }
+
+    /**
+     * Movies should be ranked by their average pulled towards the average of every
+     * rating, and the ranking should follow rating changes
+     */
+    @Test void testTopWeightedRatedPos() {
+        System.out.println("\nStarting testTopWeightedRatedPos...");
+
+        for (AbstractStores stores : new AbstractStores[] {new Stores(), new ConcurrentStores()}) {
+            IRatings ratings = stores.getRatings();
+            rate(ratings, 1, 0, 10, 4.0f);
+            rate(ratings, 2, 100, 1, 5.0f);
+            rate(ratings, 3, 200, 20, 4.5f);
+
+            assertArrayEquals(new int[] {3, 1}, ratings.getTopWeightedRatedMovies(10), "A movie with one rating should not be ranked.");
+            double mean = (40 + 5 + 90) / 31.0;
+            assertEquals((40 + 10 * mean) / 20, ratings.getMovieWeightedRating(1), 1e-4, "Incorrect weighted rating.");
+            assertEquals((5 + 10 * mean) / 11, ratings.getMovieWeightedRating(2), 1e-4, "Unranked movies should still have a weighted rating.");
+
+            rate(ratings, 1, 300, 10, 5.0f);
+            assertArrayEquals(new int[] {1, 3}, ratings.getTopWeightedRatedMovies(10), "Equal weighted ratings should come lowest ID first.");
+            assertTrue(ratings.set(300, 1, 0.5f, null));
+            assertArrayEquals(new int[] {3, 1}, ratings.getTopWeightedRatedMovies(10), "A changed rating should move its movie.");
+            assertArrayEquals(new int[] {3}, ratings.getTopWeightedRatedMovies(1));
+        }
+    }
+
+    /**
+     * No ratings, too few ratings, and asking for no results should all rank nothing
+     */
+    @Test void testTopWeightedRatedNeg() {
+        System.out.println("\nStarting testTopWeightedRatedNeg...");
+
+        for (AbstractStores stores : new AbstractStores[] {new Stores(), new ConcurrentStores()}) {
+            IRatings ratings = stores.getRatings();
+            assertArrayEquals(new int[0], ratings.getTopWeightedRatedMovies(10), "Nothing should be ranked before any ratings.");
+            assertEquals(-1.0f, ratings.getMovieWeightedRating(1), "A movie without ratings should have no weighted rating.");
+
+            rate(ratings, 1, 0, 10, 4.0f);
+            assertArrayEquals(new int[0], ratings.getTopWeightedRatedMovies(0), "Empty array should be returned when top parameter is 0.");
+            assertArrayEquals(new int[0], ratings.getTopWeightedRatedMovies(-1), "Empty array should be returned when top parameter is negative.");
+
+            assertTrue(ratings.remove(0, 1));
+            assertArrayEquals(new int[0], ratings.getTopWeightedRatedMovies(10), "A movie that falls below the minimum should leave the ranking.");
+            for (int userID = 1; userID < 10; userID++) {
+                ratings.remove(userID, 1);
+            }
+            assertEquals(-1.0f, ratings.getMovieWeightedRating(1), "A movie with all its ratings removed should have no weighted rating.");
+        }
+    }
+
+    // Plain stores of many ranked movies, none read yet
+    private static Stores ranked(int numMovies) {
+        Stores stores = new Stores();
+        int n = numMovies * 12;
+        int[] users = new int[n];
+        int[] movies = new int[n];
+        float[] values = new float[n];
+        long[] times = new long[n];
+        for (int row = 0; row < n; row++) {
+            users[row] = row % 12;
+            movies[row] = row / 12;
+            values[row] = 0.5f + (row * 7 % 10) / 2.0f;
+            times[row] = Long.MIN_VALUE;
+        }
+        stores.getRatings().addAll(users, movies, values, times);
+        return stores;
+    }
+
+    // The top movies read by two threads at once
+    private static int[][] readTogether(IRatings ratings) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        List<CompletableFuture<int[]>> reads = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            reads.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    barrier.await(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                return ratings.getTopWeightedRatedMovies(Integer.MAX_VALUE);
+            }, runnable -> new Thread(runnable).start()));
+        }
+        return new int[][] {reads.get(0).get(10, TimeUnit.SECONDS), reads.get(1).get(10, TimeUnit.SECONDS)};
+    }
+
+    // Weighted ratings of every movie with enough ratings, against the mean of every rating
+    private static HashMap<Integer, Double> expectedScores(IRatings ratings) {
+        double sum = 0;
+        int count = 0;
+        for (int movieID : ratings.getRatedMovies()) {
+            for (float rating : ratings.getMovieRatings(movieID)) {
+                sum += rating;
+                count++;
+            }
+        }
+        double mean = count == 0 ? 0 : sum / count;
+        HashMap<Integer, Double> scores = new HashMap<>();
+        for (int movieID : ratings.getRatedMovies()) {
+            float[] movieRatings = ratings.getMovieRatings(movieID);
+            if (movieRatings.length >= 10) {
+                double movieSum = 0;
+                for (float rating : movieRatings) {
+                    movieSum += rating;
+                }
+                scores.put(movieID, (movieSum + 10 * mean) / (movieRatings.length + 10));
+            }
+        }
+        return scores;
+    }
+
+    // The ranking should hold every movie with enough ratings, in order of their weighted
+    // ratings, give or take how far the mean may drift before every movie is ranked again
+    private static void assertRanked(IRatings ratings) {
+        HashMap<Integer, Double> scores = expectedScores(ratings);
+        int[] top = ratings.getTopWeightedRatedMovies(Integer.MAX_VALUE);
+        int[] expected = scores.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        int[] ranked = top.clone();
+        Arrays.sort(ranked);
+        assertArrayEquals(expected, ranked, "Every movie with enough ratings should be ranked, once.");
+        for (int i = 1; i < top.length; i++) {
+            assertTrue(scores.get(top[i - 1]) >= scores.get(top[i]) - 0.01, "Movies should be in order of weighted rating: " + top[i - 1] + " before " + top[i]);
+        }
+    }
+
+    /**
+     * The concurrent store's ranking, moved on from the last version read rather than
+     * sorted again, should stay in order through many changes read at random
+     */
+    @Test void testRerankPos() {
+        System.out.println("\nStarting testRerankPos...");
+
+        Random random = new Random(39);
+        ConcurrentStores stores = new ConcurrentStores();
+        IRatings ratings = stores.getRatings();
+        for (int movieID = 0; movieID < 50; movieID++) {
+            rate(ratings, movieID, 0, 8 + random.nextInt(20), 0.5f + random.nextInt(10) / 2.0f);
+        }
+        assertRanked(ratings);
+        for (int step = 0; step < 2000; step++) {
+            int userID = random.nextInt(40);
+            int movieID = random.nextInt(50);
+            float rating = 0.5f + random.nextInt(10) / 2.0f;
+            switch (random.nextInt(3)) {
+                case 0: ratings.add(userID, movieID, rating, null); break;
+                case 1: ratings.set(userID, movieID, rating, null); break;
+                default: ratings.remove(userID, movieID); break;
+            }
+            if (random.nextInt(5) == 0) {
+                assertRanked(ratings);
+            }
+        }
+        assertRanked(ratings);
+
+        // A snapshot keeps its own ranking while the stores move on
+        AbstractStores snapshot = stores.snapshot();
+        int[] before = snapshot.getRatings().getTopWeightedRatedMovies(5);
+        rate(ratings, 100, 0, 40, 5.0f);
+        assertEquals(100, ratings.getTopWeightedRatedMovies(1)[0], "A new movie rated highly should lead.");
+        assertArrayEquals(before, snapshot.getRatings().getTopWeightedRatedMovies(5), "A snapshot's ranking should not change.");
+    }
+
+    /**
+     * Movies falling below the minimum, losing every rating, or arriving in a large
+     * batch should leave or enter the incrementally kept ranking correctly
+     */
+    @Test void testRerankNeg() {
+        System.out.println("\nStarting testRerankNeg...");
+
+        ConcurrentStores stores = new ConcurrentStores();
+        IRatings ratings = stores.getRatings();
+        rate(ratings, 1, 0, 10, 4.0f);
+        rate(ratings, 2, 0, 10, 3.0f);
+        assertArrayEquals(new int[] {1, 2}, ratings.getTopWeightedRatedMovies(10));
+
+        assertTrue(ratings.remove(0, 1));
+        assertArrayEquals(new int[] {2}, ratings.getTopWeightedRatedMovies(10), "A movie below the minimum should leave the ranking.");
+        for (int userID = 1; userID < 10; userID++) {
+            ratings.remove(userID, 1);
+        }
+        assertArrayEquals(new int[] {2}, ratings.getTopWeightedRatedMovies(10), "A movie with no ratings should stay out.");
+        assertEquals(-1.0f, ratings.getMovieWeightedRating(1));
+        assertEquals(3.0f, ratings.getMovieWeightedRating(2), 1e-6, "With one movie, its weighted rating is its mean.");
+        assertFalse(ratings.add(0, 2, 5.0f, null), "A duplicate should change nothing.");
+        assertArrayEquals(new int[] {2}, ratings.getTopWeightedRatedMovies(10));
+
+        // A batch big enough that everything is ranked again
+        int n = 3000;
+        int[] users = new int[n];
+        int[] movies = new int[n];
+        float[] values = new float[n];
+        long[] times = new long[n];
+        for (int row = 0; row < n; row++) {
+            users[row] = row % 20;
+            movies[row] = 10 + row / 20;
+            values[row] = 0.5f + (row / 20) % 10 / 2.0f;
+            times[row] = Long.MIN_VALUE;
+        }
+        assertEquals(n, ratings.addAll(users, movies, values, times));
+        assertRanked(ratings);
+        assertEquals(151, ratings.getTopWeightedRatedMovies(Integer.MAX_VALUE).length);
+        assertEquals(0, ratings.addAll(users, movies, values, times), "A batch already stored should add nothing.");
+        assertRanked(ratings);
+    }
+
+    /**
+     * Two threads making the first read of plain stores at once should both get the whole
+     * ranking
+     */
+    @Test void testConcurrentReadsPos() throws Exception {
+        System.out.println("\nStarting testConcurrentReadsPos...");
+
+        int[] expected = ranked(2000).getRatings().getTopWeightedRatedMovies(Integer.MAX_VALUE);
+        assertEquals(2000, expected.length);
+        for (int round = 0; round < 20; round++) {
+            int[][] reads = readTogether(ranked(2000).getRatings());
+            assertArrayEquals(expected, reads[0], "The first of two reads at once should get the whole ranking.");
+            assertArrayEquals(expected, reads[1], "The second of two reads at once should get the whole ranking.");
+        }
+    }
+
+    /**
+     * Reads at once after the mean has drifted, so the ranking is sorted again, should
+     * neither fail nor get part of it
+     */
+    @Test void testConcurrentReadsNeg() throws Exception {
+        System.out.println("\nStarting testConcurrentReadsNeg...");
+
+        for (int round = 0; round < 20; round++) {
+            Stores stores = ranked(2000);
+            IRatings ratings = stores.getRatings();
+            ratings.getTopWeightedRatedMovies(1);
+            // Enough low ratings of a new movie to move the mean by more than MAX_DRIFT
+            rate(ratings, 5000, 100, 2000, 0.5f);
+            int[][] reads = readTogether(ratings);
+            assertEquals(2001, reads[0].length, "A read after the mean drifted should get the whole ranking.");
+            assertArrayEquals(reads[0], reads[1], "Reads at once should agree.");
+        }
+        assertRanked(ranked(50).getRatings());
+    }
+}